@@ -0,0 +1,166 @@
+package smurf.benchmark;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import smurf.Smurf;
+import smurf.dao.ColumnLayout;
+import smurf.model.AvisClient;
+
+/**
+ * The ColumnLayoutBenchmark class measures the cost per row of reading the requests for payment of a result set with
+ * the metadata and column label lookups made for every row, as the DAO used to, and with a column layout built once
+ * per query. The rows are read from a synthetic SQLite table of 100 000 requests for payment, which is created in the
+ * database file given as first argument when it does not exist yet. The benchmark is not part of the application; it
+ * is run from the project folder with the built classes and the libraries on the class path:
+ *
+ * java -cp build/classes:build/benchmark:lib/* smurf.benchmark.ColumnLayoutBenchmark [database file]
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class ColumnLayoutBenchmark {
+
+    private static final int NO_ROWS = 100000;
+    private static final int NO_ROUNDS = 6;
+    private static final String QUERY = "SELECT id AS identifiant_avis, idc AS identifiant_client, d AS date_avis, "
+            + "m / 100.00 AS montant_total, dp AS date_paiement, c AS client FROM bench_avis";
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Path of the SQLite database file, which defaults to bench100k.db
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        String databaseFile = (args.length > 0) ? args[0] : "bench100k.db";
+
+        Class.forName("org.sqlite.JDBC");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + databaseFile);
+                Statement statement = conn.createStatement()) {
+
+            createTable(conn);
+
+            // The first rounds warm up the JIT compiler
+            for (int round = 0; round < NO_ROUNDS; round++) {
+
+                int noRows = 0;
+                long start = System.nanoTime();
+                try (ResultSet resultSet = statement.executeQuery(QUERY)) {
+                    while (resultSet.next()) {
+                        readRowWithMetadata(resultSet);
+                        noRows++;
+                    }
+                }
+                long metadataTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                try (ResultSet resultSet = statement.executeQuery(QUERY)) {
+                    ColumnLayout layout = new ColumnLayout(resultSet.getMetaData());
+                    while (resultSet.next()) {
+                        readRowWithLayout(resultSet, layout);
+                    }
+                }
+                long layoutTime = System.nanoTime() - start;
+
+                System.out.printf("round %d, %d rows: per row metadata %.0f ms (%.2f us/row), column layout %.0f ms "
+                        + "(%.2f us/row)%n", round, noRows, metadataTime / 1e6, metadataTime / 1e3 / noRows,
+                        layoutTime / 1e6, layoutTime / 1e3 / noRows);
+            }
+        }
+    }
+
+    /**
+     * Create the table of synthetic requests for payment when it does not exist
+     *
+     * @param conn Connection to the SQLite database
+     * @throws SQLException
+     */
+    private static void createTable(Connection conn) throws SQLException {
+
+        try (Statement statement = conn.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM sqlite_master "
+                        + "WHERE name = 'bench_avis'")) {
+
+            resultSet.next();
+            if (resultSet.getInt(1) > 0) {
+                return;
+            }
+
+            statement.executeUpdate("CREATE TABLE bench_avis (id integer PRIMARY KEY, idc integer, d text, "
+                    + "m integer, dp text, c text)");
+        }
+
+        conn.setAutoCommit(false);
+        try (PreparedStatement insertStatement = conn.prepareStatement("INSERT INTO bench_avis "
+                + "VALUES (?, ?, ?, ?, ?, ?)")) {
+
+            for (int i = 1; i <= NO_ROWS; i++) {
+
+                insertStatement.setInt(1, i);
+                insertStatement.setInt(2, i % 5000);
+                insertStatement.setString(3, "2012-02-15");
+                insertStatement.setLong(4, 1000 + i);
+                insertStatement.setString(5, "2012-03-15");
+                insertStatement.setString(6, "Client " + (i % 5000));
+                insertStatement.addBatch();
+
+                if (i % 5000 == 0) {
+                    insertStatement.executeBatch();
+                }
+            }
+
+            conn.commit();
+
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Read a request for payment by looking up the metadata and the label of every column for the row
+     *
+     * @param resultSet Result set positioned on the row
+     * @return Request for payment
+     * @throws SQLException
+     */
+    private static AvisClient readRowWithMetadata(ResultSet resultSet) throws SQLException {
+
+        AvisClient avisClient = new AvisClient(BigInteger.valueOf(resultSet.getLong(
+                Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME)));
+
+        ResultSetMetaData rsmd = resultSet.getMetaData();
+        for (int i = 1; i < rsmd.getColumnCount() + 1; i++) {
+            if (!rsmd.getColumnName(i).equals(Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME)) {
+                avisClient.setAttribute(rsmd.getColumnLabel(i), resultSet.getObject(rsmd.getColumnLabel(i)));
+            }
+        }
+
+        return avisClient;
+    }
+
+    /**
+     * Read a request for payment by column index from the column layout of the query
+     *
+     * @param resultSet Result set positioned on the row
+     * @param layout Column layout of the query
+     * @return Request for payment
+     * @throws SQLException
+     */
+    private static AvisClient readRowWithLayout(ResultSet resultSet, ColumnLayout layout) throws SQLException {
+
+        AvisClient avisClient = new AvisClient(BigInteger.valueOf(layout.readId(resultSet)));
+
+        for (int i = 0; i < layout.getColumnCount(); i++) {
+            avisClient.setAttribute(layout.getColumnLabel(i), layout.read(resultSet, i));
+        }
+
+        return avisClient;
+    }
+}
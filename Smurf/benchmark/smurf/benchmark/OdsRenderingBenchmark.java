@@ -0,0 +1,138 @@
+package smurf.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.jopendocument.dom.spreadsheet.Sheet;
+import org.jopendocument.model.OpenDocument;
+import org.jopendocument.renderer.ODTRenderer;
+import smurf.utilities.OdsTemplatePlan;
+
+/**
+ * The OdsRenderingBenchmark class measures the latency per document of handing a filled request for payment template
+ * to the renderer through a temporary ODS file, which is saved and loaded again as the printer used to, and from
+ * memory. The images painted by the renderer for both documents are compared first so that the two paths are known to
+ * render the same document. The benchmark is not part of the application; it is run from the project folder with the
+ * built classes and the libraries on the class path:
+ *
+ * java -cp build/classes:build/benchmark:lib/* smurf.benchmark.OdsRenderingBenchmark [template file]
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class OdsRenderingBenchmark {
+
+    private static final int IMAGE_HEIGHT = 1100;
+    private static final int IMAGE_WIDTH = 800;
+    private static final int NO_DOCUMENTS = 200;
+    private static final int NO_ROUNDS = 3;
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Path of the ODS template file, which defaults to template/gabarit_avis_simple.ods
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+
+        OdsTemplatePlan templatePlan = OdsTemplatePlan.getPlan(new File((args.length > 0) ? args[0]
+                : "template/gabarit_avis_simple.ods"));
+
+        // Text of the cells holding tokens
+        String[] cellTexts = new String[templatePlan.getCellCount()];
+        for (int c = 0; c < cellTexts.length; c++) {
+            cellTexts[c] = "Valeur " + c;
+        }
+
+        File temporaryFolder = Files.createTempDirectory("smurf-benchmark").toFile();
+        try {
+
+            // Check that both paths render the same document
+            BufferedImage fileImage = paint(loadFromFile(templatePlan.fill(cellTexts), temporaryFolder, 0));
+            BufferedImage memoryImage = paint(templatePlan.createRenderDocument(templatePlan.fill(cellTexts)));
+            int noDifferentPixels = 0;
+            for (int x = 0; x < IMAGE_WIDTH; x++) {
+                for (int y = 0; y < IMAGE_HEIGHT; y++) {
+                    if (fileImage.getRGB(x, y) != memoryImage.getRGB(x, y)) {
+                        noDifferentPixels++;
+                    }
+                }
+            }
+            System.out.println("pixels differing between the two paths: " + noDifferentPixels);
+
+            // The first round warms up the JIT compiler
+            for (int round = 0; round < NO_ROUNDS; round++) {
+
+                long start = System.nanoTime();
+                for (int i = 0; i < NO_DOCUMENTS; i++) {
+                    new ODTRenderer(loadFromFile(templatePlan.fill(cellTexts), temporaryFolder, i));
+                }
+                double fileLatency = (System.nanoTime() - start) / 1e6 / NO_DOCUMENTS;
+
+                start = System.nanoTime();
+                for (int i = 0; i < NO_DOCUMENTS; i++) {
+                    new ODTRenderer(templatePlan.createRenderDocument(templatePlan.fill(cellTexts)));
+                }
+                double memoryLatency = (System.nanoTime() - start) / 1e6 / NO_DOCUMENTS;
+
+                System.out.printf("round %d, fill and hand-off per document: temporary file %.2f ms, memory %.2f ms%n",
+                        round, fileLatency, memoryLatency);
+            }
+
+        } finally {
+            temporaryFolder.delete();
+        }
+    }
+
+    /**
+     * Save a filled sheet to a temporary ODS file and load the file for the renderer
+     *
+     * @param sheet Filled sheet of the document
+     * @param temporaryFolder Folder of the temporary file
+     * @param documentNo Number of the document
+     * @return ODS document ready to be rendered
+     * @throws IOException
+     */
+    private static OpenDocument loadFromFile(Sheet sheet, File temporaryFolder, int documentNo) throws IOException {
+
+        File odsFile = new File(temporaryFolder, "document_" + documentNo + ".ods");
+        try {
+
+            sheet.getSpreadSheet().saveAs(odsFile);
+
+            OpenDocument doc = new OpenDocument();
+            doc.loadFrom(odsFile);
+
+            return doc;
+
+        } finally {
+            odsFile.delete();
+        }
+    }
+
+    /**
+     * Paint an ODS document on an image with the settings of the printer
+     *
+     * @param doc ODS document
+     * @return Painted image
+     */
+    private static BufferedImage paint(OpenDocument doc) {
+
+        ODTRenderer odtRenderer = new ODTRenderer(doc);
+        odtRenderer.setIgnoreMargins(true);
+        odtRenderer.setPaintMaxResolution(true);
+        odtRenderer.setSize(IMAGE_WIDTH, IMAGE_HEIGHT);
+
+        BufferedImage image = new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, IMAGE_WIDTH, IMAGE_HEIGHT);
+        odtRenderer.paintComponent(graphics);
+        graphics.dispose();
+
+        return image;
+    }
+}
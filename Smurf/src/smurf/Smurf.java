@@ -21,6 +21,9 @@ public class Smurf {
     public static String CONFIG_FILE_NAME = "conf" + System.getProperty("file.separator") + "smurf.properties";
     public static String DATE_FORMAT = "dd/MM/yyyy HH:mm:ss";
     public static String LOG_FILE_NAME = "log" + System.getProperty("file.separator") + "smurf.log";
+    public static String REQUEST_FOR_PAYMENT_AMOUNT_COL_NAME = "montant_total";
+    public static String REQUEST_FOR_PAYMENT_CLIENT_COL_NAME = "client";
+    public static String REQUEST_FOR_PAYMENT_CLIENT_ID_COL_NAME = "identifiant_client";
     public static String REQUEST_FOR_PAYMENT_ID_COL_NAME = "identifiant_avis";
     public static String SMURF_HELP = "smurf_aide.html";
 
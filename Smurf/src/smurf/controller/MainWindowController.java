@@ -12,6 +12,7 @@ import java.util.logging.Level;
 import javax.swing.JOptionPane;
 import smurf.Smurf;
 import smurf.dao.ConfigurationDao;
+import smurf.dao.ConnectionPool;
 import smurf.exceptions.ConfigurationFormatException;
 import smurf.model.Configuration;
 import smurf.utilities.Utilities;
@@ -195,6 +196,9 @@ public class MainWindowController extends WindowAdapter implements ComponentList
 
         } finally {
 
+            // Close the database connections kept open by the connection pools
+            ConnectionPool.closeAll();
+
             // Exit
             System.exit(0);
         }
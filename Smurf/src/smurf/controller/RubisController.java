@@ -1,14 +1,21 @@
 package smurf.controller;
 
+import java.awt.Cursor;
+import java.awt.Dialog;
 import java.awt.Dimension;
 import java.awt.event.*;
 import java.io.File;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.security.GeneralSecurityException;
+import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
@@ -16,6 +23,7 @@ import javax.mail.MessagingException;
 import javax.swing.*;
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
+import javax.swing.plaf.basic.ComboPopup;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.JTableHeader;
 import javax.swing.table.TableColumn;
@@ -23,14 +31,19 @@ import org.apache.commons.lang3.StringUtils;
 import org.smoc.Smoc;
 import smurf.Smurf;
 import smurf.dao.AvisClientDao;
+import smurf.dao.AvisClientFetchListener;
+import smurf.dao.AvisClientPager;
 import smurf.dao.ConfigurationDao;
 import smurf.exceptions.ConfigurationFormatException;
 import smurf.exceptions.MailParameterNotDefinedException;
-import smurf.exceptions.SmicConfigurationFilenameNotDefinedException;
 import smurf.model.*;
+import smurf.utilities.DocumentGenerationListener;
+import smurf.utilities.DocumentPipelineListener;
 import smurf.utilities.SEPAMailDocumentArchiver;
+import smurf.utilities.SEPAMailDocumentGenerator;
 import smurf.utilities.SEPAMailDocumentMailer;
 import smurf.utilities.SEPAMailDocumentPrinter;
+import smurf.utilities.SEPAMailDocumentSender;
 import smurf.utilities.SEPAMailEbicsAdapter;
 import smurf.utilities.SEPAMailVoucherPrinter;
 import smurf.utilities.Utilities;
@@ -48,17 +61,37 @@ public class RubisController extends WindowAdapter implements ActionListener, It
         MouseListener {
 
     private ArrayList<AvisClient> avisClients;
+    private AvisClientPager avisClientPager;
+    private AvisClientSearchIndex avisClientSearchIndex;
+    private AvisClientSorter avisClientSorter;
+    private AvisClientView displayedAvisClients;
     private ArrayList<GridConfiguration> gridConfigurations;
     private AvisClientTableModel avisClientTableModel;
+    private PageComboBoxModel pageComboBoxModel;
     private boolean initialised;
     private HashMap<String, PDFViewer> pdfViewers;
     private int curPageNo;
+    private int filterColumn;
+    private Object filterValue;
+    private int lastSearchIndex;
+    private String lastSearchQuery;
     private int maxRows;
     private int noDocuments;
     private int noDocumentsSent;
     private int noDocumentsToSend;
     private int noPages;
     private int noSelectedDocuments;
+    private JPopupMenu gridPopupMenu;
+    private JMenuItem clearFilterMenuItem;
+    private JMenuItem filterValueMenuItem;
+    private JMenuItem selectValueMenuItem;
+    private SwingWorker<ArrayList<AvisClient>, Void> pageWorker;
+    private int popupColumn;
+    private int popupRow;
+    private HashSet<Long> sentAvisClientIds;
+    private boolean sortAscending;
+    private int sortColumn;
+    private SwingWorker<int[], Void> sortWorker;
     private RubisPanel view;
     private SwingWorker taskWorker;
     private TaskProgressDialog taskProgressDialog;
@@ -78,10 +111,19 @@ public class RubisController extends WindowAdapter implements ActionListener, It
     public RubisController() {
 
         this.avisClients = new ArrayList<>();
-        this.avisClientTableModel = new AvisClientTableModel(this.avisClients);
+        this.avisClientPager = null;
+        this.avisClientSearchIndex = new AvisClientSearchIndex();
+        this.avisClientSorter = null;
+        this.displayedAvisClients = new AvisClientView(this.avisClients);
+        this.avisClientTableModel = new AvisClientTableModel(this.displayedAvisClients);
+        this.pageComboBoxModel = new PageComboBoxModel();
         this.curPageNo = 0;
+        this.filterColumn = -1;
+        this.filterValue = null;
         this.gridConfigurations = new ArrayList<>();
         this.initialised = false;
+        this.lastSearchIndex = -1;
+        this.lastSearchQuery = null;
         this.maxRows = 0;
         this.noDocuments = 0;
         this.noDocumentsSent = 0;
@@ -89,6 +131,17 @@ public class RubisController extends WindowAdapter implements ActionListener, It
         this.noPages = 0;
         this.noSelectedDocuments = 0;
         this.pdfViewers = new HashMap<>();
+        this.gridPopupMenu = new JPopupMenu();
+        this.clearFilterMenuItem = null;
+        this.filterValueMenuItem = null;
+        this.selectValueMenuItem = null;
+        this.pageWorker = null;
+        this.popupColumn = -1;
+        this.popupRow = -1;
+        this.sentAvisClientIds = new HashSet<>();
+        this.sortAscending = true;
+        this.sortColumn = -1;
+        this.sortWorker = null;
         this.taskProgressDialog = new TaskProgressDialog(MainWindowController.getView(), true);
         this.view = new RubisPanel();
 
@@ -110,21 +163,37 @@ public class RubisController extends WindowAdapter implements ActionListener, It
         // Check if the UI has already been initialised
         if (!this.initialised) {
 
-            // Define the table model of the grid
+            // Define the table model of the grid, which is kept for all the pages
             this.view.gridTable.setModel(this.avisClientTableModel);
+            this.avisClientTableModel.addTableModelListener(this);
 
             // Setup the grid which displays the list of requests for payment
             this.setupGrid();
 
+            // Define the model of the page selector
+            this.view.pagesComboBox.setModel(this.pageComboBoxModel);
+
+            // Define the context menu of the grid changing the selection of all the requests for payment
+            this.addGridMenuItem("Sélectionner toutes les demandes", "SELECT_ALL");
+            this.addGridMenuItem("Désélectionner toutes les demandes", "DESELECT_ALL");
+            this.addGridMenuItem("Inverser la sélection", "INVERT_SELECTION");
+            this.selectValueMenuItem = this.addGridMenuItem("Sélectionner les demandes ayant cette valeur",
+                    "SELECT_VALUE");
+            this.gridPopupMenu.addSeparator();
+            this.filterValueMenuItem = this.addGridMenuItem("Filtrer sur cette valeur", "FILTER_VALUE");
+            this.clearFilterMenuItem = this.addGridMenuItem("Supprimer le filtre", "CLEAR_FILTER");
+
             // Add action event handlers for Rubis panel components
             this.view.firstButton.addActionListener(this);
             this.view.firstStepToggleButton.addActionListener(this);
             this.view.firstStepToggleButton.addItemListener(this);
             this.view.gridTable.addMouseListener(this);
+            this.view.gridTable.getTableHeader().addMouseListener(this);
             this.view.lastButton.addActionListener(this);
             this.view.nextButton.addActionListener(this);
             this.view.pagesComboBox.addActionListener(this);
             this.view.previousButton.addActionListener(this);
+            this.view.searchTextField.addActionListener(this);
             this.view.secondStepToggleButton.addActionListener(this);
             this.view.thirdStepToggleButton.addActionListener(this);
 
@@ -157,6 +226,14 @@ public class RubisController extends WindowAdapter implements ActionListener, It
             this.avisClients.set(i, currentAvis);
         }
 
+        // Forget the documents sent as soon as they were generated
+        this.sentAvisClientIds.clear();
+
+        // Forget the documents generated for the requests for payment of the database pager
+        if (this.avisClientPager != null) {
+            this.avisClientPager.clearSmurfOutputs();
+        }
+
         // Indicate that documents have not been generated
         this.view.secondStepToggleButton.setSelected(false);
         this.view.thirdStepToggleButton.setSelected(false);
@@ -185,8 +262,13 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                 // Clear any previously generated SMURF output objects
                 this.clearSmurfOuputObjects();
 
-                // Generate documents for selected requests for payments
-                this.generateDocuments();
+                // Generate documents for selected requests for payments, sending each document as soon as it has
+                // been generated in the pipelined mode
+                if (this.isPipelineEnabled()) {
+                    this.generateAndSendDocuments();
+                } else {
+                    this.generateDocuments();
+                }
 
                 break;
 
@@ -242,9 +324,12 @@ public class RubisController extends WindowAdapter implements ActionListener, It
 
             case "PAGE_CHANGE":
 
-                // Show the appropriate page
-                this.curPageNo = this.view.pagesComboBox.getSelectedIndex();
-                this.showPage();
+                // Show the appropriate page unless it is already displayed
+                if ((this.pageComboBoxModel.getSelectedIndex() > -1)
+                        && (this.pageComboBoxModel.getSelectedIndex() != this.curPageNo)) {
+                    this.curPageNo = this.pageComboBoxModel.getSelectedIndex();
+                    this.showPage();
+                }
                 break;
 
             case "CANCEL_GENERATION":
@@ -272,6 +357,48 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                     this.taskProgressDialog.setVisible(false);
                 }
                 break;
+
+            case "SELECT_ALL":
+            case "DESELECT_ALL":
+            case "INVERT_SELECTION":
+
+                // Change the selection of all the requests for payment
+                this.changeSelection(e.getActionCommand());
+                break;
+
+            case "SELECT_VALUE":
+
+                // Also select the requests for payment having the value of the cell on which the menu was shown
+                if ((this.popupRow > -1) && (this.popupRow < this.avisClientTableModel.getRowCount())) {
+                    this.selectValue(this.gridConfigurations.get(this.popupColumn - 1).getAlias(),
+                            this.getPopupCellValue());
+                }
+                break;
+
+            case "FILTER_VALUE":
+
+                // Only display the requests for payment having the value of the cell on which the menu was shown
+                if ((this.popupRow > -1) && (this.popupRow < this.avisClientTableModel.getRowCount())) {
+
+                    this.filterColumn = this.popupColumn;
+                    this.filterValue = this.getPopupCellValue();
+                    this.sortAndFilterGrid();
+                }
+                break;
+
+            case "SEARCH":
+
+                // Display the next request for payment matching the search
+                this.searchAvisClient(this.view.searchTextField.getText());
+                break;
+
+            case "CLEAR_FILTER":
+
+                // Display all the requests for payment
+                this.filterColumn = -1;
+                this.filterValue = null;
+                this.sortAndFilterGrid();
+                break;
         }
     }
 
@@ -292,7 +419,7 @@ public class RubisController extends WindowAdapter implements ActionListener, It
             case "RECUPERATION":
 
                 // Check if requests for payment have been retrieved
-                if (this.avisClients.size() > 0) {
+                if (this.getAvisClientCount() > 0) {
                     target.setSelected(true);
                 } else {
                     target.setSelected(false);
@@ -331,7 +458,7 @@ public class RubisController extends WindowAdapter implements ActionListener, It
     public void setupPager() {
 
         // Check if the list of requests for payment contains items
-        if (this.avisClients.size() > 0) {
+        if (this.getAvisClientCount() > 0) {
 
             // Setup paging for the list of requests for payment
             calculatePagerValues();
@@ -353,22 +480,43 @@ public class RubisController extends WindowAdapter implements ActionListener, It
     public void tableChanged(TableModelEvent tme) {
 
         // Check if the event is being triggered for generate document status checkbox
-        if (tme.getColumn() == 0) {
+        if ((tme.getColumn() == 0) && (this.avisClientPager != null)) {
 
-            // Reset the selected documents counter
-            this.noSelectedDocuments = 0;
+            // Record the selection of the requests for payment of the page, the other pages not being in memory
+            for (int row = tme.getFirstRow(); row <= Math.min(tme.getLastRow(),
+                    this.avisClientTableModel.getRowCount() - 1); row++) {
+                this.avisClientPager.updateSelection(this.avisClientTableModel.getAvisClient(row));
+            }
+            this.noSelectedDocuments = this.avisClientPager.getSelectedCount();
+
+        } else if (tme.getColumn() == 0) {
 
-            // Loop through the list of requests for payment and calculate the list of selected document
-            for (int i = 0; i < this.avisClients.size(); i++) {
+            // The batch of the requests for payment keeps the number of selected rows
+            AvisClientBatch batch = this.getSelectionBatch();
+            if (batch != null) {
+                this.noSelectedDocuments = batch.getSelectedCount();
+            } else {
 
-                // Current request for payment
-                AvisClient avisClient = this.avisClients.get(i);
+                // Reset the selected documents counter
+                this.noSelectedDocuments = 0;
 
-                if (avisClient.getGenerateDocument()) {
-                    this.noSelectedDocuments++;
+                // Loop through the list of requests for payment and calculate the list of selected document
+                for (int i = 0; i < this.avisClients.size(); i++) {
+
+                    // Current request for payment
+                    AvisClient avisClient = this.avisClients.get(i);
+
+                    if (avisClient.getGenerateDocument()) {
+                        this.noSelectedDocuments++;
+                    }
                 }
             }
         }
+
+        // Display the new selection in the pager message
+        if (tme.getColumn() == 0) {
+            this.updatePagerComponents();
+        }
     }
 
     /**
@@ -379,8 +527,14 @@ public class RubisController extends WindowAdapter implements ActionListener, It
     @Override
     public void mouseClicked(MouseEvent me) {
 
-        // Check for double click
-        if (me.getClickCount() == 2) {
+        // Sort the grid on the column whose header has been clicked
+        if (me.getSource() instanceof JTableHeader) {
+
+            if (me.getButton() == MouseEvent.BUTTON1) {
+                this.sortGrid(((JTableHeader) me.getSource()).columnAtPoint(me.getPoint()));
+            }
+
+        } else if (me.getClickCount() == 2) {
 
             // Target grid
             JTable target = (JTable)me.getSource();
@@ -392,7 +546,7 @@ public class RubisController extends WindowAdapter implements ActionListener, It
             // Check if the PDF filename column has been double clicked
             if (column == this.avisClientTableModel.getColumnCount() - 1) {
 
-                AvisClient avisClient = this.avisClients.get(row + (this.maxRows * this.curPageNo));
+                AvisClient avisClient = this.avisClientTableModel.getAvisClient(row);
 
                 // Check if filename has been defined
                 if (avisClient.getSmurfOutput() != null) {
@@ -457,11 +611,15 @@ public class RubisController extends WindowAdapter implements ActionListener, It
     @Override
     public void mousePressed(MouseEvent me) {
 
+        // Show the selection context menu of the grid
+        this.showGridPopupMenu(me);
     }
 
     @Override
     public void mouseReleased(MouseEvent me) {
 
+        // Show the selection context menu of the grid
+        this.showGridPopupMenu(me);
     }
 
     @Override
@@ -482,17 +640,30 @@ public class RubisController extends WindowAdapter implements ActionListener, It
      */
     private void resetGrid() {
 
+        // Stop paging the requests for payment from the database, ignoring a page being fetched
+        if (this.avisClientPager != null) {
+            this.avisClientPager.close();
+            this.avisClientPager = null;
+        }
+        this.pageWorker = null;
+
         // Reset the list of request for payment
         this.avisClients.clear();
-        this.avisClientTableModel = new AvisClientTableModel(this.avisClients);
-        this.view.gridTable.setModel(this.avisClientTableModel);
+        this.clearSortAndFilter();
+
+        // Reset the search
+        this.avisClientSearchIndex = new AvisClientSearchIndex();
+        this.lastSearchIndex = -1;
+        this.lastSearchQuery = null;
+        this.view.searchTextField.setEnabled(false);
+        this.avisClientTableModel.setWindow(this.displayedAvisClients, 0, 0);
 
         // Reset the paginator
         this.view.firstButton.setEnabled(false);
         this.view.previousButton.setEnabled(false);
         this.view.nextButton.setEnabled(false);
         this.view.lastButton.setEnabled(false);
-        this.view.pagesComboBox.removeAllItems();
+        this.pageComboBoxModel.setPageCount(0);
         this.view.pagesComboBox.setEnabled(false);
         this.view.pagerLabel.setText("");
 
@@ -503,6 +674,7 @@ public class RubisController extends WindowAdapter implements ActionListener, It
         this.noDocumentsToSend = 0;
         this.noPages = 0;
         this.noSelectedDocuments = 0;
+        this.sentAvisClientIds.clear();
 
         // Reset allowed operations
         this.view.secondStepToggleButton.setEnabled(false);
@@ -592,69 +764,189 @@ public class RubisController extends WindowAdapter implements ActionListener, It
      */
     private void fetchRequestsForPayment() {
 
+        // Stop any fetching of requests for payment that is still running
+        if ((this.taskWorker != null) && (!this.taskWorker.isDone())) {
+            this.taskWorker.cancel(true);
+        }
+
         // Reset the grid of requests for payment and the paginator
         this.resetGrid();
 
+        // Number of requests for payment per page when the pages are fetched from the database
+        final int pageSize = this.calculateMaxRows();
+
         // Create a Swing worker thread for fetching the list of payment requests
-        this.taskWorker = new SwingWorker<ArrayList<AvisClient>, String>() {
+        this.taskWorker = new SwingWorker<Integer, ArrayList<AvisClient>>() {
+
+            // Pager of requests for payment when the pages are fetched from the database
+            private AvisClientPager pager = null;
 
             /**
-              * Fetch the list of requests for payment
+              * Fetch the list of requests for payment and publish them in chunks as they are read from the database
               * 
-              * @return List of requests for payment
+              * @return Number of requests for payment fetched
               * @throws Exception
               */
             @Override
-            protected ArrayList<AvisClient> doInBackground() throws Exception {
+            protected Integer doInBackground() throws Exception {
+
+                // Check if the pages of requests for payment must be fetched from the database when displayed
+                ArrayList<Configuration> confs = ConfigurationDao.getConfigurationDao().getConfigurations();
+                int pagingIndex = confs.indexOf(new Configuration("database.paging"));
+                if ((pagingIndex > -1) && confs.get(pagingIndex).getBoolVal()) {
+
+                    // Count the requests for payment and fetch the first page only
+                    this.pager = new AvisClientPager(pageSize);
+                    this.pager.getPage(0);
+
+                    return this.pager.getAvisClientCount();
+                }
 
                 // Initialise class attributes
                 AvisClientDao avisClientDao = new AvisClientDao();
-            
-                return avisClientDao.getAvisClients();
+
+                return avisClientDao.fetchAvisClients(new AvisClientFetchListener() {
+
+                    @Override
+                    public void avisClientsFetched(ArrayList<AvisClient> avisClients) {
+                        publish(avisClients);
+                    }
+
+                    @Override
+                    public void partitionsProgressed(final int[] noAvisClients, final boolean[] completed) {
+
+                        // Display the progress of each partition in the task progress dialog box
+                        SwingUtilities.invokeLater(new Runnable() {
+
+                            @Override
+                            public void run() {
+
+                                // Ignore the progress of a fetching that has been cancelled
+                                if (isCancelled()) {
+                                    return;
+                                }
+
+                                taskProgressDialog.setPartitionCount(noAvisClients.length);
+                                for (int i = 0; i < noAvisClients.length; i++) {
+                                    taskProgressDialog.setPartitionProgress(i, noAvisClients[i], completed[i]);
+                                }
+                            }
+                        });
+                    }
+
+                    @Override
+                    public boolean isFetchCancelled() {
+                        return isCancelled();
+                    }
+                });
+            }
+
+            /**
+             * Add the chunks of requests for payment received to the grid while the fetching is still in progress
+             * 
+             * @param chunks Chunks of requests for payment
+             */
+            @Override
+            protected void process(List<ArrayList<AvisClient>> chunks) {
+
+                // Ignore chunks received after the fetching has been cancelled
+                if (isCancelled()) {
+                    return;
+                }
+
+                // Whether the grid is still empty
+                boolean firstChunk = avisClients.isEmpty();
+
+                // Add the requests for payment to the list, which are selected for generation by default
+                for (ArrayList<AvisClient> chunk : chunks) {
+                    avisClients.addAll(chunk);
+                    noSelectedDocuments += chunk.size();
+                }
+
+                // Add the requests for payment to the search index
+                indexAvisClients();
+
+                if (firstChunk) {
+
+                    // Setup paging for the list of requests for payment
+                    calculatePagerValues();
+
+                    // Display the first page
+                    curPageNo = 0;
+                    showPage();
+
+                } else {
+
+                    // Add the new pages to the paginator
+                    updatePagerValues();
+
+                    // Refresh the displayed page if it was not yet full, otherwise only update the pager components
+                    if (view.gridTable.getRowCount() < maxRows) {
+                        showPage();
+                    } else {
+                        updatePagerComponents();
+                    }
+                }
+
+                // Display the number of requests for payment fetched so far
+                taskProgressDialog.taskDescriptionLabel.setText(avisClients.size() + " demandes de règlement "
+                        + "récupérées, la récupération est en cours");
             }
 
             /**
-             * Retrieve the list of requests for payment and hide the task progress dialog box when the background task
-             * is completed
+             * Hide the task progress dialog box and display the number of requests for payment fetched when the
+             * background task is completed
              */
             @Override
             public void done() {
 
+                // Ignore the completion of a fetching that has been replaced by a new one
+                if (taskWorker != this) {
+                    if (this.pager != null) {
+                        this.pager.close();
+                    }
+                    return;
+                }
+
                 try {
 
                     // Hide the task progress indicator dialog box
                     taskProgressDialog.setVisible(false);
+                    taskProgressDialog.setPartitionCount(0);
 
-                    // Get the list of requests for payment
-                    avisClients = get();
+                    // Get the number of requests for payment fetched
+                    int noAvisClients = get();
 
-                    // Display the list of requests for payment
-                    if (avisClients.size() > 0) {
+                    // Display the first page of requests for payment fetched from the database
+                    if (this.pager != null) {
 
-                        // Number of selected documents
-                        noSelectedDocuments = avisClients.size();
+                        avisClientPager = this.pager;
+                        this.pager = null;
+                        noSelectedDocuments = avisClientPager.getSelectedCount();
+
+                        // Setup paging for the list of requests for payment
+                        calculatePagerValues();
+
+                        // Display the first page
+                        curPageNo = 0;
+                        showPage();
+                    }
+
+                    // Display the list of requests for payment
+                    if (noAvisClients > 0) {
 
                         // Indicate that requests for payment has been retrieved
                         view.firstStepToggleButton.setSelected(true);
 
                         // Display number of requests fetched
-                        if (avisClients.size() == 1) {
+                        if (noAvisClients == 1) {
                             MainWindowController.getMainWindowController().setStatusBarMessage("Une demande a été "
                                     + "récupérée de la base de données.");
                         } else {
-                            MainWindowController.getMainWindowController().setStatusBarMessage(avisClients.size()
+                            MainWindowController.getMainWindowController().setStatusBarMessage(noAvisClients
                                     + " demandes ont été récupérées de la base de données.");
                         }
 
-                        // Setup paging for the list of requests for payment
-                        calculatePagerValues();
-
-                        // Show the first page
-                        curPageNo = 0;
-
-                        // Display the first page
-                        showPage();
-
                         // Allow user to generate documents for requests of payment
                         view.secondStepToggleButton.setEnabled(true);
 
@@ -668,7 +960,11 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                     }
 
                 } catch (CancellationException ex) {
-                    
+
+                    // Discard the requests for payment fetched before the cancellation
+                    resetGrid();
+                    view.firstStepToggleButton.setSelected(false);
+
                     // Write error message to log file
                     Smurf.logController.log(Level.INFO, SwingWorker.class.getSimpleName(), "The fetching of requests "
                             + "for payment from the database was cancelled by the user.");
@@ -680,6 +976,10 @@ public class RubisController extends WindowAdapter implements ActionListener, It
 
                 } catch (ExecutionException ex) {
 
+                    // Discard the requests for payment fetched before the error
+                    resetGrid();
+                    view.firstStepToggleButton.setSelected(false);
+
                     // Check if an SQL exception was raised
                     if (StringUtils.countMatches(ex.getMessage(), "jdbc") > 0) {
 
@@ -759,6 +1059,17 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                         Smurf.logController.log(Level.WARNING, AvisClientDao.class.getSimpleName(),
                                 ex.getLocalizedMessage());
 
+                    } else if (ex.getMessage().startsWith("smurf.exceptions.SqlParameterNotDefinedException")) {
+
+                        MainWindowController.getMainWindowController().showDialogMessage(
+                                "La requête SQL des demandes de règlement contient un\nparamètre inconnu.\n\n"
+                                + "Veuillez vérifier la requête SQL avant de relancer\nla récupération.",
+                                JOptionPane.ERROR_MESSAGE);
+
+                        // Write error message to log file
+                        Smurf.logController.log(Level.SEVERE, AvisClientDao.class.getSimpleName(),
+                                ex.getLocalizedMessage());
+
                     } else {
 
                         // Write error message to log file
@@ -766,6 +1077,14 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                                 ex.getLocalizedMessage());
 
                     }
+
+                } finally {
+
+                    // Release a pager that has not been used to display the requests for payment
+                    if (this.pager != null) {
+                        this.pager.close();
+                        this.pager = null;
+                    }
                 }
             }
         };
@@ -774,9 +1093,13 @@ public class RubisController extends WindowAdapter implements ActionListener, It
         this.taskProgressDialog.taskCancelButton.setActionCommand("CANCEL_FETCHING");
         this.taskProgressDialog.taskCancelButton.setText("Arrêter la récupération");
         this.taskProgressDialog.taskDescriptionLabel.setText("La récupération des demandes de règlement est en cours");
-        this.taskProgressDialog.taskProgressBar.setIndeterminate(true);
+        this.taskProgressDialog.startIndeterminateProgress();
+        this.taskProgressDialog.setPartitionCount(0);
         this.taskProgressDialog.setLocationRelativeTo(MainWindowController.getView());
 
+        // The grid is populated while the requests for payment are being fetched so leave it usable
+        this.taskProgressDialog.setModalityType(Dialog.ModalityType.MODELESS);
+
         // Start the worker thread which fetches request for payments and show the task progress indicator
         this.taskWorker.execute();
         this.taskProgressDialog.setVisible(true);
@@ -790,27 +1113,26 @@ public class RubisController extends WindowAdapter implements ActionListener, It
     private void calculatePagerValues() {
 
         // Maximum number of rows that can be displayed in the grid
-        this.maxRows = (int)Math.floor((this.view.gridScrollPane.getSize().height - 22) / 20.0);
+        this.maxRows = this.calculateMaxRows();
+
+        // Number of requests for payment
+        int noAvisClients = this.getAvisClientCount();
 
         // Number of pages required to display all the requests for payment
-        this.noPages = (this.avisClients.size() - (this.avisClients.size() % this.maxRows)) / this.maxRows;
+        this.noPages = (noAvisClients - (noAvisClients % this.maxRows)) / this.maxRows;
 
         // Adjust the number of pages
-        if (this.avisClients.size() % this.maxRows != 0) {
+        if (noAvisClients % this.maxRows != 0) {
             this.noPages++;
         }
 
-        // Clear the page list
-        this.view.pagesComboBox.removeAllItems();
-
-        // Add pages to the page list
-        for (int i = 0; i < this.noPages; i++) {
-            this.view.pagesComboBox.addItem("Page " + (i + 1));
-        }
+        // Set the number of pages of the page list, whose labels are built when displayed
+        this.pageComboBoxModel.setPageCount(this.noPages);
+        this.updatePageListPrototype();
 
         // Select the first item
-        if (this.view.pagesComboBox.getItemCount() > 0) {
-            this.view.pagesComboBox.setSelectedIndex(0);
+        if (this.noPages > 0) {
+            this.pageComboBoxModel.setSelectedIndex(0);
         }
 
         // Enable the page selector if we have more than one page
@@ -820,37 +1142,71 @@ public class RubisController extends WindowAdapter implements ActionListener, It
     }
 
     /**
-     * Get a subset of the current list of requests for payment
-     * 
-     * @param startupIndex Index of the first element of the subset in the current list
-     * @param length Number of elements in the subset
-     * @return A subset of the current list of requests for payment
+     * Size the page selector and its popup list from the label of the last page so that the labels of all the pages
+     * are not built and measured each time the list is laid out
      */
-    private ArrayList<AvisClient>getListSubset(int startupIndex, int length) {
+    private void updatePageListPrototype() {
 
-        ArrayList<AvisClient> subAvisClients = new ArrayList<>();
+        // Longest page label
+        String prototype = this.pageComboBoxModel.getElementAt(Math.max(0, this.noPages - 1));
 
-        // Check if the start up index for the subset is valid
-        if ((startupIndex > -1) && (startupIndex < this.avisClients.size())) {
+        // Page selector
+        this.view.pagesComboBox.setPrototypeDisplayValue(prototype);
 
-            // Check the number of elements available
-            if ((this.avisClients.size() - startupIndex) > (length - 1)) {
+        // Popup list of the page selector
+        Object popup = this.view.pagesComboBox.getUI().getAccessibleChild(this.view.pagesComboBox, 0);
+        if (popup instanceof ComboPopup) {
 
-                // Build the subset with the expected number of elements
-                for (int i = 0; i < length; i++) {
-                    subAvisClients.add(this.avisClients.get(i + startupIndex));
-                }
+            // The list of the popup is declared as a raw type by the look and feel
+            @SuppressWarnings("unchecked")
+            JList<Object> list = ((ComboPopup) popup).getList();
+            list.setPrototypeCellValue(prototype);
+        }
+    }
 
-            } else {
+    /**
+     * Calculate the maximum number of rows that can be displayed in the grid
+     * 
+     * @return Maximum number of rows
+     */
+    private int calculateMaxRows() {
+        return Math.max(1, (int)Math.floor((this.view.gridScrollPane.getSize().height - 22) / 20.0));
+    }
 
-                // Build the subset with the remaining number of elements
-                for (int i = 0; i < (this.avisClients.size() - startupIndex); i++) {
-                    subAvisClients.add(this.avisClients.get(i + startupIndex));
-                }
-            }
+    /**
+     * Get the number of requests for payment, which are either in memory or paged from the database
+     * 
+     * @return Number of requests for payment
+     */
+    private int getAvisClientCount() {
+        return (this.avisClientPager != null) ? this.avisClientPager.getAvisClientCount()
+                : this.displayedAvisClients.size();
+    }
+
+    /**
+     * Update the pager values when requests for payment are added to the list without changing the current page
+     */
+    private void updatePagerValues() {
+
+        // Number of pages required to display all the requests for payment
+        int noRequiredPages = (this.getAvisClientCount() - (this.getAvisClientCount() % this.maxRows)) / this.maxRows;
+
+        // Adjust the number of pages
+        if (this.getAvisClientCount() % this.maxRows != 0) {
+            noRequiredPages++;
+        }
+
+        // Add the new pages to the page list
+        if (noRequiredPages > this.noPages) {
+            this.pageComboBoxModel.setPageCount(noRequiredPages);
         }
+        this.noPages = noRequiredPages;
+        this.updatePageListPrototype();
 
-        return subAvisClients;
+        // Enable the page selector if we have more than one page
+        if (this.noPages > 1) {
+            this.view.pagesComboBox.setEnabled(true);
+        }
     }
 
     /**
@@ -858,18 +1214,99 @@ public class RubisController extends WindowAdapter implements ActionListener, It
      */
     private void showPage() {
 
-        // Setup the table model for the current page
-        this.avisClientTableModel = new AvisClientTableModel(this.getListSubset(this.curPageNo * this.maxRows,
-                this.maxRows));
+        // Move the window of the grid on the current page
+        if (this.avisClientPager != null) {
+
+            // Display the page at once when it is in the cache of the database pager, and fetch it in the background
+            // otherwise
+            ArrayList<AvisClient> page = this.avisClientPager.getCachedPage(this.curPageNo);
+            if (page != null) {
+                this.pageWorker = null;
+                this.view.setCursor(Cursor.getDefaultCursor());
+                this.avisClientTableModel.setWindow(page, 0, this.maxRows);
+            } else {
+                this.fetchPage();
+            }
+
+        } else {
+            this.avisClientTableModel.setWindow(this.displayedAvisClients, this.curPageNo * this.maxRows,
+                    this.maxRows);
+        }
+
+        // Update pages list component
+        this.pageComboBoxModel.setSelectedIndex(this.curPageNo);
+
+        // Update pager components
+        this.updatePagerComponents();
+    }
+
+    /**
+     * Fetch the current page from the database pager in the background and display it once it has been fetched
+     */
+    private void fetchPage() {
+
+        // Page to fetch
+        final AvisClientPager pager = this.avisClientPager;
+        final int pageNo = this.curPageNo;
+
+        this.view.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        // Fetch the page in the background
+        this.pageWorker = new SwingWorker<ArrayList<AvisClient>, Void>() {
+
+            /**
+             * Fetch the page from the database
+             *
+             * @return Requests for payment of the page
+             * @throws Exception
+             */
+            @Override
+            protected ArrayList<AvisClient> doInBackground() throws Exception {
+                return pager.getPage(pageNo);
+            }
+
+            /**
+             * Display the page fetched
+             */
+            @Override
+            protected void done() {
+
+                // Ignore a page that has been replaced by another one or whose pager has been closed
+                if (pageWorker != this) {
+                    return;
+                }
+
+                pageWorker = null;
+                view.setCursor(Cursor.getDefaultCursor());
+
+                try {
+
+                    avisClientTableModel.setWindow(get(), 0, maxRows);
+
+                } catch (InterruptedException | ExecutionException ex) {
+
+                    avisClientTableModel.setWindow(new ArrayList<AvisClient>(), 0, 0);
 
-        // Display the rows for the current page
-        this.view.gridTable.setModel(this.avisClientTableModel);
+                    MainWindowController.getMainWindowController().showDialogMessage(
+                            "Une erreur est survenue lors de la récupération des\ndemandes de règlement de la page.",
+                            JOptionPane.ERROR_MESSAGE);
 
-        // Listener for changes made to the model
-        this.view.gridTable.getModel().addTableModelListener(this);
+                    // Write error message to log file
+                    Smurf.logController.log(Level.SEVERE, AvisClientPager.class.getSimpleName(),
+                            ex.getLocalizedMessage());
+                }
+
+                // Update pager components
+                updatePagerComponents();
+            }
+        };
+        this.pageWorker.execute();
+    }
 
-        // Setup the grid
-        this.setupGrid();
+    /**
+     * Update the navigation buttons and the message of the pager for the current page
+     */
+    private void updatePagerComponents() {
 
         // Update pager components
         if (this.noPages > 1) {
@@ -899,9 +1336,6 @@ public class RubisController extends WindowAdapter implements ActionListener, It
             }
         }
 
-        // Update pages list component
-        this.view.pagesComboBox.setSelectedIndex(this.curPageNo);
-
         // Pager message
         String message;
         if (this.view.gridTable.getRowCount() == 1) {
@@ -910,124 +1344,586 @@ public class RubisController extends WindowAdapter implements ActionListener, It
             message = "Demandes " + ((this.curPageNo * this.maxRows) + 1) + " à "
                     + ((this.curPageNo * this.maxRows) + this.view.gridTable.getRowCount());
         }
-        message += " sur " + this.avisClients.size();
-        this.view.pagerLabel.setText(message);
-
-    }// </editor-fold>
+        message += " sur " + this.getAvisClientCount();
 
-    // <editor-fold defaultstate="collapsed" desc="Generate documents for selected requests for payment">
-    /**
-     * Generate documents
-     */
-    private void generateDocuments() {
+        // Number of requests for payment before filtering
+        if (this.displayedAvisClients.size() != this.avisClients.size()) {
+            message += " filtrées parmi " + this.avisClients.size();
+        }
 
-        // Check if documents have been selected
-        if (this.noSelectedDocuments > 0) {
+        // Number and total amount of the requests for payment selected
+        if (this.getAvisClientCount() > 0) {
 
-            // Define background worker to generate required documents for selected requests for payment
-            this.taskWorker = new SwingWorker<Integer, Integer>() {
+            message += " - " + this.noSelectedDocuments + " sélectionnée"
+                    + ((this.noSelectedDocuments > 1) ? "s" : "");
 
-                /**
-                 * Generate required documents for the list of selected requests for payment
-                 * 
-                 * @return void
-                 * @throws Exception
-                 */
-                @Override
-                protected Integer doInBackground() throws Exception {
+            // The amounts are only known when all the requests for payment are in memory
+            AvisClientBatch batch = this.getSelectionBatch();
+            if ((batch != null) && (batch.getSelectedAmount().signum() != 0)) {
+                message += " (" + NumberFormat.getCurrencyInstance(Locale.FRANCE).format(batch.getSelectedAmount())
+                        + ")";
+            }
+        }
 
-                    int generatedDocumentCount = 0;
+        this.view.pagerLabel.setText(message);
 
-                    // Create instance of document printer class
-                    SEPAMailDocumentPrinter printer = new SEPAMailDocumentPrinter();
+        // Requests for payment can be searched when they are all in memory
+        this.view.searchTextField.setEnabled((this.avisClientPager == null) && !this.avisClients.isEmpty());
+    }
 
-                    // Configuration settings
-                    ArrayList<Configuration> confs = ConfigurationDao.getConfigurationDao().getConfigurations();
+    /**
+     * Add an item to the selection context menu of the grid
+     *
+     * @param text Text of the menu item
+     * @param actionCommand Action command of the menu item
+     * @return Menu item added
+     */
+    private JMenuItem addGridMenuItem(String text, String actionCommand) {
 
-                    // Get request for payment output format which defaults to PDF
-                    String outputFormat;
-                    int outputFormatIndex = confs.indexOf(new Configuration("output.format"));
-                    if (outputFormatIndex > -1) {
-                        outputFormat = confs.get(outputFormatIndex).getStringVal();
-                    } else {
-                        outputFormat = "PDF";
-                    }
+        JMenuItem menuItem = new JMenuItem(text);
+        menuItem.setActionCommand(actionCommand);
+        menuItem.addActionListener(this);
+        this.gridPopupMenu.add(menuItem);
 
-                    // Get output folder
-                    String outputFolder;
-                    int outputFolderIndex = confs.indexOf(new Configuration("folder.output"));
-                    if (outputFolderIndex > -1) {
-                        outputFolder = confs.get(outputFolderIndex).getStringVal();
-                    } else {
-                        outputFolder = "./output";
-                    }
+        return menuItem;
+    }
 
-                    // Create output foler if it does not exist
-                    Utilities.createFolderIfNotExist(Utilities.getCurrentWorkingDirectory() +
-                            System.getProperty("file.separator") + outputFolder);
+    /**
+     * Get the value of the attribute of the cell on which the context menu of the grid was shown
+     *
+     * @return Value of the cell in the batch of the request for payment or null if the attribute is not set
+     */
+    private Object getPopupCellValue() {
 
-                    // Get temporary files folder
-                    String tempFolder;
-                    int temporaryFolderIndex = confs.indexOf(new Configuration("folder.temp"));
-                    if (temporaryFolderIndex > -1) {
-                        tempFolder = confs.get(temporaryFolderIndex).getStringVal();
-                    } else {
-                        tempFolder = "./temp";
-                    }
+        AvisClient avisClient = this.avisClientTableModel.getAvisClient(this.popupRow);
+        int column = avisClient.getBatch().getColumnIndex(this.gridConfigurations.get(this.popupColumn - 1).getAlias());
 
-                    // Create temporary folder if it does not exist
-                    Utilities.createFolderIfNotExist(Utilities.getCurrentWorkingDirectory() +
-                            System.getProperty("file.separator") + tempFolder);
+        return (column > -1) ? avisClient.getBatch().getValue(avisClient.getRow(), column) : null;
+    }
 
-                    // Get SMIC module configuration file
-                    String smicConfFile;
-                    int smicConfFileIndex = confs.indexOf(new Configuration("smic.conf"));
-                    if (smicConfFileIndex > -1) {
-                        smicConfFile = Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator") +
-                                confs.get(smicConfFileIndex).getStringVal();
-                    } else {
+    /**
+     * Show the selection context menu of the grid when the mouse event is the popup trigger of the platform
+     *
+     * @param me Mouse event parameters
+     */
+    private void showGridPopupMenu(MouseEvent me) {
+
+        // The selection can only be changed when requests for payment are displayed and no task is running
+        if (me.isPopupTrigger() && (me.getSource() == this.view.gridTable) && (this.getAvisClientCount() > 0)
+                && !this.taskProgressDialog.isVisible()) {
+
+            // Cell on which the menu is shown
+            this.popupRow = this.view.gridTable.rowAtPoint(me.getPoint());
+            this.popupColumn = this.view.gridTable.convertColumnIndexToModel(
+                    this.view.gridTable.columnAtPoint(me.getPoint()));
+
+            // The grid can be filtered on the attribute columns when the requests for payment are in memory
+            boolean sortable = this.isGridSortable();
+            boolean attributeCell = (this.popupRow > -1) && (this.popupColumn > 0)
+                    && (this.popupColumn < this.avisClientTableModel.getColumnCount() - 1);
+            this.selectValueMenuItem.setEnabled(sortable && attributeCell);
+            this.filterValueMenuItem.setEnabled(sortable && attributeCell);
+            this.clearFilterMenuItem.setEnabled(sortable && (this.filterColumn > -1));
+
+            this.gridPopupMenu.show(me.getComponent(), me.getX(), me.getY());
+        }
+    }
 
-                        // Throw exception since SMIC module configuration filename has not been defined
-                        throw new SmicConfigurationFilenameNotDefinedException();
-                    }
+    /**
+     * Add the requests for payment of the list which are not yet indexed to the search index
+     */
+    private void indexAvisClients() {
 
-                    // Scan the list of requests for payment
-                    for (int i = 0; i < avisClients.size(); i++) {
+        for (int i = this.avisClientSearchIndex.size(); i < this.avisClients.size(); i++) {
 
-                        // Check if the user has cancelled the thread
-                        if (!isCancelled()) {
+            // Batch holding the attributes of the current request for payment
+            AvisClient avisClient = this.avisClients.get(i);
+            AvisClientBatch batch = avisClient.getBatch();
 
-                            // Current request for payment
-                            AvisClient avisClient = avisClients.get(i);
+            this.avisClientSearchIndex.add(i,
+                    this.getSearchValue(batch, avisClient.getRow(), Smurf.REQUEST_FOR_PAYMENT_CLIENT_COL_NAME),
+                    this.getSearchValue(batch, avisClient.getRow(), Smurf.REQUEST_FOR_PAYMENT_CLIENT_ID_COL_NAME));
+        }
+    }
+
+    /**
+     * Get the text of an attribute of a request for payment that is searched
+     *
+     * @param batch Batch of the request for payment
+     * @param row Position of the request for payment in the batch
+     * @param name Name of the attribute
+     * @return Text of the attribute or null if the attribute is not set
+     */
+    private String getSearchValue(AvisClientBatch batch, int row, String name) {
+
+        int column = batch.getColumnIndex(name);
+        if ((column == -1) || !batch.isDefined(row, column)) {
+            return null;
+        }
 
-                            // Check if a document must be generated for the current request for payment
-                            if (avisClient.getGenerateDocument()) {
+        Object value = batch.getValue(row, column);
+        return (value == null) ? null : value.toString();
+    }
 
-                                // Generate the required request for payment document
-                                String rfpDocumentFilename = printer.generateRequestForPaymentDocument(avisClient);
+    /**
+     * Display the page of the next request for payment whose client name or ID contains the search string, the search
+     * starting over from the first request for payment after the last one
+     *
+     * @param query Search string
+     */
+    private void searchAvisClient(String query) {
 
-                                // SMURF output class
-                                SmurfOutput smurfOutput = new SmurfOutput(rfpDocumentFilename, outputFormat,
-                                        outputFolder, tempFolder, smicConfFile);
+        // Positions in the list of the matching requests for payment
+        int[] positions = this.avisClientSearchIndex.search(query);
 
-                                // Generate the required request for payment document output class
-                                avisClient.setSmurfOutput(smurfOutput);
+        // The search continues after the last request for payment found when it is repeated
+        int start = query.equals(this.lastSearchQuery) ? this.lastSearchIndex + 1 : 0;
 
-                                // Increment the count for number of documents generated
-                                generatedDocumentCount++;
+        // Position of the next matching request for payment in the grid
+        int index = -1;
+        int[] rows = this.displayedAvisClients.getRows();
+        if (positions.length == 0) {
+            index = -1;
+        } else if (rows == null) {
 
-                                // Update the UI to reflect the percentage work completed
-                                publish(generatedDocumentCount);
-                            }
+            // The grid follows the list of requests for payment
+            int i = Arrays.binarySearch(positions, start);
+            i = (i < 0) ? -(i + 1) : i;
+            index = positions[(i < positions.length) ? i : 0];
 
-                        } else {
+        } else {
 
-                            // Exit loop if process is cancelled
-                            break;
+            // Find the matching request for payment in the order of the sorted and filtered grid
+            BitSet matches = new BitSet(this.avisClients.size());
+            for (int position : positions) {
+                matches.set(position);
+            }
+            for (int i = 0; (i < rows.length) && (index == -1); i++) {
+                if (matches.get(rows[(start + i) % rows.length])) {
+                    index = (start + i) % rows.length;
+                }
+            }
+        }
+
+        this.lastSearchQuery = query;
+        this.lastSearchIndex = index;
+
+        // Check if a request for payment has been found
+        if (index == -1) {
+
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Aucune demande de règlement ne correspond à la recherche.", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        // Display the page of the request for payment and select its row
+        this.curPageNo = index / this.maxRows;
+        this.showPage();
+        int row = index % this.maxRows;
+        if (row < this.view.gridTable.getRowCount()) {
+            this.view.gridTable.setRowSelectionInterval(row, row);
+            this.view.gridTable.scrollRectToVisible(this.view.gridTable.getCellRect(row, 0, true));
+        }
+    }
+
+    /**
+     * Check whether the grid can be sorted and filtered, which requires all the requests for payment to be in memory
+     * in the rows of a single batch
+     *
+     * @return Whether the grid can be sorted and filtered
+     */
+    private boolean isGridSortable() {
+        return (this.avisClientPager == null) && !this.taskProgressDialog.isVisible()
+                && (this.getSelectionBatch() != null);
+    }
+
+    /**
+     * Sort the grid on a column, the direction of the sort being reversed when the grid is already sorted on it
+     *
+     * @param column Index of the column in the table model
+     */
+    private void sortGrid(int column) {
+
+        // Only the attribute columns can be sorted
+        if ((column < 1) || (column >= this.avisClientTableModel.getColumnCount() - 1) || !this.isGridSortable()) {
+            return;
+        }
+
+        this.sortAscending = (column != this.sortColumn) || !this.sortAscending;
+        this.sortColumn = column;
+
+        // Show the direction of the sort in the header of the column
+        for (int i = 1; i < this.avisClientTableModel.getColumnCount() - 1; i++) {
+
+            String title = this.avisClientTableModel.getColumnName(i);
+            if (i == this.sortColumn) {
+                title += this.sortAscending ? " \u25B2" : " \u25BC";
+            }
+            this.view.gridTable.getColumnModel().getColumn(this.view.gridTable.convertColumnIndexToView(i))
+                    .setHeaderValue(title);
+        }
+        this.view.gridTable.getTableHeader().repaint();
+
+        this.sortAndFilterGrid();
+    }
+
+    /**
+     * Build the order of the requests for payment displayed in the grid in the background from the sort column and
+     * the filter, and display the first page once it is built
+     */
+    private void sortAndFilterGrid() {
+
+        // Check if the grid can be sorted
+        if (!this.isGridSortable()) {
+            return;
+        }
+
+        // Sorter of the batch of requests for payment, whose sorted orders are kept as long as the batch is displayed
+        if ((this.avisClientSorter == null) || (this.avisClientSorter.getBatch() != this.getSelectionBatch())) {
+            this.avisClientSorter = new AvisClientSorter(this.getSelectionBatch());
+        }
+
+        // Attributes of the sort and filter columns
+        final AvisClientSorter sorter = this.avisClientSorter;
+        final String sortAlias = (this.sortColumn > 0) ? this.gridConfigurations.get(this.sortColumn - 1).getAlias()
+                : null;
+        final boolean ascending = this.sortAscending;
+        final String filterAlias = (this.filterColumn > 0)
+                ? this.gridConfigurations.get(this.filterColumn - 1).getAlias() : null;
+        final Object value = this.filterValue;
+
+        this.view.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        // Sort and filter the rows of the batch in the background
+        this.sortWorker = new SwingWorker<int[], Void>() {
+
+            /**
+             * Build the positions of the requests for payment displayed
+             *
+             * @return Positions of the requests for payment or null to display them in the order they were fetched
+             * @throws Exception
+             */
+            @Override
+            protected int[] doInBackground() throws Exception {
+
+                int[] rows = (sortAlias != null) ? sorter.getOrder(sortAlias, ascending) : null;
+
+                // Keep the requests for payment having the filter value
+                if (filterAlias != null) {
+                    rows = sorter.filter(rows, filterAlias, createValuePredicate(value));
+                }
+
+                return rows;
+            }
+
+            /**
+             * Display the first page of the sorted and filtered requests for payment
+             */
+            @Override
+            protected void done() {
+
+                // Ignore an order that has been replaced by a new one
+                if (sortWorker != this) {
+                    return;
+                }
+
+                view.setCursor(Cursor.getDefaultCursor());
+
+                try {
+
+                    displayedAvisClients.setRows(get());
+
+                    // Display the first page
+                    calculatePagerValues();
+                    curPageNo = 0;
+                    showPage();
+
+                } catch (InterruptedException | ExecutionException ex) {
+
+                    MainWindowController.getMainWindowController().showDialogMessage(
+                            "Une erreur est survenue lors du tri des demandes de règlement.",
+                            JOptionPane.ERROR_MESSAGE);
+
+                    // Write error message to log file
+                    Smurf.logController.log(Level.SEVERE, AvisClientSorter.class.getSimpleName(),
+                            ex.getLocalizedMessage());
+                }
+            }
+        };
+        this.sortWorker.execute();
+    }
+
+    /**
+     * Create the predicate matching the attribute values which are equal to a value
+     *
+     * @param value Value to match, which matches the attributes that are not set when it is null
+     * @return Predicate on the value of an attribute
+     */
+    private static AttributePredicate createValuePredicate(final Object value) {
+
+        return new AttributePredicate() {
+
+            @Override
+            public boolean evaluate(Object attributeValue) {
+                return (value == null) ? (attributeValue == null) : value.equals(attributeValue);
+            }
+        };
+    }
+
+    /**
+     * Clear the sort and the filter of the grid
+     */
+    private void clearSortAndFilter() {
+
+        // Ignore an order being built
+        this.sortWorker = null;
+        this.view.setCursor(Cursor.getDefaultCursor());
+
+        this.avisClientSorter = null;
+        this.displayedAvisClients.setRows(null);
+        this.filterColumn = -1;
+        this.filterValue = null;
+        this.sortAscending = true;
+        this.sortColumn = -1;
+
+        // Restore the titles of the columns
+        for (int i = 1; i < this.avisClientTableModel.getColumnCount() - 1; i++) {
+            this.view.gridTable.getColumnModel().getColumn(this.view.gridTable.convertColumnIndexToView(i))
+                    .setHeaderValue(this.avisClientTableModel.getColumnName(i));
+        }
+        this.view.gridTable.getTableHeader().repaint();
+    }
+
+    /**
+     * Select, deselect or invert the selection of all the requests for payment
+     *
+     * @param actionCommand Action command of the selection menu item
+     */
+    private void changeSelection(String actionCommand) {
+
+        if (this.avisClientPager != null) {
+
+            // The pager keeps the selection of the requests for payment which are not in memory
+            if (actionCommand.equals("INVERT_SELECTION")) {
+                this.avisClientPager.invertSelection();
+            } else {
+                this.avisClientPager.selectAll(actionCommand.equals("SELECT_ALL"));
+            }
+            this.noSelectedDocuments = this.avisClientPager.getSelectedCount();
+
+        } else {
+
+            // Change the selection bitmap of the batch of the requests for payment at once
+            AvisClientBatch batch = this.getSelectionBatch();
+            if (batch != null) {
+
+                if (actionCommand.equals("INVERT_SELECTION")) {
+                    batch.invertGenerateDocuments();
+                } else {
+                    batch.setAllGenerateDocuments(actionCommand.equals("SELECT_ALL"));
+                }
+                this.noSelectedDocuments = batch.getSelectedCount();
+
+            } else {
+
+                // Change the selection of the requests for payment one at a time
+                this.noSelectedDocuments = 0;
+                for (AvisClient avisClient : this.avisClients) {
+
+                    if (actionCommand.equals("INVERT_SELECTION")) {
+                        avisClient.setGenerateDocument(!avisClient.getGenerateDocument());
+                    } else {
+                        avisClient.setGenerateDocument(actionCommand.equals("SELECT_ALL"));
+                    }
+
+                    if (avisClient.getGenerateDocument()) {
+                        this.noSelectedDocuments++;
+                    }
+                }
+            }
+        }
+
+        // Redraw the displayed page and the pager message
+        this.avisClientTableModel.fireTableDataChanged();
+        this.updatePagerComponents();
+    }
+
+    /**
+     * Add the requests for payment whose attribute has a value to the selection
+     *
+     * @param alias Alias of the attribute
+     * @param value Value of the attribute, which selects the requests for payment not having the attribute when it is
+     * null
+     */
+    private void selectValue(String alias, Object value) {
+
+        // The matching rows are set at once in the selection bitmap of the batch
+        AvisClientBatch batch = this.getSelectionBatch();
+        if (batch == null) {
+            return;
+        }
+
+        batch.setGenerateDocuments(alias, createValuePredicate(value), true);
+        this.noSelectedDocuments = batch.getSelectedCount();
+
+        // Redraw the displayed page and the pager message
+        this.avisClientTableModel.fireTableDataChanged();
+        this.updatePagerComponents();
+    }
+
+    /**
+     * Get the batch holding the requests for payment in memory when the list of requests for payment follows the rows
+     * of a single batch, so that the selection can be read and changed from the bitmap of the batch
+     *
+     * @return Batch of the requests for payment or null if the list does not match the rows of a single batch
+     */
+    private AvisClientBatch getSelectionBatch() {
+        return this.getSelectionBatch(this.avisClients);
+    }
+
+    /**
+     * Get the batch holding a list of requests for payment when the list follows the rows of a single batch
+     *
+     * @param requests List of requests for payment
+     * @return Batch of the requests for payment or null if the list does not match the rows of a single batch
+     */
+    private AvisClientBatch getSelectionBatch(List<AvisClient> requests) {
+
+        // Check if the list is empty
+        if (requests.isEmpty()) {
+            return null;
+        }
+
+        // The rows of the batch must be the requests for payment of the list in the same order
+        AvisClientBatch batch = requests.get(0).getBatch();
+        int lastRow = requests.size() - 1;
+        if ((batch.getRowCount() != requests.size()) || (requests.get(0).getRow() != 0)
+                || (requests.get(lastRow).getBatch() != batch) || (requests.get(lastRow).getRow() != lastRow)) {
+            return null;
+        }
+
+        return batch;
+    }
+
+    /**
+     * Get the requests for payment of a list that are selected for the generation of documents
+     *
+     * @param requests List of requests for payment
+     * @return Selected requests for payment in the order of the list
+     */
+    private ArrayList<AvisClient> getSelectedAvisClients(List<AvisClient> requests) {
+
+        ArrayList<AvisClient> selectedAvisClients = new ArrayList<>();
+
+        // Follow the set bits of the selection bitmap of the batch
+        AvisClientBatch batch = this.getSelectionBatch(requests);
+        if (batch != null) {
+
+            selectedAvisClients.ensureCapacity(batch.getSelectedCount());
+            for (int row = batch.nextSelectedRow(0); row > -1; row = batch.nextSelectedRow(row + 1)) {
+                selectedAvisClients.add(requests.get(row));
+            }
+
+        } else {
+
+            // Scan the list of requests for payment
+            for (AvisClient avisClient : requests) {
+                if (avisClient.getGenerateDocument()) {
+                    selectedAvisClients.add(avisClient);
+                }
+            }
+        }
+
+        return selectedAvisClients;
+    }// </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Generate documents for selected requests for payment">
+    /**
+     * Generate documents
+     */
+    private void generateDocuments() {
+
+        // Check if documents have been selected
+        if (this.noSelectedDocuments > 0) {
+
+            // Database pager whose selected requests for payment are walked page by page, if any
+            final AvisClientPager pager = this.avisClientPager;
+
+            // Define background worker to generate required documents for selected requests for payment
+            this.taskWorker = new SwingWorker<Integer, Integer>() {
+
+                // Number of documents generated for the previous pages and time of the last update of the UI
+                private int noDocumentsGenerated = 0;
+                private long lastUpdateTime = 0;
+
+                /**
+                 * Generate required documents for the list of selected requests for payment
+                 * 
+                 * @return void
+                 * @throws Exception
+                 */
+                @Override
+                protected Integer doInBackground() throws Exception {
+
+                    // Generate the documents of the requests for payment in memory at once
+                    if (pager == null) {
+                        return this.generate(getSelectedAvisClients(avisClients));
+                    }
+
+                    // Walk the selected requests for payment of the database pager one page at a time, so that the
+                    // requests for payment of the date range are never all fetched at once
+                    for (int pageNo = 0; (pageNo < pager.getPageCount()) && !isCancelled(); pageNo++) {
+
+                        ArrayList<AvisClient> selectedRequests = pager.getSelectedAvisClients(pageNo);
+                        try {
+                            this.generate(selectedRequests);
+                        } finally {
+
+                            // Keep the documents generated for the page, including when the generation was stopped
+                            pager.keepSmurfOutputs(selectedRequests);
                         }
                     }
- 
-                    return generatedDocumentCount;
+
+                    return this.noDocumentsGenerated;
+                }
+
+                /**
+                 * Generate the documents of selected requests for payment on the generation workers
+                 * 
+                 * @param selectedRequests Selected requests for payment
+                 * @return Number of documents generated
+                 * @throws Exception
+                 */
+                private int generate(ArrayList<AvisClient> selectedRequests) throws Exception {
+
+                    // Check if the page holds selected requests for payment
+                    if (selectedRequests.isEmpty()) {
+                        return 0;
+                    }
+
+                    SEPAMailDocumentGenerator generator = new SEPAMailDocumentGenerator(selectedRequests);
+                    int noBatchDocuments = generator.generate(new DocumentGenerationListener() {
+
+                        @Override
+                        public void documentsGenerated(int noGeneratedDocuments) {
+
+                            // Update the UI to reflect the percentage work completed, at most once per update interval
+                            long now = System.currentTimeMillis();
+                            if (now - lastUpdateTime >= TaskProgressDialog.UPDATE_INTERVAL) {
+                                publish(noDocumentsGenerated + noGeneratedDocuments);
+                                lastUpdateTime = now;
+                            }
+                        }
+
+                        @Override
+                        public boolean isGenerationCancelled() {
+                            return isCancelled();
+                        }
+                    });
+
+                    this.noDocumentsGenerated += noBatchDocuments;
+
+                    return noBatchDocuments;
                 }
 
                 /**
@@ -1038,12 +1934,12 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                 @Override
                 protected void process(List<Integer> noGeneratedDocuments) {
 
-                    // Update the task progress indicator
-                    taskProgressDialog.taskProgressBar.setValue(noGeneratedDocuments.get(0));
+                    // Update the task progress indicator with the latest count
+                    taskProgressDialog.setProgress(noGeneratedDocuments.get(noGeneratedDocuments.size() - 1));
 
-                    // Update the grid of requests for payment
+                    // Redraw the rows of the displayed page whose documents have been generated
                     if (avisClientTableModel != null) {
-                        avisClientTableModel.fireTableDataChanged();
+                        avisClientTableModel.fireDisplayedRowsUpdated();
                     }
                 }
 
@@ -1053,13 +1949,18 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                 @Override
                 public void done() {
 
+                    // Display the documents generated for the requests for payment of the current page
+                    if ((pager != null) && (pager == avisClientPager)) {
+                        showPage();
+                    }
+
                     try {
 
                         // Check if task was not cancelled
                         if (!isCancelled()) {
 
                             // Indicate that task was fully completed
-                            taskProgressDialog.taskProgressBar.setValue(noSelectedDocuments);
+                            taskProgressDialog.setProgress(noSelectedDocuments);
                         }
 
                         // Hide the task progress indicator dialog box
@@ -1104,116 +2005,487 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                                 ex.getLocalizedMessage());
 
                     } catch (ExecutionException ex) {
-                        
-                        // Invalid template path exception
-                        if (ex.getMessage().startsWith("smurf.exceptions.InvalidTemplatePathException")) {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Le dossier des gabarits spécifié ne semble pas être valide.\nVeillez vérifer "
-                                    + "le nom du dossier des gabarits spécifié\navant de redémarrer l'opération.",
-                                    JOptionPane.ERROR_MESSAGE);
+                        // Show the error raised while generating the documents
+                        showGenerationError(ex);
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+                    } finally {
 
-                        } else if (ex.getMessage().startsWith("smurf.exceptions."
-                                + "RequestForPaymentTemplateNotFoundException")) {
+                        // Update the grid of requests for payment
+                        if (avisClientTableModel != null) {
+                            avisClientTableModel.fireTableDataChanged();
+                        }
+                    }
+                }
+            };
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Le gabarit pour le document des demandes de règlement est introuvable.",
-                                    JOptionPane.ERROR_MESSAGE);
+            // Show the dialog indicating that documents are being generated
+            this.taskProgressDialog.taskCancelButton.setActionCommand("CANCEL_GENERATION");
+            this.taskProgressDialog.taskCancelButton.setText("Arrêter la génération");
+            this.taskProgressDialog.taskDescriptionLabel.setText("La génération des demandes de règlement est en"
+                    + "cours");
+            this.taskProgressDialog.startProgress(this.noSelectedDocuments);
+            this.taskProgressDialog.setModalityType(Dialog.ModalityType.APPLICATION_MODAL);
+            this.taskProgressDialog.setLocationRelativeTo(MainWindowController.getView());
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            // Start the worker thread which generates documents for requests for payment and show the progress
+            // indicator
+            this.taskWorker.execute();
+            this.taskProgressDialog.setVisible(true);
 
-                        } else if (ex.getMessage().startsWith("smurf.exceptions."
-                                + "RequestForPaymentTemplateNotDefinedException")) {
+        } else {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Le gabarit pour le document des demandes de règlement n'a pas été défini.",
-                                    JOptionPane.ERROR_MESSAGE);
+            // Remind user to select at least one document
+            MainWindowController.getMainWindowController().showDialogMessage("Veuillez sélecter au moins une demande de"
+                    + " règlement\npour laquelle le document requi sera généré.", JOptionPane.WARNING_MESSAGE);
+        }
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+    }
 
-                        } else if (ex.getMessage().startsWith("smurf.exceptions.SepaMailTemplateNotDefinedException")) {
+    /**
+     * Show the error raised while generating documents for requests for payment and write it to the log file
+     *
+     * @param ex Exception raised by the worker generating the documents
+     */
+    private void showGenerationError(ExecutionException ex) {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Le gabarit pour le fichier missive SEPAmail n'a pas été défini.",
-                                    JOptionPane.ERROR_MESSAGE);
+        // Invalid template path exception
+        if (ex.getMessage().startsWith("smurf.exceptions.InvalidTemplatePathException")) {
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Le dossier des gabarits spécifié ne semble pas être valide.\nVeillez vérifer "
+                    + "le nom du dossier des gabarits spécifié\navant de redémarrer l'opération.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                        } else if (ex.getMessage().startsWith("smurf.exceptions.SepaMailTemplateNotFoundException")) {
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Le gabarit pour le fichier missive SEPAmail est introuvable.",
-                                    JOptionPane.ERROR_MESSAGE);
+        } else if (ex.getMessage().startsWith("smurf.exceptions."
+                + "RequestForPaymentTemplateNotFoundException")) {
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Le gabarit pour le document des demandes de règlement est introuvable.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                        } else if (ex.getMessage().startsWith("java.io.IOException")) {
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de la génération du document de demande de"
-                                    + " règlement.", JOptionPane.ERROR_MESSAGE);
+        } else if (ex.getMessage().startsWith("smurf.exceptions."
+                + "RequestForPaymentTemplateNotDefinedException")) {
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Le gabarit pour le document des demandes de règlement n'a pas été défini.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                        } else if (ex.getMessage().startsWith("java.io.FileNotFoundException")) {
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de la génération du document de demande de"
-                                    + " règlement.", JOptionPane.ERROR_MESSAGE);
+        } else if (ex.getMessage().startsWith("smurf.exceptions.SepaMailTemplateNotDefinedException")) {
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Le gabarit pour le fichier missive SEPAmail n'a pas été défini.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                        } else if (ex.getMessage().startsWith("com.itextpdf.text.DocumentException")) {
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de la génération du document de demande de"
-                                    + " règlement.", JOptionPane.ERROR_MESSAGE);
+        } else if (ex.getMessage().startsWith("smurf.exceptions.SepaMailTemplateNotFoundException")) {
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Le gabarit pour le fichier missive SEPAmail est introuvable.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                        } else if (ex.getMessage().startsWith("java.awt.print.PrinterException")) {
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de la génération du document de demande de"
-                                    + " règlement.", JOptionPane.ERROR_MESSAGE);
+        } else if (ex.getMessage().startsWith("java.io.IOException")) {
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de la génération du document de demande de"
+                    + " règlement.", JOptionPane.ERROR_MESSAGE);
 
-                        } else if (ex.getMessage().startsWith("org.smic.exceptions")) {
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de l'utilisation du composant SMIC.",
-                                    JOptionPane.ERROR_MESSAGE);
+        } else if (ex.getMessage().startsWith("java.io.FileNotFoundException")) {
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.SEVERE, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de la génération du document de demande de"
+                    + " règlement.", JOptionPane.ERROR_MESSAGE);
 
-                        } else {
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
+                    ex.getLocalizedMessage());
+
+        } else if (ex.getMessage().startsWith("com.itextpdf.text.DocumentException")) {
+
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de la génération du document de demande de"
+                    + " règlement.", JOptionPane.ERROR_MESSAGE);
+
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
+                    ex.getLocalizedMessage());
+
+        } else if (ex.getMessage().startsWith("java.awt.print.PrinterException")) {
+
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de la génération du document de demande de"
+                    + " règlement.", JOptionPane.ERROR_MESSAGE);
+
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
+                    ex.getLocalizedMessage());
+
+        } else if (ex.getMessage().startsWith("org.smic.exceptions")) {
+
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de l'utilisation du composant SMIC.",
+                    JOptionPane.ERROR_MESSAGE);
+
+            // Write error message to log file
+            Smurf.logController.log(Level.SEVERE, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
+
+        } else {
+
+            // Log any exceptions that have not been catered for
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
+        }
+    
+    }// </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Generate and send documents in a pipeline">
+    /**
+     * Check if the documents are sent as soon as they have been generated, documents sent in a batch being written to
+     * the archive as soon as they have been generated
+     *
+     * @return Whether the documents are generated and sent in a pipeline
+     */
+    private boolean isPipelineEnabled() {
+
+        try {
+
+            // Configuration settings
+            ArrayList<Configuration> confs = ConfigurationDao.getConfigurationDao().getConfigurations();
+
+            // Whether the pipelined mode has been enabled
+            int pipelineIndex = confs.indexOf(new Configuration("pipeline.enabled"));
+            return (pipelineIndex > -1) && confs.get(pipelineIndex).getBoolVal();
+
+        } catch (IOException | ConfigurationFormatException ex) {
+
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, ConfigurationDao.class.getSimpleName(), ex.getLocalizedMessage());
+
+            return false;
+        }
+    }
+
+    /**
+     * Check if the documents are sent in a batch archive
+     *
+     * @return Whether the documents are sent in a batch archive
+     */
+    private boolean isBatchOutputContainer() {
+
+        try {
+
+            // Configuration settings
+            ArrayList<Configuration> confs = ConfigurationDao.getConfigurationDao().getConfigurations();
+
+            // Get document container which defaults to UNIT
+            int outputContainerIndex = confs.indexOf(new Configuration("output.container"));
+            return (outputContainerIndex > -1) && confs.get(outputContainerIndex).getStringVal().equals("BATCH");
+
+        } catch (IOException | ConfigurationFormatException ex) {
+
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, ConfigurationDao.class.getSimpleName(), ex.getLocalizedMessage());
+
+            return false;
+        }
+    }
+
+    /**
+     * Generate documents and send each document as soon as it has been generated, documents sent in a batch being
+     * written straight to the archive which is sent once all the documents have been generated
+     */
+    private void generateAndSendDocuments() {
+
+        // Check if documents have been selected
+        if (this.noSelectedDocuments > 0) {
+
+            // Whether the documents are sent in a batch archive
+            final boolean batchOutput = this.isBatchOutputContainer();
+
+            // Database pager whose selected requests for payment are walked page by page, if any
+            final AvisClientPager pager = this.avisClientPager;
+
+            // Define background worker to generate and send required documents for selected requests for payment
+            this.taskWorker = new SwingWorker<Integer, int[]>() {
+
+                // Number of documents generated, requests for payment whose documents have been sent and whether
+                // the pipeline was stopped while sending a document
+                private int noGeneratedDocuments = 0;
+                private ArrayList<AvisClient> sentRequests = new ArrayList<>();
+                private boolean sendingFailed = false;
+
+                // Time of the last update of the UI
+                private long lastUpdateTime = 0;
+
+                /**
+                 * Generate and send required documents for the list of selected requests for payment
+                 *
+                 * @return Number of documents generated
+                 * @throws Exception
+                 */
+                @Override
+                protected Integer doInBackground() throws Exception {
+
+                    // Voucher printer instance
+                    SEPAMailVoucherPrinter smVoucherPrinter = new SEPAMailVoucherPrinter();
+
+                    // Open the archive receiving the documents as soon as they have been generated when they are sent
+                    // in a batch
+                    SEPAMailDocumentArchiver archiver = null;
+                    if (batchOutput) {
+                        archiver = new SEPAMailDocumentArchiver();
+                        archiver.openArchive();
+                    }
+
+                    // Sender of the documents
+                    SEPAMailDocumentSender sender = new SEPAMailDocumentSender(archiver);
+
+                    // Generate the documents of the selected requests for payment and send them through the pipeline
+                    int noDocumentsGenerated = 0;
+                    try {
+
+                        try {
+
+                            if (pager == null) {
+
+                                // Requests for payment in memory are sent at once
+                                noDocumentsGenerated = this.generateAndSend(getSelectedAvisClients(avisClients),
+                                        sender);
+
+                            } else {
+
+                                // Walk the selected requests for payment of the database pager one page at a time, so
+                                // that the requests for payment of the date range are never all fetched at once
+                                for (int pageNo = 0; (pageNo < pager.getPageCount()) && !isCancelled(); pageNo++) {
+
+                                    ArrayList<AvisClient> selectedRequests = pager.getSelectedAvisClients(pageNo);
+                                    try {
+                                        noDocumentsGenerated += this.generateAndSend(selectedRequests, sender);
+                                    } finally {
+
+                                        // Keep the documents generated for the page, including when the pipeline has
+                                        // been stopped
+                                        pager.keepSmurfOutputs(selectedRequests);
+                                    }
+                                }
+                            }
+
+                        } catch (InterruptedException ex) {
+
+                            // The voucher is still created for the documents sent before the pipeline was cancelled
+                            if (!isCancelled()) {
+                                throw ex;
+                            }
+                        }
+
+                        // Create voucher for sent documents
+                        if (!this.sentRequests.isEmpty()) {
+
+                            String voucherFilename = smVoucherPrinter.generateVoucher(this.sentRequests);
+
+                            // Write the voucher to the archive of the documents sent in a batch and send the archive
+                            if (archiver != null) {
+
+                                try {
+                                    sender.sendArchive(archiver.closeArchive(voucherFilename));
+                                } catch (Exception ex) {
+
+                                    // Delete the generated voucher since archive could not be sent
+                                    new File(voucherFilename).delete();
+                                    this.sentRequests = new ArrayList<>();
+                                    this.sendingFailed = true;
+
+                                    // Throw exception that was raised
+                                    throw ex;
+                                }
+                            }
+                        }
+
+                    } finally {
+
+                        // Delete the archive which has not been completed
+                        if (archiver != null) {
+                            archiver.discardArchive();
+                        }
+                    }
+
+                    return noDocumentsGenerated;
+                }
+
+                /**
+                 * Generate the documents of selected requests for payment and send them through the pipeline
+                 *
+                 * @param selectedRequests Selected requests for payment
+                 * @param sender Sender of the documents
+                 * @return Number of documents generated
+                 * @throws Exception
+                 */
+                private int generateAndSend(ArrayList<AvisClient> selectedRequests, SEPAMailDocumentSender sender)
+                        throws Exception {
+
+                    // Check if the page holds selected requests for payment
+                    if (selectedRequests.isEmpty()) {
+                        return 0;
+                    }
+
+                    // Number of documents processed by the pipelines of the previous pages
+                    final int noPreviousDocuments = this.noGeneratedDocuments;
+                    final int noPreviousSentDocuments = this.sentRequests.size();
+
+                    SEPAMailDocumentGenerator generator = new SEPAMailDocumentGenerator(selectedRequests);
+                    try {
+
+                        return generator.generateAndSend(sender, new DocumentPipelineListener() {
+
+                            @Override
+                            public void documentsGenerated(int noGeneratedDocuments) {
+
+                                // The rows of the displayed page are redrawn with the progress of the stages
+                            }
+
+                            @Override
+                            public void documentsProcessed(int noRenderedDocuments, int noConvertedDocuments,
+                                    int noSentDocuments) {
+
+                                // Update the UI to reflect the work completed by each stage, at most once per update
+                                // interval
+                                long now = System.currentTimeMillis();
+                                if (now - lastUpdateTime >= TaskProgressDialog.UPDATE_INTERVAL) {
+                                    publish(new int[] {noPreviousDocuments + noRenderedDocuments,
+                                            noPreviousDocuments + noConvertedDocuments,
+                                            noPreviousSentDocuments + noSentDocuments});
+                                    lastUpdateTime = now;
+                                }
+                            }
+
+                            @Override
+                            public boolean isGenerationCancelled() {
+                                return isCancelled();
+                            }
+                        });
 
-                            // Log any exceptions that have not been catered for
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+                    } finally {
+
+                        // Count the documents attached to their requests for payment, including when the pipeline has
+                        // been stopped
+                        for (AvisClient avisClient : selectedRequests) {
+                            if (avisClient.getSmurfOutput() != null) {
+                                this.noGeneratedDocuments++;
+                            }
+                        }
+
+                        this.sentRequests.addAll(generator.getSentAvisClients());
+                        this.sendingFailed = generator.isSendingFailed();
+                    }
+                }
+
+                /**
+                 * Update the UI to reflect the work completed by each stage of the pipeline
+                 *
+                 * @param noProcessedDocuments Number of documents rendered, converted and sent
+                 */
+                @Override
+                protected void process(List<int[]> noProcessedDocuments) {
+
+                    int[] latest = noProcessedDocuments.get(noProcessedDocuments.size() - 1);
+
+                    // Update the task progress indicator with the number of documents sent and the stage indicators
+                    taskProgressDialog.setProgress(latest[2]);
+                    for (int i = 0; i < latest.length; i++) {
+                        taskProgressDialog.setStageProgress(i, latest[i]);
+                    }
+
+                    // Redraw the rows of the displayed page whose documents have been generated
+                    if (avisClientTableModel != null) {
+                        avisClientTableModel.fireDisplayedRowsUpdated();
+                    }
+                }
+
+                /**
+                 * Handle exceptions that might have been raised while generating or sending documents
+                 */
+                @Override
+                public void done() {
+
+                    // Display the documents generated for the requests for payment of the current page
+                    if ((pager != null) && (pager == avisClientPager)) {
+                        showPage();
+                    }
+
+                    // Hide the task progress indicator dialog box
+                    taskProgressDialog.setVisible(false);
+                    taskProgressDialog.setPartitionCount(0);
+
+                    // Number of documents generated and sent, which are known even when the pipeline has been
+                    // cancelled or stopped by an error
+                    for (AvisClient avisClient : this.sentRequests) {
+                        sentAvisClientIds.add(avisClient.getIdAvis().longValue());
+                    }
+                    noDocuments = this.noGeneratedDocuments;
+                    noDocumentsSent = this.sentRequests.size();
+                    noDocumentsToSend = noDocuments - noDocumentsSent;
+
+                    // Indicate whether all documents have been generated and sent, the documents which have not been
+                    // sent being the only ones left to send
+                    view.secondStepToggleButton.setSelected(noDocuments == noSelectedDocuments);
+                    view.thirdStepToggleButton.setEnabled(noDocumentsToSend > 0);
+                    view.thirdStepToggleButton.setSelected((noDocumentsSent > 0) && (noDocumentsToSend == 0));
+
+                    // Display number of documents generated and sent
+                    if (noDocuments > 0) {
+                        MainWindowController.getMainWindowController().setStatusBarMessage(noDocuments
+                                + " document(s) de demande de règlement généré(s), " + noDocumentsSent
+                                + " envoyé(s).");
+                    }
+
+                    try {
+
+                        // Check for exceptions raised while generating and sending the documents
+                        get();
+
+                    } catch (CancellationException ex) {
+
+                        // Write error message to log file
+                        Smurf.logController.log(Level.INFO, SwingWorker.class.getSimpleName(), "The generation and"
+                                + " sending of documents for selected requests for payment was cancelled by the user.");
+
+                    } catch (InterruptedException ex) {
+
+                        // Write error message to log file
+                        Smurf.logController.log(Level.SEVERE, SwingWorker.class.getSimpleName(),
+                                ex.getLocalizedMessage());
+
+                    } catch (ExecutionException ex) {
+
+                        // Show the error raised by the stage of the pipeline which failed
+                        if (this.sendingFailed) {
+                            showSendingError(ex);
+                        } else {
+                            showGenerationError(ex);
                         }
 
                     } finally {
@@ -1226,19 +2498,19 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                 }
             };
 
-            // Show the dialog indicating that documents are being generated
+            // Show the dialog indicating that documents are being generated and sent
             this.taskProgressDialog.taskCancelButton.setActionCommand("CANCEL_GENERATION");
             this.taskProgressDialog.taskCancelButton.setText("Arrêter la génération");
-            this.taskProgressDialog.taskDescriptionLabel.setText("La génération des demandes de règlement est en"
-                    + "cours");
-            this.taskProgressDialog.taskProgressBar.setIndeterminate(false);
-            this.taskProgressDialog.taskProgressBar.setMinimum(0);
-            this.taskProgressDialog.taskProgressBar.setMaximum(this.noSelectedDocuments);
-            this.taskProgressDialog.taskProgressBar.setValue(0);
+            this.taskProgressDialog.taskDescriptionLabel.setText("La génération et l'envoi des demandes de règlement"
+                    + " sont en cours");
+            this.taskProgressDialog.startProgress(this.noSelectedDocuments);
+            this.taskProgressDialog.setStages(new String[] {"Rendu", "Conversion", batchOutput ? "Archivage" : "Envoi"},
+                    this.noSelectedDocuments);
+            this.taskProgressDialog.setModalityType(Dialog.ModalityType.APPLICATION_MODAL);
             this.taskProgressDialog.setLocationRelativeTo(MainWindowController.getView());
 
-            // Start the worker thread which generates documents for requests for payment and show the progress
-            // indicator
+            // Start the worker thread which generates and sends documents for requests for payment and show the
+            // progress indicator
             this.taskWorker.execute();
             this.taskProgressDialog.setVisible(true);
 
@@ -1260,16 +2532,24 @@ public class RubisController extends WindowAdapter implements ActionListener, It
 
         this.noDocumentsToSend = 0;
 
-        // Check the number of requests for which documents can be sent
-        for (int i = 0; i < this.avisClients.size(); i++) {
-            
-            // Current request for payment
-            AvisClient avisClient = this.avisClients.get(i);
+        // Database pager whose selected requests for payment are walked page by page, if any
+        final AvisClientPager pager = this.avisClientPager;
 
-            if (avisClient.getGenerateDocument()) {
-                if (avisClient.getSmurfOutput() != null) {
-                    this.noDocumentsToSend++;
-                }
+        // Requests for payment selected for the generation of documents, the pages of the database pager being walked
+        // in the background
+        final ArrayList<AvisClient> selectedAvisClients = (pager == null)
+                ? this.getSelectedAvisClients(this.avisClients) : new ArrayList<AvisClient>();
+
+        // Check the number of requests for which documents can be sent, documents already sent as soon as they were
+        // generated being skipped
+        if (pager != null) {
+            this.noDocumentsToSend = pager.getSelectedDocumentCount(this.sentAvisClientIds);
+        }
+
+        for (AvisClient avisClient : selectedAvisClients) {
+            if ((avisClient.getSmurfOutput() != null)
+                    && !this.sentAvisClientIds.contains(avisClient.getIdAvis().longValue())) {
+                this.noDocumentsToSend++;
             }
         }
 
@@ -1314,17 +2594,19 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                     // List of request for payment objects that will be processed
                     ArrayList<AvisClient> avisClientsForProcessing = new ArrayList<>();
 
-                    // Scan the list of request for payment documents and build the list of objects to process
-                    for (Iterator<AvisClient> it = avisClients.iterator(); it.hasNext();) {
-
-                        // Current request for payment
-                        AvisClient avisClient = it.next();
+                    // Scan the list of selected request for payment documents, page by page for the database pager,
+                    // and build the list of objects to process
+                    int noScannedPages = (pager != null) ? pager.getPageCount() : 1;
+                    for (int pageNo = 0; pageNo < noScannedPages; pageNo++) {
 
-                        // Check if the current request for payment has to be processed
-                        if (avisClient.getGenerateDocument()) {
+                        List<AvisClient> requests = (pager != null) ? pager.getSelectedAvisClients(pageNo)
+                                : selectedAvisClients;
+                        for (AvisClient avisClient : requests) {
 
-                            // Check if we have a SMURF output object for the current request for payment object
-                            if (null != avisClient.getSmurfOutput()) {
+                            // Check if we have a SMURF output object for the current request for payment object whose
+                            // document has not already been sent as soon as it was generated
+                            if ((null != avisClient.getSmurfOutput())
+                                    && !sentAvisClientIds.contains(avisClient.getIdAvis().longValue())) {
 
                                 // Add the current object to the list of objects that will be processed
                                 avisClientsForProcessing.add(avisClient);
@@ -1590,8 +2872,8 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                 @Override
                 protected void process(List<Integer> noSentDocuments) {
 
-                    // Update the task progress indicator
-                    taskProgressDialog.taskProgressBar.setValue(noSentDocuments.get(0));
+                    // Update the task progress indicator with the latest count
+                    taskProgressDialog.setProgress(noSentDocuments.get(noSentDocuments.size() - 1));
                 }
 
                 /**
@@ -1606,7 +2888,7 @@ public class RubisController extends WindowAdapter implements ActionListener, It
                         if (!isCancelled()) {
 
                             // Indicate that task was fully completed
-                            taskProgressDialog.taskProgressBar.setValue(noDocumentsToSend);
+                            taskProgressDialog.setProgress(noDocumentsToSend);
                         }
 
                         // Hide the task progress indicator dialog box
@@ -1655,130 +2937,139 @@ public class RubisController extends WindowAdapter implements ActionListener, It
 
                     } catch (ExecutionException ex) {
 
-                        if (ex.getMessage().startsWith("smurf.exceptions.LogTemplateNotDefinedException")) {
+                        // Show the error raised while sending the documents
+                        showSendingError(ex);
+                    }
+                }
+            };
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Le gabarit du fichier de journalisation des envois de document n'a pas été"
-                                    + " défini.", JOptionPane.ERROR_MESSAGE);
+            // Show the dialog indicating that documents are being sent
+            this.taskProgressDialog.taskCancelButton.setActionCommand("CANCEL_SENDING");
+            this.taskProgressDialog.taskCancelButton.setText("Arrêter l'envoi");
+            this.taskProgressDialog.taskDescriptionLabel.setText("L'envoi des documents est en cours");
+            this.taskProgressDialog.startProgress(this.noDocumentsToSend);
+            this.taskProgressDialog.setModalityType(Dialog.ModalityType.APPLICATION_MODAL);
+            this.taskProgressDialog.setLocationRelativeTo(MainWindowController.getView());
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            // Start the worker thread which sends requests for payment documents and show the progress indicator
+            this.taskWorker.execute();
+            this.taskProgressDialog.setVisible(true);
 
-                        } else if (ex.getMessage().startsWith("smurf.exceptions.LogTemplateNotFoundException")) {
+        } else {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Le gabarit du fichier de journalisation est introuvable.",
-                                    JOptionPane.ERROR_MESSAGE);
+            // Remind user to select at least one document
+            MainWindowController.getMainWindowController().showDialogMessage("Veuillez sélecter au moins une demande de"
+                    + " règlement\npour laquelle le document requi sera envoyé.", JOptionPane.WARNING_MESSAGE);
+        }
+    }
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+    /**
+     * Show the error raised while sending the documents of requests for payment and write it to the log file
+     *
+     * @param ex Exception raised by the worker sending the documents
+     */
+    private void showSendingError(ExecutionException ex) {
 
-                        } else if (ex.getMessage().startsWith("smurf.exceptions.MailParameterNotDefinedException")) {
+        if (ex.getMessage().startsWith("smurf.exceptions.LogTemplateNotDefinedException")) {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Un ou plusieurs paramètres requis pour l'envoi des documents n'ont pas été"
-                                    + " renseignés.",
-                                    JOptionPane.ERROR_MESSAGE);
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Le gabarit du fichier de journalisation des envois de document n'a pas été"
+                    + " défini.", JOptionPane.ERROR_MESSAGE);
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                        } else if (ex.getMessage().startsWith("javax.mail.MessagingException")) {
+        } else if (ex.getMessage().startsWith("smurf.exceptions.LogTemplateNotFoundException")) {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de l'envoi des documents de demandes de règlement.",
-                                    JOptionPane.ERROR_MESSAGE);
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Le gabarit du fichier de journalisation est introuvable.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                        } else if (ex.getMessage().startsWith("java.io.IOException")) {
+        } else if (ex.getMessage().startsWith("smurf.exceptions.MailParameterNotDefinedException")) {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de la génération du fichier de journalisation\n"
-                                    + "de l'envoi des documents de demandes de règlement.",
-                                    JOptionPane.ERROR_MESSAGE);
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Un ou plusieurs paramètres requis pour l'envoi des documents n'ont pas été"
+                    + " renseignés.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                        } else if (ex.getMessage().startsWith("java.io.FileNotFoundException")) {
+        } else if (ex.getMessage().startsWith("javax.mail.MessagingException")) {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de la génération du fichier de journalisation\n"
-                                    + "de l'envoi des documents de demandes de règlement.",
-                                    JOptionPane.ERROR_MESSAGE);
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de l'envoi des documents de demandes de règlement.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                        } else if (ex.getMessage().startsWith("com.itextpdf.text.DocumentException")) {
+        } else if (ex.getMessage().startsWith("java.io.IOException")) {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de la génération du fichier de journalisation\n"
-                                    + "de l'envoi des documents de demandes de règlement.",
-                                    JOptionPane.ERROR_MESSAGE);
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de la génération du fichier de journalisation\n"
+                    + "de l'envoi des documents de demandes de règlement.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                        } else if (ex.getMessage().startsWith("java.awt.print.PrinterException")) {
+        } else if (ex.getMessage().startsWith("java.io.FileNotFoundException")) {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de la génération du fichier de journalisation\n"
-                                    + "de l'envoi des documents de demandes de règlement.",
-                                    JOptionPane.ERROR_MESSAGE);
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de la génération du fichier de journalisation\n"
+                    + "de l'envoi des documents de demandes de règlement.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                        } else if (ex.getMessage().startsWith("org.smoc.exceptions")) {
+        } else if (ex.getMessage().startsWith("com.itextpdf.text.DocumentException")) {
 
-                            MainWindowController.getMainWindowController().showDialogMessage(
-                                    "Une erreur est survenue lors de l'utilisation du composant SMOC.",
-                                    JOptionPane.ERROR_MESSAGE);
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de la génération du fichier de journalisation\n"
+                    + "de l'envoi des documents de demandes de règlement.",
+                    JOptionPane.ERROR_MESSAGE);
 
-                            // Write error message to log file
-                            Smurf.logController.log(Level.SEVERE, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-                        } else {
+        } else if (ex.getMessage().startsWith("java.awt.print.PrinterException")) {
 
-                            // Log any exceptions that have not been catered for
-                            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
-                                    ex.getLocalizedMessage());
-                        }
-                    }
-                }
-            };
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de la génération du fichier de journalisation\n"
+                    + "de l'envoi des documents de demandes de règlement.",
+                    JOptionPane.ERROR_MESSAGE);
 
-            // Show the dialog indicating that documents are being sent
-            this.taskProgressDialog.taskCancelButton.setActionCommand("CANCEL_SENDING");
-            this.taskProgressDialog.taskCancelButton.setText("Arrêter l'envoi");
-            this.taskProgressDialog.taskDescriptionLabel.setText("L'envoi des documents est en cours");
-            this.taskProgressDialog.taskProgressBar.setIndeterminate(false);
-            this.taskProgressDialog.taskProgressBar.setMinimum(0);
-            this.taskProgressDialog.taskProgressBar.setMaximum(this.noDocumentsToSend);
-            this.taskProgressDialog.taskProgressBar.setValue(0);
-            this.taskProgressDialog.setLocationRelativeTo(MainWindowController.getView());
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, SEPAMailDocumentMailer.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
-            // Start the worker thread which sends requests for payment documents and show the progress indicator
-            this.taskWorker.execute();
-            this.taskProgressDialog.setVisible(true);
+        } else if (ex.getMessage().startsWith("org.smoc.exceptions")) {
+
+            MainWindowController.getMainWindowController().showDialogMessage(
+                    "Une erreur est survenue lors de l'utilisation du composant SMOC.",
+                    JOptionPane.ERROR_MESSAGE);
+
+            // Write error message to log file
+            Smurf.logController.log(Level.SEVERE, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
 
         } else {
 
-            // Remind user to select at least one document
-            MainWindowController.getMainWindowController().showDialogMessage("Veuillez sélecter au moins une demande de"
-                    + " règlement\npour laquelle le document requi sera envoyé.", JOptionPane.WARNING_MESSAGE);
+            // Log any exceptions that have not been catered for
+            Smurf.logController.log(Level.WARNING, RubisController.class.getSimpleName(),
+                    ex.getLocalizedMessage());
         }
     }
 
@@ -0,0 +1,600 @@
+package smurf.dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.codec.digest.DigestUtils;
+import smurf.exceptions.ConfigurationFormatException;
+import smurf.model.AvisClient;
+import smurf.utilities.Utilities;
+
+/**
+ * The AvisClientCache class keeps the requests for payment fetched from the source database in the local smurf.db
+ * SQLite database, together with a watermark holding the date range covered by the cached rows and the highest request
+ * for payment ID fetched. The cache of a query is only valid for the source database and SQL query it was built from.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class AvisClientCache {
+
+    public static final String CACHE_DATABASE_FILE_NAME = "smurf.db";
+    public static final int MAX_IDS = 500;
+
+    private static final byte NULL_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+    private static final byte INTEGER_VALUE = 2;
+    private static final byte LONG_VALUE = 3;
+    private static final byte DOUBLE_VALUE = 4;
+    private static final byte DECIMAL_VALUE = 5;
+    private static final byte DATE_VALUE = 6;
+    private static final byte SQL_DATE_VALUE = 7;
+    private static final byte TIMESTAMP_VALUE = 8;
+    private static final byte OBJECT_VALUE = 9;
+    private static final byte TEXT_VALUE = 10;
+
+    private static boolean tablesCreated = false;
+
+    private Connection conn;
+    private ArrayList<AvisClient> pendingAvisClients;
+    private String queryHash;
+    private String versionColumn;
+    private Watermark watermark;
+
+    /**
+     * Get the name of the column holding the row version of the requests for payment
+     *
+     * @return Version column name or an empty string if rows are never updated in the source database
+     */
+    public String getVersionColumn() {
+        return this.versionColumn;
+    }
+
+    /**
+     * Get the highest request for payment ID stored in the cache
+     *
+     * @return Highest request for payment ID or Long.MIN_VALUE if the cache is empty
+     */
+    public long getMaxId() {
+        return (this.watermark == null) ? Long.MIN_VALUE : this.watermark.maxId;
+    }
+
+    /**
+     * AvisClientCache constructor
+     *
+     * @param jdbc JDBC connection string of the source database
+     * @param sql SQL query used to fetch the requests for payment
+     * @param versionColumn Name of the column holding the row version of the requests for payment
+     */
+    public AvisClientCache(String jdbc, String sql, String versionColumn) {
+
+        // Initialise class attributes
+        this.conn = null;
+        this.pendingAvisClients = new ArrayList<>();
+        this.queryHash = DigestUtils.shaHex(jdbc + "\n" + sql + "\n" + versionColumn);
+        this.versionColumn = versionColumn;
+        this.watermark = null;
+    }
+
+    /**
+     * Borrow a connection to the local cache database
+     *
+     * @return Database connection
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    private Connection getConnection() throws SQLException, IOException, ConfigurationFormatException {
+
+        // Connection to the cache database
+        Connection conn = ConnectionPool.getConnectionPool("jdbc:sqlite:" + Utilities.getCurrentWorkingDirectory()
+                + System.getProperty("file.separator") + AvisClientCache.CACHE_DATABASE_FILE_NAME, "", "")
+                .getConnection();
+
+        // Create the cache tables the first time the cache is used
+        synchronized (AvisClientCache.class) {
+
+            if (!AvisClientCache.tablesCreated) {
+
+                Statement statement = conn.createStatement();
+                try {
+                    statement.executeUpdate("CREATE TABLE IF NOT EXISTS smurf_cache_watermark (query_hash TEXT "
+                            + "PRIMARY KEY, range_start INTEGER, range_end INTEGER, max_id INTEGER)");
+                    statement.executeUpdate("CREATE TABLE IF NOT EXISTS smurf_cache_avis (query_hash TEXT, "
+                            + "identifiant_avis INTEGER, version TEXT, attributes BLOB, "
+                            + "PRIMARY KEY (query_hash, identifiant_avis))");
+                } finally {
+                    statement.close();
+                }
+
+                AvisClientCache.tablesCreated = true;
+            }
+        }
+
+        return conn;
+    }
+
+    /**
+     * Load the watermark of the query and check if the cached rows can be used for the given date range. The rows of
+     * the query are cleared when the date range does not overlap the range already covered, the rows cached for
+     * other source databases and queries being kept. A connection to the cache database is held until the cache is
+     * closed.
+     *
+     * @param start Start date of the requests for payment to fetch
+     * @param end End date of the requests for payment to fetch
+     * @return Whether the cached rows can be used
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    public boolean begin(Date start, Date end) throws SQLException, IOException, ConfigurationFormatException {
+
+        // Borrow a connection to the cache database for the duration of the fetch
+        this.conn = this.getConnection();
+
+        // Get the watermark of the query
+        PreparedStatement statement = StatementCache.prepare(this.conn, "SELECT range_start, range_end, max_id "
+                + "FROM smurf_cache_watermark WHERE query_hash = ?");
+        statement.setString(1, this.queryHash);
+        ResultSet resultSet = statement.executeQuery();
+        try {
+            if (resultSet.next()) {
+                this.watermark = new Watermark(resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3));
+            }
+        } finally {
+            resultSet.close();
+        }
+
+        // The cached rows can be used if the date range overlaps the range already covered
+        if ((this.watermark != null) && (start.getTime() <= this.watermark.rangeEnd)
+                && (end.getTime() >= this.watermark.rangeStart)) {
+            return true;
+        }
+
+        // Clear the cached rows of the query, the rows of the other queries being kept
+        this.watermark = null;
+        this.conn.setAutoCommit(false);
+        try {
+
+            PreparedStatement clearStatement = StatementCache.prepare(this.conn, "DELETE FROM smurf_cache_avis "
+                    + "WHERE query_hash = ?");
+            clearStatement.setString(1, this.queryHash);
+            clearStatement.executeUpdate();
+
+            clearStatement = StatementCache.prepare(this.conn, "DELETE FROM smurf_cache_watermark "
+                    + "WHERE query_hash = ?");
+            clearStatement.setString(1, this.queryHash);
+            clearStatement.executeUpdate();
+
+            this.conn.commit();
+
+        } finally {
+            this.conn.setAutoCommit(true);
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the row versions of the cached requests for payment having the given IDs, without reading their attributes
+     *
+     * @param ids Request for payment IDs, at most MAX_IDS of them
+     * @return Row versions of the cached requests for payment mapped by ID, the version being null if rows are not
+     * versioned
+     * @throws SQLException
+     */
+    public HashMap<Long, String> getCachedVersions(List<Long> ids) throws SQLException {
+
+        HashMap<Long, String> cachedVersions = new HashMap<>();
+
+        // Check if there are rows to look for
+        if (ids.isEmpty()) {
+            return cachedVersions;
+        }
+
+        ResultSet resultSet = this.prepareIdQuery("identifiant_avis, version", ids).executeQuery();
+        try {
+            while (resultSet.next()) {
+                cachedVersions.put(resultSet.getLong(1), resultSet.getString(2));
+            }
+        } finally {
+            resultSet.close();
+        }
+
+        return cachedVersions;
+    }
+
+    /**
+     * Get the cached requests for payment having the given IDs
+     *
+     * @param ids Request for payment IDs, at most MAX_IDS of them
+     * @return Cached requests for payment mapped by ID
+     * @throws SQLException
+     * @throws IOException
+     */
+    public HashMap<Long, CachedAvisClient> getCachedAvisClients(List<Long> ids) throws SQLException, IOException {
+
+        HashMap<Long, CachedAvisClient> cachedAvisClients = new HashMap<>();
+
+        // Check if there are rows to look for
+        if (ids.isEmpty()) {
+            return cachedAvisClients;
+        }
+
+        ResultSet resultSet = this.prepareIdQuery("identifiant_avis, version, attributes", ids).executeQuery();
+        try {
+            while (resultSet.next()) {
+                cachedAvisClients.put(resultSet.getLong(1), new CachedAvisClient(resultSet.getString(2),
+                        AvisClientCache.deserialise(resultSet.getBytes(3))));
+            }
+        } finally {
+            resultSet.close();
+        }
+
+        return cachedAvisClients;
+    }
+
+    /**
+     * Prepare the query reading columns of the cached requests for payment having the given IDs. The query always has
+     * the same number of parameters so that the prepared statement is reused.
+     *
+     * @param columns Columns of the smurf_cache_avis table to read
+     * @param ids Request for payment IDs, at least one and at most MAX_IDS of them
+     * @return Prepared statement ready to be executed
+     * @throws SQLException
+     */
+    private PreparedStatement prepareIdQuery(String columns, List<Long> ids) throws SQLException {
+
+        StringBuilder sql = new StringBuilder("SELECT " + columns + " FROM smurf_cache_avis WHERE query_hash = ? AND "
+                + "identifiant_avis IN (");
+        for (int i = 0; i < AvisClientCache.MAX_IDS; i++) {
+            sql.append((i == 0) ? "?" : ", ?");
+        }
+        sql.append(")");
+
+        PreparedStatement statement = StatementCache.prepare(this.conn, sql.toString());
+        statement.setString(1, this.queryHash);
+        for (int i = 0; i < AvisClientCache.MAX_IDS; i++) {
+            statement.setLong(i + 2, ids.get(Math.min(i, ids.size() - 1)));
+        }
+
+        return statement;
+    }
+
+    /**
+     * Queue a request for payment fetched from the source database to be stored in the cache on commit
+     *
+     * @param avisClient Request for payment
+     */
+    public void store(AvisClient avisClient) {
+        this.pendingAvisClients.add(avisClient);
+    }
+
+    /**
+     * Store the queued requests for payment and extend the watermark to the given date range in a single transaction
+     *
+     * @param start Start date of the requests for payment fetched
+     * @param end End date of the requests for payment fetched
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    public void commit(Date start, Date end) throws SQLException, IOException, ConfigurationFormatException {
+
+        // Highest request for payment ID fetched, the rows already in the cache being below the current watermark
+        long maxId = this.getMaxId();
+        for (AvisClient avisClient : this.pendingAvisClients) {
+            maxId = Math.max(maxId, avisClient.getIdAvis().longValue());
+        }
+
+        // New watermark covering the previous and the new date ranges
+        Watermark newWatermark;
+        if (this.watermark == null) {
+            newWatermark = new Watermark(start.getTime(), end.getTime(), maxId);
+        } else {
+            newWatermark = new Watermark(Math.min(start.getTime(), this.watermark.rangeStart),
+                    Math.max(end.getTime(), this.watermark.rangeEnd), Math.max(maxId, this.watermark.maxId));
+        }
+
+        try {
+
+            this.conn.setAutoCommit(false);
+
+            // Store the queued requests for payment
+            PreparedStatement statement = StatementCache.prepare(this.conn,"INSERT OR REPLACE INTO smurf_cache_avis "
+                    + "(query_hash, identifiant_avis, version, attributes) VALUES (?, ?, ?, ?)");
+            for (AvisClient avisClient : this.pendingAvisClients) {
+                statement.setString(1, this.queryHash);
+                statement.setLong(2, avisClient.getIdAvis().longValue());
+                statement.setString(3, this.getVersion(avisClient));
+                statement.setBytes(4, AvisClientCache.serialise(avisClient.getAttributes()));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+
+            // Store the watermark
+            PreparedStatement watermarkStatement = StatementCache.prepare(this.conn,"INSERT OR REPLACE INTO "
+                    + "smurf_cache_watermark (query_hash, range_start, range_end, max_id) VALUES (?, ?, ?, ?)");
+            watermarkStatement.setString(1, this.queryHash);
+            watermarkStatement.setLong(2, newWatermark.rangeStart);
+            watermarkStatement.setLong(3, newWatermark.rangeEnd);
+            watermarkStatement.setLong(4, newWatermark.maxId);
+            watermarkStatement.executeUpdate();
+
+            this.conn.commit();
+
+            // The new watermark is now in effect
+            this.pendingAvisClients.clear();
+            this.watermark = newWatermark;
+
+        } catch (SQLException | IOException ex) {
+
+            // Leave the cache as it was before the fetch
+            this.conn.rollback();
+            throw ex;
+
+        } finally {
+            this.conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Return the connection to the cache database to the pool
+     *
+     * @throws SQLException
+     */
+    public void close() throws SQLException {
+
+        if (this.conn != null) {
+            this.conn.close();
+            this.conn = null;
+        }
+    }
+
+    /**
+     * Get the row version of a request for payment
+     *
+     * @param avisClient Request for payment
+     * @return Row version or null if rows are not versioned
+     */
+    private String getVersion(AvisClient avisClient) {
+
+        // Check if rows are versioned
+        if (this.versionColumn.isEmpty()) {
+            return null;
+        }
+
+        Object version = avisClient.getAttributes().get(this.versionColumn);
+        return (version == null) ? null : version.toString();
+    }
+
+    /**
+     * Serialise the attributes of a request for payment. Each value is written with a type tag in a compact binary
+     * form, values of other classes falling back to the Java serialisation. Strings are written as length-prefixed
+     * UTF-8 bytes so that text columns of any length can be cached. The attributes are written in the iteration order
+     * of the map.
+     *
+     * @param attributes Attributes of a request for payment
+     * @return Serialised attributes
+     * @throws IOException
+     */
+    static byte[] serialise(Map<String, Object> attributes) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream output = new DataOutputStream(bytes);
+
+        output.writeInt(attributes.size());
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+
+            output.writeUTF(attribute.getKey());
+
+            // Write the value along with its type
+            Object value = attribute.getValue();
+            if (value == null) {
+                output.writeByte(AvisClientCache.NULL_VALUE);
+            } else if (value.getClass() == String.class) {
+                byte[] text = ((String) value).getBytes(StandardCharsets.UTF_8);
+                output.writeByte(AvisClientCache.TEXT_VALUE);
+                output.writeInt(text.length);
+                output.write(text);
+            } else if (value.getClass() == Integer.class) {
+                output.writeByte(AvisClientCache.INTEGER_VALUE);
+                output.writeInt((Integer) value);
+            } else if (value.getClass() == Long.class) {
+                output.writeByte(AvisClientCache.LONG_VALUE);
+                output.writeLong((Long) value);
+            } else if (value.getClass() == Double.class) {
+                output.writeByte(AvisClientCache.DOUBLE_VALUE);
+                output.writeDouble((Double) value);
+            } else if (value.getClass() == BigDecimal.class) {
+                output.writeByte(AvisClientCache.DECIMAL_VALUE);
+                output.writeUTF(value.toString());
+            } else if (value.getClass() == Date.class) {
+                output.writeByte(AvisClientCache.DATE_VALUE);
+                output.writeLong(((Date) value).getTime());
+            } else if (value.getClass() == java.sql.Date.class) {
+                output.writeByte(AvisClientCache.SQL_DATE_VALUE);
+                output.writeLong(((Date) value).getTime());
+            } else if ((value.getClass() == Timestamp.class) && (((Timestamp) value).getNanos() % 1000000 == 0)) {
+                output.writeByte(AvisClientCache.TIMESTAMP_VALUE);
+                output.writeLong(((Date) value).getTime());
+            } else {
+
+                // Other values are written with the Java serialisation
+                ByteArrayOutputStream objectBytes = new ByteArrayOutputStream();
+                ObjectOutputStream objectOutput = new ObjectOutputStream(objectBytes);
+                objectOutput.writeObject(value);
+                objectOutput.close();
+
+                output.writeByte(AvisClientCache.OBJECT_VALUE);
+                output.writeInt(objectBytes.size());
+                objectBytes.writeTo(output);
+            }
+        }
+        output.close();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserialise the attributes of a request for payment
+     *
+     * @param bytes Serialised attributes
+     * @return Attributes of a request for payment
+     * @throws IOException
+     */
+    private static HashMap<String, Object> deserialise(byte[] bytes) throws IOException {
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        int size = input.readInt();
+        HashMap<String, Object> attributes = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+
+            String key = input.readUTF();
+
+            // Read the value according to its type
+            switch (input.readByte()) {
+
+                case AvisClientCache.STRING_VALUE:
+                    attributes.put(key, input.readUTF());
+                    break;
+
+                case AvisClientCache.TEXT_VALUE:
+                    byte[] text = new byte[input.readInt()];
+                    input.readFully(text);
+                    attributes.put(key, new String(text, StandardCharsets.UTF_8));
+                    break;
+
+                case AvisClientCache.INTEGER_VALUE:
+                    attributes.put(key, input.readInt());
+                    break;
+
+                case AvisClientCache.LONG_VALUE:
+                    attributes.put(key, input.readLong());
+                    break;
+
+                case AvisClientCache.DOUBLE_VALUE:
+                    attributes.put(key, input.readDouble());
+                    break;
+
+                case AvisClientCache.DECIMAL_VALUE:
+                    attributes.put(key, new BigDecimal(input.readUTF()));
+                    break;
+
+                case AvisClientCache.DATE_VALUE:
+                    attributes.put(key, new Date(input.readLong()));
+                    break;
+
+                case AvisClientCache.SQL_DATE_VALUE:
+                    attributes.put(key, new java.sql.Date(input.readLong()));
+                    break;
+
+                case AvisClientCache.TIMESTAMP_VALUE:
+                    attributes.put(key, new Timestamp(input.readLong()));
+                    break;
+
+                case AvisClientCache.OBJECT_VALUE:
+                    byte[] objectBytes = new byte[input.readInt()];
+                    input.readFully(objectBytes);
+                    ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(objectBytes));
+                    try {
+                        attributes.put(key, objectInput.readObject());
+                    } catch (ClassNotFoundException ex) {
+                        throw new IOException(ex);
+                    } finally {
+                        objectInput.close();
+                    }
+                    break;
+
+                default:
+                    attributes.put(key, null);
+                    break;
+            }
+        }
+
+        return attributes;
+    }
+
+    /**
+     * The CachedAvisClient class holds a request for payment read from the cache
+     */
+    public static class CachedAvisClient {
+
+        private HashMap<String, Object> attributes;
+        private String version;
+
+        /**
+         * Get the attributes of the request for payment
+         *
+         * @return Attributes of the request for payment
+         */
+        public HashMap<String, Object> getAttributes() {
+            return this.attributes;
+        }
+
+        /**
+         * Get the row version of the request for payment when it was cached
+         *
+         * @return Row version or null if rows are not versioned
+         */
+        public String getVersion() {
+            return this.version;
+        }
+
+        /**
+         * CachedAvisClient constructor
+         *
+         * @param version Row version of the request for payment
+         * @param attributes Attributes of the request for payment
+         */
+        CachedAvisClient(String version, HashMap<String, Object> attributes) {
+
+            // Initialise class attributes
+            this.attributes = attributes;
+            this.version = version;
+        }
+    }
+
+    /**
+     * The Watermark class holds the date range covered by the cache and the highest request for payment ID fetched
+     */
+    private static class Watermark {
+
+        private long maxId;
+        private long rangeEnd;
+        private long rangeStart;
+
+        /**
+         * Watermark constructor
+         *
+         * @param rangeStart Start of the covered date range in milliseconds
+         * @param rangeEnd End of the covered date range in milliseconds
+         * @param maxId Highest request for payment ID fetched
+         */
+        Watermark(long rangeStart, long rangeEnd, long maxId) {
+
+            // Initialise class attributes
+            this.maxId = maxId;
+            this.rangeEnd = rangeEnd;
+            this.rangeStart = rangeStart;
+        }
+    }
+}
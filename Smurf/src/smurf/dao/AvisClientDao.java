@@ -1,18 +1,32 @@
 package smurf.dao;
 
 import java.io.IOException;
-import java.math.BigInteger;
+import java.math.BigDecimal;
 import java.sql.*;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.apache.commons.lang3.StringUtils;
 import smurf.Smurf;
 import smurf.exceptions.ConfigurationFormatException;
 import smurf.exceptions.DatesNotSpecifiedException;
 import smurf.exceptions.EndDateNotSpecifiedException;
+import smurf.exceptions.SqlParameterNotDefinedException;
 import smurf.exceptions.StartDateNotSpecifiedException;
 import smurf.model.AvisClient;
+import smurf.model.AvisClientBatch;
 import smurf.model.Configuration;
+import smurf.model.GridConfiguration;
 
 /**
  * The AvisClientDao class is used to query the database and fetch the request for payment records matching the given
@@ -23,7 +37,19 @@ import smurf.model.Configuration;
  */
 public class AvisClientDao {
 
+    private static final int DEFAULT_FETCH_SIZE = 500;
+    private static final long MAX_CHUNK_DELAY = 250;
+    private static final int MAX_QUEUED_CHUNKS = 4;
+
+    private boolean cacheEnabled;
+    private String cacheVersionColumn;
     private Date endDate;
+    private int fetchSize;
+    private boolean lazyLoading;
+    private String listingSql;
+    private ArrayList<String> partitionOrderColumns;
+    private ArrayList<Boolean> partitionOrderDescending;
+    private int partitions;
     private Date startDate;
     private SimpleDateFormat simpleDateFormat;
     private String jdbc;
@@ -40,8 +66,16 @@ public class AvisClientDao {
     public AvisClientDao() throws IOException, ConfigurationFormatException {
 
         // Initialise class attributes
+        this.cacheEnabled = false;
+        this.cacheVersionColumn = "";
         this.endDate = null;
+        this.fetchSize = AvisClientDao.DEFAULT_FETCH_SIZE;
         this.jdbc = "";
+        this.lazyLoading = false;
+        this.listingSql = null;
+        this.partitionOrderColumns = new ArrayList<>();
+        this.partitionOrderDescending = new ArrayList<>();
+        this.partitions = 1;
         this.password = "";
         this.simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         this.sql = "";
@@ -74,6 +108,55 @@ public class AvisClientDao {
         if (databasePasswordIndex > -1) {
             this.password = configurations.get(databasePasswordIndex).getStringVal();
         }
+
+        // Number of rows read from the database per round trip
+        int databaseFetchSizeIndex = configurations.indexOf(new Configuration("database.fetchsize"));
+        if (databaseFetchSizeIndex > -1) {
+            if (configurations.get(databaseFetchSizeIndex).getIntVal() > 0) {
+                this.fetchSize = configurations.get(databaseFetchSizeIndex).getIntVal();
+            }
+        }
+
+        // Number of date sub-ranges fetched at the same time
+        int databasePartitionsIndex = configurations.indexOf(new Configuration("database.partitions"));
+        if (databasePartitionsIndex > -1) {
+            if (configurations.get(databasePartitionsIndex).getIntVal() > 1) {
+                this.partitions = configurations.get(databasePartitionsIndex).getIntVal();
+            }
+        }
+
+        // Columns by which the query sorts the requests for payment, used to merge the date sub-ranges
+        int databasePartitionsSortIndex = configurations.indexOf(new Configuration("database.partitions.sort"));
+        if (databasePartitionsSortIndex > -1) {
+
+            for (String column : configurations.get(databasePartitionsSortIndex).getStringVal().split(",")) {
+
+                // Get the column label and the sort direction
+                String[] tokens = column.trim().split("\\s+");
+                if (!tokens[0].isEmpty()) {
+                    this.partitionOrderColumns.add(tokens[0]);
+                    this.partitionOrderDescending.add((tokens.length > 1) && tokens[1].equalsIgnoreCase("DESC"));
+                }
+            }
+        }
+
+        // Whether the requests for payment are cached in the local database
+        int cacheEnabledIndex = configurations.indexOf(new Configuration("cache.enabled"));
+        if (cacheEnabledIndex > -1) {
+            this.cacheEnabled = configurations.get(cacheEnabledIndex).getBoolVal();
+        }
+
+        // Column holding the row version of the requests for payment
+        int cacheVersionIndex = configurations.indexOf(new Configuration("cache.version"));
+        if (cacheVersionIndex > -1) {
+            this.cacheVersionColumn = configurations.get(cacheVersionIndex).getStringVal().trim();
+        }
+
+        // Whether only the columns displayed in the grid are fetched until documents are generated
+        int databaseLazyIndex = configurations.indexOf(new Configuration("database.lazy"));
+        if (databaseLazyIndex > -1) {
+            this.lazyLoading = configurations.get(databaseLazyIndex).getBoolVal();
+        }
     }
 
     /**
@@ -86,13 +169,406 @@ public class AvisClientDao {
      * @throws DatesNotSpecifiedException
      * @throws StartDateNotSpecifiedException
      * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
      */
     public ArrayList<AvisClient> getAvisClients() throws SQLException, IOException, ConfigurationFormatException,
-            DatesNotSpecifiedException, StartDateNotSpecifiedException, EndDateNotSpecifiedException {
+            DatesNotSpecifiedException, StartDateNotSpecifiedException, EndDateNotSpecifiedException,
+            SqlParameterNotDefinedException {
 
         // New list of request for payments
+        final ArrayList<AvisClient> avisClients = new ArrayList<>();
+
+        // Fetch the requests for payment and gather the chunks received in a single list
+        this.fetchAvisClients(new AvisClientFetchListener() {
+
+            @Override
+            public void avisClientsFetched(ArrayList<AvisClient> chunk) {
+                avisClients.addAll(chunk);
+            }
+
+            @Override
+            public void partitionsProgressed(int[] noAvisClients, boolean[] completed) {
+            }
+
+            @Override
+            public boolean isFetchCancelled() {
+                return false;
+            }
+        });
+
+        return avisClients;
+    }
+
+    /**
+     * Fetch the payments within the specified start and end dates and deliver them in chunks to the given listener
+     * while the result set is still being read
+     * 
+     * @param listener Listener receiving the chunks of request for payment objects
+     * @return Number of requests for payment fetched
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    public int fetchAvisClients(AvisClientFetchListener listener) throws SQLException, IOException,
+            ConfigurationFormatException, DatesNotSpecifiedException, StartDateNotSpecifiedException,
+            EndDateNotSpecifiedException, SqlParameterNotDefinedException {
+
+        // Values of the parameters of the SQL query
+        HashMap<String, Object> sqlParameters = this.getSqlParameters();
+
+        // Query returning the columns of the requests for payment displayed in the grid
+        this.resolveListingSql(sqlParameters);
+
+        // Batch holding the data of all the requests for payment fetched
+        AvisClientBatch batch = new AvisClientBatch();
+
+        // Chunks of requests for payment delivered to the listener
+        ChunkBuffer chunkBuffer = new ChunkBuffer(listener);
+
+        // Local cache of the requests for payment
+        AvisClientCache cache = null;
+        if (this.cacheEnabled) {
+            cache = new AvisClientCache(this.jdbc, this.listingSql, this.cacheVersionColumn);
+        }
+
+        try {
+
+            // Bounds of the date sub-ranges fetched at the same time
+            long[] partitionBounds = this.getPartitionBounds();
+
+            if ((cache != null) && cache.begin(this.startDate, this.endDate)) {
+
+                // Only fetch the rows which are not in the cache as the cache covers part of the date range
+                Connection conn = this.getConnection();
+                try {
+                    this.fetchIncremental(conn, sqlParameters, batch, cache, chunkBuffer);
+                } finally {
+                    conn.close();
+                }
+
+            } else if (partitionBounds.length > 2) {
+
+                // Fetch the date sub-ranges of the requests for payment at the same time
+                this.fetchPartitioned(partitionBounds, batch, cache, chunkBuffer);
+
+            } else {
+
+                // Fetch all the requests for payment from the source database
+                Connection conn = this.getConnection();
+                try {
+                    this.fetchAll(conn, sqlParameters, batch, cache, chunkBuffer);
+                } finally {
+                    conn.close();
+                }
+            }
+
+            // Deliver the remaining requests for payment
+            chunkBuffer.flush();
+
+            // Store the rows fetched from the source database in the cache
+            if ((cache != null) && !listener.isFetchCancelled()) {
+                cache.commit(this.startDate, this.endDate);
+            }
+
+        } finally {
+
+            // Return the connection to the cache database
+            if (cache != null) {
+                cache.close();
+            }
+        }
+
+        return chunkBuffer.count;
+    }
+
+    /**
+     * Count the payments within the specified start and end dates
+     * 
+     * @return Number of requests for payment
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    public int countAvisClients() throws SQLException, IOException, ConfigurationFormatException,
+            DatesNotSpecifiedException, StartDateNotSpecifiedException, EndDateNotSpecifiedException,
+            SqlParameterNotDefinedException {
+
+        // Values of the parameters of the SQL query
+        HashMap<String, Object> sqlParameters = this.getSqlParameters();
+
+        // Query counting the requests for payment returned by the SQL query
+        CompiledSql compiledSql = CompiledSql.compile("SELECT COUNT(*) FROM (" + this.sql + ") smurf_q");
+
+        Connection conn = this.getConnection();
+
+        try {
+
+            ResultSet resultSet = this.executeQuery(conn, compiledSql, sqlParameters);
+            try {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            } finally {
+                resultSet.close();
+            }
+
+        } finally {
+
+            // Return the connection to the pool
+            conn.close();
+        }
+    }
+
+    /**
+     * Get a page of the payments within the specified start and end dates, the requests for payment being sorted by ID
+     * so that a page is located by the ID of the last request for payment of the previous page
+     * 
+     * @param afterId ID of the last request for payment of the previous page or Long.MIN_VALUE for the first page
+     * @param maxRows Maximum number of requests for payment in the page or zero for all the following ones
+     * @return Requests for payment of the page
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    public ArrayList<AvisClient> getAvisClientPage(long afterId, int maxRows) throws SQLException, IOException,
+            ConfigurationFormatException, DatesNotSpecifiedException, StartDateNotSpecifiedException,
+            EndDateNotSpecifiedException, SqlParameterNotDefinedException {
+
         ArrayList<AvisClient> avisClients = new ArrayList<>();
 
+        // Values of the parameters of the SQL query
+        HashMap<String, Object> sqlParameters = this.getSqlParameters();
+        this.resolveListingSql(sqlParameters);
+        sqlParameters.put("AfterId", afterId);
+
+        // Query returning the requests for payment following the given ID
+        CompiledSql compiledSql = CompiledSql.compile("SELECT * FROM (" + this.listingSql + ") smurf_q WHERE "
+                + "smurf_q." + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME + " > #SMURF#AfterId# ORDER BY smurf_q."
+                + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME);
+
+        Connection conn = this.getConnection();
+
+        try {
+
+            // The driver limits the number of rows returned, which MySQL does on the server side
+            PreparedStatement statement = this.prepareQuery(conn, compiledSql, sqlParameters);
+            if (maxRows > 0) {
+                statement.setMaxRows(maxRows);
+                statement.setFetchSize(maxRows);
+            }
+
+            ResultSet resultSet = statement.executeQuery();
+            try {
+
+                // Resolve the layout of the result set columns once for all the rows
+                ColumnLayout columnLayout = new ColumnLayout(resultSet.getMetaData());
+
+                // Batch holding the data of the requests for payment of the page
+                AvisClientBatch batch = new AvisClientBatch();
+                int[] batchColumns = new int[columnLayout.getColumnCount()];
+                for (int i = 0; i < columnLayout.getColumnCount(); i++) {
+                    batchColumns[i] = batch.addColumn(columnLayout.getColumnLabel(i));
+                }
+
+                while (((maxRows == 0) || (avisClients.size() < maxRows)) && resultSet.next()) {
+                    avisClients.add(this.createAvisClient(resultSet, columnLayout, batch, batchColumns));
+                }
+
+            } finally {
+                resultSet.close();
+            }
+
+        } finally {
+
+            // Return the connection to the pool
+            conn.close();
+        }
+
+        return avisClients;
+    }
+
+    /**
+     * Get the ID of the request for payment found a given number of rows after a request for payment, the requests for
+     * payment being sorted by ID. Only the IDs are read so that a page can be located without reading the pages before
+     * it.
+     * 
+     * @param afterId ID of the request for payment from which the rows are counted or Long.MIN_VALUE
+     * @param noRows Number of rows to move forward
+     * @return ID of the request for payment found or null if there are not enough rows
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    public Long getAvisClientIdAfter(long afterId, int noRows) throws SQLException, IOException,
+            ConfigurationFormatException, DatesNotSpecifiedException, StartDateNotSpecifiedException,
+            EndDateNotSpecifiedException, SqlParameterNotDefinedException {
+
+        // Values of the parameters of the SQL query
+        HashMap<String, Object> sqlParameters = this.getSqlParameters();
+        sqlParameters.put("AfterId", afterId);
+
+        // Query returning the IDs of the requests for payment following the given ID
+        CompiledSql compiledSql = CompiledSql.compile("SELECT smurf_q." + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME
+                + " FROM (" + this.sql + ") smurf_q WHERE smurf_q." + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME
+                + " > #SMURF#AfterId# ORDER BY smurf_q." + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME);
+
+        Connection conn = this.getConnection();
+
+        try {
+
+            PreparedStatement statement = this.prepareQuery(conn, compiledSql, sqlParameters);
+            statement.setMaxRows(noRows);
+
+            // Skip the rows up to the requested one
+            ResultSet resultSet = statement.executeQuery();
+            try {
+
+                Long id = null;
+                int row = 0;
+                while ((row < noRows) && resultSet.next()) {
+                    id = resultSet.getLong(1);
+                    row++;
+                }
+
+                return (row == noRows) ? id : null;
+
+            } finally {
+                resultSet.close();
+            }
+
+        } finally {
+
+            // Return the connection to the pool
+            conn.close();
+        }
+    }
+
+    /**
+     * Load all the attributes of the requests for payment which have only been fetched with the columns displayed in
+     * the grid. The rows are read in one keyed pass: a single query on the IDs when they fit in an IN list, or else
+     * the rows of the range of IDs streamed in ID order until all the requests for payment have been loaded, so that
+     * the configured query is never run once per chunk of IDs.
+     * 
+     * @param avisClients Requests for payment
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    public void loadAvisClientDetails(List<AvisClient> avisClients) throws SQLException, IOException,
+            ConfigurationFormatException, DatesNotSpecifiedException, StartDateNotSpecifiedException,
+            EndDateNotSpecifiedException, SqlParameterNotDefinedException {
+
+        // Requests for payment whose attributes have not been loaded yet
+        HashMap<Long, AvisClient> pendingAvisClients = new HashMap<>();
+        for (AvisClient avisClient : avisClients) {
+            if (!avisClient.isDetailLoaded()) {
+                pendingAvisClients.put(avisClient.getIdAvis().longValue(), avisClient);
+            }
+        }
+
+        if (pendingAvisClients.isEmpty()) {
+            return;
+        }
+
+        // IDs of the requests for payment in ascending order
+        long[] ids = new long[pendingAvisClients.size()];
+        int noIds = 0;
+        for (Long id : pendingAvisClients.keySet()) {
+            ids[noIds++] = id;
+        }
+        Arrays.sort(ids);
+
+        // Values of the parameters of the SQL query
+        HashMap<String, Object> sqlParameters = this.getSqlParameters();
+
+        // Query returning the full rows of the requests for payment
+        CompiledSql compiledDetailSql;
+        if (ids.length <= AvisClientCache.MAX_IDS) {
+
+            // The IN list always has the same number of parameters so that the prepared statement is reused
+            compiledDetailSql = this.compileDetailSql(this.sql);
+            for (int i = 0; i < AvisClientCache.MAX_IDS; i++) {
+                sqlParameters.put("Id" + i, ids[Math.min(i, ids.length - 1)]);
+            }
+
+        } else {
+
+            // Rows of the range of IDs sorted by ID
+            compiledDetailSql = CompiledSql.compile("SELECT * FROM (" + this.sql + ") smurf_q WHERE smurf_q."
+                    + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME + " >= #SMURF#FirstId# AND smurf_q."
+                    + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME + " <= #SMURF#LastId# ORDER BY smurf_q."
+                    + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME);
+            sqlParameters.put("FirstId", ids[0]);
+            sqlParameters.put("LastId", ids[ids.length - 1]);
+        }
+
+        Connection conn = this.getConnection();
+
+        try {
+
+            ResultSet resultSet = this.executeQuery(conn, compiledDetailSql, sqlParameters);
+            try {
+
+                ColumnLayout columnLayout = new ColumnLayout(resultSet.getMetaData());
+
+                // Number of requests for payment whose attributes have been loaded
+                int noLoaded = 0;
+
+                while ((noLoaded < ids.length) && resultSet.next()) {
+
+                    // Add the missing attributes to the request for payment
+                    AvisClient avisClient = pendingAvisClients.get(columnLayout.readId(resultSet));
+                    if ((avisClient != null) && !avisClient.isDetailLoaded()) {
+                        for (int i = 0; i < columnLayout.getColumnCount(); i++) {
+                            avisClient.setAttribute(columnLayout.getColumnLabel(i), columnLayout.read(resultSet, i));
+                        }
+                        avisClient.setDetailLoaded(true);
+                        noLoaded++;
+                    }
+                }
+
+            } finally {
+                resultSet.close();
+            }
+
+        } finally {
+
+            // Return the connection to the pool
+            conn.close();
+        }
+    }
+
+    /**
+     * Get the values of the date parameters of the SQL query
+     * 
+     * @return Values of the parameters of the SQL query
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     */
+    private HashMap<String, Object> getSqlParameters() throws IOException, ConfigurationFormatException,
+            DatesNotSpecifiedException, StartDateNotSpecifiedException, EndDateNotSpecifiedException {
+
         // Collection of Configurations memory objects
         ArrayList<Configuration> configurations = ConfigurationDao.getConfigurationDao().getConfigurations();
 
@@ -109,79 +585,1305 @@ public class AvisClientDao {
         }
 
         // Check if both the start and end dates have been defined
-        if ((this.startDate != null) && (this.endDate != null)) {
+        if ((this.startDate == null) && (this.endDate == null)) {
+
+            // Start and end dates have not been specified
+            throw new DatesNotSpecifiedException();
+
+        } else if (this.startDate == null) {
+
+            // The start date has not been specified
+            throw new StartDateNotSpecifiedException();
+
+        } else if (this.endDate == null) {
+
+            // The end date has not been specified
+            throw new EndDateNotSpecifiedException();
+        }
+
+        // Values of the parameters of the SQL query
+        HashMap<String, Object> sqlParameters = new HashMap<>();
+        sqlParameters.put("DateTimeRequestBegin", this.simpleDateFormat.format(this.startDate));
+        sqlParameters.put("DateTimeRequestEnd", this.simpleDateFormat.format(this.endDate));
+
+        return sqlParameters;
+    }
+
+    /**
+     * Build the query returning the requests for payment with the columns displayed in the grid, together with the
+     * columns needed to sort, merge and cache the rows. The columns are looked up in the labels of the configured
+     * query so that a grid column missing from the query is left empty instead of failing the query. The configured
+     * query is used as is when the loading of the other columns is not deferred.
+     * 
+     * @param sqlParameters Values of the parameters of the SQL query
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws SqlParameterNotDefinedException
+     */
+    private void resolveListingSql(HashMap<String, Object> sqlParameters) throws SQLException, IOException,
+            ConfigurationFormatException, SqlParameterNotDefinedException {
+
+        // Check if the query has already been built
+        if (this.listingSql != null) {
+            return;
+        }
 
-            // Connect to the MySQL database server
-            Connection conn = DriverManager.getConnection(this.jdbc, this.username, this.password);
+        // Fetch all the columns when the loading is not deferred
+        if (!this.lazyLoading) {
+            this.listingSql = this.sql;
+            return;
+        }
 
-            // Statement for retrieving dialer campaigns from the DialXpert database
-            Statement statement = conn.createStatement();
+        // Columns required before documents are generated
+        HashSet<String> requiredColumns = new HashSet<>();
+        requiredColumns.add(Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME.toLowerCase());
+        requiredColumns.add(Smurf.REQUEST_FOR_PAYMENT_AMOUNT_COL_NAME.toLowerCase());
+        requiredColumns.add(Smurf.REQUEST_FOR_PAYMENT_CLIENT_COL_NAME.toLowerCase());
+        requiredColumns.add(Smurf.REQUEST_FOR_PAYMENT_CLIENT_ID_COL_NAME.toLowerCase());
+        for (GridConfiguration gridConfiguration : ConfigurationDao.getConfigurationDao().getGridConfigurations()) {
+            requiredColumns.add(gridConfiguration.getAlias().toLowerCase());
+        }
+        for (String column : this.partitionOrderColumns) {
+            requiredColumns.add(column.toLowerCase());
+        }
+        requiredColumns.add(this.cacheVersionColumn.toLowerCase());
 
-            // Prequare SQL string for retrieving the list of payment requests
-            String smurfSql = this.sql.replaceAll("#SMURF#DateTimeRequestBegin#",
-                    "'" + this.simpleDateFormat.format(this.startDate) + "'");
-            smurfSql = smurfSql.replaceAll("#SMURF#DateTimeRequestEnd#",
-                    "'" + this.simpleDateFormat.format(this.endDate) + "'");
+        // Projection of the configured query on the required columns
+        StringBuilder listingSql = new StringBuilder();
 
-            // Get the list of dialer campaigns from the database
-            ResultSet resultSet = statement.executeQuery(smurfSql);
+        Connection conn = this.getConnection();
 
-            // Scan through the result set and build the list of payment requests
-            while (resultSet.next()) {
+        try {
 
-                // Create instance of request for payment object
-                AvisClient avisClient =
-                        new AvisClient(BigInteger.valueOf(resultSet.getLong(Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME)));
+            // Quote of the identifiers of the database, so that labels with spaces or reserved words can be selected
+            String quote = conn.getMetaData().getIdentifierQuoteString();
 
-                // Get result metadata
-                ResultSetMetaData rsmd = resultSet.getMetaData();
-                
-                // Build the property list of the request for payment object
-                for (int i = 1; i < rsmd.getColumnCount() + 1; i++) {
+            // Read the labels of the columns of the query without fetching any row
+            ResultSet resultSet = this.executeQuery(conn, CompiledSql.compile("SELECT * FROM (" + this.sql
+                    + ") smurf_q WHERE 1 = 0"), sqlParameters);
+            try {
 
-                    // Check that we are not adding the ID column to the property list
-                    if (!rsmd.getColumnName(i).equals(Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME)) {
+                ResultSetMetaData resultSetMetaData = resultSet.getMetaData();
+                for (int i = 1; i <= resultSetMetaData.getColumnCount(); i++) {
 
-                        // Get the value associated with the column
-                        avisClient.setAttribute(rsmd.getColumnLabel(i), resultSet.getObject(rsmd.getColumnLabel(i)));
+                    String column = resultSetMetaData.getColumnLabel(i);
+                    if (requiredColumns.contains(column.toLowerCase())) {
+                        listingSql.append((listingSql.length() == 0) ? "SELECT " : ", ").append("smurf_q.")
+                                .append(AvisClientDao.quoteIdentifier(column, quote)).append(" AS ")
+                                .append(AvisClientDao.quoteIdentifier(column, quote));
                     }
                 }
 
-                // Add the payment request object to the list of payment requests using the obtained details
-                avisClients.add(avisClient);
-            }
-
-            // Close the result set if it is not null and still open
-            if (resultSet != null) {
+            } finally {
                 resultSet.close();
             }
 
-            // Clear the SQL statement if it is not null and still open
-            if (statement != null) {
-                statement.close();
-            }
+        } finally {
 
-            // Close the connection
-            if (!conn.isClosed()) {
-                conn.close();
-            }
+            // Return the connection to the pool
+            conn.close();
+        }
 
-        } else if ((this.startDate == null) && (this.endDate == null)) {
+        this.listingSql = listingSql.append(" FROM (").append(this.sql).append(") smurf_q").toString();
+    }
 
-            // Start and end dates have not been specified
-            throw new DatesNotSpecifiedException();
+    /**
+     * Quote an identifier of the source database, any quote it contains being doubled
+     * 
+     * @param identifier Identifier such as a column label
+     * @param quote Quote of the identifiers of the database, a space if the database does not support quoting
+     * @return Quoted identifier
+     */
+    private static String quoteIdentifier(String identifier, String quote) {
 
-        } else if (this.startDate == null) {
+        // Identifiers are used as is when the database does not support quoting
+        if ((quote == null) || quote.trim().isEmpty()) {
+            return identifier;
+        }
 
-            // The start date has not been specified
-            throw new StartDateNotSpecifiedException();
+        return quote + identifier.replace(quote, quote + quote) + quote;
+    }
 
-        } else if (this.endDate == null) {
+    /**
+     * Compile the query returning the rows of a chunk of requests for payment from their IDs, the IN list always having
+     * AvisClientCache.MAX_IDS parameters named Id0, Id1 and so on
+     * 
+     * @param sql Query returning the requests for payment
+     * @return Compiled SQL query
+     */
+    private CompiledSql compileDetailSql(String sql) {
 
-            // The end date has not been specified
-            throw new EndDateNotSpecifiedException();
+        StringBuilder detailSql = new StringBuilder("SELECT * FROM (" + sql + ") smurf_q WHERE smurf_q."
+                + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME + " IN (");
+        for (int i = 0; i < AvisClientCache.MAX_IDS; i++) {
+            detailSql.append((i == 0) ? "" : ", ").append("#SMURF#Id").append(i).append("#");
         }
+        detailSql.append(")");
 
-        return avisClients;
+        return CompiledSql.compile(detailSql.toString());
+    }
+
+    /**
+     * Borrow a connection to the source database from the connection pool
+     * 
+     * @return Database connection
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    private Connection getConnection() throws SQLException, IOException, ConfigurationFormatException {
+        return ConnectionPool.getConnectionPool(this.jdbc, this.username, this.password).getConnection();
+    }
+
+    /**
+     * Split the date range into the sub-ranges fetched at the same time. The bounds fall on whole seconds as the dates
+     * are passed to the SQL query with a precision of one second.
+     * 
+     * @return Bounds of the date sub-ranges in milliseconds, a single sub-range being returned when the date range is
+     * not partitioned
+     */
+    private long[] getPartitionBounds() {
+
+        // Number of seconds in the date range
+        long seconds = Math.max(0, (this.endDate.getTime() - this.startDate.getTime()) / 1000);
+
+        // Do not create sub-ranges shorter than a second
+        int noPartitions = (int) Math.max(1, Math.min(this.partitions, seconds));
+
+        long[] bounds = new long[noPartitions + 1];
+        for (int i = 0; i < noPartitions; i++) {
+            bounds[i] = this.startDate.getTime() + (seconds * i / noPartitions) * 1000;
+        }
+        bounds[noPartitions] = this.endDate.getTime();
+
+        return bounds;
+    }
+
+    /**
+     * Fetch all the requests for payment of the date range from the source database
+     * 
+     * @param conn Connection to the source database
+     * @param sqlParameters Values of the parameters of the SQL query
+     * @param batch Batch in which the data of the requests for payment is stored
+     * @param cache Cache in which the requests for payment must be stored or null if the cache is not used
+     * @param chunkBuffer Chunks of requests for payment delivered to the listener
+     * @throws SQLException
+     * @throws SqlParameterNotDefinedException
+     */
+    private void fetchAll(Connection conn, HashMap<String, Object> sqlParameters, AvisClientBatch batch,
+            AvisClientCache cache, ChunkBuffer chunkBuffer) throws SQLException, SqlParameterNotDefinedException {
+
+        // Compile the SQL query for retrieving the list of payment requests into a parameterised query
+        CompiledSql compiledSql = CompiledSql.compile(this.listingSql);
+
+        // Get the list of dialer campaigns from the database
+        ResultSet resultSet = this.executeQuery(conn, compiledSql, sqlParameters);
+
+        try {
+
+            // Resolve the layout of the result set columns once for all the rows
+            ColumnLayout columnLayout = new ColumnLayout(resultSet.getMetaData());
+
+            // Position in the batch of each attribute column of the result set
+            int[] batchColumns = new int[columnLayout.getColumnCount()];
+            for (int i = 0; i < columnLayout.getColumnCount(); i++) {
+                batchColumns[i] = batch.addColumn(columnLayout.getColumnLabel(i));
+            }
+
+            // Scan through the result set and deliver the requests for payment as soon as a chunk is available
+            while (!chunkBuffer.listener.isFetchCancelled() && resultSet.next()) {
+
+                // Add the payment request object to the current chunk
+                AvisClient avisClient = this.createAvisClient(resultSet, columnLayout, batch, batchColumns);
+                chunkBuffer.add(avisClient);
+
+                // Keep the request for payment for the cache
+                if (cache != null) {
+                    cache.store(avisClient);
+                }
+            }
+
+        } finally {
+
+            // Close the result set while keeping the prepared statement for the next fetch
+            resultSet.close();
+        }
+    }
+
+    /**
+     * Fetch the requests for payment of the date range using the cache. When rows are versioned, the rows above the
+     * highest request for payment ID of the cache cannot be cached and are streamed from the source database in one
+     * pass. For the range covered by the cache, only the IDs and row versions are read so that the full rows are only
+     * fetched for the requests for payment which are not in the cache or whose row version has changed. The two ranges
+     * are merged in the order of the query using the sort columns of the database.partitions.sort setting, the new rows
+     * following the cached ones when no sort column is defined.
+     * 
+     * @param conn Connection to the source database
+     * @param sqlParameters Values of the parameters of the SQL query
+     * @param batch Batch in which the data of the requests for payment is stored
+     * @param cache Cache of the requests for payment
+     * @param chunkBuffer Chunks of requests for payment delivered to the listener
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws SqlParameterNotDefinedException
+     */
+    private void fetchIncremental(Connection conn, HashMap<String, Object> sqlParameters, AvisClientBatch batch,
+            AvisClientCache cache, ChunkBuffer chunkBuffer) throws SQLException, IOException,
+            ConfigurationFormatException, SqlParameterNotDefinedException {
+
+        // Highest request for payment ID of the cache, which splits the rows into the cached and new ranges
+        sqlParameters.put("MaxId", cache.getMaxId());
+
+        // Cached rows which are not versioned never need to be checked against the source database
+        if (cache.getVersionColumn().isEmpty()) {
+            this.fetchUnversioned(conn, sqlParameters, batch, cache, chunkBuffer);
+            return;
+        }
+
+        // Query returning the IDs and row versions of the requests for payment of the cached range in the original
+        // order
+        CompiledSql projectionSql = CompiledSql.compile("SELECT smurf_q." + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME
+                + ", smurf_q." + cache.getVersionColumn() + " FROM (" + this.listingSql + ") smurf_q WHERE smurf_q."
+                + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME + " <= #SMURF#MaxId#");
+
+        // IDs and row versions of the requests for payment of the cached range
+        ArrayList<Long> ids = new ArrayList<>();
+        ArrayList<String> versions = new ArrayList<>();
+
+        ResultSet resultSet = this.executeQuery(conn, projectionSql, sqlParameters);
+        try {
+            while (!chunkBuffer.listener.isFetchCancelled() && resultSet.next()) {
+                ids.add(resultSet.getLong(1));
+                Object version = resultSet.getObject(2);
+                versions.add((version == null) ? null : version.toString());
+            }
+        } finally {
+            resultSet.close();
+        }
+
+        // Requests for payment of the cached range which are not in the cache or whose row version has changed
+        HashSet<Long> staleIds = new HashSet<>();
+        for (int start = 0; (start < ids.size()) && !chunkBuffer.listener.isFetchCancelled();
+                start += AvisClientCache.MAX_IDS) {
+
+            List<Long> chunkIds = ids.subList(start, Math.min(start + AvisClientCache.MAX_IDS, ids.size()));
+            HashMap<Long, String> cachedVersions = cache.getCachedVersions(chunkIds);
+            for (int i = 0; i < chunkIds.size(); i++) {
+                if (!cachedVersions.containsKey(chunkIds.get(i))
+                        || !StringUtils.equals(versions.get(start + i), cachedVersions.get(chunkIds.get(i)))) {
+                    staleIds.add(chunkIds.get(i));
+                }
+            }
+        }
+
+        // Fetch the full rows of the stale requests for payment
+        HashMap<Long, HashMap<String, Object>> staleAvisClients = this.fetchStaleAvisClients(conn, sqlParameters,
+                staleIds, " <= ", chunkBuffer.listener);
+
+        // Query returning the requests for payment which are above the highest ID of the cache
+        CompiledSql deltaSql = CompiledSql.compile("SELECT * FROM (" + this.listingSql + ") smurf_q WHERE smurf_q."
+                + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME + " > #SMURF#MaxId#");
+
+        resultSet = this.executeQuery(conn, deltaSql, sqlParameters);
+        try {
+
+            ColumnLayout columnLayout = new ColumnLayout(resultSet.getMetaData());
+
+            // Labels of the sort columns, null standing for the request for payment ID
+            String[] sortLabels = this.resolveSortLabels(columnLayout);
+
+            // Cached requests for payment of the current chunk of IDs of the cached range
+            HashMap<Long, AvisClientCache.CachedAvisClient> cachedAvisClients = new HashMap<>();
+
+            // Next request for payment of each range, together with its attributes
+            int next = 0;
+            long cachedId = 0;
+            HashMap<String, Object> cachedAttributes = null;
+            long newId = 0;
+            HashMap<String, Object> newAttributes = null;
+            boolean newExhausted = false;
+
+            while (!chunkBuffer.listener.isFetchCancelled()) {
+
+                // Get the next request for payment of the cached range, skipping the stale requests for payment which
+                // have been removed from the source database in the meantime
+                while ((cachedAttributes == null) && (next < ids.size())) {
+
+                    // Read the cached requests for payment by chunks of IDs
+                    if (next % AvisClientCache.MAX_IDS == 0) {
+
+                        ArrayList<Long> cachedIds = new ArrayList<>();
+                        for (Long id : ids.subList(next, Math.min(next + AvisClientCache.MAX_IDS, ids.size()))) {
+                            if (!staleIds.contains(id)) {
+                                cachedIds.add(id);
+                            }
+                        }
+                        cachedAvisClients = cache.getCachedAvisClients(cachedIds);
+                    }
+
+                    cachedId = ids.get(next++);
+                    if (staleIds.contains(cachedId)) {
+                        cachedAttributes = staleAvisClients.get(cachedId);
+                    } else if (cachedAvisClients.containsKey(cachedId)) {
+                        cachedAttributes = cachedAvisClients.get(cachedId).getAttributes();
+                    }
+                }
+
+                // Read the next request for payment of the new range
+                if ((newAttributes == null) && !newExhausted) {
+
+                    if (resultSet.next()) {
+
+                        newId = columnLayout.readId(resultSet);
+                        newAttributes = new HashMap<>();
+                        for (int i = 0; i < columnLayout.getColumnCount(); i++) {
+                            newAttributes.put(columnLayout.getColumnLabel(i), columnLayout.read(resultSet, i));
+                        }
+
+                    } else {
+                        newExhausted = true;
+                    }
+                }
+
+                // Stop when the requests for payment of both ranges have all been added
+                if ((cachedAttributes == null) && (newAttributes == null)) {
+                    break;
+                }
+
+                // Add the request for payment coming first in the order of the query, the new rows following the
+                // cached ones when no sort column is defined
+                boolean newFirst = (cachedAttributes == null) || ((newAttributes != null) && (sortLabels.length > 0)
+                        && (this.compareAttributes(sortLabels, newId, newAttributes, cachedId, cachedAttributes) < 0));
+                if (newFirst) {
+
+                    this.addAvisClient(newId, newAttributes, true, batch, cache, chunkBuffer);
+                    newAttributes = null;
+
+                } else {
+
+                    this.addAvisClient(cachedId, cachedAttributes, staleIds.contains(cachedId), batch, cache,
+                            chunkBuffer);
+                    cachedAttributes = null;
+                }
+            }
+
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    /**
+     * Fetch the requests for payment of the date range using a cache whose rows are not versioned. As cached rows are
+     * taken as they are, the query is run once to read the IDs of the requests for payment of the whole date range in
+     * the original order, the full rows being then only fetched for the requests for payment which are not in the
+     * cache.
+     * 
+     * @param conn Connection to the source database
+     * @param sqlParameters Values of the parameters of the SQL query, including the highest ID of the cache
+     * @param batch Batch in which the data of the requests for payment is stored
+     * @param cache Cache of the requests for payment
+     * @param chunkBuffer Chunks of requests for payment delivered to the listener
+     * @throws SQLException
+     * @throws IOException
+     * @throws SqlParameterNotDefinedException
+     */
+    private void fetchUnversioned(Connection conn, HashMap<String, Object> sqlParameters, AvisClientBatch batch,
+            AvisClientCache cache, ChunkBuffer chunkBuffer) throws SQLException, IOException,
+            SqlParameterNotDefinedException {
+
+        // Query returning the IDs of the requests for payment in the original order
+        CompiledSql projectionSql = CompiledSql.compile("SELECT smurf_q." + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME
+                + " FROM (" + this.listingSql + ") smurf_q");
+
+        ArrayList<Long> ids = new ArrayList<>();
+
+        ResultSet resultSet = this.executeQuery(conn, projectionSql, sqlParameters);
+        try {
+            while (!chunkBuffer.listener.isFetchCancelled() && resultSet.next()) {
+                ids.add(resultSet.getLong(1));
+            }
+        } finally {
+            resultSet.close();
+        }
+
+        // Requests for payment which are not in the cache, and whether some of them are in the cached range
+        HashSet<Long> staleIds = new HashSet<>();
+        boolean cachedRangeStale = false;
+        for (int start = 0; (start < ids.size()) && !chunkBuffer.listener.isFetchCancelled();
+                start += AvisClientCache.MAX_IDS) {
+
+            List<Long> chunkIds = ids.subList(start, Math.min(start + AvisClientCache.MAX_IDS, ids.size()));
+            HashMap<Long, String> cachedVersions = cache.getCachedVersions(chunkIds);
+            for (Long id : chunkIds) {
+                if (!cachedVersions.containsKey(id)) {
+                    staleIds.add(id);
+                    cachedRangeStale = cachedRangeStale || (id <= cache.getMaxId());
+                }
+            }
+        }
+
+        // Fetch the full rows of the requests for payment which are not in the cache, reading only the rows above the
+        // highest ID of the cache when all of them are new
+        HashMap<Long, HashMap<String, Object>> staleAvisClients = this.fetchStaleAvisClients(conn, sqlParameters,
+                staleIds, cachedRangeStale ? null : " > ", chunkBuffer.listener);
+
+        // Add the requests for payment to the batch in the original order
+        for (int start = 0; (start < ids.size()) && !chunkBuffer.listener.isFetchCancelled();
+                start += AvisClientCache.MAX_IDS) {
+
+            List<Long> chunkIds = ids.subList(start, Math.min(start + AvisClientCache.MAX_IDS, ids.size()));
+
+            ArrayList<Long> cachedIds = new ArrayList<>();
+            for (Long id : chunkIds) {
+                if (!staleIds.contains(id)) {
+                    cachedIds.add(id);
+                }
+            }
+            HashMap<Long, AvisClientCache.CachedAvisClient> cachedAvisClients = cache.getCachedAvisClients(cachedIds);
+
+            for (Long id : chunkIds) {
+
+                HashMap<String, Object> attributes = staleIds.contains(id) ? staleAvisClients.get(id)
+                        : cachedAvisClients.containsKey(id) ? cachedAvisClients.get(id).getAttributes() : null;
+
+                // Skip requests for payment which have been removed from the source database in the meantime
+                if (attributes != null) {
+                    this.addAvisClient(id, attributes, staleIds.contains(id), batch, cache, chunkBuffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetch the full rows of the requests for payment which are not in the cache or whose row version has changed. A
+     * single query on their IDs is run when they fit in an IN list, the range of IDs holding them being otherwise read
+     * in one pass so that the source query is never run once per chunk of IDs.
+     * 
+     * @param conn Connection to the source database
+     * @param sqlParameters Values of the parameters of the SQL query, including the highest ID of the cache
+     * @param staleIds IDs of the stale requests for payment
+     * @param maxIdComparison Comparison of the request for payment IDs with the highest ID of the cache, such as
+     * " <= ", restricting the range read when the stale requests for payment do not fit in an IN list, or null if the
+     * whole date range must be read
+     * @param listener Listener which may cancel the fetching
+     * @return Attributes of the stale requests for payment mapped by ID
+     * @throws SQLException
+     * @throws SqlParameterNotDefinedException
+     */
+    private HashMap<Long, HashMap<String, Object>> fetchStaleAvisClients(Connection conn,
+            HashMap<String, Object> sqlParameters, HashSet<Long> staleIds, String maxIdComparison,
+            AvisClientFetchListener listener) throws SQLException, SqlParameterNotDefinedException {
+
+        HashMap<Long, HashMap<String, Object>> staleAvisClients = new HashMap<>();
+
+        // Check if there are rows to fetch
+        if (staleIds.isEmpty() || listener.isFetchCancelled()) {
+            return staleAvisClients;
+        }
+
+        CompiledSql compiledSql;
+        if (staleIds.size() <= AvisClientCache.MAX_IDS) {
+
+            // The IN list always has the same number of parameters so that the prepared statement is reused
+            compiledSql = this.compileDetailSql(this.listingSql);
+            ArrayList<Long> idList = new ArrayList<>(staleIds);
+            for (int i = 0; i < AvisClientCache.MAX_IDS; i++) {
+                sqlParameters.put("Id" + i, idList.get(Math.min(i, idList.size() - 1)));
+            }
+
+        } else {
+
+            // Read the range of IDs holding the stale requests for payment
+            compiledSql = CompiledSql.compile("SELECT * FROM (" + this.listingSql + ") smurf_q"
+                    + ((maxIdComparison == null) ? "" : " WHERE smurf_q." + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME
+                    + maxIdComparison + "#SMURF#MaxId#"));
+        }
+
+        ResultSet resultSet = this.executeQuery(conn, compiledSql, sqlParameters);
+        try {
+
+            ColumnLayout columnLayout = new ColumnLayout(resultSet.getMetaData());
+            while (!listener.isFetchCancelled() && resultSet.next()) {
+
+                // Keep the stale requests for payment only
+                long id = columnLayout.readId(resultSet);
+                if (staleIds.contains(id)) {
+
+                    HashMap<String, Object> attributes = new HashMap<>();
+                    for (int i = 0; i < columnLayout.getColumnCount(); i++) {
+                        attributes.put(columnLayout.getColumnLabel(i), columnLayout.read(resultSet, i));
+                    }
+                    staleAvisClients.put(id, attributes);
+                }
+            }
+
+        } finally {
+            resultSet.close();
+        }
+
+        return staleAvisClients;
+    }
+
+    /**
+     * Add a request for payment to the batch and deliver it to the listener
+     * 
+     * @param id Request for payment ID
+     * @param attributes Attributes of the request for payment
+     * @param fetched Whether the request for payment has been fetched from the source database, in which case it is
+     * stored in the cache
+     * @param batch Batch in which the data of the requests for payment is stored
+     * @param cache Cache of the requests for payment
+     * @param chunkBuffer Chunks of requests for payment delivered to the listener
+     */
+    private void addAvisClient(long id, HashMap<String, Object> attributes, boolean fetched, AvisClientBatch batch,
+            AvisClientCache cache, ChunkBuffer chunkBuffer) {
+
+        // Add the request for payment to the batch
+        int row = batch.addRow(id);
+        for (String key : attributes.keySet()) {
+            batch.setValue(row, batch.addColumn(key), attributes.get(key));
+        }
+        batch.setDetailLoaded(row, !this.lazyLoading);
+        AvisClient avisClient = new AvisClient(batch, row);
+        chunkBuffer.add(avisClient);
+
+        // Keep the request for payment fetched from the source database for the cache
+        if (fetched) {
+            cache.store(avisClient);
+        }
+    }
+
+    /**
+     * Resolve the labels of the sort columns of the database.partitions.sort setting in a result set
+     * 
+     * @param columnLayout Layout of the result set columns
+     * @return Labels of the sort columns, null standing for the request for payment ID
+     * @throws SQLException
+     */
+    private String[] resolveSortLabels(ColumnLayout columnLayout) throws SQLException {
+
+        String[] sortLabels = new String[this.partitionOrderColumns.size()];
+        for (int i = 0; i < sortLabels.length; i++) {
+
+            // The request for payment ID is not one of the attribute columns
+            if (this.partitionOrderColumns.get(i).equalsIgnoreCase(Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME)) {
+                continue;
+            }
+
+            for (int j = 0; j < columnLayout.getColumnCount(); j++) {
+                if (columnLayout.getColumnLabel(j).equalsIgnoreCase(this.partitionOrderColumns.get(i))) {
+                    sortLabels[i] = columnLayout.getColumnLabel(j);
+                    break;
+                }
+            }
+
+            // The sort columns must be part of the result set
+            if (sortLabels[i] == null) {
+                throw new SQLException("The " + this.partitionOrderColumns.get(i) + " sort column is missing from "
+                        + "the result set of the request for payment query.");
+            }
+        }
+
+        return sortLabels;
+    }
+
+    /**
+     * Compare two requests for payment according to the sort columns
+     * 
+     * @param sortLabels Labels of the sort columns, null standing for the request for payment ID
+     * @param id ID of the first request for payment
+     * @param attributes Attributes of the first request for payment
+     * @param otherId ID of the second request for payment
+     * @param otherAttributes Attributes of the second request for payment
+     * @return Negative, zero or positive value as the first request for payment comes before, with or after the second
+     */
+    private int compareAttributes(String[] sortLabels, long id, HashMap<String, Object> attributes, long otherId,
+            HashMap<String, Object> otherAttributes) {
+
+        for (int i = 0; i < sortLabels.length; i++) {
+
+            int result = (sortLabels[i] == null) ? Long.compare(id, otherId) : AvisClientDao.compareValues(
+                    attributes.get(sortLabels[i]), otherAttributes.get(sortLabels[i]));
+
+            if (result != 0) {
+                return this.partitionOrderDescending.get(i) ? -result : result;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Fetch the requests for payment of the date range by running the query on each date sub-range at the same time,
+     * each sub-range being read on its own pooled connection. The rows of the sub-ranges are merged back in the order
+     * of the query using the sort columns of the database.partitions.sort setting, the sub-ranges being concatenated
+     * in date order when no sort column is defined.
+     * 
+     * @param partitionBounds Bounds of the date sub-ranges in milliseconds
+     * @param batch Batch in which the data of the requests for payment is stored
+     * @param cache Cache in which the requests for payment must be stored or null if the cache is not used
+     * @param chunkBuffer Chunks of requests for payment delivered to the listener
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws SqlParameterNotDefinedException
+     */
+    private void fetchPartitioned(long[] partitionBounds, AvisClientBatch batch, AvisClientCache cache,
+            ChunkBuffer chunkBuffer) throws SQLException, IOException, ConfigurationFormatException,
+            SqlParameterNotDefinedException {
+
+        // Compile the SQL query for retrieving the list of payment requests into a parameterised query
+        CompiledSql compiledSql = CompiledSql.compile(this.listingSql);
+
+        // Connection pool from which each partition borrows its connection
+        ConnectionPool connectionPool = ConnectionPool.getConnectionPool(this.jdbc, this.username, this.password);
+
+        // Interleaved partitions must all be read at the same time as each one only queues a few chunks of rows, so
+        // that adjacent sub-ranges are joined when there are more sub-ranges than connections in the pool
+        int noPartitions = partitionBounds.length - 1;
+        if (!this.partitionOrderColumns.isEmpty() && (noPartitions > connectionPool.getMaxSize())) {
+
+            long[] joinedBounds = new long[connectionPool.getMaxSize() + 1];
+            for (int i = 0; i < joinedBounds.length; i++) {
+                joinedBounds[i] = partitionBounds[i * noPartitions / connectionPool.getMaxSize()];
+            }
+            partitionBounds = joinedBounds;
+        }
+
+        // Create a partition for each date sub-range
+        Partition[] partitions = new Partition[partitionBounds.length - 1];
+        for (int i = 0; i < partitions.length; i++) {
+
+            HashMap<String, Object> sqlParameters = new HashMap<>();
+            sqlParameters.put("DateTimeRequestBegin", this.simpleDateFormat.format(new Date(partitionBounds[i])));
+            sqlParameters.put("DateTimeRequestEnd", this.simpleDateFormat.format(new Date(partitionBounds[i + 1])));
+
+            partitions[i] = new Partition(connectionPool, compiledSql, sqlParameters);
+        }
+
+        // Run the partitions on as many threads as there are connections in the pool
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(partitions.length,
+                connectionPool.getMaxSize()));
+
+        try {
+
+            for (Partition partition : partitions) {
+                executor.execute(partition);
+            }
+
+            // Merge the rows of the partitions as they are read
+            this.mergePartitions(partitions, batch, cache, chunkBuffer);
+
+        } finally {
+
+            // Stop the partitions still running when the fetching has been cancelled or has failed
+            for (Partition partition : partitions) {
+                partition.cancel();
+            }
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Merge the rows read by the partitions in the order of the query and add them to the batch
+     * 
+     * @param partitions Partitions of the date range
+     * @param batch Batch in which the data of the requests for payment is stored
+     * @param cache Cache in which the requests for payment must be stored or null if the cache is not used
+     * @param chunkBuffer Chunks of requests for payment delivered to the listener
+     * @throws SQLException
+     * @throws SqlParameterNotDefinedException
+     */
+    private void mergePartitions(Partition[] partitions, AvisClientBatch batch, AvisClientCache cache,
+            ChunkBuffer chunkBuffer) throws SQLException, SqlParameterNotDefinedException {
+
+        // Whether the rows of the partitions are interleaved according to the sort columns
+        boolean sorted = !this.partitionOrderColumns.isEmpty();
+
+        // IDs of the requests for payment merged, since rows on the bound of two sub-ranges are returned by both
+        // partitions when the query includes both the start and end dates
+        HashSet<Long> ids = new HashSet<>();
+
+        long lastProgressTime = 0;
+
+        while (!chunkBuffer.listener.isFetchCancelled()) {
+
+            // Report the progress of the partitions at regular intervals
+            if (System.currentTimeMillis() - lastProgressTime >= AvisClientDao.MAX_CHUNK_DELAY) {
+                this.reportProgress(partitions, chunkBuffer.listener);
+                lastProgressTime = System.currentTimeMillis();
+            }
+
+            // Find the partition holding the next row in the order of the query
+            int next = -1;
+            boolean waiting = false;
+            for (int i = 0; i < partitions.length; i++) {
+
+                Object[] row = partitions[i].peek();
+                if (row == null) {
+
+                    // Wait for the partition unless all its rows have been merged
+                    if (!partitions[i].isExhausted()) {
+                        waiting = true;
+                        break;
+                    }
+                    continue;
+                }
+
+                // Resolve the columns of the partition once its result set is available
+                if (partitions[i].batchColumns == null) {
+                    this.resolvePartitionColumns(partitions[i], batch);
+                }
+
+                if ((next == -1) || (sorted && (this.compareRows(partitions[i], row, partitions[next],
+                        partitions[next].peek()) < 0))) {
+                    next = i;
+                }
+
+                // The partitions are read one after the other when no sort column is defined
+                if (!sorted) {
+                    break;
+                }
+            }
+
+            // Wait for more rows
+            if (waiting) {
+                continue;
+            }
+
+            // Stop when all the rows of all the partitions have been merged
+            if (next == -1) {
+                break;
+            }
+
+            Object[] row = partitions[next].peek();
+            partitions[next].advance();
+
+            // Skip the rows returned by two adjacent partitions
+            if (!ids.add((Long) row[0])) {
+                continue;
+            }
+
+            // Add the request for payment to the batch
+            int batchRow = batch.addRow((Long) row[0]);
+            for (int i = 0; i < partitions[next].batchColumns.length; i++) {
+                batch.setValue(batchRow, partitions[next].batchColumns[i], row[i + 1]);
+            }
+            batch.setDetailLoaded(batchRow, !this.lazyLoading);
+            AvisClient avisClient = new AvisClient(batch, batchRow);
+            chunkBuffer.add(avisClient);
+
+            // Keep the request for payment for the cache
+            if (cache != null) {
+                cache.store(avisClient);
+            }
+        }
+
+        // Report the final progress of the partitions
+        if (!chunkBuffer.listener.isFetchCancelled()) {
+            this.reportProgress(partitions, chunkBuffer.listener);
+        }
+    }
+
+    /**
+     * Resolve the position in the batch of the attribute columns of a partition and the position in its rows of the
+     * sort columns
+     * 
+     * @param partition Partition whose result set is available
+     * @param batch Batch in which the data of the requests for payment is stored
+     * @throws SQLException
+     */
+    private void resolvePartitionColumns(Partition partition, AvisClientBatch batch) throws SQLException {
+
+        ColumnLayout columnLayout = partition.columnLayout;
+
+        // Position in the batch of each attribute column of the result set
+        int[] batchColumns = new int[columnLayout.getColumnCount()];
+        for (int i = 0; i < columnLayout.getColumnCount(); i++) {
+            batchColumns[i] = batch.addColumn(columnLayout.getColumnLabel(i));
+        }
+
+        // Position of the sort columns in the rows of the partition, the request for payment ID being the first value
+        int[] sortColumns = new int[this.partitionOrderColumns.size()];
+        for (int i = 0; i < sortColumns.length; i++) {
+
+            sortColumns[i] = -1;
+
+            if (this.partitionOrderColumns.get(i).equalsIgnoreCase(Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME)) {
+                sortColumns[i] = 0;
+            } else {
+                for (int j = 0; j < columnLayout.getColumnCount(); j++) {
+                    if (columnLayout.getColumnLabel(j).equalsIgnoreCase(this.partitionOrderColumns.get(i))) {
+                        sortColumns[i] = j + 1;
+                        break;
+                    }
+                }
+            }
+
+            // The sort columns must be part of the result set
+            if (sortColumns[i] == -1) {
+                throw new SQLException("The " + this.partitionOrderColumns.get(i) + " sort column is missing from "
+                        + "the result set of the request for payment query.");
+            }
+        }
+
+        partition.sortColumns = sortColumns;
+        partition.batchColumns = batchColumns;
+    }
+
+    /**
+     * Compare two rows read by partitions according to the sort columns
+     * 
+     * @param partition Partition of the first row
+     * @param row First row
+     * @param otherPartition Partition of the second row
+     * @param otherRow Second row
+     * @return Negative, zero or positive value as the first row comes before, with or after the second row
+     */
+    private int compareRows(Partition partition, Object[] row, Partition otherPartition, Object[] otherRow) {
+
+        for (int i = 0; i < partition.sortColumns.length; i++) {
+
+            int result = AvisClientDao.compareValues(row[partition.sortColumns[i]],
+                    otherRow[otherPartition.sortColumns[i]]);
+
+            if (result != 0) {
+                return this.partitionOrderDescending.get(i) ? -result : result;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Compare two column values, null values coming first
+     * 
+     * @param value First value
+     * @param otherValue Second value
+     * @return Negative, zero or positive value as the first value is less than, equal to or greater than the second
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object value, Object otherValue) {
+
+        if (value == null) {
+            return (otherValue == null) ? 0 : -1;
+        } else if (otherValue == null) {
+            return 1;
+        }
+
+        // Numbers of different classes are compared by value, NaN and infinite values having no decimal form
+        if ((value instanceof Number) && (otherValue instanceof Number)
+                && (value.getClass() != otherValue.getClass())) {
+            if (AvisClientDao.isDecimal((Number) value) && AvisClientDao.isDecimal((Number) otherValue)) {
+                return new BigDecimal(value.toString()).compareTo(new BigDecimal(otherValue.toString()));
+            }
+            return Double.compare(((Number) value).doubleValue(), ((Number) otherValue).doubleValue());
+        }
+
+        // Values which cannot be ordered are compared as strings
+        if (!(value instanceof Comparable) || (value.getClass() != otherValue.getClass())) {
+            return value.toString().compareTo(otherValue.toString());
+        }
+
+        return ((Comparable<Object>) value).compareTo(otherValue);
+    }
+
+    /**
+     * Check if a number can be converted to a decimal value
+     * 
+     * @param number Number
+     * @return Whether the number is neither NaN nor infinite
+     */
+    private static boolean isDecimal(Number number) {
+
+        if ((number instanceof Double) || (number instanceof Float)) {
+            return !Double.isNaN(number.doubleValue()) && !Double.isInfinite(number.doubleValue());
+        }
+
+        return true;
+    }
+
+    /**
+     * Report the number of requests for payment read by each partition to the listener
+     * 
+     * @param partitions Partitions of the date range
+     * @param listener Listener receiving the progress of the partitions
+     */
+    private void reportProgress(Partition[] partitions, AvisClientFetchListener listener) {
+
+        int[] noAvisClients = new int[partitions.length];
+        boolean[] completed = new boolean[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            noAvisClients[i] = partitions[i].count;
+            completed[i] = partitions[i].completed;
+        }
+
+        listener.partitionsProgressed(noAvisClients, completed);
+    }
+
+    /**
+     * Run a compiled query on the source database
+     * 
+     * @param conn Connection to the source database
+     * @param compiledSql Compiled SQL query
+     * @param sqlParameters Values of the parameters of the SQL query
+     * @return Result set of the query
+     * @throws SQLException
+     * @throws SqlParameterNotDefinedException
+     */
+    private ResultSet executeQuery(Connection conn, CompiledSql compiledSql, HashMap<String, Object> sqlParameters)
+            throws SQLException, SqlParameterNotDefinedException {
+        return this.prepareQuery(conn, compiledSql, sqlParameters).executeQuery();
+    }
+
+    /**
+     * Prepare a compiled query on the source database and bind its parameters
+     * 
+     * @param conn Connection to the source database
+     * @param compiledSql Compiled SQL query
+     * @param sqlParameters Values of the parameters of the SQL query
+     * @return Prepared statement ready to be executed
+     * @throws SQLException
+     * @throws SqlParameterNotDefinedException
+     */
+    private PreparedStatement prepareQuery(Connection conn, CompiledSql compiledSql,
+            HashMap<String, Object> sqlParameters) throws SQLException, SqlParameterNotDefinedException {
+
+        // Forward only statement so that the driver can stream the rows instead of buffering the result set
+        PreparedStatement statement = StatementCache.prepare(conn, compiledSql.getSql());
+
+        // Clear any limit on the number of rows left by a previous use of the cached statement
+        statement.setMaxRows(0);
+
+        // MySQL only streams rows when the fetch size is Integer.MIN_VALUE unless cursor fetch is enabled
+        if (this.jdbc.startsWith("jdbc:mysql:") && !this.jdbc.contains("useCursorFetch=true")) {
+            statement.setFetchSize(Integer.MIN_VALUE);
+        } else {
+            statement.setFetchSize(this.fetchSize);
+        }
+
+        // Bind the parameters of the query
+        compiledSql.bind(statement, sqlParameters);
+
+        return statement;
+    }
+
+    /**
+     * Create a request for payment object using the current row of the given result set
+     * 
+     * @param resultSet Result set positioned on the row of the request for payment
+     * @param columnLayout Layout of the result set columns
+     * @param batch Batch in which the data of the request for payment is stored
+     * @param batchColumns Position in the batch of each attribute column of the result set
+     * @return Request for payment object
+     * @throws SQLException
+     */
+    private AvisClient createAvisClient(ResultSet resultSet, ColumnLayout columnLayout, AvisClientBatch batch,
+            int[] batchColumns) throws SQLException {
+
+        // Add the request for payment to the batch
+        int row = batch.addRow(columnLayout.readId(resultSet));
+
+        // Build the property list of the request for payment object
+        for (int i = 0; i < columnLayout.getColumnCount(); i++) {
+
+            // Get the value associated with the column
+            batch.setValue(row, batchColumns[i], columnLayout.read(resultSet, i));
+        }
+
+        // The row only holds the columns displayed in the grid when the loading of the other columns is deferred
+        batch.setDetailLoaded(row, !this.lazyLoading);
+
+        // Create instance of request for payment object
+        return new AvisClient(batch, row);
+    }
+
+    /**
+     * The ChunkBuffer class gathers the requests for payment fetched and delivers them to the listener by chunks
+     */
+    private class ChunkBuffer {
+
+        private ArrayList<AvisClient> chunk;
+        private int count;
+        private long lastDeliveryTime;
+        private AvisClientFetchListener listener;
+
+        /**
+         * ChunkBuffer constructor
+         * 
+         * @param listener Listener receiving the chunks of request for payment objects
+         */
+        ChunkBuffer(AvisClientFetchListener listener) {
+
+            // Initialise class attributes
+            this.chunk = new ArrayList<>();
+            this.count = 0;
+            this.lastDeliveryTime = System.currentTimeMillis();
+            this.listener = listener;
+        }
+
+        /**
+         * Add a request for payment to the current chunk
+         * 
+         * @param avisClient Request for payment
+         */
+        void add(AvisClient avisClient) {
+
+            this.chunk.add(avisClient);
+            this.count++;
+
+            // Deliver the chunk when it is full or when the first rows have been waiting for too long
+            if ((this.chunk.size() >= fetchSize)
+                    || (System.currentTimeMillis() - this.lastDeliveryTime >= AvisClientDao.MAX_CHUNK_DELAY)) {
+                this.flush();
+            }
+        }
+
+        /**
+         * Deliver the current chunk to the listener
+         */
+        void flush() {
+
+            if (!this.chunk.isEmpty() && !this.listener.isFetchCancelled()) {
+                this.listener.avisClientsFetched(this.chunk);
+            }
+
+            this.chunk = new ArrayList<>();
+            this.lastDeliveryTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The Partition class reads the requests for payment of a date sub-range on its own connection to the source
+     * database, the rows being handed over by chunks to the thread merging the partitions
+     */
+    private class Partition implements Runnable {
+
+        private int[] batchColumns;
+        private volatile boolean cancelled;
+        private ArrayList<Object[]> chunk;
+        private BlockingQueue<ArrayList<Object[]>> chunks;
+        private volatile ColumnLayout columnLayout;
+        private CompiledSql compiledSql;
+        private volatile boolean completed;
+        private ConnectionPool connectionPool;
+        private volatile int count;
+        private volatile Exception error;
+        private boolean exhausted;
+        private int position;
+        private int[] sortColumns;
+        private HashMap<String, Object> sqlParameters;
+        private volatile Statement statement;
+
+        /**
+         * Check if all the rows of the partition have been merged
+         * 
+         * @return Whether all the rows of the partition have been merged
+         */
+        boolean isExhausted() {
+            return this.exhausted;
+        }
+
+        /**
+         * Partition constructor
+         * 
+         * @param connectionPool Connection pool from which the connection of the partition is borrowed
+         * @param compiledSql Compiled SQL query
+         * @param sqlParameters Values of the parameters of the SQL query for the date sub-range
+         */
+        Partition(ConnectionPool connectionPool, CompiledSql compiledSql, HashMap<String, Object> sqlParameters) {
+
+            // Initialise class attributes
+            this.batchColumns = null;
+            this.cancelled = false;
+            this.chunk = null;
+            this.chunks = new ArrayBlockingQueue<>(AvisClientDao.MAX_QUEUED_CHUNKS);
+            this.columnLayout = null;
+            this.compiledSql = compiledSql;
+            this.completed = false;
+            this.connectionPool = connectionPool;
+            this.count = 0;
+            this.error = null;
+            this.exhausted = false;
+            this.position = 0;
+            this.sortColumns = null;
+            this.sqlParameters = sqlParameters;
+            this.statement = null;
+        }
+
+        /**
+         * Read the rows of the date sub-range
+         */
+        @Override
+        public void run() {
+
+            try {
+
+                // Check if the fetching was cancelled before the partition started
+                if (this.cancelled) {
+                    return;
+                }
+
+                // Borrow a connection to the database server from the connection pool
+                Connection conn = this.connectionPool.getConnection();
+
+                try {
+
+                    // Keep the statement so that its execution can be cancelled
+                    PreparedStatement preparedStatement = prepareQuery(conn, this.compiledSql, this.sqlParameters);
+                    this.statement = preparedStatement;
+                    if (this.cancelled) {
+                        return;
+                    }
+
+                    ResultSet resultSet = preparedStatement.executeQuery();
+
+                    try {
+
+                        // Resolve the layout of the result set columns once for all the rows
+                        ColumnLayout layout = new ColumnLayout(resultSet.getMetaData());
+                        this.columnLayout = layout;
+
+                        // Hand the rows over by chunks, the request for payment ID being the first value of a row
+                        ArrayList<Object[]> rows = new ArrayList<>();
+                        while (!this.cancelled && resultSet.next()) {
+
+                            Object[] row = new Object[layout.getColumnCount() + 1];
+                            row[0] = layout.readId(resultSet);
+                            for (int i = 0; i < layout.getColumnCount(); i++) {
+                                row[i + 1] = layout.read(resultSet, i);
+                            }
+                            rows.add(row);
+                            this.count++;
+
+                            if (rows.size() >= fetchSize) {
+                                this.handOver(rows);
+                                rows = new ArrayList<>();
+                            }
+                        }
+
+                        if (!rows.isEmpty()) {
+                            this.handOver(rows);
+                        }
+
+                    } finally {
+
+                        // Close the result set while keeping the prepared statement for the next fetch
+                        resultSet.close();
+                    }
+
+                } finally {
+
+                    // Return the connection to the pool
+                    this.statement = null;
+                    conn.close();
+                }
+
+            } catch (SQLException | SqlParameterNotDefinedException | RuntimeException ex) {
+
+                // Errors raised by the cancellation of the statement are expected
+                if (!this.cancelled) {
+                    this.error = ex;
+                }
+
+            } finally {
+
+                // Indicate the end of the partition with an empty chunk
+                this.completed = true;
+                this.handOver(new ArrayList<Object[]>());
+            }
+        }
+
+        /**
+         * Queue a chunk of rows for the merging thread, waiting while the queue is full until the partition is
+         * cancelled
+         * 
+         * @param rows Chunk of rows
+         */
+        private void handOver(ArrayList<Object[]> rows) {
+
+            try {
+                boolean queued = false;
+                while (!queued && !this.cancelled) {
+                    queued = this.chunks.offer(rows, AvisClientDao.MAX_CHUNK_DELAY, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException ex) {
+                this.cancelled = true;
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Stop reading the rows of the partition and cancel the statement being executed
+         */
+        void cancel() {
+
+            this.cancelled = true;
+
+            Statement runningStatement = this.statement;
+            if (runningStatement != null) {
+                try {
+                    runningStatement.cancel();
+                } catch (SQLException ex) {
+
+                    // Write error message to log file
+                    Smurf.logController.log(Level.WARNING, AvisClientDao.class.getSimpleName(),
+                            ex.getLocalizedMessage());
+                }
+            }
+        }
+
+        /**
+         * Get the next row of the partition without consuming it, waiting for a short while if no row is available
+         * 
+         * @return Next row of the partition or null if no row is available yet or if all the rows have been merged
+         * @throws SQLException
+         * @throws SqlParameterNotDefinedException
+         */
+        Object[] peek() throws SQLException, SqlParameterNotDefinedException {
+
+            // Take the next chunk of rows when the current one has been merged
+            while (!this.exhausted && ((this.chunk == null) || (this.position >= this.chunk.size()))) {
+
+                try {
+                    this.chunk = this.chunks.poll(AvisClientDao.MAX_CHUNK_DELAY, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("The fetching of requests for payment was interrupted.", ex);
+                }
+                this.position = 0;
+
+                // No row is available yet
+                if (this.chunk == null) {
+                    return null;
+                }
+
+                // An empty chunk indicates the end of the partition
+                if (this.chunk.isEmpty()) {
+
+                    this.exhausted = true;
+
+                    // Report the error raised while reading the partition
+                    if (this.error instanceof SQLException) {
+                        throw (SQLException) this.error;
+                    } else if (this.error instanceof SqlParameterNotDefinedException) {
+                        throw (SqlParameterNotDefinedException) this.error;
+                    } else if (this.error != null) {
+                        throw (RuntimeException) this.error;
+                    }
+                }
+            }
+
+            return this.exhausted ? null : this.chunk.get(this.position);
+        }
+
+        /**
+         * Consume the row returned by peek
+         */
+        void advance() {
+            this.position++;
+        }
     }
 }
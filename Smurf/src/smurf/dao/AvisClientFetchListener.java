@@ -0,0 +1,36 @@
+package smurf.dao;
+
+import java.util.ArrayList;
+import smurf.model.AvisClient;
+
+/**
+ * The AvisClientFetchListener interface is implemented by classes that need to receive the requests for payment
+ * records in chunks while they are being read from the database by AvisClientDao
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public interface AvisClientFetchListener {
+
+    /**
+     * Receive a chunk of request for payment objects that have just been read from the database
+     *
+     * @param avisClients Chunk of request for payment objects in the order returned by the database
+     */
+    public void avisClientsFetched(ArrayList<AvisClient> avisClients);
+
+    /**
+     * Receive the progress of the partitions when the date range is fetched by several partitions at the same time
+     *
+     * @param noAvisClients Number of requests for payment read so far by each partition
+     * @param completed Whether each partition has been completely read
+     */
+    public void partitionsProgressed(int[] noAvisClients, boolean[] completed);
+
+    /**
+     * Whether the fetching of requests for payment must be stopped
+     *
+     * @return Whether the fetching of requests for payment has been cancelled
+     */
+    public boolean isFetchCancelled();
+}
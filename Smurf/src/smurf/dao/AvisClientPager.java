@@ -0,0 +1,443 @@
+package smurf.dao;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import smurf.Smurf;
+import smurf.exceptions.ConfigurationFormatException;
+import smurf.exceptions.DatesNotSpecifiedException;
+import smurf.exceptions.EndDateNotSpecifiedException;
+import smurf.exceptions.SqlParameterNotDefinedException;
+import smurf.exceptions.StartDateNotSpecifiedException;
+import smurf.model.AvisClient;
+import smurf.model.SmurfOutput;
+
+/**
+ * The AvisClientPager class fetches the pages of requests for payment from the database on demand, the requests for
+ * payment being sorted by ID so that a page is located by the ID of the last request for payment of the previous page.
+ * The most recently used pages are kept in memory and the pages next to the displayed page are fetched in the
+ * background. The selection is kept as a default status and the set of IDs whose status differs from it, so that all
+ * the requests for payment can be selected, deselected or inverted without fetching them. The documents generated for
+ * the requests for payment are kept by ID and attached again to the requests for payment of the pages fetched later.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class AvisClientPager {
+
+    public static final int MAX_CACHED_PAGES = 16;
+
+    private AvisClientDao avisClientDao;
+    private int maxRows;
+    private int noAvisClients;
+    private TreeMap<Integer, Long> pageBoundaries;
+    private LinkedHashMap<Integer, ArrayList<AvisClient>> pages;
+    private HashSet<Integer> pendingPages;
+    private ExecutorService prefetchExecutor;
+    private boolean selectedByDefault;
+    private HashMap<Long, SmurfOutput> smurfOutputs;
+    private HashSet<Long> toggledIds;
+
+    /**
+     * Get the number of requests for payment within the start and end dates
+     *
+     * @return Number of requests for payment
+     */
+    public int getAvisClientCount() {
+        return this.noAvisClients;
+    }
+
+    /**
+     * Get the number of pages
+     *
+     * @return Number of pages
+     */
+    public int getPageCount() {
+        return (this.noAvisClients + this.maxRows - 1) / this.maxRows;
+    }
+
+    /**
+     * Get the number of requests for payment selected for the generation of documents
+     *
+     * @return Number of selected requests for payment
+     */
+    public synchronized int getSelectedCount() {
+        return this.selectedByDefault ? this.noAvisClients - this.toggledIds.size() : this.toggledIds.size();
+    }
+
+    /**
+     * Get the number of selected requests for payment whose documents have been generated
+     *
+     * @param excludedIds IDs of the requests for payment which must not be counted
+     * @return Number of selected requests for payment having a document
+     */
+    public synchronized int getSelectedDocumentCount(Set<Long> excludedIds) {
+
+        int noDocuments = 0;
+        for (Long id : this.smurfOutputs.keySet()) {
+            if ((this.selectedByDefault != this.toggledIds.contains(id)) && !excludedIds.contains(id)) {
+                noDocuments++;
+            }
+        }
+
+        return noDocuments;
+    }
+
+    /**
+     * AvisClientPager constructor
+     *
+     * @param maxRows Number of requests for payment per page
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    public AvisClientPager(int maxRows) throws SQLException, IOException, ConfigurationFormatException,
+            DatesNotSpecifiedException, StartDateNotSpecifiedException, EndDateNotSpecifiedException,
+            SqlParameterNotDefinedException {
+
+        // Initialise class attributes
+        this.avisClientDao = new AvisClientDao();
+        this.maxRows = Math.max(1, maxRows);
+        this.pageBoundaries = new TreeMap<>();
+        this.pendingPages = new HashSet<>();
+        this.selectedByDefault = true;
+        this.smurfOutputs = new HashMap<>();
+        this.toggledIds = new HashSet<>();
+
+        // Least recently used pages are discarded when the cache is full
+        this.pages = new LinkedHashMap<Integer, ArrayList<AvisClient>>(AvisClientPager.MAX_CACHED_PAGES, 0.75f,
+                true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ArrayList<AvisClient>> eldest) {
+                return this.size() > AvisClientPager.MAX_CACHED_PAGES;
+            }
+        };
+
+        // Background thread fetching the pages next to the displayed page
+        this.prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AvisClientPager");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        // The first page starts with the lowest ID
+        this.pageBoundaries.put(0, Long.MIN_VALUE);
+
+        // Count the requests for payment to setup the pager
+        this.noAvisClients = this.avisClientDao.countAvisClients();
+    }
+
+    /**
+     * Get a page of requests for payment and fetch the previous and next pages in the background
+     *
+     * @param pageNo Page number starting from zero
+     * @return Requests for payment of the page
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    public ArrayList<AvisClient> getPage(int pageNo) throws SQLException, IOException, ConfigurationFormatException,
+            DatesNotSpecifiedException, StartDateNotSpecifiedException, EndDateNotSpecifiedException,
+            SqlParameterNotDefinedException {
+
+        ArrayList<AvisClient> page = this.loadPage(pageNo);
+
+        // Fetch the neighbouring pages before they are requested
+        this.prefetch(pageNo + 1);
+        this.prefetch(pageNo - 1);
+
+        return page;
+    }
+
+    /**
+     * Get a page of requests for payment when it is in the cache, the previous and next pages being fetched in the
+     * background
+     *
+     * @param pageNo Page number starting from zero
+     * @return Requests for payment of the page or null if the page has to be fetched from the database
+     */
+    public ArrayList<AvisClient> getCachedPage(int pageNo) {
+
+        ArrayList<AvisClient> page;
+        synchronized (this) {
+            page = this.pages.get(pageNo);
+        }
+
+        // Fetch the neighbouring pages before they are requested
+        if (page != null) {
+            this.prefetch(pageNo + 1);
+            this.prefetch(pageNo - 1);
+        }
+
+        return page;
+    }
+
+    /**
+     * Record whether a request for payment is selected for the generation of documents. The selection is kept apart
+     * from the pages so that it is not lost when a page is discarded from the cache.
+     *
+     * @param avisClient Request for payment
+     */
+    public synchronized void updateSelection(AvisClient avisClient) {
+
+        if (avisClient.getGenerateDocument() == this.selectedByDefault) {
+            this.toggledIds.remove(avisClient.getIdAvis().longValue());
+        } else {
+            this.toggledIds.add(avisClient.getIdAvis().longValue());
+        }
+    }
+
+    /**
+     * Select or deselect all the requests for payment for the generation of documents
+     *
+     * @param generateDocument Generate document status of all the requests for payment
+     */
+    public synchronized void selectAll(boolean generateDocument) {
+
+        this.selectedByDefault = generateDocument;
+        this.toggledIds.clear();
+
+        // Update the requests for payment of the cached pages
+        this.restoreCachedPages();
+    }
+
+    /**
+     * Invert the selection of the requests for payment for the generation of documents
+     */
+    public synchronized void invertSelection() {
+
+        this.selectedByDefault = !this.selectedByDefault;
+
+        // Update the requests for payment of the cached pages
+        this.restoreCachedPages();
+    }
+
+    /**
+     * Get the requests for payment of a page which are selected for the generation of documents, so that the selected
+     * requests for payment are walked page by page instead of being fetched all at once
+     *
+     * @param pageNo Page number starting from zero
+     * @return Selected requests for payment of the page
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    public ArrayList<AvisClient> getSelectedAvisClients(int pageNo) throws SQLException, IOException,
+            ConfigurationFormatException, DatesNotSpecifiedException, StartDateNotSpecifiedException,
+            EndDateNotSpecifiedException, SqlParameterNotDefinedException {
+
+        ArrayList<AvisClient> selectedAvisClients = new ArrayList<>();
+        for (AvisClient avisClient : this.loadPage(pageNo)) {
+            if (avisClient.getGenerateDocument()) {
+                selectedAvisClients.add(avisClient);
+            }
+        }
+
+        return selectedAvisClients;
+    }
+
+    /**
+     * Keep the documents generated for requests for payment, so that they are attached again when the pages of the
+     * requests for payment are fetched from the database later on
+     *
+     * @param avisClients Requests for payment whose documents may have been generated
+     */
+    public synchronized void keepSmurfOutputs(List<AvisClient> avisClients) {
+
+        for (AvisClient avisClient : avisClients) {
+            if (avisClient.getSmurfOutput() != null) {
+                this.smurfOutputs.put(avisClient.getIdAvis().longValue(), avisClient.getSmurfOutput());
+            }
+        }
+
+        // Update the requests for payment of the cached pages
+        this.restoreCachedPages();
+    }
+
+    /**
+     * Forget the documents generated for the requests for payment
+     */
+    public synchronized void clearSmurfOutputs() {
+
+        this.smurfOutputs.clear();
+
+        // Update the requests for payment of the cached pages
+        this.restoreCachedPages();
+    }
+
+    /**
+     * Stop fetching pages in the background and discard the cached pages
+     */
+    public synchronized void close() {
+
+        this.prefetchExecutor.shutdownNow();
+        this.pages.clear();
+    }
+
+    /**
+     * Get a page of requests for payment from the cache or from the database
+     *
+     * @param pageNo Page number starting from zero
+     * @return Requests for payment of the page
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    private ArrayList<AvisClient> loadPage(int pageNo) throws SQLException, IOException,
+            ConfigurationFormatException, DatesNotSpecifiedException, StartDateNotSpecifiedException,
+            EndDateNotSpecifiedException, SqlParameterNotDefinedException {
+
+        // Check if the page is in the cache
+        synchronized (this) {
+            if (this.pages.containsKey(pageNo)) {
+                return this.pages.get(pageNo);
+            }
+        }
+
+        ArrayList<AvisClient> page;
+        Long afterId;
+
+        // Queries on the database are made one at a time since the DAO is shared with the prefetching thread
+        synchronized (this.avisClientDao) {
+
+            // The page may have been fetched in the background in the meantime
+            synchronized (this) {
+                if (this.pages.containsKey(pageNo)) {
+                    return this.pages.get(pageNo);
+                }
+            }
+
+            // Locate the page from the closest known page before it
+            Map.Entry<Integer, Long> boundary;
+            synchronized (this) {
+                boundary = this.pageBoundaries.floorEntry(pageNo);
+            }
+            if (boundary.getKey() == pageNo) {
+                afterId = boundary.getValue();
+            } else {
+                afterId = this.avisClientDao.getAvisClientIdAfter(boundary.getValue(),
+                        (pageNo - boundary.getKey()) * this.maxRows);
+            }
+
+            // The page is past the last request for payment
+            if (afterId == null) {
+                return new ArrayList<>();
+            }
+
+            page = this.avisClientDao.getAvisClientPage(afterId, this.maxRows);
+        }
+
+        synchronized (this) {
+
+            // Restore the selection and the documents of the requests for payment
+            for (AvisClient avisClient : page) {
+                avisClient.setGenerateDocument(this.isSelected(avisClient));
+                avisClient.setSmurfOutput(this.smurfOutputs.get(avisClient.getIdAvis().longValue()));
+            }
+
+            // Remember where the page and the next page start
+            this.pageBoundaries.put(pageNo, afterId);
+            if (!page.isEmpty()) {
+                this.pageBoundaries.put(pageNo + 1, page.get(page.size() - 1).getIdAvis().longValue());
+            }
+
+            this.pages.put(pageNo, page);
+        }
+
+        return page;
+    }
+
+    /**
+     * Check whether a request for payment is selected for the generation of documents
+     *
+     * @param avisClient Request for payment
+     * @return Whether the request for payment is selected
+     */
+    private boolean isSelected(AvisClient avisClient) {
+        return this.selectedByDefault != this.toggledIds.contains(avisClient.getIdAvis().longValue());
+    }
+
+    /**
+     * Apply the selection and the documents kept to the requests for payment of the cached pages
+     */
+    private void restoreCachedPages() {
+
+        for (ArrayList<AvisClient> page : this.pages.values()) {
+            for (AvisClient avisClient : page) {
+                avisClient.setGenerateDocument(this.isSelected(avisClient));
+                avisClient.setSmurfOutput(this.smurfOutputs.get(avisClient.getIdAvis().longValue()));
+            }
+        }
+    }
+
+    /**
+     * Fetch a page in the background unless it is already in the cache or being fetched
+     *
+     * @param pageNo Page number starting from zero
+     */
+    private synchronized void prefetch(final int pageNo) {
+
+        // Check if the page exists and still has to be fetched
+        if ((pageNo < 0) || (pageNo >= this.getPageCount()) || this.pages.containsKey(pageNo)
+                || this.pendingPages.contains(pageNo) || this.prefetchExecutor.isShutdown()) {
+            return;
+        }
+
+        this.pendingPages.add(pageNo);
+        this.prefetchExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+                    loadPage(pageNo);
+                } catch (SQLException | IOException | ConfigurationFormatException | DatesNotSpecifiedException
+                        | StartDateNotSpecifiedException | EndDateNotSpecifiedException
+                        | SqlParameterNotDefinedException ex) {
+
+                    // The page will be fetched again when it is displayed
+                    Smurf.logController.log(Level.WARNING, AvisClientPager.class.getSimpleName(),
+                            ex.getLocalizedMessage());
+
+                } finally {
+
+                    synchronized (AvisClientPager.this) {
+                        pendingPages.remove(pageNo);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,184 @@
+package smurf.dao;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import smurf.Smurf;
+
+/**
+ * The ColumnLayout class describes the columns of the result set of the request for payment query. It is built once
+ * from the result set metadata so that the rows can be read by column index without any per row metadata or column
+ * label lookup.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class ColumnLayout {
+
+    private int idColumnIndex;
+    private int[] columnIndexes;
+    private String[] columnLabels;
+    private int[] columnTypes;
+    private ColumnReader[] columnReaders;
+
+    /**
+     * Get the number of attribute columns, the request for payment ID column excluded
+     *
+     * @return Number of attribute columns
+     */
+    public int getColumnCount() {
+        return this.columnLabels.length;
+    }
+
+    /**
+     * Get the label of an attribute column
+     *
+     * @param column Attribute column position
+     * @return Column label
+     */
+    public String getColumnLabel(int column) {
+        return this.columnLabels[column];
+    }
+
+    /**
+     * Get the JDBC type of an attribute column
+     *
+     * @param column Attribute column position
+     * @return JDBC type as defined in java.sql.Types
+     */
+    public int getColumnType(int column) {
+        return this.columnTypes[column];
+    }
+
+    /**
+     * ColumnLayout constructor
+     *
+     * @param rsmd Metadata of the request for payment result set
+     * @throws SQLException
+     */
+    public ColumnLayout(ResultSetMetaData rsmd) throws SQLException {
+
+        // Initialise class attributes
+        this.idColumnIndex = -1;
+        ArrayList<Integer> indexes = new ArrayList<>();
+
+        // Scan the result set columns
+        for (int i = 1; i < rsmd.getColumnCount() + 1; i++) {
+
+            // Locate the request for payment ID column
+            if ((this.idColumnIndex == -1) && rsmd.getColumnLabel(i).equals(Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME)) {
+                this.idColumnIndex = i;
+            }
+
+            // Check that we are not adding the ID column to the property list
+            if (!rsmd.getColumnName(i).equals(Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME)) {
+                indexes.add(i);
+            }
+        }
+
+        // The request for payment ID column is mandatory
+        if (this.idColumnIndex == -1) {
+            throw new SQLException("The " + Smurf.REQUEST_FOR_PAYMENT_ID_COL_NAME + " column is missing from the "
+                    + "result set of the request for payment query.");
+        }
+
+        // Build the description of each attribute column
+        this.columnIndexes = new int[indexes.size()];
+        this.columnLabels = new String[indexes.size()];
+        this.columnTypes = new int[indexes.size()];
+        this.columnReaders = new ColumnReader[indexes.size()];
+        for (int i = 0; i < indexes.size(); i++) {
+            this.columnIndexes[i] = indexes.get(i);
+            this.columnLabels[i] = rsmd.getColumnLabel(this.columnIndexes[i]);
+            this.columnTypes[i] = rsmd.getColumnType(this.columnIndexes[i]);
+            this.columnReaders[i] = ColumnLayout.getColumnReader(this.columnTypes[i]);
+        }
+    }
+
+    /**
+     * Get the reader suitable for the given JDBC column type
+     *
+     * @param columnType JDBC type as defined in java.sql.Types
+     * @return Column reader
+     */
+    private static ColumnReader getColumnReader(int columnType) {
+
+        switch (columnType) {
+
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return ColumnReader.STRING_READER;
+
+            default:
+                return ColumnReader.OBJECT_READER;
+        }
+    }
+
+    /**
+     * Read the request for payment ID of the current row
+     *
+     * @param resultSet Result set positioned on a row
+     * @return Request for payment ID
+     * @throws SQLException
+     */
+    public long readId(ResultSet resultSet) throws SQLException {
+        return resultSet.getLong(this.idColumnIndex);
+    }
+
+    /**
+     * Read the value of an attribute column of the current row
+     *
+     * @param resultSet Result set positioned on a row
+     * @param column Attribute column position
+     * @return Column value
+     * @throws SQLException
+     */
+    public Object read(ResultSet resultSet, int column) throws SQLException {
+        return this.columnReaders[column].read(resultSet, this.columnIndexes[column]);
+    }
+
+    /**
+     * The ColumnReader class reads the value of a column with the result set getter matching the column type, the
+     * values having the same classes as those returned by getObject
+     */
+    private abstract static class ColumnReader {
+
+        /**
+         * Reader for character columns
+         */
+        static final ColumnReader STRING_READER = new ColumnReader() {
+
+            @Override
+            Object read(ResultSet resultSet, int index) throws SQLException {
+                return resultSet.getString(index);
+            }
+        };
+
+        /**
+         * Reader for the other columns
+         */
+        static final ColumnReader OBJECT_READER = new ColumnReader() {
+
+            @Override
+            Object read(ResultSet resultSet, int index) throws SQLException {
+                return resultSet.getObject(index);
+            }
+        };
+
+        /**
+         * Read the value of a column
+         *
+         * @param resultSet Result set positioned on a row
+         * @param index Column index in the result set
+         * @return Column value
+         * @throws SQLException
+         */
+        abstract Object read(ResultSet resultSet, int index) throws SQLException;
+    }
+}
@@ -0,0 +1,119 @@
+package smurf.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import smurf.exceptions.SqlParameterNotDefinedException;
+
+/**
+ * The CompiledSql class holds an SQL query in which the named #SMURF#...# placeholders have been replaced by JDBC bind
+ * parameters so that the query can be run through a prepared statement
+ * 
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class CompiledSql {
+
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("#SMURF#([A-Za-z0-9_]+)#");
+    private static final Map<String, CompiledSql> compiledQueries = new HashMap<>();
+
+    private List<String> parameterNames;
+    private String sql;
+
+    /**
+     * Get the names of the bind parameters in the order in which they appear in the query
+     * 
+     * @return Names of the bind parameters
+     */
+    public List<String> getParameterNames() {
+        return this.parameterNames;
+    }
+
+    /**
+     * Get the SQL query with bind parameters
+     * 
+     * @return SQL query with bind parameters
+     */
+    public String getSql() {
+        return this.sql;
+    }
+
+    /**
+     * CompiledSql constructor
+     * 
+     * @param smurfSql SQL query containing named #SMURF#...# placeholders
+     */
+    private CompiledSql(String smurfSql) {
+
+        // Initialise class attributes
+        ArrayList<String> names = new ArrayList<>();
+        StringBuilder compiledSql = new StringBuilder(smurfSql.length());
+
+        // Replace each placeholder by a bind parameter and keep track of its name
+        Matcher matcher = CompiledSql.PLACEHOLDER_PATTERN.matcher(smurfSql);
+        int position = 0;
+        while (matcher.find()) {
+            compiledSql.append(smurfSql, position, matcher.start()).append('?');
+            names.add(matcher.group(1));
+            position = matcher.end();
+        }
+        compiledSql.append(smurfSql, position, smurfSql.length());
+
+        this.parameterNames = Collections.unmodifiableList(names);
+        this.sql = compiledSql.toString();
+    }
+
+    /**
+     * Get the compiled form of the given SQL query, which is only compiled the first time it is requested
+     * 
+     * @param smurfSql SQL query containing named #SMURF#...# placeholders
+     * @return Compiled SQL query
+     */
+    public static synchronized CompiledSql compile(String smurfSql) {
+
+        // Check if the query has already been compiled
+        CompiledSql compiledSql = CompiledSql.compiledQueries.get(smurfSql);
+        if (compiledSql == null) {
+            compiledSql = new CompiledSql(smurfSql);
+            CompiledSql.compiledQueries.put(smurfSql, compiledSql);
+        }
+
+        return compiledSql;
+    }
+
+    /**
+     * Bind the values of the named parameters to the given prepared statement
+     * 
+     * @param statement Prepared statement created from the compiled SQL query
+     * @param values Values of the named parameters
+     * @throws SQLException
+     * @throws SqlParameterNotDefinedException
+     */
+    public void bind(PreparedStatement statement, Map<String, Object> values) throws SQLException,
+            SqlParameterNotDefinedException {
+
+        // Bind the value of each parameter in the order in which they appear in the query
+        for (int i = 0; i < this.parameterNames.size(); i++) {
+
+            // Check if a value has been defined for the current parameter
+            if (!values.containsKey(this.parameterNames.get(i))) {
+                throw new SqlParameterNotDefinedException(this.parameterNames.get(i));
+            }
+
+            // Value of the current parameter
+            Object value = values.get(this.parameterNames.get(i));
+
+            if (value instanceof String) {
+                statement.setString(i + 1, (String) value);
+            } else {
+                statement.setObject(i + 1, value);
+            }
+        }
+    }
+}
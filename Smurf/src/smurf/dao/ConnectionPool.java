@@ -0,0 +1,598 @@
+package smurf.dao;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import smurf.Smurf;
+import smurf.exceptions.ConfigurationFormatException;
+import smurf.model.Configuration;
+
+/**
+ * The ConnectionPool class keeps database connections open between queries so that each database access does not have
+ * to go through the connection and authentication handshake of the database server. There is one pool for each JDBC
+ * connection string and user. Connections borrowed from a pool are returned to it when they are closed.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class ConnectionPool {
+
+    private static final long BORROW_TIMEOUT = 30000;
+    private static final int DEFAULT_IDLE_TIMEOUT = 300;
+    private static final int DEFAULT_MAX_SIZE = 4;
+    private static final long EVICTION_INTERVAL = 30000;
+    private static final int VALIDATION_TIMEOUT = 5;
+
+    private static final HashMap<String, ConnectionPool> connectionPools = new HashMap<>();
+    private static Timer evictionTimer = null;
+
+    private long borrowCount;
+    private long createdCount;
+    private long destroyedCount;
+    private LinkedList<PooledConnection> idleConnections;
+    private long idleTimeout;
+    private String jdbc;
+    private int maxSize;
+    private int openCount;
+    private String password;
+    private long timeoutCount;
+    private String username;
+    private long validationFailureCount;
+    private long waitCount;
+    private long waitTime;
+
+    /**
+     * Get the number of connections currently borrowed from the pool
+     *
+     * @return Number of borrowed connections
+     */
+    public synchronized int getActiveCount() {
+        return this.openCount - this.idleConnections.size();
+    }
+
+    /**
+     * Get the number of connections borrowed from the pool since it was created
+     *
+     * @return Number of connections borrowed
+     */
+    public synchronized long getBorrowCount() {
+        return this.borrowCount;
+    }
+
+    /**
+     * Get the number of physical connections opened by the pool
+     *
+     * @return Number of physical connections opened
+     */
+    public synchronized long getCreatedCount() {
+        return this.createdCount;
+    }
+
+    /**
+     * Get the number of physical connections closed by the pool
+     *
+     * @return Number of physical connections closed
+     */
+    public synchronized long getDestroyedCount() {
+        return this.destroyedCount;
+    }
+
+    /**
+     * Get the number of open connections waiting in the pool to be borrowed
+     *
+     * @return Number of idle connections
+     */
+    public synchronized int getIdleCount() {
+        return this.idleConnections.size();
+    }
+
+    /**
+     * Get the maximum number of connections which can be borrowed from the pool at the same time
+     *
+     * @return Maximum number of connections
+     */
+    public synchronized int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Get the number of times a connection could not be borrowed before the borrow timeout
+     *
+     * @return Number of borrow timeouts
+     */
+    public synchronized long getTimeoutCount() {
+        return this.timeoutCount;
+    }
+
+    /**
+     * Get the number of idle connections which were found to be unusable when they were borrowed
+     *
+     * @return Number of validation failures
+     */
+    public synchronized long getValidationFailureCount() {
+        return this.validationFailureCount;
+    }
+
+    /**
+     * Get the number of times a borrower had to wait for a connection to be returned to the pool
+     *
+     * @return Number of waits
+     */
+    public synchronized long getWaitCount() {
+        return this.waitCount;
+    }
+
+    /**
+     * Get the total time spent by borrowers waiting for a connection to be returned to the pool
+     *
+     * @return Total wait time in milliseconds
+     */
+    public synchronized long getWaitTime() {
+        return this.waitTime;
+    }
+
+    /**
+     * ConnectionPool constructor
+     *
+     * @param jdbc JDBC connection string
+     * @param username Database user name
+     * @param password Database user password
+     */
+    private ConnectionPool(String jdbc, String username, String password) {
+
+        // Initialise class attributes
+        this.borrowCount = 0;
+        this.createdCount = 0;
+        this.destroyedCount = 0;
+        this.idleConnections = new LinkedList<>();
+        this.idleTimeout = ConnectionPool.DEFAULT_IDLE_TIMEOUT * 1000L;
+        this.jdbc = jdbc;
+        this.maxSize = ConnectionPool.DEFAULT_MAX_SIZE;
+        this.openCount = 0;
+        this.password = password;
+        this.timeoutCount = 0;
+        this.username = username;
+        this.validationFailureCount = 0;
+        this.waitCount = 0;
+        this.waitTime = 0;
+    }
+
+    /**
+     * Get the connection pool for the given database connection settings, the pool being created the first time it is
+     * requested
+     *
+     * @param jdbc JDBC connection string
+     * @param username Database user name
+     * @param password Database user password
+     * @return Connection pool
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    public static ConnectionPool getConnectionPool(String jdbc, String username, String password) throws IOException,
+            ConfigurationFormatException {
+
+        // Maximum number of connections and idle timeout defined in the configuration settings
+        int maxSize = ConnectionPool.DEFAULT_MAX_SIZE;
+        int idleTimeout = ConnectionPool.DEFAULT_IDLE_TIMEOUT;
+
+        // Collection of Configurations memory objects
+        ArrayList<Configuration> configurations = ConfigurationDao.getConfigurationDao().getConfigurations();
+
+        // Maximum number of connections opened at the same time
+        int poolMaxIndex = configurations.indexOf(new Configuration("database.pool.max"));
+        if (poolMaxIndex > -1) {
+            if (configurations.get(poolMaxIndex).getIntVal() > 0) {
+                maxSize = configurations.get(poolMaxIndex).getIntVal();
+            }
+        }
+
+        // Number of seconds after which an unused connection is closed
+        int poolIdleIndex = configurations.indexOf(new Configuration("database.pool.idle"));
+        if (poolIdleIndex > -1) {
+            if (configurations.get(poolIdleIndex).getIntVal() > 0) {
+                idleTimeout = configurations.get(poolIdleIndex).getIntVal();
+            }
+        }
+
+        ConnectionPool connectionPool;
+
+        synchronized (ConnectionPool.class) {
+
+            // Get the pool of the connection settings or create it if it does not exist
+            String poolKey = jdbc + "\n" + username + "\n" + password;
+            connectionPool = ConnectionPool.connectionPools.get(poolKey);
+            if (connectionPool == null) {
+                connectionPool = new ConnectionPool(jdbc, username, password);
+                ConnectionPool.connectionPools.put(poolKey, connectionPool);
+            }
+
+            // Start the timer which closes connections that have not been used for a while
+            if (ConnectionPool.evictionTimer == null) {
+                ConnectionPool.evictionTimer = new Timer("Smurf connection pool eviction", true);
+                ConnectionPool.evictionTimer.schedule(new TimerTask() {
+
+                    @Override
+                    public void run() {
+                        ConnectionPool.evictIdleConnections();
+                    }
+                }, ConnectionPool.EVICTION_INTERVAL, ConnectionPool.EVICTION_INTERVAL);
+            }
+        }
+
+        // Apply the current configuration settings to the pool
+        synchronized (connectionPool) {
+            connectionPool.maxSize = maxSize;
+            connectionPool.idleTimeout = idleTimeout * 1000L;
+            connectionPool.notifyAll();
+        }
+
+        return connectionPool;
+    }
+
+    /**
+     * Close the idle connections of all the pools and write the metrics of each pool to the log file, which is done
+     * when the application is closed
+     */
+    public static void closeAll() {
+
+        // Current list of pools
+        ArrayList<ConnectionPool> pools;
+        synchronized (ConnectionPool.class) {
+            pools = new ArrayList<>(ConnectionPool.connectionPools.values());
+        }
+
+        for (ConnectionPool connectionPool : pools) {
+
+            // Close the idle connections of the pool
+            connectionPool.evict(true);
+
+            // Write pool metrics to log file
+            Smurf.logController.log(Level.INFO, ConnectionPool.class.getSimpleName(), connectionPool.toString());
+        }
+    }
+
+    /**
+     * Close the connections of all the pools which have been idle for longer than the idle timeout
+     */
+    private static void evictIdleConnections() {
+
+        // Current list of pools
+        ArrayList<ConnectionPool> pools;
+        synchronized (ConnectionPool.class) {
+            pools = new ArrayList<>(ConnectionPool.connectionPools.values());
+        }
+
+        // Close the connections idle for too long in each pool
+        for (ConnectionPool connectionPool : pools) {
+            connectionPool.evict(false);
+        }
+    }
+
+    /**
+     * Borrow a connection from the pool, opening a new connection if none is idle and the pool has not reached its
+     * maximum size. The connection must be closed to be returned to the pool.
+     *
+     * @return Database connection
+     * @throws SQLException
+     */
+    public Connection getConnection() throws SQLException {
+
+        // Time after which we stop waiting for a connection to be returned to the pool
+        long deadline = System.currentTimeMillis() + ConnectionPool.BORROW_TIMEOUT;
+
+        while (true) {
+
+            PooledConnection pooledConnection = null;
+
+            synchronized (this) {
+
+                // Wait for a connection to be returned if the pool is full and all its connections are in use
+                if (this.idleConnections.isEmpty() && (this.openCount >= this.maxSize)) {
+
+                    long waitStart = System.currentTimeMillis();
+                    this.waitCount++;
+
+                    try {
+
+                        while (this.idleConnections.isEmpty() && (this.openCount >= this.maxSize)) {
+
+                            // Check if we have been waiting for too long
+                            long remainingTime = deadline - System.currentTimeMillis();
+                            if (remainingTime <= 0) {
+                                this.timeoutCount++;
+                                throw new SQLException("No database connection became available in the pool within "
+                                        + (ConnectionPool.BORROW_TIMEOUT / 1000) + " seconds.");
+                            }
+
+                            this.wait(remainingTime);
+                        }
+
+                    } catch (InterruptedException ex) {
+
+                        // Keep the interrupted status of the thread for the caller
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("The wait for a database connection was interrupted.");
+
+                    } finally {
+                        this.waitTime += System.currentTimeMillis() - waitStart;
+                    }
+                }
+
+                // Take the most recently used idle connection or reserve a slot for a new connection
+                if (!this.idleConnections.isEmpty()) {
+                    pooledConnection = this.idleConnections.removeFirst();
+                } else {
+                    this.openCount++;
+                }
+            }
+
+            if (pooledConnection == null) {
+
+                // Open a new physical connection
+                try {
+                    pooledConnection = new PooledConnection(DriverManager.getConnection(this.jdbc, this.username,
+                            this.password));
+                } catch (SQLException | RuntimeException ex) {
+
+                    // Release the slot reserved for the connection
+                    synchronized (this) {
+                        this.openCount--;
+                        this.notifyAll();
+                    }
+
+                    throw ex;
+                }
+
+                synchronized (this) {
+                    this.createdCount++;
+                }
+
+            } else if (!this.validate(pooledConnection.physicalConnection)) {
+
+                // Discard the idle connection which can no longer be used and try again
+                synchronized (this) {
+                    this.validationFailureCount++;
+                }
+                this.destroy(pooledConnection);
+                continue;
+            }
+
+            synchronized (this) {
+                this.borrowCount++;
+            }
+
+            // Hand over the connection to the borrower
+            pooledConnection.borrowed = true;
+            return pooledConnection.proxyConnection;
+        }
+    }
+
+    /**
+     * Check that an idle connection can still be used
+     *
+     * @param conn Physical database connection
+     * @return Whether the connection can be used
+     */
+    private boolean validate(Connection conn) {
+
+        try {
+
+            try {
+
+                // Check the connection using the JDBC 4 validation method
+                return conn.isValid(ConnectionPool.VALIDATION_TIMEOUT);
+
+            } catch (AbstractMethodError ex) {
+
+                // JDBC 3 drivers such as SQLite and ojdbc14 do not implement isValid so run a trivial query instead
+                if (conn.isClosed()) {
+                    return false;
+                }
+
+                Statement statement = conn.createStatement();
+                try {
+                    statement.setQueryTimeout(ConnectionPool.VALIDATION_TIMEOUT);
+                    if (this.jdbc.startsWith("jdbc:oracle:")) {
+                        statement.executeQuery("SELECT 1 FROM DUAL").close();
+                    } else {
+                        statement.executeQuery("SELECT 1").close();
+                    }
+                } finally {
+                    statement.close();
+                }
+
+                return true;
+            }
+
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Return a borrowed connection to the pool
+     *
+     * @param pooledConnection Pooled connection
+     */
+    private void release(PooledConnection pooledConnection) {
+
+        try {
+
+            // Undo any uncommitted work left by the borrower
+            if (!pooledConnection.physicalConnection.getAutoCommit()) {
+                pooledConnection.physicalConnection.rollback();
+                pooledConnection.physicalConnection.setAutoCommit(true);
+            }
+
+        } catch (SQLException ex) {
+
+            // The connection is in an unknown state so it cannot be reused
+            this.destroy(pooledConnection);
+            return;
+        }
+
+        // Put the connection back at the head of the idle list
+        synchronized (this) {
+            pooledConnection.lastUsedTime = System.currentTimeMillis();
+            this.idleConnections.addFirst(pooledConnection);
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Close a physical connection and remove it from the pool
+     *
+     * @param pooledConnection Pooled connection
+     */
+    private void destroy(PooledConnection pooledConnection) {
+
+        // Release the prepared statements of the connection
+        StatementCache.release(pooledConnection.proxyConnection);
+
+        try {
+            pooledConnection.physicalConnection.close();
+        } catch (SQLException ex) {
+
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, ConnectionPool.class.getSimpleName(), ex.getLocalizedMessage());
+        }
+
+        synchronized (this) {
+            this.destroyedCount++;
+            this.openCount--;
+            this.notifyAll();
+        }
+    }
+
+    /**
+     * Close the idle connections which have not been used for longer than the idle timeout
+     *
+     * @param all Whether all the idle connections must be closed regardless of their idle time
+     */
+    private void evict(boolean all) {
+
+        // Idle connections to be closed
+        ArrayList<PooledConnection> evictedConnections = new ArrayList<>();
+
+        synchronized (this) {
+
+            long maxIdleTime = all ? 0 : this.idleTimeout;
+            long now = System.currentTimeMillis();
+            Iterator<PooledConnection> iterator = this.idleConnections.iterator();
+            while (iterator.hasNext()) {
+                PooledConnection pooledConnection = iterator.next();
+                if (now - pooledConnection.lastUsedTime >= maxIdleTime) {
+                    iterator.remove();
+                    evictedConnections.add(pooledConnection);
+                }
+            }
+        }
+
+        // Close the connections outside the lock so that borrowers are not held up
+        for (PooledConnection pooledConnection : evictedConnections) {
+            this.destroy(pooledConnection);
+        }
+    }
+
+    /**
+     * Get a summary of the pool metrics
+     *
+     * @return Pool metrics
+     */
+    @Override
+    public synchronized String toString() {
+        return "Connection pool " + this.jdbc + ": " + this.getActiveCount() + " active, "
+                + this.idleConnections.size() + " idle, " + this.borrowCount + " borrowed, " + this.createdCount
+                + " created, " + this.destroyedCount + " destroyed, " + this.validationFailureCount
+                + " validation failures, " + this.waitCount + " waits (" + this.waitTime + " ms), "
+                + this.timeoutCount + " timeouts";
+    }
+
+    /**
+     * The PooledConnection class holds a physical connection of the pool along with the proxy handed over to borrowers,
+     * which returns the connection to the pool instead of closing it
+     */
+    private class PooledConnection implements InvocationHandler {
+
+        private volatile boolean borrowed;
+        private long lastUsedTime;
+        private Connection physicalConnection;
+        private Connection proxyConnection;
+
+        /**
+         * PooledConnection constructor
+         *
+         * @param physicalConnection Physical database connection
+         */
+        PooledConnection(Connection physicalConnection) {
+
+            // Initialise class attributes
+            this.borrowed = false;
+            this.lastUsedTime = System.currentTimeMillis();
+            this.physicalConnection = physicalConnection;
+            this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, this);
+        }
+
+        /**
+         * Forward the calls made on the proxy connection to the physical connection
+         *
+         * @param proxy Proxy connection
+         * @param method Method called
+         * @param args Method arguments
+         * @return Method return value
+         * @throws Throwable
+         */
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            switch (method.getName()) {
+
+                case "equals":
+                    return proxy == args[0];
+
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+
+                case "toString":
+                    return "Pooled " + this.physicalConnection.toString();
+
+                case "close":
+
+                    // Return the connection to the pool the first time it is closed
+                    if (this.borrowed) {
+                        this.borrowed = false;
+                        release(this);
+                    }
+                    return null;
+
+                case "isClosed":
+                    return !this.borrowed || this.physicalConnection.isClosed();
+            }
+
+            // Check that the connection has not already been returned to the pool
+            if (!this.borrowed) {
+                throw new SQLException("The connection has already been returned to the pool.");
+            }
+
+            try {
+                return method.invoke(this.physicalConnection, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package smurf.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import org.apache.commons.codec.digest.DigestUtils;
+import smurf.Smurf;
+import smurf.exceptions.ConfigurationFormatException;
+import smurf.model.AvisClient;
+import smurf.model.SmurfOutput;
+import smurf.utilities.Utilities;
+
+/**
+ * The DocumentCache class keeps a copy of the documents generated for the requests for payment in the cache folder, so
+ * that the document of a request for payment is restored instead of being generated again when neither the request
+ * for payment nor the templates and settings the document depends on have changed. A document is found by a key which
+ * is the digest of the ID and the attributes of the request for payment and of the generation settings, the index of
+ * the cached documents being kept in the local smurf.db SQLite database. The index holds the part of the file names
+ * following the name of the documents of the request for payment, so that a restored document takes the file names of
+ * the current generation. The least recently used documents are evicted once the cached documents exceed the maximum
+ * size of the cache.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class DocumentCache {
+
+    private static final String BASE_FILE_EXTENSION = ".base";
+    private static final String DOCUMENTS_FOLDER_NAME = "documents";
+    private static final String SECONDARY_FILE_EXTENSION = ".secondary";
+
+    private static boolean tableCreated = false;
+
+    private LinkedHashMap<String, CachedDocument> documents;
+    private File documentsFolder;
+    private String generationDigest;
+    private long lastUse;
+    private long maxSize;
+    private ArrayList<String> removedKeys;
+    private long size;
+
+    /**
+     * DocumentCache constructor
+     *
+     * @param cacheFolder Folder holding the files kept from one run to the next
+     * @param maxSize Maximum size in bytes of the cached documents
+     * @param generationDigest Digest of the templates and settings the generated documents depend on
+     */
+    public DocumentCache(File cacheFolder, long maxSize, String generationDigest) {
+
+        // Initialise class attributes, the documents being iterated from the least to the most recently used
+        this.documents = new LinkedHashMap<>(16, 0.75f, true);
+        this.documentsFolder = new File(cacheFolder, DocumentCache.DOCUMENTS_FOLDER_NAME);
+        this.generationDigest = generationDigest;
+        this.lastUse = 0L;
+        this.maxSize = maxSize;
+        this.removedKeys = new ArrayList<>();
+        this.size = 0L;
+    }
+
+    /**
+     * Borrow a connection to the local cache database
+     *
+     * @return Database connection
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    private Connection getConnection() throws SQLException, IOException, ConfigurationFormatException {
+
+        // Connection to the cache database
+        Connection conn = ConnectionPool.getConnectionPool("jdbc:sqlite:" + Utilities.getCurrentWorkingDirectory()
+                + System.getProperty("file.separator") + AvisClientCache.CACHE_DATABASE_FILE_NAME, "", "")
+                .getConnection();
+
+        // Create the index table the first time the cache is used
+        synchronized (DocumentCache.class) {
+
+            if (!DocumentCache.tableCreated) {
+
+                Statement statement = conn.createStatement();
+                try {
+                    statement.executeUpdate("CREATE TABLE IF NOT EXISTS smurf_cache_document (document_key TEXT "
+                            + "PRIMARY KEY, base_filename TEXT, secondary_filename TEXT, size INTEGER, "
+                            + "last_use INTEGER)");
+                } finally {
+                    statement.close();
+                }
+
+                DocumentCache.tableCreated = true;
+            }
+        }
+
+        return conn;
+    }
+
+    /**
+     * Load the index of the cached documents
+     *
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    public void open() throws SQLException, IOException, ConfigurationFormatException {
+
+        // Create the folder holding the copies of the documents if it does not exist
+        Utilities.createFolderIfNotExist(this.documentsFolder.getPath());
+
+        Connection conn = this.getConnection();
+        try {
+
+            // Read the index from the least to the most recently used document
+            PreparedStatement statement = StatementCache.prepare(conn, "SELECT document_key, base_filename, "
+                    + "secondary_filename, size, last_use FROM smurf_cache_document ORDER BY last_use");
+            ResultSet resultSet = statement.executeQuery();
+            try {
+                synchronized (this) {
+                    while (resultSet.next()) {
+
+                        CachedDocument document = new CachedDocument(resultSet.getString(2),
+                                resultSet.getString(3), resultSet.getLong(4));
+                        document.lastUse = resultSet.getLong(5);
+
+                        this.documents.put(resultSet.getString(1), document);
+                        this.lastUse = Math.max(this.lastUse, document.lastUse);
+                        this.size += document.size;
+                    }
+                }
+            } finally {
+                resultSet.close();
+            }
+
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Get the key of the document of a request for payment, which is unique to the request for payment and changes
+     * whenever an attribute of the request for payment or a template or setting the document depends on changes
+     *
+     * @param avisClient Request for payment whose attributes have been loaded
+     * @return Hexadecimal SHA-1 key of the document or null if the attributes cannot be serialised, in which case the
+     * document is generated without the cache
+     */
+    public String getKey(AvisClient avisClient) {
+
+        try {
+
+            // Attributes serialised in the order of their names so that the key does not depend on the order of
+            // columns
+            return DigestUtils.shaHex(this.generationDigest + "\n" + avisClient.getIdAvis() + "\n"
+                    + DigestUtils.shaHex(AvisClientCache.serialise(new TreeMap<>(avisClient.getAttributes()))));
+
+        } catch (IOException ex) {
+
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, DocumentCache.class.getSimpleName(), "The document of request for "
+                    + "payment " + avisClient.getIdAvis() + " cannot be cached: " + ex);
+
+            return null;
+        }
+    }
+
+    /**
+     * Restore the cached document having a given key in the output and temporary folders under the file names of the
+     * request for payment being generated
+     *
+     * @param key Key of the document or null if the document has no key
+     * @param documentName Name of the documents of the request for payment, without folder and extension
+     * @param outputFolder Path and name of document output folder
+     * @param tempFolder Path and name of temporary files folder
+     * @param outputFormat Base output format
+     * @return Output of the restored document or null if the document is not in the cache
+     */
+    public SmurfOutput restore(String key, String documentName, String outputFolder, String tempFolder,
+            String outputFormat) {
+
+        // Documents without a key are always generated
+        if (key == null) {
+            return null;
+        }
+
+        CachedDocument document;
+        synchronized (this) {
+
+            // Check if the document is in the cache, looking it up marking it as the most recently used document
+            document = this.documents.get(key);
+            if (document == null) {
+                return null;
+            }
+
+            document.lastUse = ++this.lastUse;
+            document.changed = true;
+        }
+
+        // Files of the document in the configured output format and in the converted format
+        String baseFilename = outputFolder + System.getProperty("file.separator") + documentName + document.baseSuffix;
+        String secondaryFilename = tempFolder + System.getProperty("file.separator") + documentName
+                + document.secondarySuffix;
+
+        try {
+
+            // Copy the cached files of the document
+            Files.copy(new File(this.documentsFolder, key + DocumentCache.BASE_FILE_EXTENSION).toPath(),
+                    new File(baseFilename).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(new File(this.documentsFolder, key + DocumentCache.SECONDARY_FILE_EXTENSION).toPath(),
+                    new File(secondaryFilename).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (IOException ex) {
+
+            // Forget the document, which is generated again
+            this.remove(key);
+
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, DocumentCache.class.getSimpleName(), "Cached document " + key
+                    + " cannot be restored: " + ex);
+
+            return null;
+        }
+
+        return new SmurfOutput(baseFilename, secondaryFilename, outputFormat);
+    }
+
+    /**
+     * Keep a copy of a generated document in the cache
+     *
+     * @param key Key of the document or null if the document has no key
+     * @param documentName Name of the documents of the request for payment, without folder and extension
+     * @param smurfOutput Output of the generated document
+     */
+    public void store(String key, String documentName, SmurfOutput smurfOutput) {
+
+        // Documents without a key are left out of the cache
+        if (key == null) {
+            return;
+        }
+
+        // Names of the files of the document, which can only be restored under other names when they start with the
+        // name of the documents of the request for payment
+        String baseFilename = new File(smurfOutput.getBaseFilename()).getName();
+        String secondaryFilename = new File(smurfOutput.getSecondaryFilename()).getName();
+        if (!baseFilename.startsWith(documentName) || !secondaryFilename.startsWith(documentName)) {
+            return;
+        }
+
+        // Cached files of the document
+        File baseFile = new File(this.documentsFolder, key + DocumentCache.BASE_FILE_EXTENSION);
+        File secondaryFile = new File(this.documentsFolder, key + DocumentCache.SECONDARY_FILE_EXTENSION);
+
+        try {
+
+            // Copy the files of the document
+            Files.copy(new File(smurfOutput.getBaseFilename()).toPath(), baseFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(new File(smurfOutput.getSecondaryFilename()).toPath(), secondaryFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (IOException ex) {
+
+            // Leave the document out of the cache
+            baseFile.delete();
+            secondaryFile.delete();
+
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, DocumentCache.class.getSimpleName(), "Document " + key
+                    + " cannot be cached: " + ex);
+
+            return;
+        }
+
+        CachedDocument document = new CachedDocument(baseFilename.substring(documentName.length()),
+                secondaryFilename.substring(documentName.length()), baseFile.length() + secondaryFile.length());
+
+        synchronized (this) {
+
+            // Add the document as the most recently used document
+            CachedDocument previousDocument = this.documents.put(key, document);
+            if (previousDocument != null) {
+                this.size -= previousDocument.size;
+            }
+
+            document.lastUse = ++this.lastUse;
+            document.changed = true;
+            this.size += document.size;
+            this.removedKeys.remove(key);
+        }
+    }
+
+    /**
+     * Evict the least recently used documents until the cached documents fit in the maximum size of the cache, and
+     * save the changes made to the index
+     *
+     * @throws SQLException
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    public synchronized void close() throws SQLException, IOException, ConfigurationFormatException {
+
+        // Evict the least recently used documents
+        Iterator<Map.Entry<String, CachedDocument>> entries = this.documents.entrySet().iterator();
+        while ((this.size > this.maxSize) && entries.hasNext()) {
+
+            Map.Entry<String, CachedDocument> entry = entries.next();
+            this.size -= entry.getValue().size;
+            this.removedKeys.add(entry.getKey());
+            entries.remove();
+        }
+
+        Connection conn = this.getConnection();
+        try {
+
+            conn.setAutoCommit(false);
+
+            // Remove the evicted documents and the documents which could not be restored from the index
+            PreparedStatement deleteStatement = StatementCache.prepare(conn, "DELETE FROM smurf_cache_document "
+                    + "WHERE document_key = ?");
+            for (String key : this.removedKeys) {
+                deleteStatement.setString(1, key);
+                deleteStatement.addBatch();
+            }
+            deleteStatement.executeBatch();
+
+            // Store the documents added or used since the index was loaded
+            PreparedStatement statement = StatementCache.prepare(conn, "INSERT OR REPLACE INTO smurf_cache_document "
+                    + "(document_key, base_filename, secondary_filename, size, last_use) VALUES (?, ?, ?, ?, ?)");
+            for (Map.Entry<String, CachedDocument> entry : this.documents.entrySet()) {
+
+                CachedDocument document = entry.getValue();
+                if (document.changed) {
+                    statement.setString(1, entry.getKey());
+                    statement.setString(2, document.baseSuffix);
+                    statement.setString(3, document.secondarySuffix);
+                    statement.setLong(4, document.size);
+                    statement.setLong(5, document.lastUse);
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+
+            conn.commit();
+
+        } catch (SQLException ex) {
+
+            // Leave the index as it was before the generation
+            conn.rollback();
+            throw ex;
+
+        } finally {
+            conn.setAutoCommit(true);
+            conn.close();
+        }
+
+        // Delete the files of the documents removed from the index
+        for (String key : this.removedKeys) {
+            new File(this.documentsFolder, key + DocumentCache.BASE_FILE_EXTENSION).delete();
+            new File(this.documentsFolder, key + DocumentCache.SECONDARY_FILE_EXTENSION).delete();
+        }
+
+        // The index now matches the cached documents
+        for (CachedDocument document : this.documents.values()) {
+            document.changed = false;
+        }
+        this.removedKeys.clear();
+    }
+
+    /**
+     * Remove a document from the cache
+     *
+     * @param key Key of the document
+     */
+    private synchronized void remove(String key) {
+
+        CachedDocument document = this.documents.remove(key);
+        if (document != null) {
+            this.size -= document.size;
+            this.removedKeys.add(key);
+        }
+    }
+
+    /**
+     * The CachedDocument class holds the entry of a cached document in the index
+     */
+    private static class CachedDocument {
+
+        private String baseSuffix;
+        private boolean changed;
+        private long lastUse;
+        private String secondarySuffix;
+        private long size;
+
+        /**
+         * CachedDocument constructor
+         *
+         * @param baseSuffix End of the file name of the document in the configured output format, following the name
+         * of the documents of the request for payment
+         * @param secondarySuffix End of the file name of the document in the converted format, following the name of
+         * the documents of the request for payment
+         * @param size Size in bytes of the cached files of the document
+         */
+        public CachedDocument(String baseSuffix, String secondarySuffix, long size) {
+
+            // Initialise class attributes
+            this.baseSuffix = baseSuffix;
+            this.changed = false;
+            this.lastUse = 0L;
+            this.secondarySuffix = secondarySuffix;
+            this.size = size;
+        }
+    }
+}
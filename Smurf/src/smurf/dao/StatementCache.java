@@ -0,0 +1,72 @@
+package smurf.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The StatementCache class keeps the prepared statements created on each database connection so that a query run more
+ * than once on the same connection reuses the statement, and the execution plan the server has associated with it
+ * 
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class StatementCache {
+
+    private static final Map<Connection, Map<String, PreparedStatement>> statements = new WeakHashMap<>();
+
+    /**
+     * Get a forward only and read only prepared statement for the given query on the given connection
+     * 
+     * @param conn Database connection
+     * @param sql SQL query with bind parameters
+     * @return Prepared statement for the query
+     * @throws SQLException
+     */
+    public static synchronized PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+
+        // Prepared statements of the connection
+        Map<String, PreparedStatement> connStatements = StatementCache.statements.get(conn);
+        if (connStatements == null) {
+            connStatements = new HashMap<>();
+            StatementCache.statements.put(conn, connStatements);
+        }
+
+        // Prepare the statement if it is not yet available on the connection
+        PreparedStatement statement = connStatements.get(sql);
+        if (statement == null) {
+            statement = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            connStatements.put(sql, statement);
+        }
+
+        return statement;
+    }
+
+    /**
+     * Close and forget the prepared statements of the given connection, which must be done before the connection is
+     * closed
+     * 
+     * @param conn Database connection
+     */
+    public static synchronized void release(Connection conn) {
+
+        // Prepared statements of the connection
+        Map<String, PreparedStatement> connStatements = StatementCache.statements.remove(conn);
+
+        if (connStatements != null) {
+
+            // Close each prepared statement
+            for (PreparedStatement statement : connStatements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException ex) {
+                    // The statement is discarded anyway
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package smurf.exceptions;
+
+/**
+ * SqlParameterNotDefinedException is the exception raised when the SQL query used to fetch requests for payment contains
+ * a parameter for which no value has been defined
+ * 
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class SqlParameterNotDefinedException extends Exception {
+
+    /**
+     * SqlParameterNotDefinedException constructor
+     * 
+     * @param paramName Name of the parameter which has not been defined
+     */
+    public SqlParameterNotDefinedException(String paramName) {
+
+        // Initialise parent class
+        super("The value of the #SMURF#" + paramName + "# parameter of the SQL query has not been defined.");
+    }
+}
@@ -0,0 +1,19 @@
+package smurf.model;
+
+/**
+ * The AttributePredicate interface is implemented by classes that decide whether a request for payment matches a
+ * criterion on the value of one of its attributes, for instance to select requests for payment in bulk
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public interface AttributePredicate {
+
+    /**
+     * Check whether the value of the attribute matches the criterion
+     *
+     * @param value Value of the attribute, which is null when the attribute is not set
+     * @return Whether the request for payment matches the criterion
+     */
+    public boolean evaluate(Object value);
+}
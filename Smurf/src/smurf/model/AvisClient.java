@@ -11,19 +11,30 @@ import smurf.exceptions.RequestForPaymentAttributeNotFoundException;
 
 /**
  * The AvisClient object represent a row in the 'avis' table merged with the corresponding row in the 'client' table -
- * it contains details about request for payments
+ * it contains details about request for payments. It is a view of a row of an AvisClientBatch, which holds the data.
  * 
  * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
  * @version 0.8
  */
 public class AvisClient {
 
-    private BigInteger idAvis;
-    private boolean generateDocument;
-    private HashMap<String, Object> attributes;
-    private NumberFormat numberFormatter;
-    private SimpleDateFormat dateFormat;
-    private SmurfOutput smurfOutput;
+    private static final ThreadLocal<SimpleDateFormat> dateFormat = new ThreadLocal<SimpleDateFormat>() {
+
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("dd-MM-yyyy");
+        }
+    };
+    private static final ThreadLocal<NumberFormat> numberFormatter = new ThreadLocal<NumberFormat>() {
+
+        @Override
+        protected NumberFormat initialValue() {
+            return NumberFormat.getCurrencyInstance(Locale.FRANCE);
+        }
+    };
+
+    private AvisClientBatch batch;
+    private int row;
 
     /**
      * Get the value of an attribute
@@ -34,13 +45,14 @@ public class AvisClient {
      */
     public Object getAttribute(String key) throws RequestForPaymentAttributeNotFoundException {
 
-        // Check if the given key does not exist in the attributes map
-        if (!this.attributes.containsKey(key)) {
+        // Check if the given key does not exist in the attributes of the request for payment
+        int column = this.batch.getColumnIndex(key);
+        if ((column == -1) || !this.batch.isDefined(this.row, column)) {
             throw new RequestForPaymentAttributeNotFoundException(key);
         }
 
         // Attribute value for the given key
-        return this.attributes.get(key);
+        return this.batch.getValue(this.row, column);
     }
 
     /**
@@ -50,17 +62,28 @@ public class AvisClient {
      * @param value Value of the attribute
      */
     public void setAttribute(String key, Object value) {
-        this.attributes.put(key, value);
+        this.batch.setValue(this.row, this.batch.addColumn(key), value);
     }
 
     /**
-     * Get the list of attributes for the current request for payment
+     * Get a copy of the list of attributes for the current request for payment
      * 
      * @return List of attributes for the current request for payment
      */
     public HashMap<String, Object> getAttributes()
     {
-        return this.attributes;
+        HashMap<String, Object> attributes = new HashMap<>();
+
+        // Copy the attributes defined for the current request for payment
+        for (String key : this.batch.getColumnNames()) {
+
+            int column = this.batch.getColumnIndex(key);
+            if (this.batch.isDefined(this.row, column)) {
+                attributes.put(key, this.batch.getValue(this.row, column));
+            }
+        }
+
+        return attributes;
     }
 
     /**
@@ -70,7 +93,17 @@ public class AvisClient {
      */
     public void setAttributes(HashMap<String, Object> attributes)
     {
-        this.attributes = attributes;
+        // Remove the attributes which are not part of the new list
+        for (String key : this.batch.getColumnNames()) {
+            if (!attributes.containsKey(key)) {
+                this.batch.removeValue(this.row, this.batch.getColumnIndex(key));
+            }
+        }
+
+        // Set the new attribute values
+        for (String key : attributes.keySet()) {
+            this.setAttribute(key, attributes.get(key));
+        }
     }
 
     /**
@@ -82,28 +115,42 @@ public class AvisClient {
      */
     public String getFormattedAttribute(String key) throws RequestForPaymentAttributeNotFoundException {
 
-        // Check if the given key does not exist in the attributes map
-        if (!this.attributes.containsKey(key)) {
-            throw new RequestForPaymentAttributeNotFoundException(key);
-        }
+        // Attribute value for the given key
+        Object value = this.getAttribute(key);
 
         // Check the attribute value type
-        if (this.attributes.get(key).getClass() == String.class) {
-            return this.attributes.get(key).toString();
-        } else if (this.attributes.get(key).getClass() == Date.class) {
-            return this.dateFormat.format((Date)this.attributes.get(key));
-        } else if (this.attributes.get(key).getClass() == BigDecimal.class) {
-            return this.numberFormatter.format((BigDecimal)this.attributes.get(key));
-        } else if ((this.attributes.get(key).getClass() == double.class)
-                || (this.attributes.get(key).getClass() == Double.class)) {
-            return this.numberFormatter.format((Double)this.attributes.get(key));
-        } else if ((this.attributes.get(key).getClass() == int.class)
-                || (this.attributes.get(key).getClass() == Integer.class)) {
-            return this.attributes.get(key).toString();
+        if (value.getClass() == String.class) {
+            return value.toString();
+        } else if (value.getClass() == Date.class) {
+            return AvisClient.dateFormat.get().format((Date)value);
+        } else if (value.getClass() == BigDecimal.class) {
+            return AvisClient.numberFormatter.get().format((BigDecimal)value);
+        } else if ((value.getClass() == double.class) || (value.getClass() == Double.class)) {
+            return AvisClient.numberFormatter.get().format((Double)value);
+        } else if ((value.getClass() == int.class) || (value.getClass() == Integer.class)) {
+            return value.toString();
         }
 
         // Attribute value for the given key if type could not be determined
-        return this.attributes.get(key).toString();
+        return value.toString();
+    }
+
+    /**
+     * Check if all the attributes of the request for payment have been loaded
+     * 
+     * @return Whether all the attributes have been loaded
+     */
+    public boolean isDetailLoaded() {
+        return this.batch.isDetailLoaded(this.row);
+    }
+
+    /**
+     * Set whether all the attributes of the request for payment have been loaded
+     * 
+     * @param detailLoaded Whether all the attributes have been loaded
+     */
+    public void setDetailLoaded(boolean detailLoaded) {
+        this.batch.setDetailLoaded(this.row, detailLoaded);
     }
 
     /**
@@ -112,7 +159,7 @@ public class AvisClient {
      * @return Generate document status of the current AvisClient instance
      */
     public boolean getGenerateDocument() {
-        return this.generateDocument;
+        return this.batch.getGenerateDocument(this.row);
     }
 
     /**
@@ -121,7 +168,7 @@ public class AvisClient {
      * @param generateDocument Generate document status of the current AvisClient instance
      */
     public void setGenerateDocument(boolean generateDocument) {
-        this.generateDocument = generateDocument;
+        this.batch.setGenerateDocument(this.row, generateDocument);
     }
 
     /**
@@ -130,7 +177,7 @@ public class AvisClient {
      * @return Unique row ID of the request for payment
      */
     public BigInteger getIdAvis() {
-        return idAvis;
+        return BigInteger.valueOf(this.batch.getId(this.row));
     }
 
     /**
@@ -139,7 +186,7 @@ public class AvisClient {
      * @param idAvis Unique row ID of the request for payment
      */
     public void setIdAvis(BigInteger idAvis) {
-        this.idAvis = idAvis;
+        this.batch.setId(this.row, idAvis.longValue());
     }
 
     /**
@@ -148,7 +195,7 @@ public class AvisClient {
      * @return SMURF output object
      */
     public SmurfOutput getSmurfOutput() {
-        return this.smurfOutput;
+        return this.batch.getSmurfOutput(this.row);
     }
 
     /**
@@ -157,22 +204,49 @@ public class AvisClient {
      * @param smurfOutput SMURF output class instance
      */
     public void setSmurfOutput(SmurfOutput smurfOutput) {
-        this.smurfOutput = smurfOutput;
+        this.batch.setSmurfOutput(this.row, smurfOutput);
     }
 
     /**
-     * AvisClient constructor
+     * Get the batch holding the data of the request for payment
+     * 
+     * @return Batch of requests for payment
+     */
+    public AvisClientBatch getBatch() {
+        return this.batch;
+    }
+
+    /**
+     * Get the position of the request for payment in its batch
+     * 
+     * @return Position of the row in the batch
+     */
+    public int getRow() {
+        return this.row;
+    }
+
+    /**
+     * AvisClient constructor for a request for payment which is not part of a batch
      * 
      * @param idAvis Unique row ID of the request for payment
      */
     public AvisClient(BigInteger idAvis) {
 
         // Initialise the attributes of the class
-        this.attributes = new HashMap<>();
-        this.dateFormat = new SimpleDateFormat("dd-MM-yyyy");
-        this.generateDocument = true;
-        this.idAvis = idAvis;
-        this.numberFormatter = NumberFormat.getCurrencyInstance(Locale.FRANCE);
-        this.smurfOutput = null;
+        this.batch = new AvisClientBatch();
+        this.row = this.batch.addRow(idAvis.longValue());
+    }
+
+    /**
+     * AvisClient constructor for a view of a row of a batch of requests for payment
+     * 
+     * @param batch Batch of requests for payment
+     * @param row Position of the row in the batch
+     */
+    public AvisClient(AvisClientBatch batch, int row) {
+
+        // Initialise the attributes of the class
+        this.batch = batch;
+        this.row = row;
     }
 }
@@ -0,0 +1,883 @@
+package smurf.model;
+
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import smurf.Smurf;
+
+/**
+ * The AvisClientBatch object holds the requests for payment fetched by a query in a columnar form. The column names
+ * are shared by all the rows, the IDs are kept in a primitive array, and each attribute column stores its values in
+ * the most compact form which gives back exactly the value that was stored: integers, decimal amounts, double amounts
+ * in cents and dates as primitive longs, and strings through a dictionary. AvisClient objects are views of the rows of
+ * a batch. The selection of the rows for the generation of documents is a bit set of the batch, together with the
+ * number of selected rows and the total amount of the selected rows which are kept up to date as the selection changes.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class AvisClientBatch {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int amountColumn;
+    private int capacity;
+    private HashMap<String, Integer> columnIndexes;
+    private ArrayList<Column> columns;
+    private BitSet detailsLoaded;
+    private BitSet generateDocuments;
+    private long[] ids;
+    private int rowCount;
+    private BigDecimal selectedAmount;
+    private int selectedCount;
+    private SmurfOutput[] smurfOutputs;
+    private BigDecimal totalAmount;
+
+    /**
+     * AvisClientBatch default constructor
+     */
+    public AvisClientBatch() {
+
+        // Initialise class attributes
+        this.amountColumn = -1;
+        this.capacity = AvisClientBatch.INITIAL_CAPACITY;
+        this.columnIndexes = new HashMap<>();
+        this.columns = new ArrayList<>();
+        this.detailsLoaded = new BitSet();
+        this.generateDocuments = new BitSet();
+        this.ids = new long[this.capacity];
+        this.rowCount = 0;
+        this.selectedAmount = BigDecimal.ZERO;
+        this.selectedCount = 0;
+        this.smurfOutputs = new SmurfOutput[this.capacity];
+        this.totalAmount = BigDecimal.ZERO;
+    }
+
+    /**
+     * Add an attribute column to the batch if it does not already exist
+     *
+     * @param name Name of the attribute
+     * @return Position of the attribute column
+     */
+    public synchronized int addColumn(String name) {
+
+        // Check if the column already exists
+        Integer column = this.columnIndexes.get(name);
+        if (column == null) {
+            column = this.columns.size();
+            this.columns.add(new Column(this.capacity));
+            this.columnIndexes.put(name, column);
+
+            // Column whose values are added up for the selected rows
+            if (name.equals(Smurf.REQUEST_FOR_PAYMENT_AMOUNT_COL_NAME)) {
+                this.amountColumn = column;
+            }
+        }
+
+        return column;
+    }
+
+    /**
+     * Get the position of an attribute column
+     *
+     * @param name Name of the attribute
+     * @return Position of the attribute column or -1 if the column does not exist
+     */
+    public synchronized int getColumnIndex(String name) {
+
+        Integer column = this.columnIndexes.get(name);
+        return (column == null) ? -1 : column;
+    }
+
+    /**
+     * Get the names of the attribute columns
+     *
+     * @return Names of the attribute columns
+     */
+    public synchronized ArrayList<String> getColumnNames() {
+        return new ArrayList<>(this.columnIndexes.keySet());
+    }
+
+    /**
+     * Add a request for payment to the batch, its document being generated by default
+     *
+     * @param id Unique row ID of the request for payment
+     * @return Position of the row in the batch
+     */
+    public synchronized int addRow(long id) {
+
+        // Grow the arrays when they are full
+        if (this.rowCount == this.capacity) {
+
+            this.capacity *= 2;
+            this.ids = Arrays.copyOf(this.ids, this.capacity);
+            this.smurfOutputs = Arrays.copyOf(this.smurfOutputs, this.capacity);
+
+            for (Column column : this.columns) {
+                column.ensureCapacity(this.capacity);
+            }
+        }
+
+        // Add the row
+        this.ids[this.rowCount] = id;
+        this.generateDocuments.set(this.rowCount);
+        this.selectedCount++;
+
+        return this.rowCount++;
+    }
+
+    /**
+     * Get the number of requests for payment in the batch
+     *
+     * @return Number of rows
+     */
+    public synchronized int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * Get the unique row ID of a request for payment
+     *
+     * @param row Position of the row
+     * @return Unique row ID of the request for payment
+     */
+    public synchronized long getId(int row) {
+        return this.ids[row];
+    }
+
+    /**
+     * Set the unique row ID of a request for payment
+     *
+     * @param row Position of the row
+     * @param id Unique row ID of the request for payment
+     */
+    public synchronized void setId(int row, long id) {
+        this.ids[row] = id;
+    }
+
+    /**
+     * Check if an attribute has been set for a request for payment
+     *
+     * @param row Position of the row
+     * @param column Position of the attribute column
+     * @return Whether the attribute has been set
+     */
+    public synchronized boolean isDefined(int row, int column) {
+        return this.columns.get(column).defined.get(row);
+    }
+
+    /**
+     * Get the value of an attribute of a request for payment
+     *
+     * @param row Position of the row
+     * @param column Position of the attribute column
+     * @return Attribute value
+     */
+    public synchronized Object getValue(int row, int column) {
+        return this.columns.get(column).get(row);
+    }
+
+    /**
+     * Set the value of an attribute of a request for payment
+     *
+     * @param row Position of the row
+     * @param column Position of the attribute column
+     * @param value Attribute value
+     */
+    public synchronized void setValue(int row, int column, Object value) {
+
+        // Amount of the row before the change
+        BigDecimal oldAmount = (column == this.amountColumn) ? this.getAmount(row) : null;
+
+        this.columns.get(column).set(row, value, this.capacity, this.rowCount);
+
+        // Update the totals with the new amount of the row
+        if (oldAmount != null) {
+            this.updateAmounts(row, oldAmount);
+        }
+    }
+
+    /**
+     * Remove the value of an attribute of a request for payment
+     *
+     * @param row Position of the row
+     * @param column Position of the attribute column
+     */
+    public synchronized void removeValue(int row, int column) {
+
+        // Amount of the row before the change
+        BigDecimal oldAmount = (column == this.amountColumn) ? this.getAmount(row) : null;
+
+        this.columns.get(column).remove(row);
+
+        // Update the totals with the new amount of the row
+        if (oldAmount != null) {
+            this.updateAmounts(row, oldAmount);
+        }
+    }
+
+    /**
+     * Check if all the attributes of a request for payment have been loaded, the rows fetched for the grid only
+     * holding the attributes displayed when the loading of the other attributes is deferred
+     *
+     * @param row Position of the row
+     * @return Whether all the attributes have been loaded
+     */
+    public synchronized boolean isDetailLoaded(int row) {
+        return this.detailsLoaded.get(row);
+    }
+
+    /**
+     * Set whether all the attributes of a request for payment have been loaded
+     *
+     * @param row Position of the row
+     * @param detailLoaded Whether all the attributes have been loaded
+     */
+    public synchronized void setDetailLoaded(int row, boolean detailLoaded) {
+        this.detailsLoaded.set(row, detailLoaded);
+    }
+
+    /**
+     * Get the generate document status of a request for payment
+     *
+     * @param row Position of the row
+     * @return Generate document status
+     */
+    public synchronized boolean getGenerateDocument(int row) {
+        return this.generateDocuments.get(row);
+    }
+
+    /**
+     * Set the generate document status of a request for payment
+     *
+     * @param row Position of the row
+     * @param generateDocument Generate document status
+     */
+    public synchronized void setGenerateDocument(int row, boolean generateDocument) {
+
+        // Check if the status changes
+        if (this.generateDocuments.get(row) == generateDocument) {
+            return;
+        }
+
+        this.generateDocuments.set(row, generateDocument);
+
+        // Update the selection totals
+        if (generateDocument) {
+            this.selectedCount++;
+            this.selectedAmount = this.selectedAmount.add(this.getAmount(row));
+        } else {
+            this.selectedCount--;
+            this.selectedAmount = this.selectedAmount.subtract(this.getAmount(row));
+        }
+    }
+
+    /**
+     * Get the number of requests for payment selected for the generation of documents
+     *
+     * @return Number of selected rows
+     */
+    public synchronized int getSelectedCount() {
+        return this.selectedCount;
+    }
+
+    /**
+     * Get the total amount of the requests for payment selected for the generation of documents
+     *
+     * @return Total amount of the selected rows
+     */
+    public synchronized BigDecimal getSelectedAmount() {
+        return this.selectedAmount;
+    }
+
+    /**
+     * Get the position of the next request for payment selected for the generation of documents
+     *
+     * @param fromRow Position of the row from which the search starts
+     * @return Position of the next selected row or -1 if there is none
+     */
+    public synchronized int nextSelectedRow(int fromRow) {
+
+        int row = this.generateDocuments.nextSetBit(fromRow);
+        return (row < this.rowCount) ? row : -1;
+    }
+
+    /**
+     * Select or deselect all the requests for payment for the generation of documents
+     *
+     * @param generateDocument Generate document status of all the rows
+     */
+    public synchronized void setAllGenerateDocuments(boolean generateDocument) {
+
+        this.generateDocuments.set(0, this.rowCount, generateDocument);
+        this.selectedCount = generateDocument ? this.rowCount : 0;
+        this.selectedAmount = generateDocument ? this.totalAmount : BigDecimal.ZERO;
+    }
+
+    /**
+     * Invert the selection of the requests for payment for the generation of documents
+     */
+    public synchronized void invertGenerateDocuments() {
+
+        this.generateDocuments.flip(0, this.rowCount);
+        this.selectedCount = this.rowCount - this.selectedCount;
+        this.selectedAmount = this.totalAmount.subtract(this.selectedAmount);
+    }
+
+    /**
+     * Set the generate document status of the requests for payment whose value of an attribute matches a predicate
+     *
+     * @param name Name of the attribute
+     * @param predicate Predicate on the value of the attribute, which is null when the attribute is not set
+     * @param generateDocument Generate document status of the matching rows
+     * @return Number of matching rows
+     */
+    public synchronized int setGenerateDocuments(String name, AttributePredicate predicate,
+            boolean generateDocument) {
+
+        int noMatches = 0;
+
+        // Position of the attribute column
+        Integer column = this.columnIndexes.get(name);
+
+        for (int row = 0; row < this.rowCount; row++) {
+
+            // Value of the attribute for the row
+            Object value = (column == null) ? null : this.columns.get(column).get(row);
+
+            if (predicate.evaluate(value)) {
+                this.setGenerateDocument(row, generateDocument);
+                noMatches++;
+            }
+        }
+
+        return noMatches;
+    }
+
+    /**
+     * Get the SMURF output object of a request for payment
+     *
+     * @param row Position of the row
+     * @return SMURF output object
+     */
+    public synchronized SmurfOutput getSmurfOutput(int row) {
+        return this.smurfOutputs[row];
+    }
+
+    /**
+     * Set the SMURF output object of a request for payment
+     *
+     * @param row Position of the row
+     * @param smurfOutput SMURF output object
+     */
+    public synchronized void setSmurfOutput(int row, SmurfOutput smurfOutput) {
+        this.smurfOutputs[row] = smurfOutput;
+    }
+
+    /**
+     * Get the sort keys of the values of an attribute column. The order of the keys is the order of the values, so that
+     * the rows can be sorted by comparing primitive longs, and the rows without a value get the lowest key.
+     *
+     * @param column Position of the attribute column
+     * @return Sort key of each row of the batch
+     */
+    public synchronized long[] getSortKeys(int column) {
+        return this.columns.get(column).getSortKeys(this.rowCount);
+    }
+
+    /**
+     * Get the amount of a request for payment
+     *
+     * @param row Position of the row
+     * @return Amount of the row or zero if the row has no amount
+     */
+    private BigDecimal getAmount(int row) {
+
+        // Check if the batch has an amount column
+        if (this.amountColumn == -1) {
+            return BigDecimal.ZERO;
+        }
+
+        Object value = this.columns.get(this.amountColumn).get(row);
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if ((value instanceof Double) || (value instanceof Float)) {
+            return BigDecimal.valueOf(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+
+        return BigDecimal.ZERO;
+    }
+
+    /**
+     * Update the total amounts after the amount of a request for payment has changed
+     *
+     * @param row Position of the row
+     * @param oldAmount Amount of the row before the change
+     */
+    private void updateAmounts(int row, BigDecimal oldAmount) {
+
+        // Difference between the new and old amounts
+        BigDecimal difference = this.getAmount(row).subtract(oldAmount);
+
+        this.totalAmount = this.totalAmount.add(difference);
+        if (this.generateDocuments.get(row)) {
+            this.selectedAmount = this.selectedAmount.add(difference);
+        }
+    }
+
+    /**
+     * The Column class stores the values of one attribute for all the rows of the batch. The storage kind of the
+     * column is chosen from the first value set and the column falls back to plain object storage when a value does
+     * not fit in that kind.
+     */
+    private static class Column {
+
+        private static final int UNDEFINED = 0;
+        private static final int LONG = 1;
+        private static final int DECIMAL = 2;
+        private static final int DOUBLE_CENTS = 3;
+        private static final int DOUBLE = 4;
+        private static final int DATE = 5;
+        private static final int STRING = 6;
+        private static final int OBJECT = 7;
+
+        private static final int MAX_DICTIONARY_SIZE = 65536;
+
+        private int[] codes;
+        private BitSet defined;
+        private ArrayList<String> dictionary;
+        private HashMap<String, Integer> dictionaryCodes;
+        private int kind;
+        private long[] longValues;
+        private BitSet nulls;
+        private Object[] objects;
+        private int scale;
+        private Class<?> valueClass;
+
+        /**
+         * Column constructor
+         *
+         * @param capacity Number of rows the column must be able to hold
+         */
+        Column(int capacity) {
+
+            // Initialise class attributes
+            this.defined = new BitSet(capacity);
+            this.kind = Column.UNDEFINED;
+            this.nulls = new BitSet(capacity);
+        }
+
+        /**
+         * Grow the value arrays of the column
+         *
+         * @param capacity Number of rows the column must be able to hold
+         */
+        void ensureCapacity(int capacity) {
+
+            if (this.longValues != null) {
+                this.longValues = Arrays.copyOf(this.longValues, capacity);
+            }
+
+            if (this.codes != null) {
+                this.codes = Arrays.copyOf(this.codes, capacity);
+            }
+
+            if (this.objects != null) {
+                this.objects = Arrays.copyOf(this.objects, capacity);
+            }
+        }
+
+        /**
+         * Get the value of the column for a row
+         *
+         * @param row Position of the row
+         * @return Value of the column for the row
+         */
+        Object get(int row) {
+
+            // Check if the row has a value
+            if (!this.defined.get(row) || this.nulls.get(row)) {
+                return null;
+            }
+
+            switch (this.kind) {
+
+                case Column.LONG:
+                    if (this.valueClass == Integer.class) {
+                        return Integer.valueOf((int) this.longValues[row]);
+                    } else if (this.valueClass == Short.class) {
+                        return Short.valueOf((short) this.longValues[row]);
+                    } else if (this.valueClass == Byte.class) {
+                        return Byte.valueOf((byte) this.longValues[row]);
+                    }
+                    return Long.valueOf(this.longValues[row]);
+
+                case Column.DECIMAL:
+                    return BigDecimal.valueOf(this.longValues[row], this.scale);
+
+                case Column.DOUBLE_CENTS:
+                    return Double.valueOf(this.longValues[row] / 100.0);
+
+                case Column.DOUBLE:
+                    return Double.valueOf(Double.longBitsToDouble(this.longValues[row]));
+
+                case Column.DATE:
+                    if (this.valueClass == java.sql.Date.class) {
+                        return new java.sql.Date(this.longValues[row]);
+                    } else if (this.valueClass == Timestamp.class) {
+                        return new Timestamp(this.longValues[row]);
+                    } else if (this.valueClass == Time.class) {
+                        return new Time(this.longValues[row]);
+                    }
+                    return new Date(this.longValues[row]);
+
+                case Column.STRING:
+                    return this.dictionary.get(this.codes[row]);
+
+                default:
+                    return this.objects[row];
+            }
+        }
+
+        /**
+         * Get the sort keys of the values of the column
+         *
+         * @param rowCount Number of rows in the batch
+         * @return Sort key of each row
+         */
+        long[] getSortKeys(int rowCount) {
+
+            long[] keys = new long[rowCount];
+
+            switch (this.kind) {
+
+                case Column.LONG:
+                case Column.DECIMAL:
+                case Column.DOUBLE_CENTS:
+                case Column.DATE:
+                    System.arraycopy(this.longValues, 0, keys, 0, rowCount);
+                    break;
+
+                case Column.DOUBLE:
+
+                    // Flip the bits of negative doubles so that the keys follow the order of the doubles
+                    for (int row = 0; row < rowCount; row++) {
+                        long bits = Double.doubleToLongBits(Double.longBitsToDouble(this.longValues[row]));
+                        keys[row] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+                    }
+                    break;
+
+                case Column.STRING:
+
+                    // Rank the strings of the dictionary in the French alphabetical order
+                    int[] ranks = Column.rankValues(new ArrayList<Object>(this.dictionary));
+                    for (int row = 0; row < rowCount; row++) {
+                        keys[row] = ranks[this.codes[row]];
+                    }
+                    break;
+
+                case Column.OBJECT:
+
+                    // Rank the values of the rows
+                    ranks = Column.rankValues(Arrays.asList(Arrays.copyOf(this.objects, rowCount)));
+                    for (int row = 0; row < rowCount; row++) {
+                        keys[row] = ranks[row];
+                    }
+                    break;
+            }
+
+            // Rows without a value come first
+            for (int row = 0; row < rowCount; row++) {
+                if ((this.kind == Column.UNDEFINED) || !this.defined.get(row) || this.nulls.get(row)) {
+                    keys[row] = Long.MIN_VALUE;
+                }
+            }
+
+            return keys;
+        }
+
+        /**
+         * Rank a list of values, equal values getting the same rank. Strings are ranked in the French alphabetical
+         * order, values of the same class that can be compared in their natural order and the other values in the
+         * alphabetical order of their text.
+         *
+         * @param values Values to rank, which may contain null values
+         * @return Rank of each value
+         */
+        private static int[] rankValues(List<Object> values) {
+
+            final Collator collator = Collator.getInstance(Locale.FRANCE);
+
+            // Key used to compare each value
+            final Object[] sortKeys = new Object[values.size()];
+            Integer[] positions = new Integer[values.size()];
+            for (int i = 0; i < sortKeys.length; i++) {
+
+                Object value = values.get(i);
+                if ((value instanceof String) || ((value != null) && !(value instanceof Comparable))) {
+                    sortKeys[i] = collator.getCollationKey(value.toString());
+                } else {
+                    sortKeys[i] = value;
+                }
+                positions[i] = i;
+            }
+
+            // Comparator of the values, null values coming first
+            Comparator<Integer> comparator = new Comparator<Integer>() {
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public int compare(Integer i1, Integer i2) {
+
+                    Object key1 = sortKeys[i1];
+                    Object key2 = sortKeys[i2];
+
+                    if ((key1 == null) || (key2 == null)) {
+                        return (key1 == null) ? ((key2 == null) ? 0 : -1) : 1;
+                    } else if (key1.getClass() == key2.getClass()) {
+                        return ((Comparable<Object>) key1).compareTo(key2);
+                    }
+
+                    // Values of different classes are compared as text
+                    return collator.compare(Column.keyText(key1), Column.keyText(key2));
+                }
+            };
+            Arrays.sort(positions, comparator);
+
+            // Give the same rank to equal values
+            int[] ranks = new int[sortKeys.length];
+            for (int i = 0, rank = 0; i < positions.length; i++) {
+                if ((i > 0) && (comparator.compare(positions[i - 1], positions[i]) != 0)) {
+                    rank++;
+                }
+                ranks[positions[i]] = rank;
+            }
+
+            return ranks;
+        }
+
+        /**
+         * Get the text of a sort key
+         *
+         * @param key Sort key
+         * @return Text of the value of the sort key
+         */
+        private static String keyText(Object key) {
+            return (key instanceof CollationKey) ? ((CollationKey) key).getSourceString() : key.toString();
+        }
+
+        /**
+         * Set the value of the column for a row
+         *
+         * @param row Position of the row
+         * @param value Value of the column for the row
+         * @param capacity Number of rows the column must be able to hold
+         * @param rowCount Number of rows in the batch
+         */
+        void set(int row, Object value, int capacity, int rowCount) {
+
+            // Null values are only recorded in the null bit set
+            if (value == null) {
+                this.defined.set(row);
+                this.nulls.set(row);
+                if (this.objects != null) {
+                    this.objects[row] = null;
+                }
+                return;
+            }
+
+            // The storage kind of the column is determined by its first value
+            if (this.kind == Column.UNDEFINED) {
+                this.initialise(value, capacity);
+            }
+
+            // Fall back to object storage when the value cannot be stored exactly in the current kind
+            if (!this.store(row, value)) {
+                this.promote(capacity);
+                this.objects[row] = value;
+            }
+
+            this.defined.set(row);
+            this.nulls.clear(row);
+
+            // Plain strings use less memory than a dictionary that holds mostly distinct values
+            if ((this.kind == Column.STRING) && (this.dictionary.size() > Column.MAX_DICTIONARY_SIZE)
+                    && (this.dictionary.size() > rowCount / 2)) {
+                this.promote(capacity);
+            }
+        }
+
+        /**
+         * Remove the value of the column for a row
+         *
+         * @param row Position of the row
+         */
+        void remove(int row) {
+
+            this.defined.clear(row);
+            this.nulls.clear(row);
+            if (this.objects != null) {
+                this.objects[row] = null;
+            }
+        }
+
+        /**
+         * Choose the storage kind of the column from its first value
+         *
+         * @param value First value of the column
+         * @param capacity Number of rows the column must be able to hold
+         */
+        private void initialise(Object value, int capacity) {
+
+            this.valueClass = value.getClass();
+
+            if ((this.valueClass == Integer.class) || (this.valueClass == Long.class)
+                    || (this.valueClass == Short.class) || (this.valueClass == Byte.class)) {
+                this.kind = Column.LONG;
+                this.longValues = new long[capacity];
+            } else if (this.valueClass == BigDecimal.class) {
+                this.kind = Column.DECIMAL;
+                this.scale = ((BigDecimal) value).scale();
+                this.longValues = new long[capacity];
+            } else if (this.valueClass == Double.class) {
+                this.kind = Column.DOUBLE_CENTS;
+                this.longValues = new long[capacity];
+            } else if ((this.valueClass == Date.class) || (this.valueClass == java.sql.Date.class)
+                    || (this.valueClass == Timestamp.class) || (this.valueClass == Time.class)) {
+                this.kind = Column.DATE;
+                this.longValues = new long[capacity];
+            } else if (this.valueClass == String.class) {
+                this.kind = Column.STRING;
+                this.codes = new int[capacity];
+                this.dictionary = new ArrayList<>();
+                this.dictionaryCodes = new HashMap<>();
+            } else {
+                this.kind = Column.OBJECT;
+                this.objects = new Object[capacity];
+            }
+        }
+
+        /**
+         * Store a value in the current storage kind of the column
+         *
+         * @param row Position of the row
+         * @param value Value of the column for the row
+         * @return Whether the value could be stored without any loss
+         */
+        private boolean store(int row, Object value) {
+
+            switch (this.kind) {
+
+                case Column.LONG:
+                    if (value.getClass() != this.valueClass) {
+                        return false;
+                    }
+                    this.longValues[row] = ((Number) value).longValue();
+                    return true;
+
+                case Column.DECIMAL:
+                    if ((value.getClass() != BigDecimal.class) || (((BigDecimal) value).scale() != this.scale)
+                            || (((BigDecimal) value).unscaledValue().bitLength() > 63)) {
+                        return false;
+                    }
+                    this.longValues[row] = ((BigDecimal) value).unscaledValue().longValue();
+                    return true;
+
+                case Column.DOUBLE_CENTS:
+                    if (value.getClass() != Double.class) {
+                        return false;
+                    }
+
+                    // Keep the amount in cents only if it gives back exactly the same double
+                    double amount = (Double) value;
+                    long cents = Math.round(amount * 100);
+                    if (Double.doubleToLongBits(cents / 100.0) == Double.doubleToLongBits(amount)) {
+                        this.longValues[row] = cents;
+                        return true;
+                    }
+
+                    // Switch the column to the raw bits of the doubles
+                    for (int i = 0; i < this.longValues.length; i++) {
+                        if (this.defined.get(i) && !this.nulls.get(i)) {
+                            this.longValues[i] = Double.doubleToRawLongBits(this.longValues[i] / 100.0);
+                        }
+                    }
+                    this.kind = Column.DOUBLE;
+                    this.longValues[row] = Double.doubleToRawLongBits(amount);
+                    return true;
+
+                case Column.DOUBLE:
+                    if (value.getClass() != Double.class) {
+                        return false;
+                    }
+                    this.longValues[row] = Double.doubleToRawLongBits((Double) value);
+                    return true;
+
+                case Column.DATE:
+                    if ((value.getClass() != this.valueClass)
+                            || ((value instanceof Timestamp) && (((Timestamp) value).getNanos() % 1000000 != 0))) {
+                        return false;
+                    }
+                    this.longValues[row] = ((Date) value).getTime();
+                    return true;
+
+                case Column.STRING:
+                    if (value.getClass() != String.class) {
+                        return false;
+                    }
+
+                    // Get the code of the string, adding the string to the dictionary if it is not there yet
+                    Integer code = this.dictionaryCodes.get((String) value);
+                    if (code == null) {
+                        code = this.dictionary.size();
+                        this.dictionary.add((String) value);
+                        this.dictionaryCodes.put((String) value, code);
+                    }
+                    this.codes[row] = code;
+                    return true;
+
+                default:
+                    this.objects[row] = value;
+                    return true;
+            }
+        }
+
+        /**
+         * Move the values of the column to plain object storage
+         *
+         * @param capacity Number of rows the column must be able to hold
+         */
+        private void promote(int capacity) {
+
+            if (this.kind == Column.OBJECT) {
+                return;
+            }
+
+            // Copy the current values as objects
+            Object[] values = new Object[capacity];
+            for (int i = 0; i < capacity; i++) {
+                values[i] = this.get(i);
+            }
+
+            // Release the storage of the previous kind
+            this.codes = null;
+            this.dictionary = null;
+            this.dictionaryCodes = null;
+            this.kind = Column.OBJECT;
+            this.longValues = null;
+            this.objects = values;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package smurf.model;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * The AvisClientSearchIndex class indexes the text of the requests for payment of a list, such as the name and the ID
+ * of the client, to find the requests for payment whose text contains a search string. The index is built as the
+ * requests for payment are added to the list and stores the normalised texts, the n-grams and their postings in
+ * primitive arrays, the postings of each n-gram being the differences between the numbers of the texts containing it
+ * written as variable length integers: the trigrams of the texts give the candidate requests for payment of searches
+ * of three characters or more, and the first character of each word and the trigrams starting with a space those of
+ * shorter searches.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class AvisClientSearchIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] gramCounts;
+    private long[] gramKeys;
+    private int[] gramLastTexts;
+    private byte[][] gramPostings;
+    private int[] gramSizes;
+    private int noGrams;
+    private int noTexts;
+    private int[] textOffsets;
+    private int[] textPositions;
+    private char[] texts;
+
+    /**
+     * AvisClientSearchIndex default constructor
+     */
+    public AvisClientSearchIndex() {
+
+        // Initialise class attributes
+        this.gramCounts = new int[AvisClientSearchIndex.INITIAL_CAPACITY];
+        this.gramKeys = new long[AvisClientSearchIndex.INITIAL_CAPACITY];
+        this.gramLastTexts = new int[AvisClientSearchIndex.INITIAL_CAPACITY];
+        this.gramPostings = new byte[AvisClientSearchIndex.INITIAL_CAPACITY][];
+        this.gramSizes = new int[AvisClientSearchIndex.INITIAL_CAPACITY];
+        this.noGrams = 0;
+        this.noTexts = 0;
+        this.textOffsets = new int[AvisClientSearchIndex.INITIAL_CAPACITY + 1];
+        this.textPositions = new int[AvisClientSearchIndex.INITIAL_CAPACITY];
+        this.texts = new char[AvisClientSearchIndex.INITIAL_CAPACITY * 16];
+    }
+
+    /**
+     * Get the number of requests for payment indexed
+     *
+     * @return Number of requests for payment indexed
+     */
+    public synchronized int size() {
+        return this.noTexts;
+    }
+
+    /**
+     * Index the text of a request for payment. The requests for payment must be added in the order of their positions
+     * in the list.
+     *
+     * @param position Position of the request for payment in the list
+     * @param values Values of the attributes searched, which may be null
+     */
+    public synchronized void add(int position, String... values) {
+
+        // Join and normalise the values of the attributes
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (value != null) {
+                builder.append(' ').append(AvisClientSearchIndex.normalise(value));
+            }
+        }
+        builder.append(' ');
+        String text = builder.toString();
+
+        // Store the text
+        if (this.noTexts == this.textPositions.length) {
+            this.textPositions = Arrays.copyOf(this.textPositions, this.noTexts * 2);
+            this.textOffsets = Arrays.copyOf(this.textOffsets, this.noTexts * 2 + 1);
+        }
+        int offset = this.textOffsets[this.noTexts];
+        if (offset + text.length() > this.texts.length) {
+            this.texts = Arrays.copyOf(this.texts, Math.max(this.texts.length * 2, offset + text.length()));
+        }
+        text.getChars(0, text.length(), this.texts, offset);
+        this.textPositions[this.noTexts] = position;
+        this.textOffsets[this.noTexts + 1] = offset + text.length();
+
+        // Index the trigrams of the text and the first character of its words, the words being separated by spaces
+        for (int i = 0; i < text.length() - 1; i++) {
+
+            if (i + 3 <= text.length()) {
+                this.addPosting(AvisClientSearchIndex.gramKey(text, i, 3), this.noTexts);
+            }
+
+            if ((text.charAt(i) == ' ') && (text.charAt(i + 1) != ' ')) {
+                this.addPosting(AvisClientSearchIndex.gramKey(text, i, 2), this.noTexts);
+            }
+        }
+
+        this.noTexts++;
+    }
+
+    /**
+     * Find the requests for payment whose text contains a search string, short search strings matching the beginning
+     * of the words of the text
+     *
+     * @param query Search string
+     * @return Positions in the list of the matching requests for payment in ascending order
+     */
+    public synchronized int[] search(String query) {
+
+        // Normalise the search string
+        String text = AvisClientSearchIndex.normalise(query).trim();
+        if (text.isEmpty()) {
+            return new int[0];
+        }
+
+        // Search strings shorter than a trigram match the beginning of the words
+        if (text.length() < 3) {
+            String prefix = " " + text;
+            return this.getPositions(this.findGram(AvisClientSearchIndex.gramKey(prefix, 0, prefix.length())), null);
+        }
+
+        // Use the postings of the rarest trigram of the search string as candidates
+        int rarestGram = -1;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+
+            int gram = this.findGram(AvisClientSearchIndex.gramKey(text, i, 3));
+            if (gram == -1) {
+                return new int[0];
+            }
+            if ((rarestGram == -1) || (this.gramCounts[gram] < this.gramCounts[rarestGram])) {
+                rarestGram = gram;
+            }
+        }
+
+        return this.getPositions(rarestGram, text);
+    }
+
+    /**
+     * Get the positions of the requests for payment of the postings of an n-gram
+     *
+     * @param gram Slot of the n-gram in the n-gram table or -1 if the n-gram is not indexed
+     * @param text Normalised search string the text of the requests for payment must contain or null
+     * @return Positions in the list of the matching requests for payment in ascending order
+     */
+    private int[] getPositions(int gram, String text) {
+
+        // Check if the n-gram is indexed
+        if (gram == -1) {
+            return new int[0];
+        }
+
+        int[] positions = new int[this.gramCounts[gram]];
+        int noPositions = 0;
+        byte[] postings = this.gramPostings[gram];
+        for (int i = 0, textNo = -1; i < this.gramSizes[gram];) {
+
+            // Read the difference with the number of the previous text
+            int delta = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = postings[i++];
+                delta |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            textNo += delta;
+
+            // Check that the text of the candidate contains the search string
+            if ((text == null) || this.contains(textNo, text)) {
+                positions[noPositions++] = this.textPositions[textNo];
+            }
+        }
+
+        return Arrays.copyOf(positions, noPositions);
+    }
+
+    /**
+     * Check whether an indexed text contains a string
+     *
+     * @param textNo Number of the text
+     * @param text Normalised string
+     * @return Whether the indexed text contains the string
+     */
+    private boolean contains(int textNo, String text) {
+
+        int end = this.textOffsets[textNo + 1] - text.length();
+        for (int start = this.textOffsets[textNo]; start <= end; start++) {
+
+            int i = 0;
+            while ((i < text.length()) && (this.texts[start + i] == text.charAt(i))) {
+                i++;
+            }
+            if (i == text.length()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Add a text to the postings of an n-gram, the text being added once when its n-gram occurs several times
+     *
+     * @param key Key of the n-gram
+     * @param textNo Number of the text
+     */
+    private void addPosting(long key, int textNo) {
+
+        // Grow the n-gram table when it is more than half full
+        if (this.noGrams * 2 >= this.gramKeys.length) {
+            this.growGrams();
+        }
+
+        int gram = this.findSlot(key);
+        if (this.gramPostings[gram] == null) {
+            this.gramKeys[gram] = key;
+            this.gramLastTexts[gram] = -1;
+            this.gramPostings[gram] = new byte[4];
+            this.noGrams++;
+        } else if (this.gramLastTexts[gram] == textNo) {
+            return;
+        }
+
+        // Grow the postings of the n-gram to hold a variable length integer
+        byte[] postings = this.gramPostings[gram];
+        if (this.gramSizes[gram] + 5 > postings.length) {
+            postings = Arrays.copyOf(postings, Math.max(postings.length * 2, this.gramSizes[gram] + 5));
+            this.gramPostings[gram] = postings;
+        }
+
+        // Append the difference with the number of the previous text, seven bits at a time
+        int delta = textNo - this.gramLastTexts[gram];
+        while (delta > 0x7F) {
+            postings[this.gramSizes[gram]++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        postings[this.gramSizes[gram]++] = (byte) delta;
+
+        this.gramCounts[gram]++;
+        this.gramLastTexts[gram] = textNo;
+    }
+
+    /**
+     * Find the slot of an n-gram in the n-gram table
+     *
+     * @param key Key of the n-gram
+     * @return Slot of the n-gram or -1 if the n-gram is not indexed
+     */
+    private int findGram(long key) {
+
+        int slot = this.findSlot(key);
+        return (this.gramPostings[slot] == null) ? -1 : slot;
+    }
+
+    /**
+     * Find the slot holding an n-gram or the free slot where it would be stored, using linear probing
+     *
+     * @param key Key of the n-gram
+     * @return Slot of the n-gram
+     */
+    private int findSlot(long key) {
+
+        int mask = this.gramKeys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while ((this.gramPostings[slot] != null) && (this.gramKeys[slot] != key)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Double the size of the n-gram table
+     */
+    private void growGrams() {
+
+        int[] counts = this.gramCounts;
+        long[] keys = this.gramKeys;
+        int[] lastTexts = this.gramLastTexts;
+        byte[][] postings = this.gramPostings;
+        int[] sizes = this.gramSizes;
+
+        this.gramCounts = new int[keys.length * 2];
+        this.gramKeys = new long[keys.length * 2];
+        this.gramLastTexts = new int[keys.length * 2];
+        this.gramPostings = new byte[keys.length * 2][];
+        this.gramSizes = new int[keys.length * 2];
+
+        // Store the n-grams in the new table
+        for (int i = 0; i < keys.length; i++) {
+            if (postings[i] != null) {
+                int slot = this.findSlot(keys[i]);
+                this.gramCounts[slot] = counts[i];
+                this.gramKeys[slot] = keys[i];
+                this.gramLastTexts[slot] = lastTexts[i];
+                this.gramPostings[slot] = postings[i];
+                this.gramSizes[slot] = sizes[i];
+            }
+        }
+    }
+
+    /**
+     * Get the key of an n-gram of up to three characters
+     *
+     * @param text Text
+     * @param start Position of the n-gram in the text
+     * @param length Length of the n-gram
+     * @return Key of the n-gram
+     */
+    private static long gramKey(String text, int start, int length) {
+
+        long key = length;
+        for (int i = start; i < start + length; i++) {
+            key = (key << 16) | text.charAt(i);
+        }
+
+        return key;
+    }
+
+    /**
+     * Normalise a text for the search by removing accents, punctuation and case
+     *
+     * @param value Text
+     * @return Normalised text
+     */
+    private static String normalise(String value) {
+
+        String text = Normalizer.normalize(value, Normalizer.Form.NFD);
+
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(Character.toLowerCase(c));
+                space = false;
+            } else if ((Character.getType(c) != Character.NON_SPACING_MARK) && !space) {
+
+                // Punctuation and spaces separate the words
+                builder.append(' ');
+                space = true;
+            }
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,261 @@
+package smurf.model;
+
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The AvisClientSorter class sorts and filters the rows of a batch of requests for payment. The orders of the rows are
+ * primitive arrays of row positions which are cached per attribute and direction, the rows being sorted on primitive
+ * sort keys with a stable merge sort whose halves are sorted in parallel for large batches.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class AvisClientSorter {
+
+    public static final int PARALLEL_THRESHOLD = 8192;
+
+    private static final int INSERTION_THRESHOLD = 32;
+    private static final ForkJoinPool SORT_POOL = new ForkJoinPool();
+
+    private AvisClientBatch batch;
+    private HashMap<String, int[]> orders;
+    private int rowCount;
+
+    /**
+     * Get the batch of requests for payment sorted
+     *
+     * @return Batch of requests for payment
+     */
+    public AvisClientBatch getBatch() {
+        return this.batch;
+    }
+
+    /**
+     * AvisClientSorter constructor
+     *
+     * @param batch Batch of requests for payment
+     */
+    public AvisClientSorter(AvisClientBatch batch) {
+
+        // Initialise class attributes
+        this.batch = batch;
+        this.orders = new HashMap<>();
+        this.rowCount = batch.getRowCount();
+    }
+
+    /**
+     * Get the positions of the rows of the batch sorted on the values of an attribute, rows with equal values keeping
+     * the order of the batch. The returned array is shared by the callers and must not be modified.
+     *
+     * @param name Name of the attribute
+     * @param ascending Whether the rows are sorted in ascending order
+     * @return Positions of the sorted rows
+     */
+    public synchronized int[] getOrder(String name, boolean ascending) {
+
+        // Discard the orders when rows have been added to the batch
+        if (this.batch.getRowCount() != this.rowCount) {
+            this.orders.clear();
+            this.rowCount = this.batch.getRowCount();
+        }
+
+        // Check if the order is in the cache
+        String key = name + (ascending ? ":ASC" : ":DESC");
+        int[] rows = this.orders.get(key);
+        if (rows != null) {
+            return rows;
+        }
+
+        // Rows in the order of the batch
+        int[] ascendingRows = new int[this.rowCount];
+        for (int row = 0; row < this.rowCount; row++) {
+            ascendingRows[row] = row;
+        }
+
+        // Sort the rows on the keys of the attribute values
+        int column = this.batch.getColumnIndex(name);
+        if (column > -1) {
+
+            long[] keys = this.batch.getSortKeys(column);
+            int[] buffer = new int[this.rowCount];
+            if (this.rowCount > AvisClientSorter.PARALLEL_THRESHOLD) {
+                AvisClientSorter.SORT_POOL.invoke(new SortTask(ascendingRows, buffer, keys, 0, this.rowCount));
+            } else {
+                AvisClientSorter.sort(ascendingRows, buffer, keys, 0, this.rowCount);
+            }
+
+            // Keep the order of the batch for the rows with equal values in the descending order
+            int[] descendingRows = new int[this.rowCount];
+            for (int end = this.rowCount; end > 0;) {
+
+                // Run of rows with equal values ending at the current position
+                int start = end - 1;
+                while ((start > 0) && (keys[ascendingRows[start - 1]] == keys[ascendingRows[end - 1]])) {
+                    start--;
+                }
+
+                System.arraycopy(ascendingRows, start, descendingRows, this.rowCount - end, end - start);
+                end = start;
+            }
+
+            this.orders.put(name + ":DESC", descendingRows);
+
+        } else {
+
+            // Rows of an attribute which is not in the batch keep the order of the batch
+            this.orders.put(name + ":DESC", ascendingRows);
+        }
+
+        this.orders.put(name + ":ASC", ascendingRows);
+
+        return this.orders.get(key);
+    }
+
+    /**
+     * Get the rows whose value of an attribute matches a predicate
+     *
+     * @param rows Positions of the rows to filter or null for all the rows of the batch in their order
+     * @param name Name of the attribute
+     * @param predicate Predicate on the value of the attribute, which is null when the attribute is not set
+     * @return Positions of the matching rows in the same order
+     */
+    public int[] filter(int[] rows, String name, AttributePredicate predicate) {
+
+        int noRows = (rows == null) ? this.batch.getRowCount() : rows.length;
+        int column = this.batch.getColumnIndex(name);
+
+        int[] matchingRows = new int[noRows];
+        int noMatchingRows = 0;
+        for (int i = 0; i < noRows; i++) {
+
+            // Value of the attribute for the current row
+            int row = (rows == null) ? i : rows[i];
+            Object value = (column > -1) ? this.batch.getValue(row, column) : null;
+
+            if (predicate.evaluate(value)) {
+                matchingRows[noMatchingRows++] = row;
+            }
+        }
+
+        // Trim the array of matching rows
+        int[] result = new int[noMatchingRows];
+        System.arraycopy(matchingRows, 0, result, 0, noMatchingRows);
+
+        return result;
+    }
+
+    /**
+     * Sort a range of rows on their keys with a stable merge sort
+     *
+     * @param rows Positions of the rows
+     * @param buffer Buffer used to merge the rows
+     * @param keys Sort key of each row
+     * @param from Start of the range, inclusive
+     * @param to End of the range, exclusive
+     */
+    private static void sort(int[] rows, int[] buffer, long[] keys, int from, int to) {
+
+        // Insertion sort for short ranges
+        if (to - from <= AvisClientSorter.INSERTION_THRESHOLD) {
+
+            for (int i = from + 1; i < to; i++) {
+
+                int row = rows[i];
+                int j = i - 1;
+                while ((j >= from) && (keys[rows[j]] > keys[row])) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        AvisClientSorter.sort(rows, buffer, keys, from, middle);
+        AvisClientSorter.sort(rows, buffer, keys, middle, to);
+        AvisClientSorter.merge(rows, buffer, keys, from, middle, to);
+    }
+
+    /**
+     * Merge two sorted adjacent ranges of rows
+     *
+     * @param rows Positions of the rows
+     * @param buffer Buffer used to merge the rows
+     * @param keys Sort key of each row
+     * @param from Start of the first range, inclusive
+     * @param middle End of the first range and start of the second range
+     * @param to End of the second range, exclusive
+     */
+    private static void merge(int[] rows, int[] buffer, long[] keys, int from, int middle, int to) {
+
+        // Check if the ranges are already in order
+        if (keys[rows[middle - 1]] <= keys[rows[middle]]) {
+            return;
+        }
+
+        System.arraycopy(rows, from, buffer, from, to - from);
+
+        // Rows of the first range come first when their keys are equal
+        int i = from;
+        int j = middle;
+        for (int k = from; k < to; k++) {
+            if ((j >= to) || ((i < middle) && (keys[buffer[i]] <= keys[buffer[j]]))) {
+                rows[k] = buffer[i++];
+            } else {
+                rows[k] = buffer[j++];
+            }
+        }
+    }
+
+    /**
+     * The SortTask class sorts the two halves of a range of rows in parallel before merging them
+     */
+    private static class SortTask extends RecursiveAction {
+
+        private int[] buffer;
+        private int from;
+        private long[] keys;
+        private int[] rows;
+        private int to;
+
+        /**
+         * SortTask constructor
+         *
+         * @param rows Positions of the rows
+         * @param buffer Buffer used to merge the rows
+         * @param keys Sort key of each row
+         * @param from Start of the range, inclusive
+         * @param to End of the range, exclusive
+         */
+        SortTask(int[] rows, int[] buffer, long[] keys, int from, int to) {
+
+            // Initialise class attributes
+            this.buffer = buffer;
+            this.from = from;
+            this.keys = keys;
+            this.rows = rows;
+            this.to = to;
+        }
+
+        /**
+         * Sort the range of rows
+         */
+        @Override
+        protected void compute() {
+
+            // Sort small ranges in the current thread
+            if (this.to - this.from <= AvisClientSorter.PARALLEL_THRESHOLD) {
+                AvisClientSorter.sort(this.rows, this.buffer, this.keys, this.from, this.to);
+                return;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            RecursiveAction.invokeAll(new SortTask(this.rows, this.buffer, this.keys, this.from, middle),
+                    new SortTask(this.rows, this.buffer, this.keys, middle, this.to));
+            AvisClientSorter.merge(this.rows, this.buffer, this.keys, this.from, middle, this.to);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package smurf.model;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import javax.swing.table.AbstractTableModel;
 import smurf.Smurf;
@@ -10,7 +11,9 @@ import smurf.dao.ConfigurationDao;
 import smurf.exceptions.RequestForPaymentAttributeNotFoundException;
 
 /**
- * AvisClientTableModel represents the data model of the data that is shown in the Rubis panel grid 
+ * AvisClientTableModel represents the data model of the data that is shown in the Rubis panel grid. The model is a
+ * window on a list of requests for payment which is moved from page to page, the text of the displayed cells being
+ * formatted once when the window is moved or its data changes instead of on every paint.
  * 
  * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
  * @version 1.0
@@ -18,19 +21,25 @@ import smurf.exceptions.RequestForPaymentAttributeNotFoundException;
 public class AvisClientTableModel extends AbstractTableModel {
 
     private String[] columnNames;
-    private ArrayList<AvisClient> avisClients;
+    private List<AvisClient> avisClients;
+    private String[][] displayValues;
+    private int firstRow;
     private ArrayList<GridConfiguration> gridConfigurations;
+    private int noRows;
 
     /**
      * AvisClientTableModel constructor
      * 
      * @param avisClients List of requests for payments for which table is being drawn
      */
-    public AvisClientTableModel(ArrayList<AvisClient> avisClients) {
+    public AvisClientTableModel(List<AvisClient> avisClients) {
 
         // Define class attributes
         this.avisClients = avisClients;
+        this.displayValues = new String[0][];
+        this.firstRow = 0;
         this.gridConfigurations = new ArrayList<>();
+        this.noRows = avisClients.size();
 
         // Get grid configurations from the configuration file
         try {
@@ -52,6 +61,59 @@ public class AvisClientTableModel extends AbstractTableModel {
         for (int i = 0; i < this.gridConfigurations.size(); i++) {
             this.columnNames[i + 1] = this.gridConfigurations.get(i).getTitle();
         }
+
+        // Format the text of the rows displayed
+        this.formatDisplayValues();
+    }
+
+    /**
+     * Move the window of the model on a list of requests for payment without changing the columns of the grid
+     * 
+     * @param avisClients List of requests for payment
+     * @param firstRow Index in the list of the first request for payment displayed
+     * @param maxRows Maximum number of requests for payment displayed
+     */
+    public void setWindow(List<AvisClient> avisClients, int firstRow, int maxRows) {
+
+        // Define the window
+        this.avisClients = avisClients;
+        this.firstRow = firstRow;
+        this.noRows = Math.max(0, Math.min(maxRows, avisClients.size() - firstRow));
+
+        // Redraw the rows of the grid
+        this.fireTableDataChanged();
+    }
+
+    /**
+     * Format the text of the displayed rows again and notify the grid that the data of the rows has changed
+     */
+    @Override
+    public void fireTableDataChanged() {
+
+        this.formatDisplayValues();
+        super.fireTableDataChanged();
+    }
+
+    /**
+     * Format the text of the displayed rows again and notify the grid of the rows whose text has changed only, such as
+     * the rows of the requests for payment whose documents have been generated
+     */
+    public void fireDisplayedRowsUpdated() {
+
+        int firstChangedRow = -1;
+        int lastChangedRow = -1;
+
+        for (int i = 0; (i < this.noRows) && (i < this.displayValues.length); i++) {
+            if (this.formatRow(i)) {
+                firstChangedRow = (firstChangedRow == -1) ? i : firstChangedRow;
+                lastChangedRow = i;
+            }
+        }
+
+        // Redraw the changed rows
+        if (firstChangedRow > -1) {
+            this.fireTableRowsUpdated(firstChangedRow, lastChangedRow);
+        }
     }
 
     /**
@@ -61,7 +123,17 @@ public class AvisClientTableModel extends AbstractTableModel {
      */
     @Override
     public int getRowCount() {
-        return this.avisClients.size();
+        return this.noRows;
+    }
+
+    /**
+     * Get the request for payment displayed on a row
+     *
+     * @param row Row index
+     * @return Request for payment displayed on the row
+     */
+    public AvisClient getAvisClient(int row) {
+        return this.avisClients.get(this.firstRow + row);
     }
 
     /**
@@ -95,48 +167,72 @@ public class AvisClientTableModel extends AbstractTableModel {
     @Override
     public Object getValueAt(int i, int i1) {
 
-        Object data = null;
-        
-        try {
+        // Whether the request must be processed
+        if (i1 == 0) {
+            return this.getAvisClient(i).getGenerateDocument();
+        }
 
-            // Current request for payment
-            AvisClient avisClient = this.avisClients.get(i);
+        // Text formatted when the window was moved
+        return this.displayValues[i][i1];
+    }
 
-            // Get the data that needs to be displayed in the grid
-            if (i1 == 0) {
+    /**
+     * Format the text of the cells of the displayed rows, the arrays being reused from page to page
+     */
+    private void formatDisplayValues() {
 
-                // Whether the request must be processed
-                data = avisClient.getGenerateDocument();
+        // Allocate the arrays when the window has grown
+        if (this.displayValues.length < this.noRows) {
+            this.displayValues = new String[this.noRows][this.columnNames.length];
+        }
 
-            } else if (i1 == this.columnNames.length - 1) {
+        for (int i = 0; i < this.noRows; i++) {
+            this.formatRow(i);
+        }
+    }
 
-                // Generated PDF document file name
-                if (avisClient.getSmurfOutput() != null) {
-                    if (avisClient.getSmurfOutput().getBaseFilename().length() > 0) {
-                        File dummyFile = new File(avisClient.getSmurfOutput().getBaseFilename());
-                        data = dummyFile.getName();
-                    } else {
-                        data = "";
-                    }
-                } else {
-                    data = "";
-                }
+    /**
+     * Format the text of the cells of a displayed row
+     *
+     * @param i Index of the row
+     * @return Whether the text of any cell of the row has changed
+     */
+    private boolean formatRow(int i) {
 
-            } else {
+        boolean changed = false;
 
-                // Get the data that needs to be displayed
-                data = avisClient.getFormattedAttribute(this.gridConfigurations.get(i1 - 1).getAlias());
+        // Current request for payment
+        AvisClient avisClient = this.getAvisClient(i);
 
-            }
+        // Generated PDF document file name
+        String filename = "";
+        if ((avisClient.getSmurfOutput() != null)
+                && (avisClient.getSmurfOutput().getBaseFilename().length() > 0)) {
+            filename = new File(avisClient.getSmurfOutput().getBaseFilename()).getName();
+        }
+        changed |= !filename.equals(this.displayValues[i][this.columnNames.length - 1]);
+        this.displayValues[i][this.columnNames.length - 1] = filename;
 
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
+        // Get the data that needs to be displayed
+        for (int j = 1; j < this.columnNames.length - 1; j++) {
 
-            // Write error message to log file
-            Smurf.logController.log(Level.WARNING, AvisClientTableModel.class.getSimpleName(),
-                    ex.getLocalizedMessage());
+            String value;
+            try {
+                value = avisClient.getFormattedAttribute(this.gridConfigurations.get(j - 1).getAlias());
+            } catch (RequestForPaymentAttributeNotFoundException ex) {
+
+                value = null;
+
+                // Write error message to log file
+                Smurf.logController.log(Level.WARNING, AvisClientTableModel.class.getSimpleName(),
+                        ex.getLocalizedMessage());
+            }
+
+            changed |= (value == null) ? (this.displayValues[i][j] != null) : !value.equals(this.displayValues[i][j]);
+            this.displayValues[i][j] = value;
         }
-        
-        return data;
+
+        return changed;
     }
 
     /**
@@ -195,7 +291,7 @@ public class AvisClientTableModel extends AbstractTableModel {
         boolean booleanValue = Boolean.parseBoolean(value.toString());
 
         // Get the appropriate request for payment
-        AvisClient avisClient = this.avisClients.get(row);
+        AvisClient avisClient = this.getAvisClient(row);
 
         // Set the generate document status of the request for payment
         avisClient.setGenerateDocument(booleanValue);
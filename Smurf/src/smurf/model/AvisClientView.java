@@ -0,0 +1,70 @@
+package smurf.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * AvisClientView is a read only view of a list of requests for payment through a permutation of its positions, which
+ * gives the order of the requests for payment in the view and leaves out the requests for payment that are filtered
+ * out. Sorting or filtering the view replaces the permutation without copying the requests for payment.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class AvisClientView extends AbstractList<AvisClient> implements RandomAccess {
+
+    private List<AvisClient> avisClients;
+    private int[] rows;
+
+    /**
+     * Get the permutation of the positions of the requests for payment
+     *
+     * @return Positions in the list of the requests for payment of the view or null if the view follows the list
+     */
+    public int[] getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Set the permutation of the positions of the requests for payment
+     *
+     * @param rows Positions in the list of the requests for payment of the view or null to follow the list
+     */
+    public void setRows(int[] rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * AvisClientView constructor
+     *
+     * @param avisClients List of requests for payment
+     */
+    public AvisClientView(List<AvisClient> avisClients) {
+
+        // Initialise class attributes
+        this.avisClients = avisClients;
+        this.rows = null;
+    }
+
+    /**
+     * Get a request for payment of the view
+     *
+     * @param index Position of the request for payment in the view
+     * @return Request for payment
+     */
+    @Override
+    public AvisClient get(int index) {
+        return this.avisClients.get((this.rows == null) ? index : this.rows[index]);
+    }
+
+    /**
+     * Get the number of requests for payment in the view
+     *
+     * @return Number of requests for payment
+     */
+    @Override
+    public int size() {
+        return (this.rows == null) ? this.avisClients.size() : this.rows.length;
+    }
+}
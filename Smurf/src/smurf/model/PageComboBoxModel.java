@@ -0,0 +1,130 @@
+package smurf.model;
+
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
+
+/**
+ * PageComboBoxModel represents the data model of the page selector of the Rubis panel. Only the number of pages is
+ * stored, the page labels being built when they are displayed, so that the model does not grow with the number of
+ * pages.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class PageComboBoxModel extends AbstractListModel<String> implements ComboBoxModel<String> {
+
+    private int noPages;
+    private int selectedIndex;
+
+    /**
+     * PageComboBoxModel default constructor
+     */
+    public PageComboBoxModel() {
+
+        // Initialise class attributes
+        this.noPages = 0;
+        this.selectedIndex = -1;
+    }
+
+    /**
+     * Set the number of pages, the selected page being kept when it still exists
+     *
+     * @param noPages Number of pages
+     */
+    public void setPageCount(int noPages) {
+
+        int oldNoPages = this.noPages;
+        this.noPages = noPages;
+
+        // Notify the list of the pages added or removed
+        if (noPages > oldNoPages) {
+            this.fireIntervalAdded(this, oldNoPages, noPages - 1);
+        } else if (noPages < oldNoPages) {
+
+            // Clear the selection when the selected page has been removed
+            if (this.selectedIndex >= noPages) {
+                this.selectedIndex = -1;
+            }
+
+            this.fireIntervalRemoved(this, noPages, oldNoPages - 1);
+        }
+    }
+
+    /**
+     * Get the index of the selected page
+     *
+     * @return Index of the selected page or -1 if no page is selected
+     */
+    public int getSelectedIndex() {
+        return this.selectedIndex;
+    }
+
+    /**
+     * Select a page without looking up its label among all the pages
+     *
+     * @param selectedIndex Index of the page
+     */
+    public void setSelectedIndex(int selectedIndex) {
+
+        // Check if the selection has changed
+        if (selectedIndex != this.selectedIndex) {
+            this.selectedIndex = selectedIndex;
+            this.fireContentsChanged(this, -1, -1);
+        }
+    }
+
+    /**
+     * Get the label of the selected page
+     *
+     * @return Label of the selected page
+     */
+    @Override
+    public Object getSelectedItem() {
+        return (this.selectedIndex > -1) ? this.getElementAt(this.selectedIndex) : null;
+    }
+
+    /**
+     * Select a page from its label
+     *
+     * @param anItem Label of the page
+     */
+    @Override
+    public void setSelectedItem(Object anItem) {
+
+        int index = -1;
+
+        // The page number follows the "Page " prefix of the label
+        if (anItem != null) {
+            try {
+                index = Integer.parseInt(anItem.toString().substring(5).trim()) - 1;
+            } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+                index = -1;
+            }
+        }
+
+        if ((index > -1) && (index < this.noPages)) {
+            this.setSelectedIndex(index);
+        }
+    }
+
+    /**
+     * Get the number of pages
+     *
+     * @return Number of pages
+     */
+    @Override
+    public int getSize() {
+        return this.noPages;
+    }
+
+    /**
+     * Get the label of a page
+     *
+     * @param index Index of the page
+     * @return Label of the page
+     */
+    @Override
+    public String getElementAt(int index) {
+        return "Page " + (index + 1);
+    }
+}
@@ -101,6 +101,22 @@ public class SmurfOutput {
         }
     }
 
+    /**
+     * SmurfOutput class constructor for a request for payment document whose files have already been generated in
+     * both formats, such as a document restored from the generation cache
+     *
+     * @param baseFilename Path and name of the request for payment document in the configured output format
+     * @param secondaryFilename Path and name of the request for payment document in the converted format
+     * @param baseOuputFormat Base output format
+     */
+    public SmurfOutput(String baseFilename, String secondaryFilename, String baseOuputFormat) {
+
+        // Initialise class attributes
+        this.baseFilename = baseFilename;
+        this.baseOutputFormat = baseOuputFormat;
+        this.secondaryFilename = secondaryFilename;
+    }
+
     /**
      * Convert a given PDF file to XML format and switch base and secondary file formats name
      * 
@@ -0,0 +1,26 @@
+package smurf.utilities;
+
+/**
+ * The DocumentGenerationListener interface is implemented by classes that need to follow the generation of documents
+ * by SEPAMailDocumentGenerator
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public interface DocumentGenerationListener {
+
+    /**
+     * Receive the number of documents generated so far, the documents being counted in the order of the requests for
+     * payment so that the count only covers requests for payment whose documents have all been generated
+     *
+     * @param noGeneratedDocuments Number of documents generated
+     */
+    public void documentsGenerated(int noGeneratedDocuments);
+
+    /**
+     * Whether the generation of documents must be stopped
+     *
+     * @return Whether the generation of documents has been cancelled
+     */
+    public boolean isGenerationCancelled();
+}
@@ -0,0 +1,22 @@
+package smurf.utilities;
+
+/**
+ * The DocumentPipelineListener interface is implemented by classes that need to follow the documents through the
+ * stages of the pipeline of SEPAMailDocumentGenerator, which generates the documents and sends them as soon as they
+ * have been converted
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public interface DocumentPipelineListener extends DocumentGenerationListener {
+
+    /**
+     * Receive the number of documents which have left each stage of the pipeline so far, the documents restored from
+     * the document cache being counted as rendered and converted
+     *
+     * @param noRenderedDocuments Number of documents rendered
+     * @param noConvertedDocuments Number of documents converted
+     * @param noSentDocuments Number of documents sent
+     */
+    public void documentsProcessed(int noRenderedDocuments, int noConvertedDocuments, int noSentDocuments);
+}
@@ -0,0 +1,325 @@
+package smurf.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.TimeZone;
+import java.util.logging.Level;
+import smurf.Smurf;
+import smurf.exceptions.RequestForPaymentAttributeNotFoundException;
+import smurf.model.AvisClient;
+
+/**
+ * The MissiveTemplatePlan class is the compiled form of a SEPAmail missive XML template. The template is read once and
+ * split into literal segments and #SMURF# token slots, a missive being rendered by appending the segments and the XML
+ * escaped values of the slots to a buffer in a single pass. The plans are cached per template file and compiled again
+ * when the file is modified.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class MissiveTemplatePlan {
+
+    private static final int FORMATTED_VALUE = 0;
+    private static final int ISO_DATE = 1;
+    private static final int ISO_DATE_TIME = 2;
+    private static final int RAW_VALUE = 3;
+
+    private static final String TOKEN_PREFIX = "#SMURF#";
+
+    // Tokens of the missive which do not simply name an attribute, with their attribute and slot type
+    private static final Object[][] SPECIAL_TOKENS = {
+        {"MissiveID#", "identifiant_missive", MissiveTemplatePlan.FORMATTED_VALUE},
+        {"client#BIC#", "client_bic", MissiveTemplatePlan.FORMATTED_VALUE},
+        {"client#IBAN#", "client_iban", MissiveTemplatePlan.FORMATTED_VALUE},
+        {"date_avis_iso#", "date_avis", MissiveTemplatePlan.ISO_DATE_TIME},
+        {"date_paiement#", "date_paiement", MissiveTemplatePlan.ISO_DATE},
+        {"montant_total#", "montant_total", MissiveTemplatePlan.RAW_VALUE}
+    };
+
+    private static final ThreadLocal<SimpleDateFormat> dateParser = new ThreadLocal<SimpleDateFormat>() {
+
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd");
+        }
+    };
+    private static final ThreadLocal<SimpleDateFormat> isoDateFormat = new ThreadLocal<SimpleDateFormat>() {
+
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd");
+        }
+    };
+    private static final ThreadLocal<SimpleDateFormat> isoDateTimeFormat = new ThreadLocal<SimpleDateFormat>() {
+
+        @Override
+        protected SimpleDateFormat initialValue() {
+
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+            format.setLenient(false);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+            return format;
+        }
+    };
+
+    private static final HashMap<String, MissiveTemplatePlan> plans = new HashMap<>();
+
+    private long fileLastModified;
+    private long fileLength;
+    private String[] literals;
+    private String[] slotAttributes;
+    private int[] slotTypes;
+    private int[] segmentSlots;
+
+    /**
+     * Get the compiled plan of a missive template file, the template being compiled again when it has been modified
+     * since it was last compiled
+     *
+     * @param templateFile SEPAmail missive XML template file
+     * @return Compiled plan of the template
+     * @throws IOException
+     */
+    public static MissiveTemplatePlan getPlan(File templateFile) throws IOException {
+
+        synchronized (MissiveTemplatePlan.plans) {
+
+            // Check if the template has already been compiled and has not changed since
+            MissiveTemplatePlan plan = MissiveTemplatePlan.plans.get(templateFile.getAbsolutePath());
+            if ((plan == null) || (plan.fileLastModified != templateFile.lastModified())
+                    || (plan.fileLength != templateFile.length())) {
+
+                plan = new MissiveTemplatePlan(templateFile);
+                MissiveTemplatePlan.plans.put(templateFile.getAbsolutePath(), plan);
+            }
+
+            return plan;
+        }
+    }
+
+    /**
+     * MissiveTemplatePlan constructor
+     *
+     * @param templateFile SEPAmail missive XML template file
+     * @throws IOException
+     */
+    private MissiveTemplatePlan(File templateFile) throws IOException {
+
+        // Initialise class attributes
+        this.fileLastModified = templateFile.lastModified();
+        this.fileLength = templateFile.length();
+
+        // Read the template file
+        String text = new String(Files.readAllBytes(templateFile.toPath()), Charset.forName("UTF-8"));
+
+        ArrayList<String> literalList = new ArrayList<>();
+        ArrayList<Integer> segmentSlotList = new ArrayList<>();
+        ArrayList<String> slotAttributeList = new ArrayList<>();
+        ArrayList<Integer> slotTypeList = new ArrayList<>();
+        HashMap<String, Integer> slotIndexes = new HashMap<>();
+
+        StringBuilder literal = new StringBuilder();
+        int start = 0;
+        int tokenStart;
+        while ((tokenStart = text.indexOf(MissiveTemplatePlan.TOKEN_PREFIX, start)) > -1) {
+
+            int nameStart = tokenStart + MissiveTemplatePlan.TOKEN_PREFIX.length();
+            int tokenEnd = -1;
+            String attribute = null;
+            int slotType = MissiveTemplatePlan.FORMATTED_VALUE;
+
+            // Check the tokens which do not simply name an attribute first
+            for (Object[] specialToken : MissiveTemplatePlan.SPECIAL_TOKENS) {
+                if (text.startsWith((String)specialToken[0], nameStart)) {
+                    tokenEnd = nameStart + ((String)specialToken[0]).length();
+                    attribute = (String)specialToken[1];
+                    slotType = (Integer)specialToken[2];
+                    break;
+                }
+            }
+
+            // Any other token names the attribute whose formatted value replaces it
+            if (attribute == null) {
+
+                int nameEnd = nameStart;
+                while ((nameEnd < text.length()) && (Character.isLetterOrDigit(text.charAt(nameEnd))
+                        || (text.charAt(nameEnd) == '_'))) {
+                    nameEnd++;
+                }
+
+                if ((nameEnd > nameStart) && (nameEnd < text.length()) && (text.charAt(nameEnd) == '#')) {
+                    tokenEnd = nameEnd + 1;
+                    attribute = text.substring(nameStart, nameEnd);
+                }
+            }
+
+            // Keep the text as it is when it is not a well formed token
+            if (attribute == null) {
+                literal.append(text, start, nameStart);
+                start = nameStart;
+                continue;
+            }
+
+            // Slots of the same attribute and type share their value
+            String slotKey = attribute + "#" + slotType;
+            Integer slotIndex = slotIndexes.get(slotKey);
+            if (slotIndex == null) {
+                slotIndex = slotAttributeList.size();
+                slotIndexes.put(slotKey, slotIndex);
+                slotAttributeList.add(attribute);
+                slotTypeList.add(slotType);
+            }
+
+            literal.append(text, start, tokenStart);
+            literalList.add(literal.toString());
+            segmentSlotList.add(slotIndex);
+
+            literal.setLength(0);
+            start = tokenEnd;
+        }
+
+        literal.append(text, start, text.length());
+        literalList.add(literal.toString());
+
+        // Store the segments of the template
+        this.literals = literalList.toArray(new String[literalList.size()]);
+        this.slotAttributes = slotAttributeList.toArray(new String[slotAttributeList.size()]);
+        this.segmentSlots = new int[segmentSlotList.size()];
+        for (int i = 0; i < this.segmentSlots.length; i++) {
+            this.segmentSlots[i] = segmentSlotList.get(i);
+        }
+        this.slotTypes = new int[slotTypeList.size()];
+        for (int i = 0; i < this.slotTypes.length; i++) {
+            this.slotTypes[i] = slotTypeList.get(i);
+        }
+    }
+
+    /**
+     * Render the missive of a request for payment, the tokens of the template being replaced by the XML escaped values
+     * of the attributes of the request for payment or by #NA when an attribute is not defined
+     *
+     * @param avisClient Request for payment
+     * @param buffer Buffer which is cleared and receives the missive
+     */
+    public void render(AvisClient avisClient, StringBuilder buffer) {
+
+        // Resolve the value of each slot once
+        String[] values = new String[this.slotAttributes.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.getSlotValue(avisClient, i);
+        }
+
+        buffer.setLength(0);
+        buffer.append(this.literals[0]);
+        for (int i = 0; i < this.segmentSlots.length; i++) {
+            MissiveTemplatePlan.appendEscaped(buffer, values[this.segmentSlots[i]]);
+            buffer.append(this.literals[i + 1]);
+        }
+    }
+
+    /**
+     * Get the value of a slot for a request for payment
+     *
+     * @param avisClient Request for payment
+     * @param slot Index of the slot
+     * @return Value of the slot or #NA if it cannot be found
+     */
+    private String getSlotValue(AvisClient avisClient, int slot) {
+
+        try {
+
+            // Formatted value of the attribute
+            if (this.slotTypes[slot] == MissiveTemplatePlan.FORMATTED_VALUE) {
+                return avisClient.getFormattedAttribute(this.slotAttributes[slot]);
+            }
+
+            // Null values are left empty
+            Object value = avisClient.getAttribute(this.slotAttributes[slot]);
+            if (value == null) {
+                return "";
+            }
+
+            switch (this.slotTypes[slot]) {
+
+                case MissiveTemplatePlan.ISO_DATE:
+                    return MissiveTemplatePlan.isoDateFormat.get().format(MissiveTemplatePlan.getDate(value));
+
+                case MissiveTemplatePlan.ISO_DATE_TIME:
+                    return MissiveTemplatePlan.isoDateTimeFormat.get().format(MissiveTemplatePlan.getDate(value));
+
+                default:
+                    return value.toString();
+            }
+
+        } catch (RequestForPaymentAttributeNotFoundException | ParseException ex) {
+
+            // Write error message to log file
+            Smurf.logController.log(Level.WARNING, MissiveTemplatePlan.class.getSimpleName(),
+                    ex.getLocalizedMessage());
+
+            return "#NA";
+        }
+    }
+
+    /**
+     * Get the date held by an attribute, the attribute being either a date or its text in the yyyy-MM-dd format
+     *
+     * @param value Value of the attribute
+     * @return Date
+     * @throws ParseException
+     */
+    private static Date getDate(Object value) throws ParseException {
+
+        if (value instanceof Date) {
+            return (Date)value;
+        }
+
+        return MissiveTemplatePlan.dateParser.get().parse(value.toString());
+    }
+
+    /**
+     * Append a value to a buffer, the XML special characters of the value being escaped
+     *
+     * @param buffer Buffer
+     * @param value Value
+     */
+    private static void appendEscaped(StringBuilder buffer, String value) {
+
+        for (int i = 0; i < value.length(); i++) {
+
+            char c = value.charAt(i);
+            switch (c) {
+
+                case '&':
+                    buffer.append("&amp;");
+                    break;
+
+                case '<':
+                    buffer.append("&lt;");
+                    break;
+
+                case '>':
+                    buffer.append("&gt;");
+                    break;
+
+                case '"':
+                    buffer.append("&quot;");
+                    break;
+
+                case '\'':
+                    buffer.append("&apos;");
+                    break;
+
+                default:
+                    buffer.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,752 @@
+package smurf.utilities;
+
+import com.itextpdf.awt.PdfGraphics2D;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.PdfTemplate;
+import com.itextpdf.text.pdf.PdfWriter;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import org.jopendocument.renderer.ODTRenderer;
+import smurf.Smurf;
+
+/**
+ * The OdsStampTemplate class is the stamp form of a compiled request for payment ODS template. The static layout of
+ * the template is rendered once into a PDF page with the cells holding tokens left blank, the position, font and
+ * alignment of the text of these cells being recorded while the page is rendered. A document is then generated by
+ * placing the page and drawing the text of the cells on top of it instead of rendering the whole template.
+ *
+ * The template is rendered a second time with text wider than the page in the cells holding tokens to find how the
+ * text of each cell is aligned. A template whose layout depends on the text of these cells, such as wrapped text or
+ * text spread over other cells, cannot be stamped and must be rendered in full.
+ *
+ * The background page and the text records are saved as a binary display list named after the digest of the template,
+ * from which the stamp form is read back instead of rendering the template again when the application is restarted.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class OdsStampTemplate {
+
+    private static final int ALIGN_CENTRE = 1;
+    private static final int ALIGN_LEFT = 0;
+    private static final int ALIGN_RIGHT = 2;
+    private static final int DISPLAY_LIST_MAGIC = 0x534D5354;
+    private static final int DISPLAY_LIST_VERSION = 1;
+    private static final HashMap<String, Object> HINT_CONSTANTS = OdsStampTemplate.getHintConstants();
+    private static final String ODD_WIDTH_CHARACTERS = ".,:;il1 ";
+    private static final String PROBE_PADDING = new String(new char[100]).replace('\0', 'M');
+    private static final String PROBE_PREFIX = "#SMURF#";
+
+    private byte[] background;
+    private final ThreadLocal<PdfReader> backgroundReader = new ThreadLocal<>();
+    private Rectangle contentSize;
+    private StampText[] texts;
+
+    /**
+     * Render the static layout of a template and record the text of its cells holding tokens
+     *
+     * @param templatePlan Compiled plan of the template
+     * @return Stamp form of the template or null if the layout of the template depends on the text of its cells
+     * @throws IOException
+     * @throws DocumentException
+     */
+    static OdsStampTemplate compile(OdsTemplatePlan templatePlan) throws IOException, DocumentException {
+
+        OdsStampTemplate stampTemplate = new OdsStampTemplate();
+
+        // Text of the cells holding tokens for the two renderings of the template, the probe holding a space so that
+        // the words of justified text are not drawn as a single string
+        String[] shortTexts = new String[templatePlan.getCellCount()];
+        String[] longTexts = new String[templatePlan.getCellCount()];
+        for (int i = 0; i < shortTexts.length; i++) {
+            shortTexts[i] = OdsStampTemplate.PROBE_PREFIX + i + "# ";
+            longTexts[i] = shortTexts[i] + OdsStampTemplate.PROBE_PADDING;
+        }
+
+        // Render the background page, which is kept, and the template with longer text, which is discarded
+        ByteArrayOutputStream backgroundStream = new ByteArrayOutputStream();
+        ProbeGraphics shortProbe = stampTemplate.render(templatePlan, shortTexts, backgroundStream);
+        ProbeGraphics longProbe = stampTemplate.render(templatePlan, longTexts, new ByteArrayOutputStream());
+        stampTemplate.background = backgroundStream.toByteArray();
+
+        // The static text must not move when the text of the cells holding tokens grows
+        if (!shortProbe.staticTexts.equals(longProbe.staticTexts)) {
+            Smurf.logController.log(Level.INFO, OdsStampTemplate.class.getSimpleName(),
+                    "Static text of the template moves with the text of the cells holding tokens");
+            return null;
+        }
+
+        stampTemplate.texts = new StampText[shortTexts.length];
+        String[] shiftedTexts = null;
+        for (int i = 0; i < shortTexts.length; i++) {
+
+            StampText shortText = shortProbe.texts.get(i);
+            StampText longText = longProbe.texts.get(i);
+
+            // The text of the cell must be drawn once with the same style in both renderings
+            if (!OdsStampTemplate.isSameLine(shortText, longText)) {
+                Smurf.logController.log(Level.INFO, OdsStampTemplate.class.getSimpleName(),
+                        "Text of cell " + i + " holding tokens is not drawn as a single line");
+                return null;
+            }
+
+            // Alignment of the text from its move relative to its growth
+            int move = shortText.x - longText.x;
+            int growth = longText.width - shortText.width;
+            if (move == 0) {
+                shortText.alignment = OdsStampTemplate.ALIGN_LEFT;
+                shortText.anchor = shortText.x;
+            } else if (move == growth) {
+                shortText.alignment = OdsStampTemplate.ALIGN_RIGHT;
+                shortText.anchor = shortText.x + shortText.width;
+            } else if (Math.abs(2 * move - growth) <= 1) {
+
+                // Twice the centre of the cell, which the renderer halves with a rounding to be found
+                shortText.alignment = OdsStampTemplate.ALIGN_CENTRE;
+                shortText.anchor = 2 * shortText.x + shortText.width;
+
+                // Lengthen the text by an odd width to find the centre of the cell exactly
+                if (shiftedTexts == null) {
+                    shiftedTexts = shortTexts.clone();
+                }
+                for (char c : OdsStampTemplate.ODD_WIDTH_CHARACTERS.toCharArray()) {
+                    if ((shortText.metrics.stringWidth(shortTexts[i] + c) - shortText.width) % 2 != 0) {
+                        shiftedTexts[i] = shortTexts[i] + c;
+                        break;
+                    }
+                }
+            } else {
+                Smurf.logController.log(Level.INFO, OdsStampTemplate.class.getSimpleName(),
+                        "Text of cell " + i + " holding tokens is not aligned left, centre or right");
+                return null;
+            }
+
+            shortText.maxWidth = longText.width;
+            stampTemplate.texts[i] = shortText;
+        }
+
+        // Render the template with the centred text lengthened by an odd width, which is discarded
+        if (shiftedTexts != null) {
+
+            ProbeGraphics shiftedProbe = stampTemplate.render(templatePlan, shiftedTexts,
+                    new ByteArrayOutputStream());
+
+            for (int i = 0; i < shortTexts.length; i++) {
+
+                StampText shortText = stampTemplate.texts[i];
+                StampText shiftedText = shiftedProbe.texts.get(i);
+
+                // The halved width of one of the two texts has not been rounded
+                if ((shortText.alignment == OdsStampTemplate.ALIGN_CENTRE)
+                        && OdsStampTemplate.isSameLine(shortText, shiftedText)) {
+                    shortText.anchor = Math.max(shortText.anchor, 2 * shiftedText.x + shiftedText.width);
+                }
+            }
+        }
+
+        return stampTemplate;
+    }
+
+    /**
+     * Get the stamp form of a template from its display list file, the template being compiled and its display list
+     * saved when the file does not exist or cannot be read. The display list holds the background page and the text
+     * records of the template, or only records that the template cannot be stamped, so that a template is rendered
+     * once and not each time the application is started.
+     *
+     * @param templatePlan Compiled plan of the template
+     * @param displayListFile Display list file named after the digest of the template
+     * @return Stamp form of the template or null if the layout of the template depends on the text of its cells
+     * @throws IOException
+     * @throws DocumentException
+     */
+    static OdsStampTemplate load(OdsTemplatePlan templatePlan, File displayListFile) throws IOException,
+            DocumentException {
+
+        // Read the display list saved for the same template
+        if (displayListFile.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(displayListFile)))) {
+                return OdsStampTemplate.readDisplayList(in);
+            } catch (IOException ex) {
+
+                // The template is compiled again
+                Smurf.logController.log(Level.WARNING, OdsStampTemplate.class.getSimpleName(), "Display list "
+                        + displayListFile.getPath() + " cannot be read: " + ex.toString());
+            }
+        }
+
+        OdsStampTemplate stampTemplate = OdsStampTemplate.compile(templatePlan);
+
+        // Save the display list to a temporary file first so that a partial file is never read
+        File partialFile = new File(displayListFile.getPath() + ".part");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(partialFile)))) {
+                OdsStampTemplate.writeDisplayList(stampTemplate, out);
+            }
+
+            displayListFile.delete();
+            if (!partialFile.renameTo(displayListFile)) {
+                throw new IOException("Unable to save display list " + displayListFile.getPath());
+            }
+
+        } catch (IOException ex) {
+
+            // The stamp form is used for this run only
+            partialFile.delete();
+            Smurf.logController.log(Level.WARNING, OdsStampTemplate.class.getSimpleName(), ex.getLocalizedMessage());
+        }
+
+        return stampTemplate;
+    }
+
+    /**
+     * Read a display list
+     *
+     * @param in Stream of the display list
+     * @return Stamp form of the template or null if the template cannot be stamped
+     * @throws IOException
+     */
+    private static OdsStampTemplate readDisplayList(DataInputStream in) throws IOException {
+
+        // Check the format of the display list
+        if ((in.readInt() != OdsStampTemplate.DISPLAY_LIST_MAGIC)
+                || (in.readInt() != OdsStampTemplate.DISPLAY_LIST_VERSION)) {
+            throw new IOException("Display list format not supported");
+        }
+
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        OdsStampTemplate stampTemplate = new OdsStampTemplate();
+        stampTemplate.contentSize = new Rectangle(in.readFloat(), in.readFloat());
+        stampTemplate.background = new byte[in.readInt()];
+        in.readFully(stampTemplate.background);
+
+        stampTemplate.texts = new StampText[in.readInt()];
+        for (int i = 0; i < stampTemplate.texts.length; i++) {
+
+            StampText text = new StampText();
+            text.alignment = in.readByte();
+            text.anchor = in.readInt();
+            text.maxWidth = in.readInt();
+            text.y = in.readFloat();
+            text.font = new Font(in.readUTF(), in.readInt(), 1).deriveFont(in.readFloat());
+            text.metrics = OdsStampTemplate.getFontMetrics(text.font);
+            text.paint = new Color(in.readInt(), true);
+
+            double[] matrix = new double[6];
+            for (int j = 0; j < matrix.length; j++) {
+                matrix[j] = in.readDouble();
+            }
+            text.transform = new AffineTransform(matrix);
+
+            // Clip path segments
+            if (in.readBoolean()) {
+
+                Path2D.Double clip = new Path2D.Double(in.readByte());
+                double[] coords = new double[6];
+                int segmentType;
+                while ((segmentType = in.readByte()) != -1) {
+
+                    for (int j = 0; j < OdsStampTemplate.getCoordinateCount(segmentType); j++) {
+                        coords[j] = in.readDouble();
+                    }
+
+                    switch (segmentType) {
+                        case PathIterator.SEG_MOVETO:
+                            clip.moveTo(coords[0], coords[1]);
+                            break;
+                        case PathIterator.SEG_LINETO:
+                            clip.lineTo(coords[0], coords[1]);
+                            break;
+                        case PathIterator.SEG_QUADTO:
+                            clip.quadTo(coords[0], coords[1], coords[2], coords[3]);
+                            break;
+                        case PathIterator.SEG_CUBICTO:
+                            clip.curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+                            break;
+                        default:
+                            clip.closePath();
+                            break;
+                    }
+                }
+                text.clip = clip;
+            }
+
+            // Rendering hints by the names of their constants
+            HashMap<Object, Object> hints = new HashMap<>();
+            for (int j = in.readInt(); j > 0; j--) {
+
+                Object key = OdsStampTemplate.HINT_CONSTANTS.get(in.readUTF());
+                Object value = OdsStampTemplate.HINT_CONSTANTS.get(in.readUTF());
+                if ((key == null) || (value == null)) {
+                    throw new IOException("Rendering hint not supported in display list");
+                }
+                hints.put(key, value);
+            }
+            text.hints = hints;
+
+            stampTemplate.texts[i] = text;
+        }
+
+        return stampTemplate;
+    }
+
+    /**
+     * Write a display list
+     *
+     * @param stampTemplate Stamp form of the template or null if the template cannot be stamped
+     * @param out Stream of the display list
+     * @throws IOException
+     */
+    private static void writeDisplayList(OdsStampTemplate stampTemplate, DataOutputStream out) throws IOException {
+
+        out.writeInt(OdsStampTemplate.DISPLAY_LIST_MAGIC);
+        out.writeInt(OdsStampTemplate.DISPLAY_LIST_VERSION);
+
+        out.writeBoolean(stampTemplate != null);
+        if (stampTemplate == null) {
+            return;
+        }
+
+        out.writeFloat(stampTemplate.contentSize.getWidth());
+        out.writeFloat(stampTemplate.contentSize.getHeight());
+        out.writeInt(stampTemplate.background.length);
+        out.write(stampTemplate.background);
+
+        out.writeInt(stampTemplate.texts.length);
+        for (StampText text : stampTemplate.texts) {
+
+            out.writeByte(text.alignment);
+            out.writeInt(text.anchor);
+            out.writeInt(text.maxWidth);
+            out.writeFloat(text.y);
+            out.writeUTF(text.font.getName());
+            out.writeInt(text.font.getStyle());
+            out.writeFloat(text.font.getSize2D());
+
+            // Only plain colours are drawn by the renderer
+            if (!(text.paint instanceof Color)) {
+                throw new IOException("Paint " + text.paint.getClass().getName() + " not supported in display list");
+            }
+            out.writeInt(((Color) text.paint).getRGB());
+
+            double[] matrix = new double[6];
+            text.transform.getMatrix(matrix);
+            for (double element : matrix) {
+                out.writeDouble(element);
+            }
+
+            // Clip path segments
+            out.writeBoolean(text.clip != null);
+            if (text.clip != null) {
+
+                PathIterator pathIterator = text.clip.getPathIterator(null);
+                out.writeByte(pathIterator.getWindingRule());
+
+                double[] coords = new double[6];
+                for (; !pathIterator.isDone(); pathIterator.next()) {
+
+                    int segmentType = pathIterator.currentSegment(coords);
+                    out.writeByte(segmentType);
+                    for (int j = 0; j < OdsStampTemplate.getCoordinateCount(segmentType); j++) {
+                        out.writeDouble(coords[j]);
+                    }
+                }
+                out.writeByte(-1);
+            }
+
+            // Rendering hints by the names of their constants, the hints of the PDF graphics context being left out
+            ArrayList<String> hintNames = new ArrayList<>();
+            for (Map.Entry<?, ?> hint : text.hints.entrySet()) {
+
+                if (!(hint.getKey() instanceof RenderingHints.Key)
+                        || (OdsStampTemplate.getHintName(hint.getKey()) == null)) {
+                    continue;
+                }
+
+                String valueName = OdsStampTemplate.getHintName(hint.getValue());
+                if (valueName == null) {
+                    throw new IOException("Rendering hint value " + hint.getValue() + " not supported in display list");
+                }
+                hintNames.add(OdsStampTemplate.getHintName(hint.getKey()));
+                hintNames.add(valueName);
+            }
+
+            out.writeInt(hintNames.size() / 2);
+            for (String hintName : hintNames) {
+                out.writeUTF(hintName);
+            }
+        }
+    }
+
+    /**
+     * Get the number of coordinates of a path segment
+     *
+     * @param segmentType Type of path segment
+     * @return Number of coordinates
+     */
+    private static int getCoordinateCount(int segmentType) {
+
+        switch (segmentType) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                return 2;
+            case PathIterator.SEG_QUADTO:
+                return 4;
+            case PathIterator.SEG_CUBICTO:
+                return 6;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Get the rendering hint keys and values declared by the RenderingHints class by the names of their constants
+     *
+     * @return Rendering hint keys and values by name
+     */
+    private static HashMap<String, Object> getHintConstants() {
+
+        HashMap<String, Object> hintConstants = new HashMap<>();
+        for (Field field : RenderingHints.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers())
+                    && (field.getName().startsWith("KEY_") || field.getName().startsWith("VALUE_"))) {
+                try {
+                    hintConstants.put(field.getName(), field.get(null));
+                } catch (IllegalAccessException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }
+
+        return hintConstants;
+    }
+
+    /**
+     * Get the name of the constant of a rendering hint key or value
+     *
+     * @param constant Rendering hint key or value
+     * @return Name of the constant or null if it is not declared by the RenderingHints class
+     */
+    private static String getHintName(Object constant) {
+
+        for (Map.Entry<String, Object> hintConstant : OdsStampTemplate.HINT_CONSTANTS.entrySet()) {
+            if (hintConstant.getValue() == constant) {
+                return hintConstant.getKey();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the metrics of a font as measured by a PDF graphics context, which uses fractional metrics
+     *
+     * @param font Font
+     * @return Metrics of the font
+     */
+    private static FontMetrics getFontMetrics(Font font) {
+
+        Graphics2D graphics = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB).createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            return graphics.getFontMetrics(font);
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * Check whether the text of a cell holding tokens is drawn once with the same style in two renderings
+     *
+     * @param text Text of the cell in the first rendering
+     * @param otherText Text of the cell in the second rendering
+     * @return Whether the text is drawn as a single line at the same height and with the same style
+     */
+    private static boolean isSameLine(StampText text, StampText otherText) {
+        return (text != null) && (otherText != null) && !text.drawnTwice && !otherText.drawnTwice
+                && (text.y == otherText.y) && text.font.equals(otherText.font) && text.paint.equals(otherText.paint)
+                && text.transform.equals(otherText.transform);
+    }
+
+    /**
+     * OdsStampTemplate constructor
+     */
+    private OdsStampTemplate() {
+    }
+
+    /**
+     * Get the size of the content of the template in points
+     *
+     * @return Size of the content of the template
+     */
+    public Rectangle getContentSize() {
+        return this.contentSize;
+    }
+
+    /**
+     * Check whether the text of the cells holding tokens of a document can be drawn on the background page, the text
+     * of a cell having to fit on a single line within the width tested when the template was compiled
+     *
+     * @param cellTexts Text of the cells holding tokens
+     * @return Whether the document can be stamped
+     */
+    public boolean accepts(String[] cellTexts) {
+
+        for (int i = 0; i < this.texts.length; i++) {
+            if ((cellTexts[i].indexOf('\n') > -1)
+                    || (this.texts[i].metrics.stringWidth(cellTexts[i]) > this.texts[i].maxWidth)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Add the background page of the template to the content of a document, the page being read once per thread
+     *
+     * @param writer PDF document writer
+     * @param template Template holding the content of the document
+     * @throws IOException
+     */
+    public void addBackground(PdfWriter writer, PdfTemplate template) throws IOException {
+
+        PdfReader reader = this.backgroundReader.get();
+        if (reader == null) {
+            reader = new PdfReader(this.background);
+            this.backgroundReader.set(reader);
+        }
+
+        template.addTemplate(writer.getImportedPage(reader, 1), 0, 0);
+    }
+
+    /**
+     * Draw the text of the cells holding tokens of a document at the positions recorded for the template
+     *
+     * @param pdfGraphics2d Graphics context drawing on the content of the document
+     * @param cellTexts Text of the cells holding tokens
+     */
+    public void drawTexts(PdfGraphics2D pdfGraphics2d, String[] cellTexts) {
+
+        for (int i = 0; i < this.texts.length; i++) {
+
+            // Empty cells are not drawn by the renderer either
+            if (cellTexts[i].isEmpty()) {
+                continue;
+            }
+
+            StampText text = this.texts[i];
+            pdfGraphics2d.addRenderingHints(text.hints);
+            pdfGraphics2d.setTransform(text.transform);
+            pdfGraphics2d.setClip(text.clip);
+            pdfGraphics2d.setFont(text.font);
+            pdfGraphics2d.setPaint(text.paint);
+
+            // Place the text against the side of the cell it is aligned to, as the renderer does
+            int width = text.metrics.stringWidth(cellTexts[i]);
+            int x;
+            switch (text.alignment) {
+                case OdsStampTemplate.ALIGN_CENTRE:
+                    x = (int) Math.floor((text.anchor - width) / 2.0);
+                    break;
+                case OdsStampTemplate.ALIGN_RIGHT:
+                    x = text.anchor - width;
+                    break;
+                default:
+                    x = text.anchor;
+                    break;
+            }
+            pdfGraphics2d.drawString(cellTexts[i], x, text.y);
+        }
+    }
+
+    /**
+     * Render a template with the given text in its cells holding tokens to a PDF page the size of its content
+     *
+     * @param templatePlan Compiled plan of the template
+     * @param cellTexts Text of the cells holding tokens
+     * @param outputStream Stream receiving the PDF page
+     * @return Graphics context which recorded the text drawn
+     * @throws IOException
+     * @throws DocumentException
+     */
+    private ProbeGraphics render(OdsTemplatePlan templatePlan, String[] cellTexts, OutputStream outputStream)
+            throws IOException, DocumentException {
+
+        // ODS file renderer
+        ODTRenderer odtRenderer = new ODTRenderer(templatePlan.createRenderDocument(templatePlan.fill(cellTexts)));
+        odtRenderer.setIgnoreMargins(true);
+        odtRenderer.setPaintMaxResolution(true);
+
+        // Page the size of the content so that it can be placed like the template of a rendered document
+        this.contentSize = SEPAMailDocumentPrinter.getOdsContentSize(odtRenderer);
+        Document document = new Document(this.contentSize);
+        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+
+        // The page is checked against the same conformance level as the documents
+        writer.setPdfVersion(PdfWriter.PDF_VERSION_1_5);
+        writer.setPDFXConformance(PdfWriter.PDFA1A);
+        writer.setTagged();
+
+        document.open();
+
+        PdfResourceCache pdfResourceCache = PdfResourceCache.getPdfResourceCache();
+        pdfResourceCache.addOutputIntent(writer);
+
+        // Render the template, the text of the cells holding tokens being recorded instead of drawn
+        ProbeGraphics probeGraphics = new ProbeGraphics(writer.getDirectContent(), this.contentSize.getWidth(),
+                this.contentSize.getHeight(), cellTexts.length);
+        pdfResourceCache.setFonts(probeGraphics);
+        odtRenderer.paintComponent(probeGraphics);
+        probeGraphics.dispose();
+
+        document.close();
+
+        return probeGraphics;
+    }
+
+    /**
+     * The ProbeGraphics class is a graphics context which records the text of the cells holding tokens instead of
+     * drawing it, the other text being drawn and listed with its position
+     */
+    private static class ProbeGraphics extends PdfGraphics2D {
+
+        private ArrayList<String> staticTexts;
+        private ArrayList<StampText> texts;
+
+        /**
+         * ProbeGraphics constructor
+         *
+         * @param contentByte Content drawn on
+         * @param width Width of the content
+         * @param height Height of the content
+         * @param cellCount Number of cells holding tokens
+         */
+        ProbeGraphics(PdfContentByte contentByte, float width, float height, int cellCount) {
+
+            super(contentByte, width, height);
+
+            // Initialise class attributes
+            this.staticTexts = new ArrayList<>();
+            this.texts = new ArrayList<>();
+            for (int i = 0; i < cellCount; i++) {
+                this.texts.add(null);
+            }
+        }
+
+        /**
+         * Record the text of a cell holding tokens or draw any other text
+         *
+         * @param s Text
+         * @param x Abscissa of the text
+         * @param y Ordinate of the base line of the text
+         */
+        @Override
+        public void drawString(String s, float x, float y) {
+
+            int cellIndex = this.getCellIndex(s);
+            if (cellIndex < 0) {
+                this.staticTexts.add(s + "@" + x + "," + y);
+                super.drawString(s, x, y);
+                return;
+            }
+
+            // A cell drawn more than once is not drawn as a single line
+            if (this.texts.get(cellIndex) != null) {
+                this.texts.get(cellIndex).drawnTwice = true;
+                return;
+            }
+
+            StampText text = new StampText();
+            text.clip = this.getClip();
+            text.font = this.getFont();
+            text.hints = this.getRenderingHints();
+            text.metrics = OdsStampTemplate.getFontMetrics(text.font);
+            text.paint = this.getPaint();
+            text.transform = this.getTransform();
+            text.width = text.metrics.stringWidth(s);
+            text.x = (int) x;
+            text.y = y;
+            this.texts.set(cellIndex, text);
+        }
+
+        /**
+         * Get the index of the cell whose probe text is drawn
+         *
+         * @param s Text drawn
+         * @return Index of the cell or -1 if the text is not a probe text
+         */
+        private int getCellIndex(String s) {
+
+            // Static text cannot start with a token followed by a number, which would have made its cell hold tokens
+            if (!s.startsWith(OdsStampTemplate.PROBE_PREFIX)) {
+                return -1;
+            }
+
+            int indexEnd = s.indexOf('#', OdsStampTemplate.PROBE_PREFIX.length());
+            if (indexEnd < 0) {
+                return -1;
+            }
+
+            try {
+                int cellIndex = Integer.parseInt(s.substring(OdsStampTemplate.PROBE_PREFIX.length(), indexEnd));
+                return (cellIndex < this.texts.size()) ? cellIndex : -1;
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * The StampText class is the text of a cell holding tokens as drawn by the renderer
+     */
+    private static class StampText {
+
+        private int alignment;
+        private int anchor;
+        private Shape clip;
+        private boolean drawnTwice;
+        private Font font;
+        private Map<?, ?> hints;
+        private int maxWidth;
+        private FontMetrics metrics;
+        private Paint paint;
+        private AffineTransform transform;
+        private int width;
+        private int x;
+        private float y;
+    }
+}
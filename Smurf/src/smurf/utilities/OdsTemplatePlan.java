@@ -0,0 +1,376 @@
+package smurf.utilities;
+
+import com.itextpdf.text.DocumentException;
+import java.awt.Image;
+import java.awt.MediaTracker;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.logging.Level;
+import javax.swing.ImageIcon;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jdom.JDOMException;
+import org.jdom.output.SAXOutputter;
+import org.jopendocument.dom.ODPackage;
+import org.jopendocument.dom.spreadsheet.Sheet;
+import org.jopendocument.dom.spreadsheet.SpreadSheet;
+import org.jopendocument.io.SaxContentUnmarshaller;
+import org.jopendocument.io.SaxStylesUnmarshaller;
+import org.jopendocument.model.OpenDocument;
+import smurf.Smurf;
+import smurf.exceptions.RequestForPaymentAttributeNotFoundException;
+import smurf.model.AvisClient;
+
+/**
+ * The OdsTemplatePlan class is the compiled form of a request for payment ODS template. The template is parsed once and
+ * the cells of its first sheet that hold #SMURF#&lt;column&gt;# tokens are split into literal text and attribute slots,
+ * so that filling a document for a request for payment only copies the parsed template and sets those cells. The plans
+ * are cached per template file and compiled again when the file is modified. A filled document is handed to the
+ * renderer from memory, the images of the template being decoded once for all the documents. The stamp form of the
+ * template, which draws the text of the cells holding tokens over the static layout rendered once, is loaded on demand
+ * from the display list saved for the template and cached with the plan.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class OdsTemplatePlan {
+
+    private static final String TOKEN_PREFIX = "#SMURF#";
+
+    private static final HashMap<String, OdsTemplatePlan> plans = new HashMap<>();
+
+    private ArrayList<TemplateCell> cells;
+    private long fileLastModified;
+    private long fileLength;
+    private HashMap<String, Image> images;
+    private OdsStampTemplate stampTemplate;
+    private boolean stampTemplateCompiled;
+    private String templateDigest;
+    private ODPackage templatePackage;
+
+    /**
+     * Get the compiled plan of a template file, the template being compiled again when it has been modified since it
+     * was last compiled
+     *
+     * @param templateFile ODS template file
+     * @return Compiled plan of the template
+     * @throws IOException
+     */
+    public static OdsTemplatePlan getPlan(File templateFile) throws IOException {
+
+        synchronized (OdsTemplatePlan.plans) {
+
+            // Check if the template has already been compiled and has not changed since
+            OdsTemplatePlan plan = OdsTemplatePlan.plans.get(templateFile.getAbsolutePath());
+            if ((plan == null) || (plan.fileLastModified != templateFile.lastModified())
+                    || (plan.fileLength != templateFile.length())) {
+
+                plan = new OdsTemplatePlan(templateFile);
+                OdsTemplatePlan.plans.put(templateFile.getAbsolutePath(), plan);
+            }
+
+            return plan;
+        }
+    }
+
+    /**
+     * OdsTemplatePlan constructor
+     *
+     * @param templateFile ODS template file
+     * @throws IOException
+     */
+    private OdsTemplatePlan(File templateFile) throws IOException {
+
+        // Initialise class attributes
+        this.cells = new ArrayList<>();
+        this.fileLastModified = templateFile.lastModified();
+        this.fileLength = templateFile.length();
+        this.images = new HashMap<>();
+        this.stampTemplateCompiled = false;
+
+        // Read the template file, whose digest names the files derived from the template
+        this.templateDigest = DigestUtils.shaHex(Files.readAllBytes(templateFile.toPath()));
+        this.templatePackage = new ODPackage(templateFile);
+        Sheet templateSheet = this.templatePackage.getSpreadSheet().getSheet(0);
+
+        // Scan the rows and columns of the sheet for the cells holding tokens
+        for (int x = 0; x < templateSheet.getColumnCount(); x++) {
+            for (int y = 0; y < templateSheet.getRowCount(); y++) {
+
+                // Check if the cell designated by coordinates x and y is valid
+                if (templateSheet.isCellValid(x, y)) {
+
+                    TemplateCell cell = TemplateCell.compile(x, y, templateSheet.getCellAt(x, y).getTextValue());
+                    if (cell != null) {
+                        this.cells.add(cell);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of cells of the template holding tokens
+     *
+     * @return Number of cells holding tokens
+     */
+    public int getCellCount() {
+        return this.cells.size();
+    }
+
+    /**
+     * Get the SHA-1 digest of the template file the plan was compiled from
+     *
+     * @return Hexadecimal SHA-1 digest of the template file
+     */
+    public String getTemplateDigest() {
+        return this.templateDigest;
+    }
+
+    /**
+     * Get the text of the cells of the template holding tokens for a request for payment, the tokens being replaced by
+     * the formatted attributes of the request for payment or by #NA when an attribute is not defined
+     *
+     * @param avisClient Request for payment
+     * @return Text of the cells holding tokens in the order of the plan
+     */
+    public String[] getCellTexts(AvisClient avisClient) {
+
+        String[] cellTexts = new String[this.cells.size()];
+
+        // Formatted values of the attributes, which are shared by the cells using the same attribute
+        HashMap<String, String> values = new HashMap<>();
+
+        for (int c = 0; c < cellTexts.length; c++) {
+
+            TemplateCell cell = this.cells.get(c);
+
+            StringBuilder cellContent = new StringBuilder(cell.literals[0]);
+            for (int i = 0; i < cell.slots.length; i++) {
+
+                String value = values.get(cell.slots[i]);
+                if (value == null) {
+                    try {
+                        value = avisClient.getFormattedAttribute(cell.slots[i]);
+                    } catch (RequestForPaymentAttributeNotFoundException ex) {
+                        Smurf.logController.log(Level.WARNING, OdsTemplatePlan.class.getSimpleName(),
+                                ex.getLocalizedMessage());
+                        value = "#NA";
+                    }
+                    values.put(cell.slots[i], value);
+                }
+
+                cellContent.append(value).append(cell.literals[i + 1]);
+            }
+
+            cellTexts[c] = cellContent.toString();
+        }
+
+        return cellTexts;
+    }
+
+    /**
+     * Create the sheet of a request for payment document from the template
+     *
+     * @param avisClient Request for payment
+     * @return Filled sheet of the document
+     */
+    public Sheet fill(AvisClient avisClient) {
+        return this.fill(this.getCellTexts(avisClient));
+    }
+
+    /**
+     * Create the sheet of a document from the template with the given text in the cells holding tokens
+     *
+     * @param cellTexts Text of the cells holding tokens in the order of the plan
+     * @return Filled sheet of the document
+     */
+    public Sheet fill(String[] cellTexts) {
+
+        // Copy the parsed template
+        SpreadSheet spreadSheet;
+        synchronized (this) {
+            spreadSheet = new ODPackage(this.templatePackage).getSpreadSheet();
+        }
+        Sheet sheet = spreadSheet.getSheet(0);
+
+        // Set cell content
+        for (int c = 0; c < cellTexts.length; c++) {
+            sheet.setValueAt(cellTexts[c], this.cells.get(c).x, this.cells.get(c).y);
+        }
+
+        return sheet;
+    }
+
+    /**
+     * Get the stamp form of the template, which is read from the display list saved for the template the first time it
+     * is requested or compiled when the template has no display list yet
+     *
+     * @param displayListFolder Folder holding the display lists of the templates
+     * @return Stamp form of the template or null if the template must be rendered in full
+     * @throws IOException
+     * @throws DocumentException
+     */
+    public synchronized OdsStampTemplate getStampTemplate(File displayListFolder) throws IOException,
+            DocumentException {
+
+        // Check if the stamp form has already been loaded
+        if (!this.stampTemplateCompiled) {
+            this.stampTemplate = OdsStampTemplate.load(this, new File(displayListFolder, this.templateDigest
+                    + ".stamp"));
+            this.stampTemplateCompiled = true;
+        }
+
+        return this.stampTemplate;
+    }
+
+    /**
+     * Create the rendering model of a filled document from its XML documents in memory instead of saving the document
+     * to a file and reading the file back
+     *
+     * @param sheet Filled sheet of the document
+     * @return Rendering model of the document
+     * @throws IOException
+     */
+    public OpenDocument createRenderDocument(Sheet sheet) throws IOException {
+
+        ODPackage documentPackage = sheet.getSpreadSheet().getPackage();
+        TemplateDocument document = new TemplateDocument();
+
+        // Content and styles handlers which build the rendering model
+        SaxContentUnmarshaller contentHandler = new SaxContentUnmarshaller(document);
+        SaxStylesUnmarshaller stylesHandler = new SaxStylesUnmarshaller(document);
+
+        // Replay the XML documents of the filled document to the handlers
+        try {
+            new SAXOutputter(contentHandler).output(documentPackage.getContent().getDocument());
+            new SAXOutputter(stylesHandler).output(documentPackage.getStyles().getDocument());
+        } catch (JDOMException ex) {
+            throw new IOException(ex);
+        }
+
+        document.init(contentHandler.getBody(), contentHandler.getAutomaticstyles(), stylesHandler.getStyles(),
+                stylesHandler.getAutomaticStyles(), stylesHandler.getMasterStyles());
+
+        return document;
+    }
+
+    /**
+     * Get an image of the template, the image being decoded the first time it is used only
+     *
+     * @param name Path of the image in the template
+     * @return Image
+     */
+    private synchronized Image getImage(String name) {
+
+        // Check if the image has already been decoded
+        Image image = this.images.get(name);
+        if (image == null) {
+
+            byte[] data = this.templatePackage.getBinaryFile(name);
+            if (data == null) {
+                throw new IllegalStateException("Image " + name + " not found in template");
+            }
+
+            ImageIcon imageIcon = new ImageIcon(data);
+            if (imageIcon.getImageLoadStatus() != MediaTracker.COMPLETE) {
+                throw new IllegalStateException("Unable to load image " + name);
+            }
+
+            image = imageIcon.getImage();
+            this.images.put(name, image);
+        }
+
+        return image;
+    }
+
+    /**
+     * The TemplateDocument class is the rendering model of a document filled from the template, which reads its
+     * images from the template instead of the file of the document
+     */
+    private class TemplateDocument extends OpenDocument {
+
+        /**
+         * Get an image of the document
+         *
+         * @param name Path of the image in the document
+         * @return Image
+         */
+        @Override
+        public Image getImage(String name) {
+            return OdsTemplatePlan.this.getImage(name);
+        }
+    }
+
+    /**
+     * The TemplateCell class is a cell of the template holding tokens, its text being split into literal segments
+     * around the attribute slots
+     */
+    private static class TemplateCell {
+
+        private String[] literals;
+        private String[] slots;
+        private int x;
+        private int y;
+
+        /**
+         * Split the text of a cell into literal segments and attribute slots
+         *
+         * @param x Column of the cell
+         * @param y Row of the cell
+         * @param text Text of the cell
+         * @return Compiled cell or null if the cell does not hold any token
+         */
+        static TemplateCell compile(int x, int y, String text) {
+
+            ArrayList<String> literals = new ArrayList<>();
+            ArrayList<String> slots = new ArrayList<>();
+
+            StringBuilder literal = new StringBuilder();
+            int start = 0;
+            int tokenStart;
+            while ((tokenStart = text.indexOf(OdsTemplatePlan.TOKEN_PREFIX, start)) > -1) {
+
+                // Name of the attribute, which ends at the next # character
+                int nameStart = tokenStart + OdsTemplatePlan.TOKEN_PREFIX.length();
+                int nameEnd = nameStart;
+                while ((nameEnd < text.length()) && (Character.isLetterOrDigit(text.charAt(nameEnd))
+                        || (text.charAt(nameEnd) == '_'))) {
+                    nameEnd++;
+                }
+
+                // Keep the text as it is when it is not a well formed token
+                if ((nameEnd == nameStart) || (nameEnd == text.length()) || (text.charAt(nameEnd) != '#')) {
+                    literal.append(text, start, nameStart);
+                    start = nameStart;
+                    continue;
+                }
+
+                literal.append(text, start, tokenStart);
+                literals.add(literal.toString());
+                slots.add(text.substring(nameStart, nameEnd));
+
+                literal.setLength(0);
+                start = nameEnd + 1;
+            }
+
+            // Check if the cell holds any token
+            if (slots.isEmpty()) {
+                return null;
+            }
+
+            literal.append(text, start, text.length());
+            literals.add(literal.toString());
+
+            TemplateCell cell = new TemplateCell();
+            cell.literals = literals.toArray(new String[literals.size()]);
+            cell.slots = slots.toArray(new String[slots.size()]);
+            cell.x = x;
+            cell.y = y;
+
+            return cell;
+        }
+    }
+}
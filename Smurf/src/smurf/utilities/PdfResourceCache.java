@@ -0,0 +1,140 @@
+package smurf.utilities;
+
+import com.itextpdf.awt.PdfGraphics2D;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.ICC_Profile;
+import com.itextpdf.text.pdf.PdfArray;
+import com.itextpdf.text.pdf.PdfDictionary;
+import com.itextpdf.text.pdf.PdfICCBased;
+import com.itextpdf.text.pdf.PdfName;
+import com.itextpdf.text.pdf.PdfStream;
+import com.itextpdf.text.pdf.PdfString;
+import com.itextpdf.text.pdf.PdfWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * The PdfResourceCache class holds the resources shared by the PDF documents generated by SMURF: the document fonts,
+ * the sRGB ICC profile and the PDF/A output intent built from it. The resources are loaded once for the application and
+ * are only read afterwards, so that the cache can be used by the document and voucher printers from several threads.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class PdfResourceCache {
+
+    private static PdfResourceCache pdfResourceCache;
+
+    private BaseFont boldFont;
+    private byte[] iccStreamBytes;
+    private PdfDictionary iccStreamDictionary;
+    private BaseFont normalFont;
+    private PdfDictionary outputIntentTemplate;
+
+    /**
+     * PdfResourceCache constructor
+     *
+     * @throws IOException
+     * @throws DocumentException
+     */
+    private PdfResourceCache() throws IOException, DocumentException {
+
+        // Load the document fonts in memory
+        this.boldFont = PdfResourceCache.loadFont("arial_b.ttf");
+        this.normalFont = PdfResourceCache.loadFont("arial.ttf");
+
+        // Load the PDF document ICC profile
+        ICC_Profile icc;
+        try (InputStream iccInputStream = new FileInputStream(Utilities.getCurrentWorkingDirectory()
+                + System.getProperty("file.separator") + "icc" + System.getProperty("file.separator") + "srgb.icc")) {
+            icc = ICC_Profile.getInstance(iccInputStream);
+        }
+
+        // Compress the PDF ICC profile stream once, each document getting a copy of the compressed stream
+        PdfICCBased pdfIcc = new PdfICCBased(icc);
+        pdfIcc.remove(PdfName.ALTERNATE);
+        ByteArrayOutputStream iccStream = new ByteArrayOutputStream();
+        pdfIcc.writeContent(iccStream);
+        this.iccStreamBytes = iccStream.toByteArray();
+        this.iccStreamDictionary = new PdfDictionary();
+        this.iccStreamDictionary.putAll(pdfIcc);
+
+        // Colour profile dictionary properties
+        this.outputIntentTemplate = new PdfDictionary(PdfName.OUTPUTINTENT);
+        this.outputIntentTemplate.put(PdfName.OUTPUTCONDITIONIDENTIFIER, new PdfString("sRGB IEC61966-2.1"));
+        this.outputIntentTemplate.put(PdfName.INFO, new PdfString("sRGB IEC61966-2.1"));
+        this.outputIntentTemplate.put(PdfName.S, PdfName.GTS_PDFA1);
+    }
+
+    /**
+     * Get the instance of the PdfResourceCache class, the resources being loaded the first time it is requested
+     *
+     * @return PdfResourceCache class instance
+     * @throws IOException
+     * @throws DocumentException
+     */
+    public static synchronized PdfResourceCache getPdfResourceCache() throws IOException, DocumentException {
+
+        // Check if the resources have already been loaded
+        if (pdfResourceCache == null) {
+            pdfResourceCache = new PdfResourceCache();
+        }
+
+        return pdfResourceCache;
+    }
+
+    /**
+     * Load a TrueType font of the font folder, the font being read from memory so that the font files are not opened
+     * again by each document embedding the font
+     *
+     * @param fontFilename Font file name
+     * @return Font
+     * @throws IOException
+     * @throws DocumentException
+     */
+    private static BaseFont loadFont(String fontFilename) throws IOException, DocumentException {
+
+        // Read the font file
+        byte[] fontData = Files.readAllBytes(Paths.get(Utilities.getCurrentWorkingDirectory(), "font", fontFilename));
+
+        return BaseFont.createFont(fontFilename, BaseFont.WINANSI, BaseFont.EMBEDDED, false, fontData, null);
+    }
+
+    /**
+     * Set the colour profile of a PDF document, the output intent of the document referencing its own copy of the
+     * compressed ICC profile stream
+     *
+     * @param writer PDF document content writer
+     * @throws IOException
+     */
+    public void addOutputIntent(PdfWriter writer) throws IOException {
+
+        // PDF ICC profile
+        PdfStream pdfIcc = new PdfStream(this.iccStreamBytes);
+        pdfIcc.putAll(this.iccStreamDictionary);
+
+        // Set the colour profile of the document
+        PdfDictionary outputIntent = new PdfDictionary(PdfName.OUTPUTINTENT);
+        outputIntent.putAll(this.outputIntentTemplate);
+
+        // Add profile to PDF document
+        outputIntent.put(PdfName.DESTOUTPUTPROFILE, writer.addToBody(pdfIcc).getIndirectReference());
+        writer.getExtraCatalog().put(PdfName.OUTPUTINTENTS, new PdfArray(outputIntent));
+    }
+
+    /**
+     * Set the fonts of a graphics context drawing on a PDF document
+     *
+     * @param pdfGraphics2d Graphics context
+     */
+    public void setFonts(PdfGraphics2D pdfGraphics2d) {
+
+        pdfGraphics2d.setBoldFont(this.boldFont);
+        pdfGraphics2d.setNormalFont(this.normalFont);
+    }
+}
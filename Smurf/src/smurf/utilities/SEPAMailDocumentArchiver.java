@@ -1,11 +1,15 @@
 package smurf.utilities;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import org.apache.commons.io.FileUtils;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import smurf.dao.ConfigurationDao;
 import smurf.exceptions.ConfigurationFormatException;
 import smurf.model.AvisClient;
@@ -14,17 +18,23 @@ import smurf.model.Configuration;
 /**
  * SEPAMailDocumentArchiver class is used create an archive of request for payment documents together with the sent
  * documents voucher.
+ * <p>
+ * The documents are written straight into the entries of the open archive, the voucher being added as the last entry
+ * when the archive is closed, so that the documents can be archived as soon as they have been generated.
  * 
  * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
  * @version 1.0
  */
 public class SEPAMailDocumentArchiver {
 
+    private static final int ARCHIVE_BUFFER_SIZE = 65536;
+
     private String archiveFolderName;
     private String archiveFilename;
     private SimpleDateFormat archiveFilenameDateFormat;
+    private ZipOutputStream archiveStream;
     private ArrayList<Configuration> configurations;
-    private String tempFolderName;
+    private String documentsArchiveFilename;
 
     /**
      * SEPAMailDocumentArchiver class constructor
@@ -55,17 +65,6 @@ public class SEPAMailDocumentArchiver {
         if (archiveFilenameIndex > -1) {
             this.archiveFilename = this.configurations.get(archiveFilenameIndex).getStringVal();
         }
-
-        // Get temporary folder name
-        this.tempFolderName = "temp";
-        int temporaryFolderIndex = this.configurations.indexOf(new Configuration("folder.temp"));
-        if (temporaryFolderIndex > -1) {
-            this.tempFolderName = this.configurations.get(temporaryFolderIndex).getStringVal();
-        }
-
-        // Create the temporary folder if it does not exist
-        Utilities.createFolderIfNotExist(Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator") +
-                this.tempFolderName);
     }
 
     /**
@@ -78,43 +77,105 @@ public class SEPAMailDocumentArchiver {
      */
     public String createArchive(ArrayList<AvisClient> avisClients, String voucherFilename) throws IOException {
 
-        // Name of archive
-        String docArchiveFilename = this.archiveFilename + "_" + this.archiveFilenameDateFormat.format(new Date());
+        // Open the archive
+        this.openArchive();
 
-        // Temporary archive folder path and name
-        String tempArchiveFolder = Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator") +
-                this.tempFolderName + System.getProperty("file.separator") + docArchiveFilename;
+        try {
 
-        // Create temporary folder which will contain the files that needs to be archived
-        Utilities.createFolderIfNotExist(tempArchiveFolder);
+            // Scan the list of requests for payment objects that needs to be processed
+            for (AvisClient avisClient : avisClients) {
 
-        // Copy voucher to temporary archive folder
-        FileUtils.copyFile(new File(voucherFilename), new File(tempArchiveFolder +
-                System.getProperty("file.separator") + new File(voucherFilename).getName()), true);
+                // Write request for payment document to the archive
+                this.addDocument(avisClient.getSmurfOutput().getBaseFilename());
+            }
 
-        // Scan the list of requests for payment objects that needs to be processed
-        for (AvisClient avisClient : avisClients) {
+            // Write the voucher to the archive and close it
+            return this.closeArchive(voucherFilename);
 
-            // Copy request for payment documents to temporary archive folder
-            FileUtils.copyFile(new File(avisClient.getSmurfOutput().getBaseFilename()), new File(tempArchiveFolder +
-                    System.getProperty("file.separator") +
-                    new File(avisClient.getSmurfOutput().getBaseFilename()).getName()), true);
+        } catch (IOException ex) {
+
+            // Delete the archive which could not be completed
+            this.discardArchive();
+
+            // Throw exception that was raised
+            throw ex;
         }
+    }
+
+    /**
+     * Open a ZIP archive in the archive folder, the documents being then written straight into its entries
+     * 
+     * @return Path and name of the archive opened
+     * @throws IOException
+     */
+    public String openArchive() throws IOException {
 
         // Archive file path and name
-        String documentsArchiveFilename = Utilities.getCurrentWorkingDirectory() +
+        this.documentsArchiveFilename = Utilities.getCurrentWorkingDirectory() +
                 System.getProperty("file.separator") + this.archiveFolderName + System.getProperty("file.separator") +
-                docArchiveFilename + ".zip";
+                this.archiveFilename + "_" + this.archiveFilenameDateFormat.format(new Date()) + ".zip";
 
         // Create the archive
-        Utilities.createFolderZipArchive(new File(tempArchiveFolder), new File(documentsArchiveFilename));
+        this.archiveStream = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(
+                this.documentsArchiveFilename), SEPAMailDocumentArchiver.ARCHIVE_BUFFER_SIZE));
+
+        return this.documentsArchiveFilename;
+    }
+
+    /**
+     * Write a document to a new entry of the open archive, the entry being named after the document file. The
+     * documents can be written by several threads at a time.
+     * 
+     * @param filename Path and name of the document file
+     * @throws IOException
+     */
+    public synchronized void addDocument(String filename) throws IOException {
+
+        // Document file
+        File document = new File(filename);
 
-        // Delete the content of the temporary archive folder
-        Utilities.deleteFolderFiles(tempArchiveFolder);
+        // Copy the document into its entry of the archive
+        this.archiveStream.putNextEntry(new ZipEntry(document.getName()));
+        Files.copy(document.toPath(), this.archiveStream);
+        this.archiveStream.closeEntry();
+    }
+
+    /**
+     * Write the voucher as the last entry of the open archive and close the archive
+     * 
+     * @param voucherFilename Path and name of the voucher file
+     * @return Path and name of the archive created
+     * @throws IOException
+     */
+    public synchronized String closeArchive(String voucherFilename) throws IOException {
 
-        // Delete the temporary archive folder
-        new File(tempArchiveFolder).delete();
+        // Write the voucher to the archive
+        this.addDocument(voucherFilename);
 
-        return documentsArchiveFilename;
+        // Close the archive
+        this.archiveStream.close();
+        this.archiveStream = null;
+
+        return this.documentsArchiveFilename;
+    }
+
+    /**
+     * Close and delete the open archive, such as when the documents it contains could not all be written
+     */
+    public synchronized void discardArchive() {
+
+        // Check if the archive is still open
+        if (this.archiveStream != null) {
+
+            try {
+                this.archiveStream.close();
+            } catch (IOException ex) {
+                // The archive is deleted whether or not it could be closed
+            }
+            this.archiveStream = null;
+
+            // Delete the archive
+            new File(this.documentsArchiveFilename).delete();
+        }
     }
 }
@@ -0,0 +1,802 @@
+package smurf.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import org.apache.commons.codec.digest.DigestUtils;
+import smurf.Smurf;
+import smurf.dao.AvisClientDao;
+import smurf.dao.ConfigurationDao;
+import smurf.dao.DocumentCache;
+import smurf.exceptions.*;
+import smurf.model.AvisClient;
+import smurf.model.Configuration;
+import smurf.model.SmurfOutput;
+
+/**
+ * The SEPAMailDocumentGenerator class generates the documents of a batch of requests for payment on a pool of worker
+ * threads. Each worker uses its own document printer, the printers sharing the generation date of the batch so that
+ * the names of the documents do not depend on the worker which generated them. The documents are attached to their
+ * requests for payment in the order of the batch, and the documents which have not been attached when the generation
+ * is cancelled or fails are deleted. The documents of requests for payment which have not changed since they were
+ * last generated on the same day with the same templates and settings are restored from the document cache.
+ * <p>
+ * The documents can also be sent as soon as they have been generated, the rendering, the conversion and the sending of
+ * the documents then running on their own workers as the stages of a pipeline.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class SEPAMailDocumentGenerator {
+
+    // Maximum time to wait for the workers to finish their current document once the generation is stopped
+    private static final long WORKER_SHUTDOWN_TIMEOUT = 10L;
+
+    // Maximum time in milliseconds to wait for a document leaving a stage of the pipeline before checking whether the
+    // pipeline has been cancelled
+    private static final long PIPELINE_POLL_INTERVAL = 100L;
+
+    // Stages of the pipeline
+    private static final int RENDERING_STAGE = 0;
+    private static final int CONVERSION_STAGE = 1;
+    private static final int SENDING_STAGE = 2;
+
+    private AvisClient[] avisClients;
+    private DocumentCache documentCache;
+    private Date documentGenerationDate;
+    private String[] documentFilenames;
+    private String[] documentNames;
+    private int noConversionThreads;
+    private int noSendingThreads;
+    private int noThreads;
+    private String outputFolder;
+    private String outputFormat;
+    private boolean[] sent;
+    private boolean sendingFailed;
+    private SmurfOutput[] smurfOutputs;
+    private String smicConfFile;
+    private volatile boolean stopped;
+    private String tempFolder;
+    private ThreadLocal<SEPAMailDocumentPrinter> printers;
+
+    /**
+     * SEPAMailDocumentGenerator constructor
+     *
+     * @param avisClients Requests for payment for which documents are generated
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws InvalidTemplatePathException
+     * @throws RequestForPaymentTemplateNotFoundException
+     * @throws RequestForPaymentTemplateNotDefinedException
+     * @throws SepaMailTemplateNotDefinedException
+     * @throws SepaMailTemplateNotFoundException
+     * @throws SmicConfigurationFilenameNotDefinedException
+     */
+    public SEPAMailDocumentGenerator(List<AvisClient> avisClients) throws IOException, ConfigurationFormatException,
+            InvalidTemplatePathException, RequestForPaymentTemplateNotFoundException,
+            RequestForPaymentTemplateNotDefinedException, SepaMailTemplateNotDefinedException,
+            SepaMailTemplateNotFoundException, SmicConfigurationFilenameNotDefinedException {
+
+        // Initialise class attributes with a snapshot of the batch which is not affected by later changes to the list
+        this.avisClients = avisClients.toArray(new AvisClient[avisClients.size()]);
+        this.documentGenerationDate = new Date();
+        this.documentFilenames = new String[this.avisClients.length];
+        this.documentNames = new String[this.avisClients.length];
+        this.noConversionThreads = Runtime.getRuntime().availableProcessors();
+        this.noSendingThreads = 1;
+        this.noThreads = Runtime.getRuntime().availableProcessors();
+        this.printers = new ThreadLocal<>();
+        this.sent = new boolean[this.avisClients.length];
+        this.sendingFailed = false;
+        this.smurfOutputs = new SmurfOutput[this.avisClients.length];
+        this.stopped = false;
+
+        // Configuration settings
+        ArrayList<Configuration> confs = ConfigurationDao.getConfigurationDao().getConfigurations();
+
+        // Get request for payment output format which defaults to PDF
+        int outputFormatIndex = confs.indexOf(new Configuration("output.format"));
+        if (outputFormatIndex > -1) {
+            this.outputFormat = confs.get(outputFormatIndex).getStringVal();
+        } else {
+            this.outputFormat = "PDF";
+        }
+
+        // Get output folder
+        int outputFolderIndex = confs.indexOf(new Configuration("folder.output"));
+        if (outputFolderIndex > -1) {
+            this.outputFolder = confs.get(outputFolderIndex).getStringVal();
+        } else {
+            this.outputFolder = "./output";
+        }
+
+        // Create output foler if it does not exist
+        Utilities.createFolderIfNotExist(Utilities.getCurrentWorkingDirectory() +
+                System.getProperty("file.separator") + this.outputFolder);
+
+        // Get temporary files folder
+        int temporaryFolderIndex = confs.indexOf(new Configuration("folder.temp"));
+        if (temporaryFolderIndex > -1) {
+            this.tempFolder = confs.get(temporaryFolderIndex).getStringVal();
+        } else {
+            this.tempFolder = "./temp";
+        }
+
+        // Create temporary folder if it does not exist
+        Utilities.createFolderIfNotExist(Utilities.getCurrentWorkingDirectory() +
+                System.getProperty("file.separator") + this.tempFolder);
+
+        // Get SMIC module configuration file
+        int smicConfFileIndex = confs.indexOf(new Configuration("smic.conf"));
+        if (smicConfFileIndex > -1) {
+            this.smicConfFile = Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator") +
+                    confs.get(smicConfFileIndex).getStringVal();
+        } else {
+
+            // Throw exception since SMIC module configuration filename has not been defined
+            throw new SmicConfigurationFilenameNotDefinedException();
+        }
+
+        // Number of workers generating documents, which defaults to the number of processors
+        int generationThreadsIndex = confs.indexOf(new Configuration("generation.threads"));
+        if ((generationThreadsIndex > -1) && (confs.get(generationThreadsIndex).getIntVal() > 0)) {
+            this.noThreads = confs.get(generationThreadsIndex).getIntVal();
+        }
+        this.noThreads = Math.max(1, Math.min(this.noThreads, this.avisClients.length));
+
+        // Number of workers converting the documents in the pipeline, which defaults to the number of processors
+        int conversionThreadsIndex = confs.indexOf(new Configuration("pipeline.threads.conversion"));
+        if ((conversionThreadsIndex > -1) && (confs.get(conversionThreadsIndex).getIntVal() > 0)) {
+            this.noConversionThreads = confs.get(conversionThreadsIndex).getIntVal();
+        }
+        this.noConversionThreads = Math.max(1, Math.min(this.noConversionThreads, this.avisClients.length));
+
+        // Number of workers sending the documents in the pipeline, which defaults to one
+        int sendingThreadsIndex = confs.indexOf(new Configuration("pipeline.threads.sending"));
+        if ((sendingThreadsIndex > -1) && (confs.get(sendingThreadsIndex).getIntVal() > 0)) {
+            this.noSendingThreads = confs.get(sendingThreadsIndex).getIntVal();
+        }
+        this.noSendingThreads = Math.max(1, Math.min(this.noSendingThreads, this.avisClients.length));
+
+        // Maximum size of the cache of generated documents in megabytes, the cache being disabled when it is zero
+        int documentCacheSize = 0;
+        int documentCacheSizeIndex = confs.indexOf(new Configuration("cache.documents.size"));
+        if (documentCacheSizeIndex > -1) {
+            documentCacheSize = confs.get(documentCacheSizeIndex).getIntVal();
+        }
+
+        // Get cache folder
+        String cacheFolder;
+        int cacheFolderIndex = confs.indexOf(new Configuration("folder.cache"));
+        if (cacheFolderIndex > -1) {
+            cacheFolder = confs.get(cacheFolderIndex).getStringVal();
+        } else {
+            cacheFolder = "./cache";
+        }
+
+        // Create the printer of the calling thread, which checks the templates before any worker is started
+        SEPAMailDocumentPrinter printer = this.getPrinter();
+
+        // Cache of the generated documents, which are always generated when the filled ODS documents are kept for
+        // debugging. The converted documents holding their date, the documents are only reused on the same day.
+        File smicConf = new File(this.smicConfFile);
+        if ((documentCacheSize > 0) && !printer.isTemporaryOdsKept() && smicConf.isFile()) {
+            this.documentCache = new DocumentCache(new File(Utilities.getCurrentWorkingDirectory()
+                    + System.getProperty("file.separator") + cacheFolder), documentCacheSize * 1024L * 1024L,
+                    DigestUtils.shaHex(printer.getRenderingDigest() + "\n" + this.outputFormat + "\n"
+                    + DigestUtils.shaHex(Files.readAllBytes(smicConf.toPath())) + "\n"
+                    + new SimpleDateFormat("yyyy-MM-dd").format(this.documentGenerationDate)));
+        }
+    }
+
+    /**
+     * Generate the documents of the batch, the documents being attached to their requests for payment in the order of
+     * the batch. The workers finish the document they are generating when the generation is cancelled or a document
+     * cannot be generated, the documents which have not been attached being then deleted.
+     *
+     * @param listener Listener following the generation of documents
+     * @return Number of documents generated and attached to their requests for payment
+     * @throws Exception The first exception raised while generating a document
+     */
+    public int generate(DocumentGenerationListener listener) throws Exception {
+
+        // Maximum number of documents queued for the workers or waiting for the previous documents of the batch
+        int maxPending = this.noThreads * 4;
+
+        // Workers generating the documents
+        ExecutorService executor = SEPAMailDocumentGenerator.createExecutor("SEPAMailDocumentGenerator",
+                this.noThreads, maxPending);
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+
+        // Load the attributes of the requests for payment fetched for the grid only in one pass
+        this.loadDetails();
+
+        // Tasks generating the documents and whether the document of each request for payment has been generated
+        ArrayList<Future<Integer>> futures = new ArrayList<>();
+        boolean[] generated = new boolean[this.avisClients.length];
+
+        // Number of documents submitted to the workers and number of documents attached in the order of the batch
+        int noSubmitted = 0;
+        int noAttached = 0;
+
+        // Load the index of the document cache
+        this.openDocumentCache();
+
+        try {
+
+            while (noAttached < this.avisClients.length) {
+
+                // Keep the workers busy while the generation has not been stopped
+                while ((noSubmitted < this.avisClients.length) && (noSubmitted - noAttached < maxPending)
+                        && !listener.isGenerationCancelled()) {
+
+                    futures.add(completionService.submit(this.createTask(noSubmitted)));
+                    noSubmitted++;
+                }
+
+                // Stop waiting for documents once the generation has been cancelled
+                if (listener.isGenerationCancelled()) {
+                    break;
+                }
+
+                // Wait for the next document, any exception raised while generating it stopping the generation
+                Future<Integer> future = completionService.take();
+                try {
+                    generated[future.get()] = true;
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof Exception) {
+                        throw (Exception)ex.getCause();
+                    }
+                    throw ex;
+                }
+
+                // Attach the documents generated in the order of the batch
+                int noPreviouslyAttached = noAttached;
+                while ((noAttached < noSubmitted) && generated[noAttached]) {
+                    this.avisClients[noAttached].setSmurfOutput(this.smurfOutputs[noAttached]);
+                    futures.set(noAttached, null);
+                    noAttached++;
+                }
+
+                // Report the progress of the generation
+                if (noAttached > noPreviouslyAttached) {
+                    listener.documentsGenerated(noAttached);
+                }
+            }
+
+        } finally {
+
+            // Drop the documents which have not been started and let the workers finish their current document
+            for (int i = noAttached; i < noSubmitted; i++) {
+                futures.get(i).cancel(false);
+            }
+            executor.shutdown();
+            boolean interrupted = SEPAMailDocumentGenerator.awaitTermination(executor);
+
+            // Delete the documents which have not been attached to their requests for payment
+            for (int i = noAttached; i < noSubmitted; i++) {
+                this.deleteDocument(i);
+            }
+
+            // Evict the least recently used documents from the document cache and save its index
+            this.closeDocumentCache();
+
+            // Restore the interrupted status of the calling thread
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return noAttached;
+    }
+
+    /**
+     * Generate the documents of the batch and send each document as soon as it has been converted. The rendering, the
+     * conversion and the sending of the documents run on their own workers, the calling thread moving each document to
+     * the queue of the next stage once it leaves a stage. The number of documents in the pipeline is bounded, so that
+     * no more documents are rendered while the conversion or the sending of the documents falls behind.
+     * <p>
+     * The documents are attached to their requests for payment once they have been converted. The workers finish the
+     * document they are processing when the pipeline is cancelled or a document cannot be generated or sent, the
+     * documents which have not been converted being then deleted.
+     *
+     * @param sender Sender of the documents, which is used by the sending workers at the same time
+     * @param listener Listener following the documents through the stages of the pipeline
+     * @return Number of documents generated and attached to their requests for payment
+     * @throws Exception The first exception raised while generating or sending a document
+     */
+    public int generateAndSend(SEPAMailDocumentSender sender, DocumentPipelineListener listener) throws Exception {
+
+        // Maximum number of documents in the pipeline, which bounds the number of documents queued for each stage
+        int maxInFlight = (this.noThreads + this.noConversionThreads + this.noSendingThreads) * 2;
+
+        // Workers of the stages of the pipeline
+        ExecutorService renderingExecutor = SEPAMailDocumentGenerator.createExecutor("SEPAMailDocumentGenerator",
+                this.noThreads, maxInFlight);
+        ExecutorService conversionExecutor = SEPAMailDocumentGenerator.createExecutor("SEPAMailDocumentConverter",
+                this.noConversionThreads, maxInFlight);
+        ExecutorService sendingExecutor = SEPAMailDocumentGenerator.createExecutor("SEPAMailDocumentSender",
+                this.noSendingThreads, maxInFlight);
+
+        // Documents leaving the stages of the pipeline
+        BlockingQueue<StageResult> results = new LinkedBlockingQueue<>();
+
+        // Load the attributes of the requests for payment fetched for the grid only in one pass
+        this.loadDetails();
+
+        // Whether the document of each request for payment has been converted
+        boolean[] converted = new boolean[this.avisClients.length];
+
+        // Number of documents entering the pipeline, leaving each stage and attached in the order of the batch
+        int noSubmitted = 0;
+        int noRendered = 0;
+        int noConverted = 0;
+        int noSent = 0;
+        int noAttached = 0;
+
+        // Load the index of the document cache
+        this.openDocumentCache();
+
+        try {
+
+            while (noSent < this.avisClients.length) {
+
+                // Feed the rendering workers while the pipeline is not full and has not been stopped
+                while ((noSubmitted < this.avisClients.length) && (noSubmitted - noSent < maxInFlight)
+                        && !listener.isGenerationCancelled()) {
+
+                    renderingExecutor.execute(this.createStageTask(SEPAMailDocumentGenerator.RENDERING_STAGE,
+                            noSubmitted, sender, results));
+                    noSubmitted++;
+                }
+
+                // Stop waiting for documents once the pipeline has been cancelled
+                if (listener.isGenerationCancelled()) {
+                    break;
+                }
+
+                // Wait for the next document leaving a stage, any exception raised by a stage stopping the pipeline
+                StageResult result = results.poll(SEPAMailDocumentGenerator.PIPELINE_POLL_INTERVAL,
+                        TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    continue;
+                }
+                if (result.exception != null) {
+                    this.sendingFailed = (result.stage == SEPAMailDocumentGenerator.SENDING_STAGE);
+                    throw result.exception;
+                }
+
+                if (result.stage == SEPAMailDocumentGenerator.SENDING_STAGE) {
+
+                    // The document has left the pipeline
+                    this.sent[result.index] = true;
+                    noSent++;
+
+                } else {
+
+                    if (result.stage == SEPAMailDocumentGenerator.RENDERING_STAGE) {
+                        noRendered++;
+                    }
+
+                    if ((result.stage == SEPAMailDocumentGenerator.RENDERING_STAGE)
+                            && (this.documentFilenames[result.index] != null)) {
+
+                        // Convert the rendered document
+                        conversionExecutor.execute(this.createStageTask(SEPAMailDocumentGenerator.CONVERSION_STAGE,
+                                result.index, sender, results));
+
+                    } else {
+
+                        // Send the converted document or the document restored from the cache
+                        converted[result.index] = true;
+                        noConverted++;
+                        sendingExecutor.execute(this.createStageTask(SEPAMailDocumentGenerator.SENDING_STAGE,
+                                result.index, sender, results));
+
+                        // Attach the documents converted in the order of the batch
+                        int noPreviouslyAttached = noAttached;
+                        while ((noAttached < noSubmitted) && converted[noAttached]) {
+                            this.avisClients[noAttached].setSmurfOutput(this.smurfOutputs[noAttached]);
+                            noAttached++;
+                        }
+
+                        if (noAttached > noPreviouslyAttached) {
+                            listener.documentsGenerated(noAttached);
+                        }
+                    }
+                }
+
+                // Report the progress of the stages of the pipeline
+                listener.documentsProcessed(noRendered, noConverted, noSent);
+            }
+
+        } finally {
+
+            // Drop the documents which have not been started and let the workers finish their current document
+            this.stopped = true;
+            renderingExecutor.shutdown();
+            conversionExecutor.shutdown();
+            sendingExecutor.shutdown();
+            boolean interrupted = SEPAMailDocumentGenerator.awaitTermination(renderingExecutor);
+            interrupted |= SEPAMailDocumentGenerator.awaitTermination(conversionExecutor);
+            interrupted |= SEPAMailDocumentGenerator.awaitTermination(sendingExecutor);
+
+            // Record the documents sent while the workers were finishing their current document
+            for (StageResult result : results) {
+                if ((result.stage == SEPAMailDocumentGenerator.SENDING_STAGE) && (result.exception == null)) {
+                    this.sent[result.index] = true;
+                }
+            }
+
+            // Attach the documents converted after a document which has not been converted, and delete the documents
+            // which have not been converted
+            for (int i = noAttached; i < noSubmitted; i++) {
+                if (converted[i]) {
+                    this.avisClients[i].setSmurfOutput(this.smurfOutputs[i]);
+                    noAttached++;
+                } else {
+                    this.deleteDocument(i);
+                }
+            }
+
+            // Evict the least recently used documents from the document cache and save its index
+            this.closeDocumentCache();
+
+            // Restore the interrupted status of the calling thread
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return noAttached;
+    }
+
+    /**
+     * Get the requests for payment whose documents have been sent by the pipeline
+     *
+     * @return Requests for payment whose documents have been sent, in the order of the batch
+     */
+    public ArrayList<AvisClient> getSentAvisClients() {
+
+        ArrayList<AvisClient> sentAvisClients = new ArrayList<>();
+        for (int i = 0; i < this.avisClients.length; i++) {
+            if (this.sent[i]) {
+                sentAvisClients.add(this.avisClients[i]);
+            }
+        }
+
+        return sentAvisClients;
+    }
+
+    /**
+     * Check if the pipeline was stopped by an exception raised while sending a document
+     *
+     * @return Whether the pipeline failed to send a document
+     */
+    public boolean isSendingFailed() {
+        return this.sendingFailed;
+    }
+
+    /**
+     * Create the task generating the document of a request for payment of the batch
+     *
+     * @param index Index of the request for payment in the batch
+     * @return Task returning the index of the request for payment once its document has been generated
+     */
+    private Callable<Integer> createTask(final int index) {
+
+        return new Callable<Integer>() {
+
+            @Override
+            public Integer call() throws Exception {
+
+                // Render the document unless it is restored from the cache, and convert it
+                if (!renderDocument(index)) {
+                    convertDocument(index);
+                }
+
+                return index;
+            }
+        };
+    }
+
+    /**
+     * Create the task running a stage of the pipeline for the document of a request for payment of the batch, the
+     * task reporting the document or the exception raised once the document leaves the stage
+     *
+     * @param stage Stage of the pipeline
+     * @param index Index of the request for payment in the batch
+     * @param sender Sender of the documents
+     * @param results Queue receiving the documents leaving the stages of the pipeline
+     * @return Task running the stage for the document
+     */
+    private Runnable createStageTask(final int stage, final int index, final SEPAMailDocumentSender sender,
+            final BlockingQueue<StageResult> results) {
+
+        return new Runnable() {
+
+            @Override
+            public void run() {
+
+                // Drop the document once the pipeline has been stopped
+                if (stopped) {
+                    return;
+                }
+
+                Exception exception = null;
+                try {
+
+                    switch (stage) {
+
+                        case SEPAMailDocumentGenerator.RENDERING_STAGE:
+                            renderDocument(index);
+                            break;
+
+                        case SEPAMailDocumentGenerator.CONVERSION_STAGE:
+                            convertDocument(index);
+                            break;
+
+                        default:
+                            sender.send(smurfOutputs[index]);
+                            break;
+                    }
+
+                } catch (Exception ex) {
+                    exception = ex;
+                }
+
+                results.add(new StageResult(stage, index, exception));
+            }
+        };
+    }
+
+    /**
+     * Render the document of a request for payment of the batch, or restore the document from the cache when the
+     * request for payment has not changed since its document was cached
+     *
+     * @param index Index of the request for payment in the batch
+     * @return Whether the document has been restored from the cache, in which case it needs no conversion
+     * @throws Exception
+     */
+    private boolean renderDocument(int index) throws Exception {
+
+        // Restore the document from the cache under the file names of this generation when the request for payment
+        // has not changed
+        if (this.documentCache != null) {
+            this.documentNames[index] = this.getPrinter().getDocumentName(this.avisClients[index]);
+            this.smurfOutputs[index] = this.documentCache.restore(this.documentCache.getKey(this.avisClients[index]),
+                    this.documentNames[index], this.outputFolder, this.tempFolder, this.outputFormat);
+            if (this.smurfOutputs[index] != null) {
+                return true;
+            }
+        }
+
+        // Generate the required request for payment document
+        this.documentFilenames[index] = this.getPrinter().generateRequestForPaymentDocument(this.avisClients[index]);
+
+        return false;
+    }
+
+    /**
+     * Convert the rendered document of a request for payment of the batch to the secondary format and keep a copy of
+     * the document in the cache
+     *
+     * @param index Index of the request for payment in the batch
+     * @throws Exception
+     */
+    private void convertDocument(int index) throws Exception {
+
+        // Generate the required request for payment document output class
+        this.smurfOutputs[index] = new SmurfOutput(this.documentFilenames[index], this.outputFormat,
+                this.outputFolder, this.tempFolder, this.smicConfFile);
+
+        // Keep a copy of the document in the cache
+        if (this.documentCache != null) {
+            this.documentCache.store(this.documentCache.getKey(this.avisClients[index]), this.documentNames[index],
+                    this.smurfOutputs[index]);
+        }
+    }
+
+    /**
+     * Load the index of the document cache, the documents being all generated when the index cannot be read
+     */
+    private void openDocumentCache() {
+
+        if (this.documentCache != null) {
+            try {
+                this.documentCache.open();
+            } catch (SQLException | IOException | ConfigurationFormatException ex) {
+
+                this.documentCache = null;
+
+                // Write error message to log file
+                Smurf.logController.log(Level.WARNING, SEPAMailDocumentGenerator.class.getSimpleName(),
+                        ex.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used documents from the document cache and save its index
+     */
+    private void closeDocumentCache() {
+
+        if (this.documentCache != null) {
+            try {
+                this.documentCache.close();
+            } catch (SQLException | IOException | ConfigurationFormatException ex) {
+
+                // Write error message to log file
+                Smurf.logController.log(Level.WARNING, SEPAMailDocumentGenerator.class.getSimpleName(),
+                        ex.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Create a pool of daemon workers whose queue is bounded, the callers never queuing more tasks than the capacity
+     * of the queue
+     *
+     * @param name Name of the threads of the workers, which are numbered
+     * @param noThreads Number of workers
+     * @param queueCapacity Maximum number of tasks waiting for a worker
+     * @return Executor running tasks on the workers
+     */
+    private static ExecutorService createExecutor(final String name, int noThreads, int queueCapacity) {
+
+        final AtomicInteger threadNo = new AtomicInteger();
+
+        return new ThreadPoolExecutor(noThreads, noThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + threadNo.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Wait for the workers of an executor which has been shut down to finish their current document
+     *
+     * @param executor Executor which has been shut down
+     * @return Whether the calling thread was interrupted while waiting
+     */
+    private static boolean awaitTermination(ExecutorService executor) {
+
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(SEPAMailDocumentGenerator.WORKER_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+
+        return interrupted;
+    }
+
+    /**
+     * Get the document printer of the current thread, since a printer cannot be used by several threads at a time
+     *
+     * @return Document printer of the current thread
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws InvalidTemplatePathException
+     * @throws RequestForPaymentTemplateNotFoundException
+     * @throws RequestForPaymentTemplateNotDefinedException
+     * @throws SepaMailTemplateNotDefinedException
+     * @throws SepaMailTemplateNotFoundException
+     */
+    private SEPAMailDocumentPrinter getPrinter() throws IOException, ConfigurationFormatException,
+            InvalidTemplatePathException, RequestForPaymentTemplateNotFoundException,
+            RequestForPaymentTemplateNotDefinedException, SepaMailTemplateNotDefinedException,
+            SepaMailTemplateNotFoundException {
+
+        SEPAMailDocumentPrinter printer = this.printers.get();
+        if (printer == null) {
+            printer = new SEPAMailDocumentPrinter(this.documentGenerationDate);
+            this.printers.set(printer);
+        }
+
+        return printer;
+    }
+
+    /**
+     * Load the attributes of the requests for payment of the batch whose attributes have not been loaded yet, in a
+     * single pass over the query before the documents are generated
+     *
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws SQLException
+     * @throws DatesNotSpecifiedException
+     * @throws StartDateNotSpecifiedException
+     * @throws EndDateNotSpecifiedException
+     * @throws SqlParameterNotDefinedException
+     */
+    private void loadDetails() throws IOException, ConfigurationFormatException, SQLException,
+            DatesNotSpecifiedException, StartDateNotSpecifiedException, EndDateNotSpecifiedException,
+            SqlParameterNotDefinedException {
+
+        ArrayList<AvisClient> pendingAvisClients = new ArrayList<>();
+        for (AvisClient avisClient : this.avisClients) {
+            if (!avisClient.isDetailLoaded()) {
+                pendingAvisClients.add(avisClient);
+            }
+        }
+
+        if (!pendingAvisClients.isEmpty()) {
+            new AvisClientDao().loadAvisClientDetails(pendingAvisClients);
+        }
+    }
+
+    /**
+     * Delete the files generated for a request for payment of the batch
+     *
+     * @param index Index of the request for payment in the batch
+     */
+    private void deleteDocument(int index) {
+
+        // Document generated by the printer
+        if (this.documentFilenames[index] != null) {
+            new File(this.documentFilenames[index]).delete();
+        }
+
+        // Documents of the output format
+        if (this.smurfOutputs[index] != null) {
+
+            if (this.smurfOutputs[index].getBaseFilename() != null) {
+                new File(this.smurfOutputs[index].getBaseFilename()).delete();
+            }
+
+            if (this.smurfOutputs[index].getSecondaryFilename() != null) {
+                new File(this.smurfOutputs[index].getSecondaryFilename()).delete();
+            }
+        }
+    }
+
+    /**
+     * The StageResult class holds a document leaving a stage of the pipeline
+     */
+    private static class StageResult {
+
+        private Exception exception;
+        private int index;
+        private int stage;
+
+        /**
+         * StageResult constructor
+         *
+         * @param stage Stage of the pipeline
+         * @param index Index of the request for payment in the batch
+         * @param exception Exception raised by the stage or null if the document has been processed
+         */
+        public StageResult(int stage, int index, Exception exception) {
+
+            // Initialise class attributes
+            this.exception = exception;
+            this.index = index;
+            this.stage = stage;
+        }
+    }
+}
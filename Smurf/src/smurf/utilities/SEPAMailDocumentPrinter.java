@@ -11,13 +11,12 @@ import com.itextpdf.text.xml.xmp.XmpBasicSchema;
 import com.itextpdf.text.xml.xmp.XmpWriter;
 import java.awt.print.PrinterException;
 import java.io.*;
-import java.text.ParseException;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.logging.Level;
-import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.jopendocument.dom.spreadsheet.Sheet;
-import org.jopendocument.dom.spreadsheet.SpreadSheet;
 import org.jopendocument.model.OpenDocument;
 import org.jopendocument.renderer.ODTRenderer;
 import smurf.Smurf;
@@ -34,10 +33,14 @@ import smurf.model.Configuration;
  */
 public class SEPAMailDocumentPrinter {
 
+    private String cacheFolderName;
     private ArrayList<Configuration> configurations;
     private Date documentGenerationDate;
     private File templateFile;
     private File xmlTemplateFile;
+    private boolean keepTemporaryOds;
+    private StringBuilder missiveBuffer;
+    private boolean stampDocuments;
     private String outputFolderName;
     private SimpleDateFormat fileDateFormat;
     private String templateFilename;
@@ -45,7 +48,6 @@ public class SEPAMailDocumentPrinter {
     private String templateFolderName;
     private String temporaryFolderName;
     private String xmlTemplateFilename;
-    private String xmlTemplateFilenameOnly;
 
     // <editor-fold defaultstate="collapsed" desc="Document printer constructor">
     /**
@@ -59,11 +61,31 @@ public class SEPAMailDocumentPrinter {
     public SEPAMailDocumentPrinter() throws IOException, ConfigurationFormatException, InvalidTemplatePathException,
             RequestForPaymentTemplateNotFoundException, RequestForPaymentTemplateNotDefinedException,
             SepaMailTemplateNotDefinedException, SepaMailTemplateNotFoundException {
+        this(new Date());
+    }
+
+    /**
+     * SEPAMailDocumentPrinter class constructor for printers sharing the same generation date, so that the names of
+     * the documents generated by several printers for a batch do not depend on the printer used
+     * 
+     * @param documentGenerationDate Date included in the names of the documents generated
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     * @throws InvalidTemplatePathException
+     * @throws RequestForPaymentTemplateNotFoundException 
+     */
+    public SEPAMailDocumentPrinter(Date documentGenerationDate) throws IOException, ConfigurationFormatException,
+            InvalidTemplatePathException, RequestForPaymentTemplateNotFoundException,
+            RequestForPaymentTemplateNotDefinedException, SepaMailTemplateNotDefinedException,
+            SepaMailTemplateNotFoundException {
 
         // Initialise class attributes
         this.configurations = ConfigurationDao.getConfigurationDao().getConfigurations();
-        this.documentGenerationDate = new Date();
+        this.documentGenerationDate = documentGenerationDate;
         this.fileDateFormat = new SimpleDateFormat("yyyyMMddHHmmss");
+        this.keepTemporaryOds = false;
+        this.missiveBuffer = new StringBuilder();
+        this.stampDocuments = false;
 
         // Get template folder name
         int templateFolderIndex = this.configurations.indexOf(new Configuration("folder.template"));
@@ -81,10 +103,28 @@ public class SEPAMailDocumentPrinter {
             this.temporaryFolderName = "./temp";
         }
 
+        // Whether the filled ODS documents are saved in the temporary folder for debugging
+        int keepTemporaryOdsIndex = this.configurations.indexOf(new Configuration("folder.temp.ods"));
+        if (keepTemporaryOdsIndex > -1) {
+            this.keepTemporaryOds = this.configurations.get(keepTemporaryOdsIndex).getBoolVal();
+        }
+
         // Create temporary folder if it does not exist
         Utilities.createFolderIfNotExist(Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator")
                 + this.temporaryFolderName);
 
+        // Get cache folder name
+        int cacheFolderIndex = this.configurations.indexOf(new Configuration("folder.cache"));
+        if (cacheFolderIndex > -1) {
+            this.cacheFolderName = this.configurations.get(cacheFolderIndex).getStringVal();
+        } else {
+            this.cacheFolderName = "./cache";
+        }
+
+        // Create cache folder if it does not exist
+        Utilities.createFolderIfNotExist(Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator")
+                + this.cacheFolderName);
+
         // Get ouput folder name
         int outputFolderIndex = this.configurations.indexOf(new Configuration("folder.output"));
         if (outputFolderIndex > -1) {
@@ -155,12 +195,15 @@ public class SEPAMailDocumentPrinter {
                 + System.getProperty("file.separator") + this.templateFolderName);
         }
 
+        // Whether the documents are stamped on the static layout of the template rendered once
+        int stampDocumentsIndex = this.configurations.indexOf(new Configuration("template.request.stamp"));
+        if (stampDocumentsIndex > -1) {
+            this.stampDocuments = this.configurations.get(stampDocumentsIndex).getBoolVal();
+        }
+
         // Template file name without extension
         this.templateFilenameOnly = this.templateFilename.substring(0, this.templateFilename.length() - 4);
 
-        // XML template file name without extension
-        this.xmlTemplateFilenameOnly = this.xmlTemplateFilename.substring(0, this.xmlTemplateFilename.length() - 4);
-
     }// </editor-fold>
 
     // <editor-fold defaultstate="collapsed" desc="Generate document for a given request for payment object">
@@ -174,136 +217,98 @@ public class SEPAMailDocumentPrinter {
     public String generateRequestForPaymentDocument(AvisClient avisClient) throws IOException, FileNotFoundException,
             DocumentException, PrinterException {
 
-        // Generate the temporary ODS file for the given request for payment
-        String tempOdsFile = this.createODSOutput(avisClient);
+        // Text of the cells of the compiled template holding tokens for the given request for payment
+        OdsTemplatePlan templatePlan = OdsTemplatePlan.getPlan(this.templateFile);
+        String[] cellTexts = templatePlan.getCellTexts(avisClient);
+
+        // Generate the SEPAmail missive XML document for the given request for payment
+        String sepaMailXml = this.generateSepaMailXml(avisClient);
+
+        // Stamp the text of the cells on the static layout of the template when the template allows it
+        if (this.stampDocuments && !this.keepTemporaryOds) {
+
+            OdsStampTemplate stampTemplate = templatePlan.getStampTemplate(new File(
+                    Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator")
+                    + this.cacheFolderName));
+            if ((stampTemplate != null) && stampTemplate.accepts(cellTexts)) {
+                return this.createOutputPdf(avisClient, null, stampTemplate, cellTexts, sepaMailXml);
+            }
+        }
 
-        // Generate the SEPAmail missive XML file for the given request for payment
-        String sepaMailXmlFile = this.generateSepaMailXml(avisClient);
+        // Fill the ODS document for the given request for payment
+        OpenDocument odsDocument = this.createODSOutput(avisClient, templatePlan, cellTexts);
 
         // Generate the request for payment document and return the path and file name of the document
-        return this.createOutputPdf(avisClient, tempOdsFile, sepaMailXmlFile);
+        return this.createOutputPdf(avisClient, odsDocument, null, null, sepaMailXml);
 
     }// </editor-fold>
 
-    // <editor-fold defaultstate="collapsed" desc="Generate ODS file using template and request for payment data">
+    // <editor-fold defaultstate="collapsed" desc="Digest of the settings the documents depend on">
     /**
-     * Create an ODS file with values replaced for a given request for payment using the request for payment template
+     * Get the digest of the templates and settings the rendering of the documents depends on, so that documents
+     * generated with other templates or settings are never taken for the documents of this printer
      * 
-     * @param avisClient Request for payment object
-     * @return Path and name of the temporary ODS file generated
+     * @return Hexadecimal SHA-1 digest of the templates and settings used to render the documents
+     * @throws IOException
      */
-    private String createODSOutput(AvisClient avisClient) throws IOException {
-
-        // Create a map of tokens and corresponding values
-        HashMap<String, String> tokens = new HashMap<String, String>();
-        
-        // Add tokens and corresponding values to the map
-        try {
-            tokens.put("#SMURF#date_avis#", avisClient.getFormattedAttribute("date_avis"));
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#date_avis#", "#NA");
-        }
-        
-        try {
-            tokens.put("#SMURF#client#", avisClient.getFormattedAttribute("client"));
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#client#", "#NA");
-        }
-        
-        try {
-            tokens.put("#SMURF#identifiant_client#", avisClient.getFormattedAttribute("identifiant_client"));
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#identifiant_client#", "#NA");
-        }
-        
-        try {
-            tokens.put("#SMURF#montant_total#", avisClient.getFormattedAttribute("montant_total"));
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#montant_total#", "#NA");
-        }
-        
-        try {
-            tokens.put("#SMURF#date_paiement#", avisClient.getFormattedAttribute("date_paiement"));
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#date_paiement#", "#NA");
-        }
-
-        // Read the template file
-        Sheet templateSheet = SpreadSheet.createFromFile(this.templateFile).getSheet(0);
-
-        // Scan the rows and columns of the sheet
-        for (int x = 0; x < templateSheet.getColumnCount(); x++) {
-            for (int y = 0; y < templateSheet.getRowCount(); y++) {
-
-                // Check if the cell designated by coordinates x and y is valid
-                if (templateSheet.isCellValid(x, y)) {
-
-                    // Content of cell
-                    String cellContent = templateSheet.getCellAt(x, y).getTextValue();
-
-                    // Number of times the #SMURF# keyword occurs in the cell content
-                    int matches = StringUtils.countMatches(cellContent, "#SMURF#");
-
-                    // Check if the content of the cell contains the #SMURF# keyword
-                    if (matches > 0) {
-
-                        // Array of keys that have been used to replace values in the template
-                        ArrayList<String> matchedKeys = new ArrayList<String>();
+    public String getRenderingDigest() throws IOException {
 
-                        // Tokens map iterator
-                        Iterator mapIt = tokens.entrySet().iterator();
-
-                        // Iterate through the set of keys and replace with corresponding values
-                        while (mapIt.hasNext()) {
-
-                            // Current map entry
-                            Map.Entry<String, String> entry = (Map.Entry<String, String>)mapIt.next();
+        // Page size of the documents
+        Rectangle pageSize = this.getPageSize();
 
-                            // Check if the cell contains the current map entry key
-                            if (StringUtils.countMatches(cellContent, entry.getKey()) > 0) {
+        // Templates of the document and of the missive along with the settings used to render the document
+        return DigestUtils.shaHex(OdsTemplatePlan.getPlan(this.templateFile).getTemplateDigest() + "\n"
+                + DigestUtils.shaHex(Files.readAllBytes(this.xmlTemplateFile.toPath())) + "\n"
+                + this.templateFilenameOnly + "\n" + pageSize.getWidth() + "x" + pageSize.getHeight() + "\n"
+                + this.stampDocuments);
+    }
 
-                                // Replace cell content
-                                cellContent = cellContent.replaceAll(entry.getKey(), entry.getValue());
+    /**
+     * Check if the filled ODS documents are saved in the temporary folder for debugging
+     * 
+     * @return Whether the filled ODS documents are saved in the temporary folder
+     */
+    public boolean isTemporaryOdsKept() {
+        return this.keepTemporaryOds;
+    }
 
-                                // Add the key to the array of matched keys
-                                matchedKeys.add(entry.getKey());
+    /**
+     * Get the name shared by the files generated for a request for payment, without folder and extension
+     * 
+     * @param avisClient Request for payment object
+     * @return Name of the documents of the request for payment
+     */
+    public String getDocumentName(AvisClient avisClient) {
+        return this.templateFilenameOnly + "_" + this.fileDateFormat.format(this.documentGenerationDate) + "_"
+                + avisClient.getIdAvis().toString();
 
-                                // Avoids a ConcurrentModificationException
-                                mapIt.remove();
+    }// </editor-fold>
 
-                                // Check if we need to exit the iterator loop
-                                if (matchedKeys.size() >= matches) {
-                                    break;
-                                }
-                            }
-                        }
+    // <editor-fold defaultstate="collapsed" desc="Generate ODS document using template and request for payment data">
+    /**
+     * Create an ODS document with values replaced for a given request for payment using the compiled plan of the
+     * request for payment template, which replaces any #SMURF#&lt;column&gt;# token by the attribute of the same name.
+     * The document is rendered from memory unless the filled ODS documents are kept in the temporary folder.
+     * 
+     * @param avisClient Request for payment object
+     * @param templatePlan Compiled plan of the request for payment template
+     * @param cellTexts Text of the cells of the template holding tokens for the request for payment
+     * @return ODS document ready to be rendered
+     */
+    private OpenDocument createODSOutput(AvisClient avisClient, OdsTemplatePlan templatePlan, String[] cellTexts)
+            throws IOException {
 
-                        // Remove keys for which values have already been replaced from tokens map
-                        for (int j = 0; j < matchedKeys.size(); j++) {
-                            tokens.remove(matchedKeys.get(j));
-                        }
+        // Fill the cells of the compiled template holding tokens with the attributes of the request for payment
+        Sheet templateSheet = templatePlan.fill(cellTexts);
 
-                        // Set cell content
-                        templateSheet.setValueAt(cellContent, x, y);
-                    }
-                }
-            }
+        // Hand the filled document to the renderer without writing it to disk
+        if (!this.keepTemporaryOds) {
+            return templatePlan.createRenderDocument(templateSheet);
         }
 
         // Temporary ODS output file name
         String odsOutFilename = Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator")
-                + this.temporaryFolderName + System.getProperty("file.separator") + this.templateFilenameOnly + "_"
-                + this.fileDateFormat.format(this.documentGenerationDate) + "_" + avisClient.getIdAvis().toString()
+                + this.temporaryFolderName + System.getProperty("file.separator") + this.getDocumentName(avisClient)
                 + ".ods";
 
         // Temporary output file
@@ -312,253 +317,60 @@ public class SEPAMailDocumentPrinter {
         // Save the temporary template file for the current request for payment
         templateSheet.getSpreadSheet().saveAs(outputTemplate);
 
-        return odsOutFilename;
+        // Open the ODS file
+        OpenDocument doc = new OpenDocument();
+        doc.loadFrom(outputTemplate);
+
+        return doc;
 
     }// </editor-fold>
 
     // <editor-fold defaultstate="collapsed" desc="Generate SEPAmail missive XML document">
     /**
-     * Generate the SEPAmail XML document that needs to be embedded into the request for payment PDF document
+     * Generate the SEPAmail XML document that needs to be embedded into the request for payment PDF document, the
+     * document being kept in memory until it is added to the XMP data of the PDF document
      * 
      * @param avisClient Request for payment object
-     * @return SEPAmail XML document file name
+     * @return SEPAmail XML document
      */
-    private String generateSepaMailXml(AvisClient avisClient) throws FileNotFoundException, IOException {
-
-        // ISO date/time formatter
-        SimpleDateFormat isoDateTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-        isoDateTimeFormat.setLenient(false);
-        isoDateTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
-
-        // ISO date only formatter
-        SimpleDateFormat isoDateFormat = new SimpleDateFormat("yyyy-MM-dd");
-
-        // Create a map of tokens and corresponding values
-        HashMap<String, String> tokens = new HashMap<String, String>();
-
-        // SEPAmail XML output filename
-        String xmlOutFilename = Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator")
-                + this.temporaryFolderName + System.getProperty("file.separator") + this.xmlTemplateFilenameOnly + "_"
-                + this.fileDateFormat.format(this.documentGenerationDate) + "_" + avisClient.getIdAvis().toString()
-                + ".xml";
-
-        // Add tokens and corresponding values to the map
-        try {
-            tokens.put("#SMURF#MissiveID#", avisClient.getFormattedAttribute("identifiant_missive"));
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#MissiveID#", "#NA");
-        }
-        
-        try {
-
-            // Get payment reminder date
-            Object dateAvis = avisClient.getAttribute("date_avis");
-
-            // Check the payment reminder date object instance
-            if (dateAvis.getClass().getName().equals("java.sql.Date")) {
-
-                // Convert date to ISO date
-                tokens.put("#SMURF#date_avis_iso#",
-                        isoDateTimeFormat.format((Date)avisClient.getAttribute("date_avis")));
-            } else {
+    private String generateSepaMailXml(AvisClient avisClient) throws IOException {
 
-                // Date parser instance
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-mm-dd");
+        // Render the missive of the request for payment using the compiled plan of the missive template
+        MissiveTemplatePlan.getPlan(this.xmlTemplateFile).render(avisClient, this.missiveBuffer);
 
-                try {
-
-                    // Convert date to Date object
-                    Date date = dateFormat.parse(dateAvis.toString());
-
-                    // Convert date to ISO date
-                    tokens.put("#SMURF#date_avis_iso#", isoDateTimeFormat.format(date));
-
-                } catch (ParseException ex) {
-                    Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                            ex.getLocalizedMessage());
-                    tokens.put("#SMURF#date_avis_iso#", "#NA");
-                }
-            }
-
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#date_avis_iso#", "#NA");
-        }
-        
-        try {
-            tokens.put("#SMURF#client#BIC#", avisClient.getFormattedAttribute("client_bic"));
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#client#BIC#", "#NA");
-        }
-        
-        try {
-            tokens.put("#SMURF#client#IBAN#", avisClient.getFormattedAttribute("client_iban"));
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#client#IBAN#", "#NA");
-        }
-        
-        try {
-
-            // Get the payment date object
-            Object datePaiement = avisClient.getAttribute("date_paiement");
-
-            // Check the payment date object instance
-            if (datePaiement.getClass().getName().equals("java.sql.Date")) {
-                tokens.put("#SMURF#date_paiement#",
-                        isoDateFormat.format((Date)avisClient.getAttribute("date_paiement")));
-            } else {
-
-                // Date parser instance
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-mm-dd");
-
-                try {
-
-                    // Convert date to Date object
-                    Date date = dateFormat.parse(datePaiement.toString());
-
-                    // Convert date to ISO date
-                    tokens.put("#SMURF#date_paiement#", isoDateTimeFormat.format(date));
-
-                } catch (ParseException ex) {
-                    Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                            ex.getLocalizedMessage());
-                    tokens.put("#SMURF#date_paiement#", "#NA");
-                }
-            }
-
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#date_paiement#", "#NA");
-        }
-        
-        try {
-            tokens.put("#SMURF#client#", avisClient.getFormattedAttribute("client"));
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#client#", "#NA");
-        }
-        
-        try {
-            tokens.put("#SMURF#montant_total#", avisClient.getAttribute("montant_total").toString());
-        } catch (RequestForPaymentAttributeNotFoundException ex) {
-            Smurf.logController.log(Level.WARNING, SEPAMailDocumentPrinter.class.getSimpleName(),
-                    ex.getLocalizedMessage());
-            tokens.put("#SMURF#montant_total#", "#NA");
-        }
-
-        String line;
-
-        // Buffered read
-        BufferedReader br = new BufferedReader(new FileReader(this.xmlTemplateFile));
-
-        // File writer stream
-        FileWriter fw = new FileWriter(xmlOutFilename);
-
-        // Buffered writer
-        BufferedWriter bw = new BufferedWriter(fw);
-
-        // Read the file line by line
-        while((line = br.readLine()) != null) {
-
-            // Check the number of time the #SMURF# keyword can be found in a line
-            int matches = StringUtils.countMatches(line, "#SMURF#");
-
-            // Check if the current line contains the #SMURF# keyword
-            if (matches > 0) {
-
-                // #SMURF#client#BIC# special case
-                int sp1Matches = StringUtils.countMatches(line, "#SMURF#client#BIC#");
-                if (sp1Matches > 0) {
-                    line = line.replaceAll("#SMURF#client#BIC#", tokens.get("#SMURF#client#BIC#"));
-                    matches = matches - sp1Matches;
-                }
-
-                // #SMURF#client#IBAN# special case
-                int sp2Matches = StringUtils.countMatches(line, "#SMURF#client#IBAN#");
-                if (sp2Matches > 0) {
-                    line = line.replaceAll("#SMURF#client#IBAN#", tokens.get("#SMURF#client#IBAN#"));
-                    matches = matches - sp2Matches;
-                }
-
-                // We will check for the other tokens if we still have keyword matches
-                if (matches > 0) {
-
-                    // Tokens map iterator
-                    Iterator mapIt = tokens.entrySet().iterator();
-
-                    // Iterate through the set of keys and replace with corresponding values
-                    while (mapIt.hasNext()) {
-
-                        // Current map entry
-                        Map.Entry<String, String> entry = (Map.Entry<String, String>)mapIt.next();
-
-                        // Check if the LINE contains the current map entry key
-                        if (StringUtils.countMatches(line, entry.getKey()) > 0) {
-
-                            // Replace line content
-                            line = line.replaceAll(entry.getKey(), entry.getValue());
-
-                            // Decrease the number of matches
-                            matches--;
-
-                            // Check if we need to exit the iterator loop
-                            if (matches < 1) {
-                                break;
-                            }
-                        }
-                    }
-                }
-            }
-
-            // Write line to output file
-            bw.write(line + System.getProperty("line.separator"));
-        }
-
-        // Close the input file reader
-        br.close();
-
-        // Close output file writer
-        bw.close();
-
-        return xmlOutFilename;
+        return this.missiveBuffer.toString();
 
     }// </editor-fold>
 
     // <editor-fold defaultstate="collapsed" desc="Generate PDFA1A request for payment document with required XMP tags">
     /**
-     * Generate PDFA1A compliant request for payment document with appropriate XMP content
+     * Generate PDFA1A compliant request for payment document with appropriate XMP content. The content of the document
+     * is either the ODS document rendered in full or the text of the cells holding tokens stamped on the background
+     * page of the template.
      * 
      * @param avisClient Request for payment object
-     * @param odsFilename Path and file name of the ODS file
-     * @param xmlFilename Path and file name of the SEPAmail XML missive file
+     * @param doc ODS document or null when the document is stamped
+     * @param stampTemplate Stamp form of the template when the document is stamped
+     * @param cellTexts Text of the cells of the template holding tokens when the document is stamped
+     * @param sepaMailXml SEPAmail XML missive document
      * @return Path and file name of the preliminary PDF
      */
-    private String createOutputPdf(AvisClient avisClient, String odsFilename, String xmlFilename) throws
-            FileNotFoundException, DocumentException, PrinterException, IOException {
+    private String createOutputPdf(AvisClient avisClient, OpenDocument doc, OdsStampTemplate stampTemplate,
+            String[] cellTexts, String sepaMailXml) throws FileNotFoundException, DocumentException,
+            PrinterException, IOException {
 
         // Output filename
         String outputFilename = Utilities.getCurrentWorkingDirectory() + System.getProperty("file.separator")
-                + this.outputFolderName + System.getProperty("file.separator") + this.templateFilenameOnly + "_"
-                + this.fileDateFormat.format(this.documentGenerationDate) + "_" + avisClient.getIdAvis().toString()
+                + this.outputFolderName + System.getProperty("file.separator") + this.getDocumentName(avisClient)
                 + ".pdf";
 
-        // Open the ODS file
-        OpenDocument doc = new OpenDocument();
-        doc.loadFrom(odsFilename);
-        
         // ODS file renderer
-        ODTRenderer odtRenderer = new ODTRenderer(doc);
-        odtRenderer.setIgnoreMargins(true);
-        odtRenderer.setPaintMaxResolution(true);
+        ODTRenderer odtRenderer = null;
+        if (doc != null) {
+            odtRenderer = new ODTRenderer(doc);
+            odtRenderer.setIgnoreMargins(true);
+            odtRenderer.setPaintMaxResolution(true);
+        }
 
         // PDF document size
         Rectangle pageSize = this.getPageSize();
@@ -578,7 +390,8 @@ public class SEPAMailDocumentPrinter {
         writer.setTagged();
 
         // Content size
-        Rectangle contentSize = this.getOdsContentSize(odtRenderer);
+        Rectangle contentSize = (odtRenderer != null) ? SEPAMailDocumentPrinter.getOdsContentSize(odtRenderer)
+                : stampTemplate.getContentSize();
 
         // Open the PDF document
         document.open();
@@ -592,25 +405,11 @@ public class SEPAMailDocumentPrinter {
         document.addSubject("");
         document.addTitle("Avis de paiement SEPAmail");
 
+        // PDF resources shared by the documents
+        PdfResourceCache pdfResourceCache = PdfResourceCache.getPdfResourceCache();
+
         // Set the colour profile of the document
-        PdfDictionary outputIntent = new PdfDictionary(PdfName.OUTPUTINTENT);
-        
-        // Colour profile dictionary properties
-        outputIntent.put(PdfName.OUTPUTCONDITIONIDENTIFIER, new PdfString("sRGB IEC61966-2.1"));
-        outputIntent.put(PdfName.INFO, new PdfString("sRGB IEC61966-2.1"));
-        outputIntent.put(PdfName.S, PdfName.GTS_PDFA1);
-
-        // Load the PDF document ICC profile
-        ICC_Profile icc = ICC_Profile.getInstance(new FileInputStream(Utilities.getCurrentWorkingDirectory() 
-                + System.getProperty("file.separator") + "icc" + System.getProperty("file.separator") + "srgb.icc"));
-
-        // PDF ICC profile
-        PdfICCBased pdfIcc = new PdfICCBased(icc);
-        pdfIcc.remove(PdfName.ALTERNATE);
-        
-        // Add profile to PDF document
-        outputIntent.put(PdfName.DESTOUTPUTPROFILE, writer.addToBody(pdfIcc).getIndirectReference()); 
-        writer.getExtraCatalog().put(PdfName.OUTPUTINTENTS, new PdfArray(outputIntent)); 
+        pdfResourceCache.addOutputIntent(writer);
 
         // Get a handle to PDF document content
         PdfContentByte contentByte = writer.getDirectContent();
@@ -618,19 +417,23 @@ public class SEPAMailDocumentPrinter {
         // PDF template
         PdfTemplate template = contentByte.createTemplate(contentSize.getWidth(), contentSize.getHeight());
 
+        // Place the static layout of the template under the stamped text
+        if (odtRenderer == null) {
+            stampTemplate.addBackground(writer, template);
+        }
+
         // Get graphics context to draw on the template
         PdfGraphics2D pdfGraphics2d = new PdfGraphics2D(template, contentSize.getWidth(), contentSize.getHeight());
 
         // Set document fonts
-        pdfGraphics2d.setBoldFont(BaseFont.createFont(Utilities.getCurrentWorkingDirectory() 
-                + System.getProperty("file.separator") + "font" + System.getProperty("file.separator") + "arial_b.ttf",
-                BaseFont.WINANSI, BaseFont.EMBEDDED));
-        pdfGraphics2d.setNormalFont(BaseFont.createFont(Utilities.getCurrentWorkingDirectory() 
-                + System.getProperty("file.separator") + "font" + System.getProperty("file.separator") + "arial.ttf",
-                BaseFont.WINANSI, BaseFont.EMBEDDED));
+        pdfResourceCache.setFonts(pdfGraphics2d);
 
-        // Render ODS file content on the template graphics context
-        odtRenderer.paintComponent(pdfGraphics2d);
+        // Render ODS file content or stamp the text of the cells on the template graphics context
+        if (odtRenderer != null) {
+            odtRenderer.paintComponent(pdfGraphics2d);
+        } else {
+            stampTemplate.drawTexts(pdfGraphics2d, cellTexts);
+        }
 
         // Dispose graphics context to free memory
         pdfGraphics2d.dispose();
@@ -673,7 +476,7 @@ public class SEPAMailDocumentPrinter {
         byte[] bGeneratorName = jGeneratorName.getBytes("UTF-8");
 
         // SEPAmail XMP properties
-        cp.setProperty("xmp:sepamail_missive", this.encodedSEPAmailMissiveXml(xmlFilename));
+        cp.setProperty("xmp:sepamail_missive", sepaMailXml);
         cp.setProperty("xmp:sepamail_document.signed", new String(bFalse, "UTF-8"));
         cp.setProperty("xmp:sepamail_document.generator", new String(bGeneratorName, "UTF-8"));
 
@@ -698,14 +501,6 @@ public class SEPAMailDocumentPrinter {
         // Close the PDF document
         document.close();
 
-        // Delete temporary ODS file used to generate the request for payment document
-        File odsFile = new File(odsFilename);
-        odsFile.delete();
-
-        // Delete SEPAmail XML missive document that has already been embedded in the PDF
-        File xmlFile = new File(xmlFilename);
-        xmlFile.delete();
-
         return outputFilename;
 
     }// </editor-fold>
@@ -717,7 +512,7 @@ public class SEPAMailDocumentPrinter {
      * @param odtRenderer ODT renderer containing ODS file details
      * @return Rectangle which defines the print size of the PDF document
      */
-    private Rectangle getOdsContentSize(ODTRenderer odtRenderer) {
+    static Rectangle getOdsContentSize(ODTRenderer odtRenderer) {
 
         // Document size in points
         return new Rectangle((float)((odtRenderer.getPrintWidth() / 100000.0) * 2.54 * 72),
@@ -771,34 +566,4 @@ public class SEPAMailDocumentPrinter {
 
     }// </editor-fold>
 
-    // <editor-fold defaultstate="collapsed" desc="UTF-8 encoded SEPAmail XML missive content">
-    /**
-     * Read the SEPAmail missive XML filename and encode content to UTF-8
-     * 
-     * @param xmlFilename SEPAmail missive XML file name
-     * @return UTF-8 encoded string
-     * @throws FileNotFoundException
-     * @throws IOException
-     */
-    private String encodedSEPAmailMissiveXml(String xmlFilename) throws FileNotFoundException, IOException {
-
-        // XML missive file
-        File xmlFile = new File(xmlFilename);
-
-        // XML file stream reader
-        FileInputStream fis = new FileInputStream(xmlFile);
-
-        // Byte array that will store content of the file
-        byte[] content = new byte[(int)xmlFile.length()];
-
-        // Get file content
-        fis.read(content);
-
-        // Close the file input stream
-        fis.close();
-
-        return new String(content, "UTF-8");
-
-    }// </editor-fold>
-
 }
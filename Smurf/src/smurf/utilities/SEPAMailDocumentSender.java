@@ -0,0 +1,199 @@
+package smurf.utilities;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import org.smoc.Smoc;
+import smurf.dao.ConfigurationDao;
+import smurf.exceptions.ConfigurationFormatException;
+import smurf.model.Configuration;
+import smurf.model.SmurfOutput;
+
+/**
+ * The SEPAMailDocumentSender class sends the documents of requests for payment one at a time with the configured
+ * output type, so that each document can be sent as soon as it has been generated. The documents can be sent by
+ * several threads at a time, each thread using its own mailer, SMOC module or eBICS session. Documents sent in a batch
+ * are written to an open archive instead, the archive being sent once all the documents have been written to it.
+ *
+ * @author Bishan Kumar Madhoo <bishan.madhoo@idsoft.mu>
+ * @version 1.0
+ */
+public class SEPAMailDocumentSender {
+
+    private SEPAMailDocumentArchiver archiver;
+    private ThreadLocal<SEPAMailEbicsAdapter> ebicsAdapters;
+    private ThreadLocal<SEPAMailDocumentMailer> mailers;
+    private String outputType;
+    private String smocConfig;
+    private ThreadLocal<Smoc> smocs;
+
+    /**
+     * SEPAMailDocumentSender constructor
+     *
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    public SEPAMailDocumentSender() throws IOException, ConfigurationFormatException {
+        this(null);
+    }
+
+    /**
+     * SEPAMailDocumentSender constructor for documents sent in a batch
+     *
+     * @param archiver Archiver whose open archive receives the documents, or null to send the documents one at a time
+     * @throws IOException
+     * @throws ConfigurationFormatException
+     */
+    public SEPAMailDocumentSender(SEPAMailDocumentArchiver archiver) throws IOException, ConfigurationFormatException {
+
+        // Initialise class attributes
+        this.archiver = archiver;
+        this.ebicsAdapters = new ThreadLocal<>();
+        this.mailers = new ThreadLocal<>();
+        this.smocConfig = "";
+        this.smocs = new ThreadLocal<>();
+
+        // Configuration settings
+        ArrayList<Configuration> confs = ConfigurationDao.getConfigurationDao().getConfigurations();
+
+        // Get document output type which defaults to SEND_SMTP
+        int outputTypeIndex = confs.indexOf(new Configuration("output.type"));
+        if (outputTypeIndex > -1) {
+            this.outputType = confs.get(outputTypeIndex).getStringVal();
+        } else {
+            this.outputType = "SEND_SMTP";
+        }
+
+        // Get SMOC module configuration filename
+        int smocConfigIndex = confs.indexOf(new Configuration("smoc.conf"));
+        if (smocConfigIndex > -1) {
+            this.smocConfig = confs.get(smocConfigIndex).getStringVal();
+        }
+    }
+
+    /**
+     * Send the document of a request for payment
+     *
+     * @param smurfOutput Output of the document
+     * @throws Exception
+     */
+    public void send(SmurfOutput smurfOutput) throws Exception {
+
+        // Write document to the open archive when documents are sent in a batch
+        if (this.archiver != null) {
+            this.archiver.addDocument(smurfOutput.getBaseFilename());
+            return;
+        }
+
+        // Send document as per defined output type
+        switch (this.outputType) {
+
+            case "SEND_SMTP":
+
+                // Check document format
+                if (smurfOutput.getBaseOutputFormat().equals("PDF")) {
+
+                    // Send document via SMTP
+                    this.getMailer().send(smurfOutput.getBaseFilename());
+
+                } else {
+
+                    // Send document via SMOC module
+                    this.getSmoc().sendMissive("Avis de paiement SEPAmail", smurfOutput.getBaseFilename());
+                }
+                break;
+
+            case "SEND_EBICS":
+
+                // Send document via eBICS
+                this.getEbicsAdapter().send(smurfOutput.getBaseFilename());
+                break;
+
+            default:
+
+                // Documents sent to the file system are already in the output folder
+                break;
+        }
+    }
+
+    /**
+     * Send the archive of the documents sent in a batch
+     *
+     * @param archiveFilename Path and name of the archive
+     * @throws Exception
+     */
+    public void sendArchive(String archiveFilename) throws Exception {
+
+        // Send archive as per defined output type
+        switch (this.outputType) {
+
+            case "SEND_SMTP":
+
+                // Send archive file via SMTP
+                this.getMailer().send(archiveFilename);
+                break;
+
+            case "SEND_EBICS":
+
+                // Send archive file via eBICS
+                this.getEbicsAdapter().send(archiveFilename);
+                break;
+
+            default:
+
+                // Archives sent to the file system are already in the archive folder
+                break;
+        }
+    }
+
+    /**
+     * Get the eBICS adapter of the current thread, whose eBICS session is started the first time it is requested
+     *
+     * @return eBICS adapter of the current thread
+     * @throws Exception
+     */
+    private SEPAMailEbicsAdapter getEbicsAdapter() throws Exception {
+
+        SEPAMailEbicsAdapter ebicsAdapter = this.ebicsAdapters.get();
+        if (ebicsAdapter == null) {
+            ebicsAdapter = new SEPAMailEbicsAdapter();
+            ebicsAdapter.startEbicsSession();
+            this.ebicsAdapters.set(ebicsAdapter);
+        }
+
+        return ebicsAdapter;
+    }
+
+    /**
+     * Get the document mailer of the current thread
+     *
+     * @return Document mailer of the current thread
+     * @throws Exception
+     */
+    private SEPAMailDocumentMailer getMailer() throws Exception {
+
+        SEPAMailDocumentMailer mailer = this.mailers.get();
+        if (mailer == null) {
+            mailer = new SEPAMailDocumentMailer();
+            this.mailers.set(mailer);
+        }
+
+        return mailer;
+    }
+
+    /**
+     * Get the SMOC module instance of the current thread
+     *
+     * @return SMOC module instance of the current thread
+     * @throws Exception
+     */
+    private Smoc getSmoc() throws Exception {
+
+        Smoc smoc = this.smocs.get();
+        if (smoc == null) {
+            smoc = new Smoc(this.smocConfig);
+            this.smocs.set(smoc);
+        }
+
+        return smoc;
+    }
+}
@@ -196,25 +196,11 @@ public class SEPAMailVoucherPrinter {
         document.addSubject("");
         document.addTitle("Avis de paiement SEPAmail");
 
-        // Set the colour profile of the document
-        PdfDictionary outputIntent = new PdfDictionary(PdfName.OUTPUTINTENT);
-
-        // Colour profile dictionary properties
-        outputIntent.put(PdfName.OUTPUTCONDITIONIDENTIFIER, new PdfString("sRGB IEC61966-2.1"));
-        outputIntent.put(PdfName.INFO, new PdfString("sRGB IEC61966-2.1"));
-        outputIntent.put(PdfName.S, PdfName.GTS_PDFA1);
-
-        // Load the PDF document ICC profile
-        ICC_Profile icc = ICC_Profile.getInstance(new FileInputStream(Utilities.getCurrentWorkingDirectory() 
-                + System.getProperty("file.separator") + "icc" + System.getProperty("file.separator") + "srgb.icc"));
+        // PDF resources shared by the documents
+        PdfResourceCache pdfResourceCache = PdfResourceCache.getPdfResourceCache();
 
-        // PDF ICC profile
-        PdfICCBased pdfIcc = new PdfICCBased(icc);
-        pdfIcc.remove(PdfName.ALTERNATE);
-
-        // Add profile to PDF document
-        outputIntent.put(PdfName.DESTOUTPUTPROFILE, writer.addToBody(pdfIcc).getIndirectReference()); 
-        writer.getExtraCatalog().put(PdfName.OUTPUTINTENTS, new PdfArray(outputIntent));
+        // Set the colour profile of the document
+        pdfResourceCache.addOutputIntent(writer);
 
         // Get a handle to PDF document content
         PdfContentByte contentByte = writer.getDirectContent();
@@ -226,12 +212,7 @@ public class SEPAMailVoucherPrinter {
         PdfGraphics2D pdfGraphics2d = new PdfGraphics2D(template, contentSize.getWidth(), contentSize.getHeight());
 
         // Set document fonts
-        pdfGraphics2d.setBoldFont(BaseFont.createFont(Utilities.getCurrentWorkingDirectory() 
-                + System.getProperty("file.separator") + "font" + System.getProperty("file.separator") + "arial_b.ttf",
-                BaseFont.WINANSI, BaseFont.EMBEDDED));
-        pdfGraphics2d.setNormalFont(BaseFont.createFont(Utilities.getCurrentWorkingDirectory() 
-                + System.getProperty("file.separator") + "font" + System.getProperty("file.separator") + "arial.ttf",
-                BaseFont.WINANSI, BaseFont.EMBEDDED));
+        pdfResourceCache.setFonts(pdfGraphics2d);
 
         // Render ODS file content on the template graphics context
         odtRenderer.paintComponent(pdfGraphics2d);
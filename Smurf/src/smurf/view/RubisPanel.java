@@ -3,6 +3,7 @@ package smurf.view;
 import java.awt.Color;
 import java.awt.Component;
 import javax.swing.table.TableCellRenderer;
+import smurf.model.PageComboBoxModel;
 
 /**
  * The RubisPanel class defines the UI that is used by the user to gather, generate and send requests of payments
@@ -29,6 +30,8 @@ public class RubisPanel extends javax.swing.JPanel {
 
         titlePanel = new javax.swing.JPanel();
         titleLabel = new javax.swing.JLabel();
+        searchPanel = new javax.swing.JPanel();
+        searchTextField = new javax.swing.JTextField();
         stepsPanel = new javax.swing.JPanel();
         firstStepToggleButton = new javax.swing.JToggleButton();
         centerPanel = new javax.swing.JPanel();
@@ -63,7 +66,21 @@ public class RubisPanel extends javax.swing.JPanel {
         lastButton = new javax.swing.JButton();
         pagerLabelContainerPanel = new javax.swing.JPanel();
         pagerLabel = new javax.swing.JLabel();
-        pagesComboBox = new javax.swing.JComboBox();
+        pagesComboBox = new javax.swing.JComboBox<String>() {
+            public int getSelectedIndex() {
+                if (getModel() instanceof PageComboBoxModel) {
+                    return ((PageComboBoxModel)getModel()).getSelectedIndex();
+                }
+                return super.getSelectedIndex();
+            }
+            public void setSelectedIndex(int anIndex) {
+                if (getModel() instanceof PageComboBoxModel) {
+                    ((PageComboBoxModel)getModel()).setSelectedIndex(anIndex);
+                } else {
+                    super.setSelectedIndex(anIndex);
+                }
+            }
+        };
 
         setBorder(javax.swing.BorderFactory.createEmptyBorder(10, 10, 10, 10));
         setLayout(new java.awt.BorderLayout());
@@ -76,6 +93,17 @@ public class RubisPanel extends javax.swing.JPanel {
         titleLabel.setBorder(javax.swing.BorderFactory.createEmptyBorder(10, 0, 15, 0));
         titlePanel.add(titleLabel, java.awt.BorderLayout.CENTER);
 
+        searchPanel.setLayout(new java.awt.GridBagLayout());
+
+        searchTextField.setToolTipText("Rechercher une demande de règlement par le nom ou l'identifiant du client");
+        searchTextField.setActionCommand("SEARCH");
+        searchTextField.setEnabled(false);
+        searchTextField.setMinimumSize(new java.awt.Dimension(200, 27));
+        searchTextField.setPreferredSize(new java.awt.Dimension(200, 27));
+        searchPanel.add(searchTextField, new java.awt.GridBagConstraints());
+
+        titlePanel.add(searchPanel, java.awt.BorderLayout.EAST);
+
         add(titlePanel, java.awt.BorderLayout.NORTH);
 
         stepsPanel.setBorder(javax.swing.BorderFactory.createEmptyBorder(0, 10, 0, 0));
@@ -223,8 +251,10 @@ public class RubisPanel extends javax.swing.JPanel {
     private javax.swing.JPanel pagerControlsPanel;
     public javax.swing.JLabel pagerLabel;
     private javax.swing.JPanel pagerLabelContainerPanel;
-    public javax.swing.JComboBox pagesComboBox;
+    public javax.swing.JComboBox<String> pagesComboBox;
     public javax.swing.JButton previousButton;
+    private javax.swing.JPanel searchPanel;
+    public javax.swing.JTextField searchTextField;
     public javax.swing.JToggleButton secondStepToggleButton;
     private javax.swing.JPanel stepsPanel;
     public javax.swing.JToggleButton thirdStepToggleButton;
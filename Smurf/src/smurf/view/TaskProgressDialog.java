@@ -4,6 +4,10 @@
  */
 package smurf.view;
 
+import java.awt.GridLayout;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+
 /**
  * TaskProgressDialog displays the progress of a task
  * 
@@ -12,12 +16,187 @@ package smurf.view;
  */
 public class TaskProgressDialog extends javax.swing.JDialog {
 
+    public static final long UPDATE_INTERVAL = 100;
+
+    private static final int MAX_SAMPLES = 128;
+    private static final long RATE_WINDOW = 10000;
+
+    private JPanel partitionsPanel;
+    private JProgressBar[] partitionProgressBars;
+    private int firstSample;
+    private int noSamples;
+    private long[] sampleTimes;
+    private int[] sampleValues;
+    private String[] stageNames;
+
     /**
      * Creates new form TaskProgressDialog
      */
     public TaskProgressDialog(java.awt.Frame parent, boolean modal) {
         super(parent, modal);
         initComponents();
+
+        // Panel holding the progress bars of the partitions of a task, which is empty unless the task is partitioned
+        this.partitionProgressBars = new JProgressBar[0];
+        this.partitionsPanel = new JPanel(new GridLayout(0, 1, 0, 4));
+        this.contentPanel.add(this.partitionsPanel, java.awt.BorderLayout.NORTH);
+        this.stageNames = null;
+
+        // Samples of the progress used to estimate the rate of the task
+        this.firstSample = 0;
+        this.noSamples = 0;
+        this.sampleTimes = new long[TaskProgressDialog.MAX_SAMPLES];
+        this.sampleValues = new int[TaskProgressDialog.MAX_SAMPLES];
+    }
+
+    /**
+     * Display the progress of a task processing a known number of items, with its rate and the estimated time left
+     *
+     * @param noItems Number of items processed by the task
+     */
+    public void startProgress(int noItems) {
+
+        this.taskProgressBar.setIndeterminate(false);
+        this.taskProgressBar.setMinimum(0);
+        this.taskProgressBar.setMaximum(noItems);
+        this.taskProgressBar.setStringPainted(true);
+
+        // Discard the samples of the previous task
+        this.firstSample = 0;
+        this.noSamples = 0;
+
+        this.setProgress(0);
+    }
+
+    /**
+     * Display the number of items processed, the rate at which the items have been processed over the last seconds and
+     * the estimated time left
+     *
+     * @param noItems Number of items processed
+     */
+    public void setProgress(int noItems) {
+
+        long now = System.currentTimeMillis();
+
+        // Drop the samples older than the window, keeping at least one sample to measure the rate from
+        while ((this.noSamples > 1) && (now - this.sampleTimes[this.firstSample] > TaskProgressDialog.RATE_WINDOW)) {
+            this.firstSample = (this.firstSample + 1) % TaskProgressDialog.MAX_SAMPLES;
+            this.noSamples--;
+        }
+
+        // Add the sample, the oldest one being overwritten when the buffer is full
+        if (this.noSamples == TaskProgressDialog.MAX_SAMPLES) {
+            this.firstSample = (this.firstSample + 1) % TaskProgressDialog.MAX_SAMPLES;
+            this.noSamples--;
+        }
+        int sample = (this.firstSample + this.noSamples) % TaskProgressDialog.MAX_SAMPLES;
+        this.sampleTimes[sample] = now;
+        this.sampleValues[sample] = noItems;
+        this.noSamples++;
+
+        this.taskProgressBar.setValue(noItems);
+
+        // Rate of the task over the samples of the window
+        String text = noItems + " / " + this.taskProgressBar.getMaximum();
+        long elapsed = now - this.sampleTimes[this.firstSample];
+        int processed = noItems - this.sampleValues[this.firstSample];
+        if ((elapsed > 0) && (processed > 0)) {
+
+            double rate = processed * 1000.0 / elapsed;
+            long secondsLeft = Math.round((this.taskProgressBar.getMaximum() - noItems) / rate);
+            text += String.format(" - %.1f doc/s - reste %d min %02d s", rate, secondsLeft / 60, secondsLeft % 60);
+        }
+        this.taskProgressBar.setString(text);
+    }
+
+    /**
+     * Display the progress of a task whose number of items is not known
+     */
+    public void startIndeterminateProgress() {
+
+        this.taskProgressBar.setIndeterminate(true);
+        this.taskProgressBar.setStringPainted(false);
+    }
+
+    /**
+     * Display a progress bar for each partition of the task
+     *
+     * @param noPartitions Number of partitions, no progress bar being displayed when it is zero
+     */
+    public void setPartitionCount(int noPartitions) {
+
+        // Check if the progress bars are already displayed
+        if ((this.partitionProgressBars.length == noPartitions) && (this.stageNames == null)) {
+            return;
+        }
+
+        // Create the progress bars of the partitions
+        this.partitionsPanel.removeAll();
+        this.partitionProgressBars = new JProgressBar[noPartitions];
+        this.stageNames = null;
+        for (int i = 0; i < noPartitions; i++) {
+            this.partitionProgressBars[i] = new JProgressBar(0, 1);
+            this.partitionProgressBars[i].setIndeterminate(true);
+            this.partitionProgressBars[i].setStringPainted(true);
+            this.partitionProgressBars[i].setString("Période " + (i + 1) + " : en attente");
+            this.partitionsPanel.add(this.partitionProgressBars[i]);
+        }
+
+        // Resize the dialog box to fit the progress bars
+        this.pack();
+    }
+
+    /**
+     * Display the progress of a partition of the task
+     *
+     * @param partition Partition position
+     * @param noItems Number of items processed by the partition
+     * @param completed Whether the partition has been completed
+     */
+    public void setPartitionProgress(int partition, int noItems, boolean completed) {
+
+        JProgressBar partitionProgressBar = this.partitionProgressBars[partition];
+        partitionProgressBar.setIndeterminate(!completed);
+        partitionProgressBar.setValue(completed ? 1 : 0);
+        partitionProgressBar.setString("Période " + (partition + 1) + " : " + noItems + " demandes"
+                + (completed ? " (terminée)" : ""));
+    }
+
+    /**
+     * Display a progress bar for each stage of a task whose items go through several stages, the progress bars being
+     * removed by setting the number of partitions to zero
+     *
+     * @param stageNames Names of the stages
+     * @param noItems Number of items processed by each stage
+     */
+    public void setStages(String[] stageNames, int noItems) {
+
+        // Create the progress bars of the stages
+        this.partitionsPanel.removeAll();
+        this.partitionProgressBars = new JProgressBar[stageNames.length];
+        this.stageNames = stageNames;
+        for (int i = 0; i < stageNames.length; i++) {
+            this.partitionProgressBars[i] = new JProgressBar(0, noItems);
+            this.partitionProgressBars[i].setStringPainted(true);
+            this.partitionsPanel.add(this.partitionProgressBars[i]);
+            this.setStageProgress(i, 0);
+        }
+
+        // Resize the dialog box to fit the progress bars
+        this.pack();
+    }
+
+    /**
+     * Display the number of items which have left a stage of the task
+     *
+     * @param stage Stage position
+     * @param noItems Number of items processed by the stage
+     */
+    public void setStageProgress(int stage, int noItems) {
+
+        JProgressBar stageProgressBar = this.partitionProgressBars[stage];
+        stageProgressBar.setValue(noItems);
+        stageProgressBar.setString(this.stageNames[stage] + " : " + noItems + " / " + stageProgressBar.getMaximum());
     }
 
     /**